@@ -38,9 +38,13 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
+import net.sf.okapi.applications.longhorn.lib.Job;
+import net.sf.okapi.applications.longhorn.lib.JobManager;
+import net.sf.okapi.applications.longhorn.lib.JobManager.RejectedJobException;
 import net.sf.okapi.applications.longhorn.lib.ProjectUtils;
 import net.sf.okapi.applications.longhorn.lib.WorkspaceUtils;
 import net.sf.okapi.common.Util;
+import net.sf.okapi.lib.longhornapi.impl.rest.transport.XMLJobInfo;
 import net.sf.okapi.lib.longhornapi.impl.rest.transport.XMLStringList;
 
 import org.apache.commons.httpclient.HttpStatus;
@@ -68,6 +72,11 @@ import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
  *	<li> GET	/projects/1/outputFiles.zip
  *	<li> DEL	/projects/1
  * </ol>
+ * 
+ * The execution can also be asynchronous: POST /projects/1/tasks/submit returns
+ * at once with the URI of a job (/projects/1/jobs/1), whose status can be polled with GET
+ * and which can be canceled with DEL. The projects are executed by a fixed number of
+ * worker threads; when too many projects are waiting, new executions are rejected.
  */
 @Path("/projects")
 public class RESTInterface {
@@ -114,6 +123,14 @@ public class RESTInterface {
 	@Path("/{projId}")
 	public Response deleteProject(@PathParam("projId") int projId) {
 		
+		try {
+			JobManager.getInstance().removeJobs(projId);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			int status = HttpStatus.SC_INTERNAL_SERVER_ERROR;
+			return Response.status(status).build();
+		}
 		Util.deleteDirectory(WorkspaceUtils.getProjectPath(projId), false);
 
 		int status = HttpStatus.SC_OK;
@@ -215,44 +232,164 @@ public class RESTInterface {
 	@Path("/{projId}/tasks/execute")
 	public Response executeProject(@PathParam("projId") int projId) {
 
+		return executeAndWait(projId, null, null);
+	}
+
+	/**
+	 * Executes the uploaded batch configuration on the input files that have been added.
+	 * 
+	 * @param projId The id of the project to be executed
+	 * @param sourceLanguage source language for pipeline
+	 * @param targetLanguage target language for pipeline
+	 * @return
+	 */
+	@POST
+	@Path("/{projId}/tasks/execute/{source}/{target}")
+	public Response executeProject(@PathParam("projId") int projId, @PathParam("source") String sourceLanguage, @PathParam("target") String targetLanguage) {
+
+		return executeAndWait(projId, sourceLanguage, targetLanguage);
+	}
+
+	/**
+	 * Queues the execution of the project and waits until it is done.
+	 */
+	private Response executeAndWait(int projId, String sourceLanguage, String targetLanguage) {
+		
+		Job job;
 		try {
-			ProjectUtils.executeProject(projId);
+			job = JobManager.getInstance().submit(projId, sourceLanguage, targetLanguage);
+			job.waitFor();
 		}
-		catch (Exception e) {
-			e.printStackTrace();
+		catch (RejectedJobException e) {
+			return rejected(e);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			int status = HttpStatus.SC_INTERNAL_SERVER_ERROR;
 			String type = MediaType.TEXT_PLAIN;
 			String body = e.toString();
 			return Response.status(status).type(type).entity(body).build();
 		}
 
+		if (job.getStatus() != Job.Status.SUCCEEDED) {
+			int status = HttpStatus.SC_INTERNAL_SERVER_ERROR;
+			String type = MediaType.TEXT_PLAIN;
+			String body = job.getError() == null ? "Execution canceled" : job.getError().toString();
+			return Response.status(status).type(type).entity(body).build();
+		}
+
 		int status = HttpStatus.SC_OK;
 		return Response.status(status).build();
 	}
 
 	/**
-	 * Executes the uploaded batch configuration on the input files that have been added.
+	 * Queues the execution of the uploaded batch configuration on the input files that have been added,
+	 * and returns at once.
+	 * 
+	 * @param projId The id of the project to be executed
+	 * @return The URI of the new job, and its id in the body
+	 */
+	@POST
+	@Path("/{projId}/tasks/submit")
+	public Response submitProject(@Context UriInfo uriInfo, @PathParam("projId") int projId) {
+		
+		return submit(uriInfo, projId, null, null);
+	}
+
+	/**
+	 * Queues the execution of the uploaded batch configuration on the input files that have been added,
+	 * and returns at once.
 	 * 
 	 * @param projId The id of the project to be executed
 	 * @param sourceLanguage source language for pipeline
 	 * @param targetLanguage target language for pipeline
-	 * @return
+	 * @return The URI of the new job, and its id in the body
 	 */
 	@POST
-	@Path("/{projId}/tasks/execute/{source}/{target}")
-	public Response executeProject(@PathParam("projId") int projId, @PathParam("source") String sourceLanguage, @PathParam("target") String targetLanguage) {
-
+	@Path("/{projId}/tasks/submit/{source}/{target}")
+	public Response submitProject(@Context UriInfo uriInfo, @PathParam("projId") int projId,
+			@PathParam("source") String sourceLanguage, @PathParam("target") String targetLanguage) {
+		
+		return submit(uriInfo, projId, sourceLanguage, targetLanguage);
+	}
+	
+	private Response submit(UriInfo uriInfo, int projId, String sourceLanguage, String targetLanguage) {
+		
+		Job job;
 		try {
-			ProjectUtils.executeProject(projId, sourceLanguage, targetLanguage);
+			job = JobManager.getInstance().submit(projId, sourceLanguage, targetLanguage);
 		}
-		catch (Exception e) {
-			e.printStackTrace();
-			int status = HttpStatus.SC_INTERNAL_SERVER_ERROR;
-			String type = MediaType.TEXT_PLAIN;
-			String body = e.toString();
-			return Response.status(status).type(type).entity(body).build();
+		catch (RejectedJobException e) {
+			return rejected(e);
+		}
+
+		URI jobUri = uriInfo.getBaseUriBuilder().path(RESTInterface.class)
+				.path(projId + "").path("jobs").path(job.getId() + "").build();
+		int status = HttpStatus.SC_ACCEPTED;
+		return Response.status(status).location(jobUri).type(MediaType.TEXT_PLAIN).entity(job.getId() + "").build();
+	}
+	
+	private Response rejected(RejectedJobException e) {
+		
+		int status = e.isProjectBusy() ? HttpStatus.SC_CONFLICT : HttpStatus.SC_SERVICE_UNAVAILABLE;
+		String type = MediaType.TEXT_PLAIN;
+		String body = e.getMessage();
+		return Response.status(status).type(type).entity(body).build();
+	}
+
+	/**
+	 * @param projId The id of a local project
+	 * @return A list of the ids of the project's jobs (the last finished one and the active one, if any)
+	 */
+	@GET
+	@Path("/{projId}/jobs")
+	@Produces(MediaType.TEXT_XML)
+	public XMLStringList getProjectJobs(@PathParam("projId") int projId) {
+		
+		return new XMLStringList(JobManager.getInstance().getJobIds(projId));
+	}
+
+	/**
+	 * @param projId The id of a local project
+	 * @param jobId The id of one of the project's jobs
+	 * @return The status and progress of the job
+	 */
+	@GET
+	@Path("/{projId}/jobs/{jobId}")
+	@Produces(MediaType.TEXT_XML)
+	public Response getProjectJob(@PathParam("projId") int projId, @PathParam("jobId") int jobId) {
+		
+		Job job = JobManager.getInstance().getJob(jobId);
+		if (job == null || job.getProjectId() != projId) {
+			int status = HttpStatus.SC_NOT_FOUND;
+			return Response.status(status).build();
+		}
+
+		String error = job.getError() == null ? null : job.getError().toString();
+		XMLJobInfo info = new XMLJobInfo(job.getId(), job.getStatus().name(), job.getDocumentCount(),
+				job.getProcessedCount(), error);
+		int status = HttpStatus.SC_OK;
+		return Response.status(status).entity(info).build();
+	}
+
+	/**
+	 * Cancels a job. A queued job is not executed, a running job stops after the document being processed.
+	 * 
+	 * @param projId The id of a local project
+	 * @param jobId The id of one of the project's jobs
+	 * @return
+	 */
+	@DELETE
+	@Path("/{projId}/jobs/{jobId}")
+	public Response cancelProjectJob(@PathParam("projId") int projId, @PathParam("jobId") int jobId) {
+		
+		Job job = JobManager.getInstance().getJob(jobId);
+		if (job == null || job.getProjectId() != projId) {
+			int status = HttpStatus.SC_NOT_FOUND;
+			return Response.status(status).build();
 		}
 
+		JobManager.getInstance().cancel(job);
 		int status = HttpStatus.SC_OK;
 		return Response.status(status).build();
 	}
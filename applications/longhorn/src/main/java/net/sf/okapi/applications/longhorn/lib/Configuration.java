@@ -36,8 +36,12 @@ import org.xml.sax.SAXException;
 public class Configuration {
 	private static final Logger LOGGER = Logger.getLogger(Configuration.class.getName());
 	private static final String DEF_WORKING_DIR = System.getProperty("user.home") + File.separator + "Okapi-Longhorn-Files";
+	private static final int DEF_WORKER_COUNT = 2;
+	private static final int DEF_JOB_QUEUE_SIZE = 50;
 	
 	private String workingDirectory;
+	private int workerCount = DEF_WORKER_COUNT;
+	private int jobQueueSize = DEF_JOB_QUEUE_SIZE;
 
 	public Configuration() {
 		LOGGER.info("The default working directory for Okapi Longhorn will be used, " +
@@ -69,6 +73,14 @@ public class Configuration {
 				String tc = NL.item(i).getTextContent();
 				workingDirectory = tc;
 			}
+			
+			NL = Doc.getElementsByTagName("worker-count");
+			if (NL.getLength() > 0)
+				workerCount = Math.max(1, Integer.parseInt(NL.item(0).getTextContent().trim()));
+			
+			NL = Doc.getElementsByTagName("job-queue-size");
+			if (NL.getLength() > 0)
+				jobQueueSize = Math.max(1, Integer.parseInt(NL.item(0).getTextContent().trim()));
 		}
 		catch (DOMException e) {
 			throw new RuntimeException(e);
@@ -82,6 +94,9 @@ public class Configuration {
 		catch (ParserConfigurationException e) {
 			throw new RuntimeException(e);
 		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number in configuration file", e);
+		}
 		
 		if (workingDirectory == null)
 			throw new IllegalArgumentException("Working directory not specified in configuration file");
@@ -90,4 +105,18 @@ public class Configuration {
 	public String getWorkingDirectory() {
 		return workingDirectory;
 	}
+
+	/**
+	 * @return The number of projects that can be executed at the same time
+	 */
+	public int getWorkerCount() {
+		return workerCount;
+	}
+
+	/**
+	 * @return The maximum number of projects waiting to be executed
+	 */
+	public int getJobQueueSize() {
+		return jobQueueSize;
+	}
 }
@@ -0,0 +1,201 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.applications.longhorn.lib;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.okapi.applications.rainbow.pipeline.PipelineWrapper;
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.observer.IObservable;
+import net.sf.okapi.common.observer.IObserver;
+
+/**
+ * The execution of a project, submitted to the {@link JobManager}.
+ * 
+ * The job observes the pipeline to count the processed documents, and
+ * can be canceled while it is waiting in the queue or while it is running.
+ */
+public class Job implements Runnable, IObserver {
+	private static final Logger LOGGER = Logger.getLogger(Job.class.getName());
+	
+	public enum Status {
+		QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELED
+	}
+
+	private final int id;
+	private final int projId;
+	private final String sourceLanguage;
+	private final String targetLanguage;
+	private final CountDownLatch done = new CountDownLatch(1);
+	
+	private volatile Status status = Status.QUEUED;
+	private volatile boolean cancelRequested;
+	private volatile int documentCount;
+	private volatile int processedCount;
+	private volatile Exception error;
+	private volatile PipelineWrapper pipelineWrapper;
+
+	Job(int id, int projId, String sourceLanguage, String targetLanguage) {
+		this.id = id;
+		this.projId = projId;
+		this.sourceLanguage = sourceLanguage;
+		this.targetLanguage = targetLanguage;
+	}
+
+	/**
+	 * Executes the project in the current thread. Called by the worker threads of the {@link JobManager}.
+	 */
+	@Override
+	public void run() {
+		synchronized (this) {
+			if (status != Status.QUEUED)
+				return; // Canceled while queued
+			status = Status.RUNNING;
+		}
+		Status result = Status.FAILED;
+		Exception failure = null;
+		try {
+			execute();
+			result = Status.SUCCEEDED;
+		}
+		catch (Exception e) {
+			if (!cancelRequested)
+				LOGGER.log(Level.WARNING, "Execution of project " + projId + " failed", e);
+			failure = e;
+		}
+		finally {
+			// Always release the threads waiting for this job, even on an Error
+			finish(cancelRequested ? Status.CANCELED : result, failure);
+		}
+	}
+	
+	/**
+	 * Executes the project. Overridden by the tests.
+	 * 
+	 * @throws Exception If the execution failed
+	 */
+	void execute() throws Exception {
+		ProjectUtils.executeProject(projId, sourceLanguage, targetLanguage, this);
+	}
+
+	/**
+	 * Called by {@link ProjectUtils} once the pipeline is ready to be executed.
+	 * 
+	 * @param pipelineWrapper The pipeline wrapper that will execute the project
+	 * @param documentCount The number of documents to process
+	 * @return false if the job has been canceled in the meantime
+	 */
+	synchronized boolean start(PipelineWrapper pipelineWrapper, int documentCount) {
+		this.pipelineWrapper = pipelineWrapper;
+		this.documentCount = documentCount;
+		return !cancelRequested;
+	}
+	
+	private void finish(Status status, Exception error) {
+		this.error = error;
+		this.status = status;
+		pipelineWrapper = null;
+		done.countDown();
+	}
+
+	/**
+	 * Requests the cancellation of this job. A queued job will not be executed,
+	 * a running job stops after the document being processed.
+	 * 
+	 * @return false if the job was already finished
+	 */
+	public synchronized boolean cancel() {
+		if (isFinished())
+			return false;
+		cancelRequested = true;
+		if (status == Status.QUEUED) {
+			finish(Status.CANCELED, null);
+			return true;
+		}
+		PipelineWrapper wrapper = pipelineWrapper;
+		if (wrapper != null)
+			wrapper.cancel();
+		return true;
+	}
+
+	@Override
+	public void update(IObservable o, Object arg) {
+		if (!(arg instanceof Event))
+			return;
+		if (((Event)arg).getEventType() == EventType.END_BATCH_ITEM) {
+			processedCount++;
+			// The pipeline resets its state at the start of each document,
+			// so a cancellation requested between two documents is re-applied here
+			PipelineWrapper wrapper = pipelineWrapper;
+			if (cancelRequested && wrapper != null)
+				wrapper.cancel();
+		}
+	}
+
+	/**
+	 * Waits until this job is finished.
+	 * 
+	 * @throws InterruptedException If the current thread is interrupted while waiting
+	 */
+	public void waitFor() throws InterruptedException {
+		done.await();
+	}
+
+	public boolean isFinished() {
+		return status == Status.SUCCEEDED || status == Status.FAILED || status == Status.CANCELED;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int getProjectId() {
+		return projId;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return The number of documents to process (0 until the job is running)
+	 */
+	public int getDocumentCount() {
+		return documentCount;
+	}
+
+	/**
+	 * @return The number of documents processed so far
+	 */
+	public int getProcessedCount() {
+		return processedCount;
+	}
+
+	/**
+	 * @return The error that stopped the job, or null
+	 */
+	public Exception getError() {
+		return error;
+	}
+}
@@ -0,0 +1,200 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.applications.longhorn.lib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the projects in a fixed number of worker threads.
+ * 
+ * The jobs waiting for a free worker are kept in a bounded queue: when the queue
+ * is full, new jobs are rejected instead of piling up. The number of workers and
+ * the size of the queue are read from the configuration file
+ * (see {@link Configuration#getWorkerCount()} and {@link Configuration#getJobQueueSize()}).
+ * Only one job can be active (queued or running) per project at a time.
+ */
+public class JobManager {
+	private static JobManager instance;
+	
+	private final ThreadPoolExecutor executor;
+	private final Map<Integer, Job> jobs = new ConcurrentHashMap<Integer, Job>();
+	private final AtomicInteger lastJobId = new AtomicInteger();
+
+	/**
+	 * Thrown when a project cannot be submitted.
+	 */
+	public static class RejectedJobException extends Exception {
+		private static final long serialVersionUID = 1L;
+		private final boolean projectBusy;
+
+		public RejectedJobException(String message, boolean projectBusy) {
+			super(message);
+			this.projectBusy = projectBusy;
+		}
+
+		/**
+		 * @return true if the job was rejected because the project already has an active job,
+		 * 		false if it was rejected because the queue is full
+		 */
+		public boolean isProjectBusy() {
+			return projectBusy;
+		}
+	}
+
+	/**
+	 * @return The job manager of this server
+	 */
+	public static synchronized JobManager getInstance() {
+		if (instance == null) {
+			Configuration conf = WorkspaceUtils.loadConfig();
+			instance = new JobManager(conf.getWorkerCount(), conf.getJobQueueSize());
+		}
+		return instance;
+	}
+
+	JobManager(int workerCount, int queueSize) {
+		executor = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "longhorn-worker-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Queues the execution of a project.
+	 * 
+	 * @param projId The id of the local project
+	 * @param sourceLanguage The source language, or null
+	 * @param targetLanguage The target language, or null
+	 * @return The new job
+	 * @throws RejectedJobException If the project already has an active job or if the queue is full
+	 */
+	public synchronized Job submit(int projId, String sourceLanguage, String targetLanguage)
+			throws RejectedJobException {
+		for (Job job : jobs.values()) {
+			if (job.getProjectId() == projId && !job.isFinished())
+				throw new RejectedJobException("Project " + projId + " is already being executed", true);
+		}
+		
+		Job job = createJob(lastJobId.incrementAndGet(), projId, sourceLanguage, targetLanguage);
+		try {
+			executor.execute(job);
+		}
+		catch (RejectedExecutionException e) {
+			throw new RejectedJobException("Too many projects waiting to be executed", false);
+		}
+		removeFinishedJobs(projId);
+		jobs.put(job.getId(), job);
+		return job;
+	}
+
+	/**
+	 * Creates a job for a project. Overridden by the tests.
+	 */
+	Job createJob(int jobId, int projId, String sourceLanguage, String targetLanguage) {
+		return new Job(jobId, projId, sourceLanguage, targetLanguage);
+	}
+
+	/**
+	 * @param jobId The id of a job
+	 * @return The job, or null if there is no such job
+	 */
+	public Job getJob(int jobId) {
+		return jobs.get(jobId);
+	}
+
+	/**
+	 * Cancels a job. A queued job is removed from the queue, a running job
+	 * stops after the document being processed.
+	 * 
+	 * @param job The job to cancel
+	 * @return false if the job was already finished
+	 */
+	public boolean cancel(Job job) {
+		boolean canceled = job.cancel();
+		executor.remove(job);
+		return canceled;
+	}
+
+	/**
+	 * @param projId The id of a local project
+	 * @return The ids of the jobs of the project (the last finished job and the active job, if any)
+	 */
+	public List<Integer> getJobIds(int projId) {
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		for (Job job : jobs.values()) {
+			if (job.getProjectId() == projId)
+				ids.add(job.getId());
+		}
+		Collections.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * Cancels and forgets all jobs of a project, and waits until the running job has stopped.
+	 * Used before the project is deleted.
+	 * 
+	 * @param projId The id of a local project
+	 * @throws InterruptedException If the current thread is interrupted while waiting
+	 */
+	public void removeJobs(int projId) throws InterruptedException {
+		ArrayList<Job> removed = new ArrayList<Job>();
+		synchronized (this) {
+			for (Job job : jobs.values()) {
+				if (job.getProjectId() == projId) {
+					cancel(job);
+					removed.add(job);
+				}
+			}
+			for (Job job : removed) {
+				jobs.remove(job.getId());
+			}
+		}
+		for (Job job : removed) {
+			job.waitFor();
+		}
+	}
+
+	/**
+	 * Forgets the finished jobs of a project, so only the latest results are kept.
+	 */
+	private void removeFinishedJobs(int projId) {
+		for (Job job : new ArrayList<Job>(jobs.values())) {
+			if (job.getProjectId() == projId && job.isFinished())
+				jobs.remove(job.getId());
+		}
+	}
+}
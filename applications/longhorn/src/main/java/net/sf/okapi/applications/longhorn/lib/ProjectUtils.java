@@ -119,6 +119,19 @@ public class ProjectUtils {
 	}
 	
 	public static void executeProject(int projId, String sourceLanguage, String targetLanguage) throws IOException {
+		executeProject(projId, sourceLanguage, targetLanguage, null);
+	}
+	
+	/**
+	 * Executes a project, reporting its progress to a job.
+	 * 
+	 * @param projId The id of the local project
+	 * @param sourceLanguage The source language, or null
+	 * @param targetLanguage The target language, or null
+	 * @param job The job observing the execution, or null
+	 * @throws IOException If the project configuration could not be read
+	 */
+	static void executeProject(int projId, String sourceLanguage, String targetLanguage, Job job) throws IOException {
 		PluginsManager plManager = new PluginsManager();
 		try {
 		// Create a new, empty rainbow project
@@ -163,7 +176,12 @@ public class ProjectUtils {
 		rainbowProject.getPathBuilder().setUseExtension(false);
 
 		// Execute pipeline
-		pipelineWrapper.execute(rainbowProject);
+		if (job == null) {
+			pipelineWrapper.execute(rainbowProject);
+		}
+		else if (job.start(pipelineWrapper, rainbowProject.getList(0).size())) {
+			pipelineWrapper.execute(rainbowProject, job);
+		}
 		} finally {
 			plManager.releaseClassLoader();
 	}
@@ -0,0 +1,155 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.applications.longhorn.lib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.okapi.applications.longhorn.lib.JobManager.RejectedJobException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JobManagerTest {
+	private static final int FAILING_PROJECT = 99;
+	
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final Semaphore started = new Semaphore(0);
+	private final AtomicInteger executed = new AtomicInteger();
+	private JobManager manager;
+
+	@Before
+	public void setUp() {
+		// One worker and room for one job in the queue
+		manager = new JobManager(1, 1) {
+			@Override
+			Job createJob(int jobId, int projId, String sourceLanguage, String targetLanguage) {
+				return new Job(jobId, projId, sourceLanguage, targetLanguage) {
+					@Override
+					void execute() throws Exception {
+						executed.incrementAndGet();
+						started.release();
+						if (getProjectId() == FAILING_PROJECT)
+							throw new Error("Failing project");
+						release.await();
+					}
+				};
+			}
+		};
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+	}
+
+	@Test(timeout = 10000)
+	public void testQueueFull() throws Exception {
+		Job running = submitAndWaitForStart(1);
+		Job queued = manager.submit(2, null, null);
+		assertEquals(Job.Status.QUEUED, queued.getStatus());
+		try {
+			manager.submit(3, null, null);
+			fail("The queue should be full");
+		}
+		catch (RejectedJobException e) {
+			// Reported as 503 Service Unavailable
+			assertFalse(e.isProjectBusy());
+		}
+
+		release.countDown();
+		running.waitFor();
+		queued.waitFor();
+		assertEquals(Job.Status.SUCCEEDED, running.getStatus());
+		assertEquals(Job.Status.SUCCEEDED, queued.getStatus());
+	}
+
+	@Test(timeout = 10000)
+	public void testProjectBusy() throws Exception {
+		Job job = submitAndWaitForStart(1);
+		try {
+			manager.submit(1, null, null);
+			fail("The project should be busy");
+		}
+		catch (RejectedJobException e) {
+			// Reported as 409 Conflict
+			assertTrue(e.isProjectBusy());
+		}
+
+		release.countDown();
+		job.waitFor();
+		// The project can be executed again, only its last job is kept
+		Job next = manager.submit(1, null, null);
+		next.waitFor();
+		assertEquals(1, manager.getJobIds(1).size());
+		assertEquals(next.getId(), manager.getJobIds(1).get(0).intValue());
+	}
+
+	@Test(timeout = 10000)
+	public void testCancelQueuedJob() throws Exception {
+		Job running = submitAndWaitForStart(1);
+		Job queued = manager.submit(2, null, null);
+
+		assertTrue(manager.cancel(queued));
+		// The job is finished without waiting for the worker
+		queued.waitFor();
+		assertEquals(Job.Status.CANCELED, queued.getStatus());
+		assertFalse(manager.cancel(queued));
+		// And its place in the queue is free
+		Job other = manager.submit(3, null, null);
+
+		release.countDown();
+		running.waitFor();
+		other.waitFor();
+		assertEquals(Job.Status.CANCELED, queued.getStatus());
+		assertEquals(2, executed.get());
+	}
+
+	@Test(timeout = 10000)
+	public void testFailedJobIsFinished() throws Exception {
+		Job job = manager.submit(FAILING_PROJECT, null, null);
+		// Must not block even though the job ended with an Error
+		job.waitFor();
+		assertEquals(Job.Status.FAILED, job.getStatus());
+		assertTrue(job.isFinished());
+
+		// The worker is still available
+		Job next = manager.submit(1, null, null);
+		release.countDown();
+		next.waitFor();
+		assertEquals(Job.Status.SUCCEEDED, next.getStatus());
+	}
+
+	private Job submitAndWaitForStart(int projId) throws Exception {
+		Job job = manager.submit(projId, null, null);
+		assertTrue(started.tryAcquire(5, TimeUnit.SECONDS));
+		assertEquals(Job.Status.RUNNING, job.getStatus());
+		return job;
+	}
+}
@@ -36,9 +36,11 @@ import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Group;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableItem;
 
@@ -47,10 +49,19 @@ class IndexForm {
 	private Shell shell;
 	private final Table tblTextFields;
 	private final Table tblAttrFields;
+	private final Spinner spThreadCount;
 	private List<String> fieldsToIndex;
+	private int threadCount;
 
+	/**
+	 * Creates the dialog box.
+	 * @param parent the parent shell.
+	 * @param tm the TM to index.
+	 * @param threadCount the initial number of threads to use for the indexing.
+	 */
 	IndexForm (Shell parent,
-		ITm tm)
+		ITm tm,
+		int threadCount)
 	{
 		shell = new Shell(parent, SWT.CLOSE | SWT.TITLE | SWT.RESIZE | SWT.APPLICATION_MODAL);
 		shell.setText("Index");
@@ -103,6 +114,19 @@ class IndexForm {
 		tblTextFields.select(0);
 		tblAttrFields.select(0);
 		
+		Composite cmpTmp = new Composite(shell, SWT.NONE);
+		GridLayout layTmp = new GridLayout(2, false);
+		layTmp.marginWidth = 0;
+		cmpTmp.setLayout(layTmp);
+		
+		stLabel = new Label(cmpTmp, SWT.NONE);
+		stLabel.setText("Number of indexing threads:");
+		
+		spThreadCount = new Spinner(cmpTmp, SWT.BORDER);
+		spThreadCount.setMinimum(1);
+		spThreadCount.setMaximum(64);
+		spThreadCount.setSelection(Math.max(1, threadCount));
+		
 		SelectionAdapter OKCancelActions = new SelectionAdapter() {
 			public void widgetSelected(SelectionEvent e) {
 				fieldsToIndex = null;
@@ -140,6 +164,7 @@ class IndexForm {
 		for ( TableItem ti : tblAttrFields.getItems() ) {
 			if ( ti.getChecked() ) fieldsToIndex.add(ti.getText());
 		}
+		threadCount = spThreadCount.getSelection();
 		return true;
 	}
 	
@@ -156,5 +181,14 @@ class IndexForm {
 		}
 		return fieldsToIndex;
 	}
+	
+	/**
+	 * Gets the number of threads to use for the indexing.
+	 * Valid only if {@link #showDialog()} returned a list with at least one field.
+	 * @return the number of threads (1 or more).
+	 */
+	int getThreadCount () {
+		return threadCount;
+	}
 
 }
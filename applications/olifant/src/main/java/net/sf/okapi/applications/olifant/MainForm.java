@@ -78,6 +78,7 @@ public class MainForm {
 	public static final String OPT_REPODATA_MONGOSERVER = "repoDataMongoServer"; //$NON-NLS-1$
 	public static final String OPT_REPODATA_H2SERVER = "repoDataH2Server"; //$NON-NLS-1$
 	public static final String OPT_TMOPT = "tmOptions_"; //$NON-NLS-1$
+	public static final String OPT_INDEXTHREADS = "indexThreads"; //$NON-NLS-1$
 
 	private static final String HELP_USAGE = "Olifant - Usage"; //$NON-NLS-1$
 	
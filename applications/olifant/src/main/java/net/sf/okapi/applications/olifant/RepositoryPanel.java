@@ -31,6 +31,7 @@ import net.sf.okapi.common.resource.RawDocument;
 import net.sf.okapi.common.ui.Dialogs;
 import net.sf.okapi.common.ui.ResourceManager;
 import net.sf.okapi.common.ui.UIUtil;
+import net.sf.okapi.common.ui.UserConfiguration;
 import net.sf.okapi.lib.tmdb.DbUtil;
 import net.sf.okapi.lib.tmdb.Exporter;
 import net.sf.okapi.lib.tmdb.IIndexAccess;
@@ -797,7 +798,12 @@ class RepositoryPanel extends Composite {
 			tp.showLog(); // Make sure to display the log
 
 			// prompt the user for information
-			IndexForm dlg = new IndexForm(getShell(), tm);
+			UserConfiguration config = mainForm.getUserConfiguration();
+			int threadCount = config.getInteger(MainForm.OPT_INDEXTHREADS);
+			if ( threadCount < 1 ) {
+				threadCount = Runtime.getRuntime().availableProcessors();
+			}
+			IndexForm dlg = new IndexForm(getShell(), tm, threadCount);
 			java.util.List<String> fields = dlg.showDialog();
 			if ( fields == null ) return;
 
@@ -809,7 +815,8 @@ class RepositoryPanel extends Composite {
 			
 			// Start the import thread
 			ProgressCallback callback = new ProgressCallback(tp);
-			Indexer exp = new Indexer(callback, repo, tmName, fields);
+			config.setProperty(MainForm.OPT_INDEXTHREADS, dlg.getThreadCount());
+			Indexer exp = new Indexer(callback, repo, tmName, fields, dlg.getThreadCount());
 			tp.startThread(new Thread(exp));
 		}
 		catch ( Throwable e ) {
@@ -58,6 +58,7 @@ public class CommandLine {
 	private String pipelineFile;
 	private String optionsFile;
 	private boolean promptForOptions = true;
+	private int threadCount = 1;
 	private BaseHelp help;
 	private PluginsManager pm;
 	
@@ -170,6 +171,10 @@ public class CommandLine {
 				pipelineFile = nextArg(args, ++i);
 				continueAfter = true;
 			}
+			else if ( "-threads".equals(arg) ) { // Threads for the batch items //$NON-NLS-1$
+				threadCount = Integer.parseInt(nextArg(args, ++i));
+				if ( threadCount < 1 ) threadCount = 1;
+			}
 			else if ( "-fc".equals(arg) ) { //$NON-NLS-1$
 				Input inp = prj.getLastItem(inpList);
 				if ( inp == null ) { 
@@ -305,6 +310,7 @@ public class CommandLine {
 		
 		PipelineWrapper wrapper = new PipelineWrapper(fcMapper, appRootFolder, pm,
 			prj.getProjectFolder(), prj.getInputRoot(0), null);
+		wrapper.setThreadCount(threadCount);
 
 		// If we have a predefined pipeline: set it
 		if ( predefinedPipeline != null ) {
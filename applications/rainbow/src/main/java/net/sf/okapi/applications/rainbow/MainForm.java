@@ -147,6 +147,7 @@ public class MainForm { //implements IParametersProvider {
 	public static final String OPT_ALWAYSOPENLOG = "alwaysOpenLog"; //$NON-NLS-1$
 	public static final String OPT_DROPINSDIR = "dropinsDir"; //$NON-NLS-1$
 	public static final String OPT_USEUSERDEFAULTS = "useUserDefaults"; //$NON-NLS-1$
+	public static final String OPT_THREADCOUNT = "threadCount"; //$NON-NLS-1$
 	public static final String OPT_SOURCELOCALE = "sourceLocale"; //$NON-NLS-1$
 	public static final String OPT_SOURCEENCODING = "sourceEncoding"; //$NON-NLS-1$
 	public static final String OPT_TARGETLOCALE = "targetLocale"; //$NON-NLS-1$
@@ -2563,6 +2564,8 @@ public class MainForm { //implements IParametersProvider {
 		else { // Make sure to reset the root dir each time
 			wrapper.setRootDirectories(prj.getProjectFolder(), prj.getInputRoot(0));
 		}
+		// Not set in the preferences means serial processing
+		wrapper.setThreadCount(Math.max(1, config.getInteger(OPT_THREADCOUNT)));
 	}
 	
 	private void exportBatchConfiguration () {
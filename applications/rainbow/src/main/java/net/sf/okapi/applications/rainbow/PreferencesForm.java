@@ -40,6 +40,7 @@ import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Group;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Spinner;
 
 class PreferencesForm {
 	
@@ -52,6 +53,7 @@ class PreferencesForm {
 	private Button chkAllowDuplicateInputs;
 	private Button chkUseUserDefaults;
 	private Combo cbLogLevel;
+	private Spinner spThreadCount;
 	private UserConfiguration config;
 	private TextAndBrowsePanel pnlDropinsDir;
 
@@ -110,6 +112,13 @@ class PreferencesForm {
 		cbLogLevel.add(Res.getString("PreferencesForm.logFiner")); //$NON-NLS-1$
 		cbLogLevel.add(Res.getString("PreferencesForm.logFinest")); //$NON-NLS-1$
 		
+		label = new Label(grpTmp, SWT.NONE);
+		label.setText(Res.getString("PreferencesForm.threadCount")); //$NON-NLS-1$
+		
+		spThreadCount = new Spinner(grpTmp, SWT.BORDER);
+		spThreadCount.setMinimum(1);
+		spThreadCount.setMaximum(64);
+		
 		grpTmp = new Group(shell, SWT.NONE);
 		grpTmp.setText("Plugins Location");
 		grpTmp.setLayoutData(new GridData(GridData.FILL_BOTH));
@@ -168,6 +177,7 @@ class PreferencesForm {
 		n = config.getInteger(MainForm.OPT_LOGLEVEL);
 		if (( n < 0 ) || ( n > 3)) n = 0;
 		cbLogLevel.select(n);
+		spThreadCount.setSelection(Math.max(1, config.getInteger(MainForm.OPT_THREADCOUNT)));
 		
 		String tmp = config.getProperty(MainForm.OPT_DROPINSDIR, "");
 		if ( tmp.endsWith("/") || tmp.endsWith("\\") ) {
@@ -205,6 +215,7 @@ class PreferencesForm {
 			else if ( rdStartPrjLoad.getSelection() ) config.setProperty(MainForm.OPT_LOADMRU, 2);
 			else config.setProperty(MainForm.OPT_LOADMRU, 0);
 			config.setProperty(MainForm.OPT_LOGLEVEL, cbLogLevel.getSelectionIndex());
+			config.setProperty(MainForm.OPT_THREADCOUNT, spThreadCount.getSelection());
 		}
 		catch ( Exception E ) {
 			return false;
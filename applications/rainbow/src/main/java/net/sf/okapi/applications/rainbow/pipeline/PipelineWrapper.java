@@ -37,6 +37,8 @@ import net.sf.okapi.common.ParametersEditorMapper;
 import net.sf.okapi.common.Util;
 import net.sf.okapi.common.filters.FilterConfigurationMapper;
 import net.sf.okapi.common.filters.IFilterConfigurationMapper;
+import net.sf.okapi.common.observer.IObservable;
+import net.sf.okapi.common.observer.IObserver;
 import net.sf.okapi.common.pipeline.IPipeline;
 import net.sf.okapi.common.pipeline.IPipelineStep;
 import net.sf.okapi.common.pipeline.Pipeline;
@@ -140,6 +142,14 @@ public class PipelineWrapper {
 		driver.setRootDirectories(rootDir, inputRootDir);
 	}
 	
+	/**
+	 * Sets the number of threads used to process the input documents of a batch.
+	 * @param threadCount the number of threads (1 for serial processing).
+	 */
+	public void setThreadCount (int threadCount) {
+		driver.setThreadCount(threadCount);
+	}
+	
 	/**
 	 * Populate the hard-wired steps.
 	 */
@@ -908,7 +918,23 @@ public class PipelineWrapper {
 	}
 
 	public void execute (Project prj) {
+		execute(prj, null);
+	}
+
+	/**
+	 * Executes the pipeline on the documents of a project.
+	 * @param prj the project to process.
+	 * @param observer an observer to notify of the events sent by the pipeline (e.g. the
+	 * END_BATCH_ITEM events to follow the progress), or null.
+	 */
+	public void execute (Project prj,
+		IObserver observer)
+	{
 		copyInfoStepsToPipeline();
+		IPipeline pipeline = driver.getPipeline();
+		if (( observer != null ) && ( pipeline instanceof IObservable )) {
+			((IObservable)pipeline).addObserver(observer);
+		}
 		// Set the batch items
 		driver.clearItems();
 		//TODO: Replace this: driver.getPipeline().getContext().removeProperty("outputFile");
@@ -961,7 +987,26 @@ public class PipelineWrapper {
 		}
 
 		// Execute
-		driver.processBatch();
+		try {
+			driver.processBatch();
+		}
+		finally {
+			if (( observer != null ) && ( pipeline instanceof IObservable )) {
+				((IObservable)pipeline).deleteObserver(observer);
+			}
+		}
+	}
+
+	/**
+	 * Cancels the execution in progress, if any. The current document is not completed
+	 * and the remaining documents of the batch are not processed.
+	 * This method can be called from another thread than the one executing the pipeline.
+	 */
+	public void cancel () {
+		IPipeline pipeline = driver.getPipeline();
+		if ( pipeline != null ) {
+			pipeline.cancel();
+		}
 	}
 
 	public void addStep (StepInfo step) {
@@ -156,6 +156,8 @@ public class ParametersEditor implements IParametersEditor, ISWTEmbeddableParame
 	private TextAndBrowsePanel pnlTermsPath;
 	private Button chkStringMode;
 	private Button chkBetweenCodes;
+	private Button chkTermsIgnoreCase;
+	private Button chkTermsIgnoreDiacritics;
 	
 	// Flag to indicate the editor is use for step parameters
 	// We default to true because the step cannot set this option
@@ -800,6 +802,12 @@ public class ParametersEditor implements IParametersEditor, ISWTEmbeddableParame
 		
 		chkBetweenCodes = new Button(cmpTmp, SWT.CHECK);
 		chkBetweenCodes.setText("Strings must be between inline codes to match");
+		
+		chkTermsIgnoreCase = new Button(cmpTmp, SWT.CHECK);
+		chkTermsIgnoreCase.setText("Ignore the case when matching strings");
+		
+		chkTermsIgnoreDiacritics = new Button(cmpTmp, SWT.CHECK);
+		chkTermsIgnoreDiacritics.setText("Ignore the diacritics when matching strings");
 
 		tiTmp = new TabItem(tabs, SWT.NONE);
 		tiTmp.setText("Terms");
@@ -1016,7 +1024,10 @@ public class ParametersEditor implements IParametersEditor, ISWTEmbeddableParame
 	}
 	
 	private void updateStringMode () {
-		chkBetweenCodes.setEnabled(chkStringMode.isEnabled() ? chkStringMode.getSelection() : false);
+		boolean enabled = (chkStringMode.isEnabled() ? chkStringMode.getSelection() : false);
+		chkBetweenCodes.setEnabled(enabled);
+		chkTermsIgnoreCase.setEnabled(enabled);
+		chkTermsIgnoreDiacritics.setEnabled(enabled);
 	}
 	
 	private void editPattern (boolean add) {
@@ -1355,6 +1366,8 @@ public class ParametersEditor implements IParametersEditor, ISWTEmbeddableParame
 		pnlTermsPath.setText(params.getTermsPath());
 		chkStringMode.setSelection(params.getStringMode());
 		chkBetweenCodes.setSelection(params.getBetweenCodes());
+		chkTermsIgnoreCase.setSelection(params.getTermsIgnoreCase());
+		chkTermsIgnoreDiacritics.setSelection(params.getTermsIgnoreDiacritics());
 		
 		setPatternsData(params.getPatterns());
 		updateTargetSameAsSourceWithCodes();
@@ -1551,6 +1564,8 @@ public class ParametersEditor implements IParametersEditor, ISWTEmbeddableParame
 		params.setTermsPath(pnlTermsPath.getText());
 		params.setStringMode(chkStringMode.getSelection());
 		params.setBetweenCodes(chkBetweenCodes.getSelection());
+		params.setTermsIgnoreCase(chkTermsIgnoreCase.getSelection());
+		params.setTermsIgnoreDiacritics(chkTermsIgnoreDiacritics.getSelection());
 		
 		if ( stepMode ) {
 			params.setSaveSession(chkSaveSession.getSelection());
@@ -29,6 +29,7 @@ public class Parameters extends BaseParameters {
 	static final String DBPATH = "dbPath";
 	static final String PENALIZETARGETWITHDIFFERENTCODES = "penalizeTargetWithDifferentCodes";
 	static final String PENALIZESOURCEWITHDIFFERENTCODES = "penalizeSourceWithDifferentCodes";
+	static final String INMEMORY = "inMemory";
 	
 	 /** 
 	  * The full path of the database name to open.
@@ -37,6 +38,7 @@ public class Parameters extends BaseParameters {
 	private String dbPath;
 	private boolean penalizeTargetWithDifferentCodes;
 	private boolean penalizeSourceWithDifferentCodes;
+	private boolean inMemory;
 
 	public Parameters () {
 		reset();
@@ -62,6 +64,7 @@ public class Parameters extends BaseParameters {
 		dbPath = buffer.getString(DBPATH, dbPath);
 		penalizeTargetWithDifferentCodes = buffer.getBoolean(PENALIZETARGETWITHDIFFERENTCODES, penalizeTargetWithDifferentCodes);
 		penalizeSourceWithDifferentCodes = buffer.getBoolean(PENALIZESOURCEWITHDIFFERENTCODES, penalizeSourceWithDifferentCodes);
+		inMemory = buffer.getBoolean(INMEMORY, inMemory);
 	}
 	
 	public boolean getPenalizeTargetWithDifferentCodes () {
@@ -80,11 +83,20 @@ public class Parameters extends BaseParameters {
 		this.penalizeSourceWithDifferentCodes = penalizeSourceWithDifferentCodes;
 	}
 	
+	public boolean getInMemory () {
+		return inMemory;
+	}
+	
+	public void setInMemory (boolean inMemory) {
+		this.inMemory = inMemory;
+	}
+	
 	@Override
 	public void reset () {
 		dbPath = "";
 		penalizeTargetWithDifferentCodes = true;
 		penalizeSourceWithDifferentCodes = true;
+		inMemory = false;
 	}
 
 	@Override
@@ -93,6 +105,7 @@ public class Parameters extends BaseParameters {
 		buffer.setString(DBPATH, dbPath);
 		buffer.setBoolean(PENALIZETARGETWITHDIFFERENTCODES, penalizeTargetWithDifferentCodes);
 		buffer.setBoolean(PENALIZESOURCEWITHDIFFERENTCODES, penalizeSourceWithDifferentCodes);
+		buffer.setBoolean(INMEMORY, inMemory);
 		return buffer.toString();
 	}
 
@@ -106,6 +119,8 @@ public class Parameters extends BaseParameters {
 			"Penalize exact matches when the source has different codes than the query", null);
 		desc.add(PENALIZETARGETWITHDIFFERENTCODES,
 			"Penalize exact matches when the target has different codes than the query", null);
+		desc.add(INMEMORY,
+			"Load the whole database in memory (read-only use)", null);
 		return desc;
 	}
 
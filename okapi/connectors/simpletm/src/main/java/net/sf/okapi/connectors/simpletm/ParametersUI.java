@@ -36,6 +36,7 @@ public class ParametersUI implements IEditorDescriptionProvider {
 		
 		desc.addCheckboxPart(paramDesc.get(Parameters.PENALIZESOURCEWITHDIFFERENTCODES));
 		desc.addCheckboxPart(paramDesc.get(Parameters.PENALIZETARGETWITHDIFFERENTCODES));
+		desc.addCheckboxPart(paramDesc.get(Parameters.INMEMORY));
 		
 		return desc;
 	}
@@ -56,8 +56,9 @@ public class SimpleTMConnector extends BaseConnector implements ITMQuery {
 
 	@Override
 	public String getSettingsDisplay () {
-		return String.format("Database: %s\nPenalize exact matches with different codes in source: %s, in target: %s",
+		return String.format("Database: %s%s\nPenalize exact matches with different codes in source: %s, in target: %s",
 			(Util.isEmpty(params.getDbPath()) ? "<To be specified>" : params.getDbPath()),
+			(params.getInMemory() ? " (in memory)" : ""),
 			(params.getPenalizeSourceWithDifferentCodes() ? "Yes" : "No"),
 			(params.getPenalizeTargetWithDifferentCodes() ? "Yes" : "No"));
 	}
@@ -100,7 +101,7 @@ public class SimpleTMConnector extends BaseConnector implements ITMQuery {
 
 	@Override
 	public void open () {
-		db.open(Util.fillRootDirectoryVariable(params.getDbPath(), rootDir));
+		db.open(Util.fillRootDirectoryVariable(params.getDbPath(), rootDir), params.getInMemory());
 		db.setPenalizeSourceWithDifferentCodes(params.getPenalizeSourceWithDifferentCodes());
 		db.setPenalizeTargetWithDifferentCodes(params.getPenalizeTargetWithDifferentCodes());
 	}
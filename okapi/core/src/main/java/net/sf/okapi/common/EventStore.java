@@ -0,0 +1,271 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import net.sf.okapi.common.exceptions.OkapiIOException;
+import net.sf.okapi.common.resource.Code;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextPart;
+
+/**
+ * Implements an {@link IEventStore} that can spill its events to disk.
+ * <p>The store keeps the events in memory until their estimated size reaches a given budget.
+ * After that, the events that the given {@link IEventCodec} can encode are written
+ * to a temporary file, and they are read back one by one when the store is replayed.
+ * The other events stay in memory. When no codec is given all events are kept in memory.
+ * <p>The size of an event is estimated from the length of the text, inline codes and skeleton
+ * of its resource (see {@link #estimateSize(Event)}), so a few large text units count as much
+ * as many small ones.
+ * <p>The events read back from the file are new objects: a change made to a replayed event
+ * is not seen in the next replay. This class is not thread-safe.
+ */
+public class EventStore implements IEventStore {
+
+	// Rough size of an object header and its references, and of a character
+	private static final int OBJECT_SIZE = 64;
+	private static final int CHAR_SIZE = 2;
+
+	private final long maxMemory;
+	private final IEventCodec codec;
+	private ArrayList<Event> memEvents;
+	private int[] memPositions;
+	private long memSize;
+	private int size;
+	private File file;
+	private DataOutputStream output;
+	private ArrayList<DataInputStream> inputs;
+
+	/**
+	 * Creates a new store that keeps all its events in memory.
+	 */
+	public EventStore () {
+		this(Long.MAX_VALUE, null);
+	}
+	
+	/**
+	 * Creates a new store that spills its events to disk.
+	 * @param maxMemory the estimated size in bytes of the events to keep in memory before
+	 * starting to write them to disk.
+	 * @param codec the codec to use to write and read the events (can be null
+	 * to keep all events in memory).
+	 */
+	public EventStore (long maxMemory,
+		IEventCodec codec)
+	{
+		if ( maxMemory < 0 ) {
+			throw new IllegalArgumentException("The memory size of the events cannot be negative.");
+		}
+		this.maxMemory = maxMemory;
+		this.codec = codec;
+		reset();
+	}
+	
+	@Override
+	public void add (Event event) {
+		long eventSize = (( codec == null ) ? 0 : estimateSize(event));
+		if (( codec != null ) && ( memSize+eventSize > maxMemory ) && codec.canEncode(event) ) {
+			try {
+				if ( output == null ) {
+					file = File.createTempFile("okp-events_", ".tmp");
+					output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+				}
+				codec.encode(event, output);
+			}
+			catch ( IOException e ) {
+				throw new OkapiIOException("Error while writing an event to the store.", e);
+			}
+		}
+		else {
+			if ( memEvents.size() == memPositions.length ) {
+				int[] tmp = new int[memPositions.length*2];
+				System.arraycopy(memPositions, 0, tmp, 0, memPositions.length);
+				memPositions = tmp;
+			}
+			memPositions[memEvents.size()] = size;
+			memEvents.add(event);
+			memSize += eventSize;
+		}
+		size++;
+	}
+	
+	/**
+	 * Estimates the memory used by an event. The estimate counts the characters of the text
+	 * and the inline codes of the source and targets of a text unit, and of the skeleton of
+	 * the resource. It does not need to be exact: it is only compared to the memory budget
+	 * of the store.
+	 * @param event the event to estimate.
+	 * @return the estimated size of the event in bytes.
+	 */
+	protected long estimateSize (Event event) {
+		long estimate = OBJECT_SIZE;
+		IResource res = event.getResource();
+		if ( res == null ) return estimate;
+		if ( res.getSkeleton() != null ) {
+			estimate += OBJECT_SIZE + CHAR_SIZE * (long)res.getSkeleton().toString().length();
+		}
+		if ( event.isTextUnit() ) {
+			ITextUnit tu = event.getTextUnit();
+			estimate += estimateSize(tu.getSource());
+			for ( LocaleId locId : tu.getTargetLocales() ) {
+				estimate += estimateSize(tu.getTarget(locId));
+			}
+		}
+		return estimate;
+	}
+	
+	private long estimateSize (TextContainer tc) {
+		long estimate = OBJECT_SIZE;
+		for ( TextPart part : tc ) {
+			TextFragment frag = part.getContent();
+			estimate += OBJECT_SIZE + CHAR_SIZE * (long)frag.getCodedText().length();
+			for ( Code code : frag.getCodes() ) {
+				estimate += OBJECT_SIZE + CHAR_SIZE * (long)code.getData().length();
+			}
+		}
+		return estimate;
+	}
+
+	@Override
+	public int size () {
+		return size;
+	}
+	
+	/**
+	 * Gets the number of events this store currently keeps in memory.
+	 * @return the number of events in memory.
+	 */
+	public int getInMemoryCount () {
+		return memEvents.size();
+	}
+
+	/**
+	 * Gets the estimated size of the events this store currently keeps in memory.
+	 * This does not include the events that cannot be written to disk.
+	 * @return the estimated size in bytes of the events in memory.
+	 */
+	public long getInMemorySize () {
+		return memSize;
+	}
+
+	@Override
+	public Iterator<Event> iterator () {
+		if ( output != null ) {
+			try {
+				output.flush();
+			}
+			catch ( IOException e ) {
+				throw new OkapiIOException("Error while writing the events of the store.", e);
+			}
+		}
+		return new Iterator<Event>() {
+			private final int count = size;
+			private final int memCount = memEvents.size();
+			private int current = 0;
+			private int memCurrent = 0;
+			private DataInputStream input;
+
+			@Override
+			public boolean hasNext () {
+				return ( current < count );
+			}
+
+			@Override
+			public Event next () {
+				if ( current >= count ) {
+					throw new NoSuchElementException();
+				}
+				try {
+					Event event;
+					if (( memCurrent < memCount ) && ( memPositions[memCurrent] == current )) {
+						event = memEvents.get(memCurrent++);
+					}
+					else {
+						if ( input == null ) {
+							input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+							inputs.add(input);
+						}
+						event = codec.decode(input);
+					}
+					if (( ++current == count ) && ( input != null )) {
+						// Release the file as soon as the replay is done
+						inputs.remove(input);
+						input.close();
+					}
+					return event;
+				}
+				catch ( IOException e ) {
+					throw new OkapiIOException("Error while reading an event from the store.", e);
+				}
+			}
+
+			@Override
+			public void remove () {
+				throw new UnsupportedOperationException("The events cannot be removed from an event store.");
+			}
+		};
+	}
+
+	@Override
+	public void close () {
+		try {
+			for ( DataInputStream input : inputs ) {
+				input.close();
+			}
+			if ( output != null ) {
+				output.close();
+			}
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error while closing the event store.", e);
+		}
+		finally {
+			if ( file != null ) {
+				file.delete();
+			}
+			reset();
+		}
+	}
+	
+	private void reset () {
+		memEvents = new ArrayList<Event>();
+		memPositions = new int[64];
+		memSize = 0;
+		inputs = new ArrayList<DataInputStream>(1);
+		size = 0;
+		file = null;
+		output = null;
+	}
+
+}
@@ -0,0 +1,60 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Common methods for the objects that write events to a binary form and read them back.
+ * A codec may support only some types of events: use {@link #canEncode(Event)} to know
+ * if a given event can be written.
+ */
+public interface IEventCodec {
+
+	/**
+	 * Indicates if a given event can be written and read back without loss by this codec.
+	 * @param event the event to check.
+	 * @return true if the event can be encoded, false otherwise.
+	 */
+	public boolean canEncode (Event event);
+	
+	/**
+	 * Writes a given event.
+	 * @param event the event to write. It must be an event for which {@link #canEncode(Event)} returns true. 
+	 * @param output the output where to write.
+	 * @throws IOException if an error occurs while writing.
+	 */
+	public void encode (Event event,
+		DataOutput output)
+		throws IOException;
+	
+	/**
+	 * Reads an event written with {@link #encode(Event, DataOutput)}.
+	 * @param input the input where to read.
+	 * @return a new event.
+	 * @throws IOException if an error occurs while reading.
+	 */
+	public Event decode (DataInput input)
+		throws IOException;
+
+}
@@ -0,0 +1,59 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common;
+
+import java.util.Iterator;
+
+/**
+ * Common methods for the objects that buffer a sequence of events, for example
+ * the steps that need to see a whole document before sending its events down the pipeline.
+ * <p>An event store may keep only part of the events in memory. The events are
+ * returned in the order they were added.
+ */
+public interface IEventStore extends Iterable<Event> {
+
+	/**
+	 * Adds an event at the end of this store.
+	 * @param event the event to add.
+	 */
+	public void add (Event event);
+	
+	/**
+	 * Gets the number of events in this store.
+	 * @return the number of events in this store.
+	 */
+	public int size ();
+	
+	/**
+	 * Creates an iterator that replays the events of this store, in the order they were added.
+	 * The events added after the iterator was created are not returned by that iterator.
+	 * @return a new iterator for the events of this store.
+	 */
+	@Override
+	public Iterator<Event> iterator ();
+	
+	/**
+	 * Removes all events from this store and releases the resources it uses (e.g. temporary files).
+	 * The store can be used again after this call.
+	 */
+	public void close ();
+
+}
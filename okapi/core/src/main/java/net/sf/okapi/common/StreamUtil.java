@@ -22,6 +22,8 @@ package net.sf.okapi.common;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -125,6 +127,42 @@ public class StreamUtil {
         return Util.normalizeNewlines(tmp.toString());
     }
 	
+	/**
+	 * Writes a string with an explicit length, as {@link DataOutput#writeUTF(String)}
+	 * is limited to 64K. The string can be read with {@link #readString(DataInput)}.
+	 * @param output the output where to write.
+	 * @param text the string to write (can be null).
+	 * @throws IOException if an error occurs.
+	 */
+	public static void writeString (DataOutput output,
+		String text)
+		throws IOException
+	{
+		if ( text == null ) {
+			output.writeInt(-1);
+			return;
+		}
+		byte[] buf = text.getBytes("UTF-8");
+		output.writeInt(buf.length);
+		output.write(buf);
+	}
+
+	/**
+	 * Reads a string written with {@link #writeString(DataOutput, String)}.
+	 * @param input the input where to read.
+	 * @return the string read (can be null).
+	 * @throws IOException if an error occurs.
+	 */
+	public static String readString (DataInput input)
+		throws IOException
+	{
+		int len = input.readInt();
+		if ( len < 0 ) return null;
+		byte[] buf = new byte[len];
+		input.readFully(buf);
+		return new String(buf, "UTF-8");
+	}
+
 	public static String streamAsString(InputStream in) {
         return streamAsString(in, "UTF-8");
     }
@@ -20,6 +20,9 @@
 
 package net.sf.okapi.common;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -383,6 +386,38 @@ public final class StringUtil {
 		return string.substring(start, end);
 	}
 	
+	/**
+	 * Gets the hexadecimal representation of an array of bytes.
+	 * @param bytes the bytes to convert.
+	 * @return the lowercase hexadecimal string for the given bytes.
+	 */
+	public static String toHex(byte[] bytes) {
+		StringBuilder tmp = new StringBuilder(bytes.length*2);
+		for (byte b : bytes) {
+			tmp.append(Character.forDigit((b >> 4) & 0x0F, 16));
+			tmp.append(Character.forDigit(b & 0x0F, 16));
+		}
+		return tmp.toString();
+	}
+
+	/**
+	 * Computes the SHA-1 digest of the UTF-8 bytes of a string.
+	 * @param text the string to digest.
+	 * @return the digest as a lowercase hexadecimal string.
+	 */
+	public static String digest(String text) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			return toHex(md.digest(text.getBytes("UTF-8")));
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	public static String charsToString(Set<Character> set) {
 		char[] chars = new char[set.size()];
 		int i = 0;
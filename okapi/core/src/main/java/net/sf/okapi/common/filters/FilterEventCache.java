@@ -0,0 +1,618 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common.filters;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.IResource;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.StreamUtil;
+import net.sf.okapi.common.StringUtil;
+import net.sf.okapi.common.exceptions.OkapiIOException;
+import net.sf.okapi.common.resource.BaseNameable;
+import net.sf.okapi.common.resource.BinaryEventCodec;
+import net.sf.okapi.common.resource.Ending;
+import net.sf.okapi.common.resource.RawDocument;
+import net.sf.okapi.common.resource.StartDocument;
+import net.sf.okapi.common.resource.StartGroup;
+import net.sf.okapi.common.resource.StartSubDocument;
+import net.sf.okapi.common.skeleton.GenericSkeleton;
+
+/**
+ * Keeps on disk the events a filter creates for a document, so they can be replayed
+ * instead of parsing the same document again. For example, the events can be recorded when
+ * a document is extracted and replayed when its translation is merged back.
+ * <p>Each entry is identified by a key computed from the content of the document and the
+ * configuration of the filter (see {@link #getKey(RawDocument, IParameters)}), so a modified
+ * document or a different configuration never replays out-dated events.
+ * <p>A document is cached only if all its events can be stored: the resources must be core
+ * objects without annotations and with {@link GenericSkeleton} skeletons (see
+ * {@link BinaryEventCodec}). The other documents, for example the ones using ZIP-based
+ * skeletons, are simply not cached. The filter parameters and the filter writer of the
+ * START_DOCUMENT event are not stored: they are taken from the filter when the events are
+ * replayed.
+ */
+public class FilterEventCache {
+
+	private static final String EXTENSION = ".events";
+	private static final int SIGNATURE = 0x4F4B4543; // "OKEC"
+	private static final int VERSION = 1;
+
+	private final Logger logger = Logger.getLogger(getClass().getName());
+	private final File directory;
+
+	/**
+	 * Creates a new cache.
+	 * @param directory the directory where to store the events. It is created if needed.
+	 */
+	public FilterEventCache (String directory) {
+		this.directory = new File(directory);
+	}
+
+	/**
+	 * Gets the directory where the events are stored.
+	 * @return the directory of this cache.
+	 */
+	public String getDirectory () {
+		return directory.getPath();
+	}
+
+	/**
+	 * Computes the key of a document. The key is a digest of the content of the document, its
+	 * default encoding, its locales, the identifier and parameters of its filter configuration,
+	 * and the versions of the Okapi core and of the filter. This way the events recorded by a
+	 * previous release of a filter are not replayed with another one.
+	 * @param rawDoc the document (only documents from a local file can be cached).
+	 * @param params the parameters of the filter (can be null).
+	 * @return the key of the document, or null if the document cannot be cached.
+	 */
+	public static String getKey (RawDocument rawDoc,
+		IParameters params)
+	{
+		if (( rawDoc.getInputURI() == null ) || !"file".equals(rawDoc.getInputURI().getScheme()) ) {
+			return null;
+		}
+		File file = new File(rawDoc.getInputURI());
+		if ( !file.isFile() ) return null;
+
+		InputStream input = null;
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			input = new FileInputStream(file);
+			byte[] buf = new byte[8192];
+			int n;
+			while ( (n = input.read(buf)) > 0 ) {
+				md.update(buf, 0, n);
+			}
+			StringBuilder tmp = new StringBuilder();
+			tmp.append('\n').append(VERSION);
+			tmp.append('\n').append(getVersion(FilterEventCache.class));
+			tmp.append('\n').append(rawDoc.getFilterConfigId());
+			tmp.append('\n').append(rawDoc.getEncoding());
+			tmp.append('\n').append(rawDoc.getSourceLocale());
+			tmp.append('\n').append(rawDoc.getTargetLocale());
+			if ( params != null ) {
+				tmp.append('\n').append(params.getClass().getName());
+				// The parameters are part of the filter package
+				tmp.append('\n').append(getVersion(params.getClass()));
+				tmp.append('\n').append(params.toString());
+			}
+			md.update(tmp.toString().getBytes("UTF-8"));
+
+			return StringUtil.toHex(md.digest());
+		}
+		catch ( NoSuchAlgorithmException e ) {
+			throw new RuntimeException(e);
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error when computing the cache key of a document.", e);
+		}
+		finally {
+			if ( input != null ) {
+				try {
+					input.close();
+				}
+				catch ( IOException e ) {
+					// Ignore this one
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the version of the package of a given class. If the package has no version
+	 * information (e.g. when running from the build directories) the time-stamp of the
+	 * class file is used instead.
+	 * @param cls the class to look at.
+	 * @return the version of the package of the class, or an empty string.
+	 */
+	private static String getVersion (Class<?> cls) {
+		Package pkg = cls.getPackage();
+		if (( pkg != null ) && ( pkg.getImplementationVersion() != null )) {
+			return pkg.getImplementationVersion();
+		}
+		String name = cls.getName();
+		URL url = cls.getResource(name.substring(name.lastIndexOf('.')+1) + ".class");
+		if ( url == null ) return "";
+		try {
+			return String.valueOf(url.openConnection().getLastModified());
+		}
+		catch ( IOException e ) {
+			return "";
+		}
+	}
+
+	/**
+	 * Indicates if this cache has the events for a given key.
+	 * @param key the key of the document.
+	 * @return true if the events of the document are in this cache.
+	 */
+	public boolean contains (String key) {
+		return (( key != null ) && getFile(key).isFile() );
+	}
+
+	/**
+	 * Removes the events for a given key from this cache.
+	 * @param key the key of the document.
+	 */
+	public void remove (String key) {
+		if ( key != null ) getFile(key).delete();
+	}
+
+	/**
+	 * Creates a recorder to store the events of a document in this cache.
+	 * The events become available only once the recorder is closed after the END_DOCUMENT event.
+	 * @param key the key of the document.
+	 * @return a new recorder.
+	 */
+	public Recorder createRecorder (String key) {
+		return new Recorder(key);
+	}
+
+	/**
+	 * Opens the events of a document stored in this cache.
+	 * @param key the key of the document (can be null).
+	 * @param filter the filter to use for the filter parameters and the filter writer
+	 * of the START_DOCUMENT event. It does not need to be opened.
+	 * @return a reader for the events, or null if this cache does not have them.
+	 */
+	public Player open (String key,
+		IFilter filter)
+	{
+		if ( !contains(key) ) return null;
+		DataInputStream input = null;
+		try {
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(getFile(key))));
+			if (( input.readInt() != SIGNATURE ) || ( input.readInt() != VERSION )) {
+				input.close();
+				return null;
+			}
+			return new Player(input, filter);
+		}
+		catch ( IOException e ) {
+			logger.log(Level.WARNING, String.format("Cannot read the cached events '%s'.", key), e);
+			if ( input != null ) {
+				try {
+					input.close();
+				}
+				catch ( IOException e2 ) {
+					// Ignore this one
+				}
+			}
+			return null;
+		}
+	}
+
+	private File getFile (String key) {
+		return new File(directory, key+EXTENSION);
+	}
+
+	/**
+	 * Stores the events of a document in the cache. If one of the events cannot be stored,
+	 * the recording stops and nothing is stored for the document.
+	 */
+	public class Recorder {
+
+		private final String key;
+		private final FilterEventCodec codec = new FilterEventCodec();
+		private File tmpFile;
+		private DataOutputStream output;
+		private boolean recording = true;
+		private boolean done;
+
+		private Recorder (String key) {
+			this.key = key;
+		}
+
+		/**
+		 * Indicates if the events are still being recorded.
+		 * @return false if an event could not be stored, or if the recorder was closed.
+		 */
+		public boolean isRecording () {
+			return recording;
+		}
+
+		/**
+		 * Adds an event to the recorded events. This method must be called before any
+		 * change is made to the event.
+		 * @param event the event to add.
+		 */
+		public void add (Event event) {
+			if ( !recording ) return;
+			if ( !codec.canEncode(event) ) {
+				logger.fine(String.format("The event %s cannot be cached: the document is not cached.",
+					event.getEventType()));
+				cancel();
+				return;
+			}
+			try {
+				if ( output == null ) {
+					directory.mkdirs();
+					tmpFile = File.createTempFile("~okapi-", EXTENSION+".tmp", directory);
+					output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+					output.writeInt(SIGNATURE);
+					output.writeInt(VERSION);
+				}
+				output.writeBoolean(true);
+				codec.encode(event, output);
+				if ( event.getEventType() == EventType.END_DOCUMENT ) {
+					done = true;
+				}
+			}
+			catch ( IOException e ) {
+				logger.log(Level.WARNING, "Error when caching the events of the document.", e);
+				cancel();
+			}
+		}
+
+		/**
+		 * Stops the recording and stores the events in the cache, if all the events of
+		 * the document have been recorded.
+		 */
+		public void close () {
+			if ( !recording ) return;
+			if ( !done ) {
+				cancel();
+				return;
+			}
+			try {
+				output.writeBoolean(false);
+				output.close();
+				output = null;
+				File file = getFile(key);
+				file.delete();
+				if ( !tmpFile.renameTo(file) ) {
+					throw new IOException("Cannot rename "+tmpFile.getPath());
+				}
+				recording = false;
+			}
+			catch ( IOException e ) {
+				logger.log(Level.WARNING, "Error when caching the events of the document.", e);
+				cancel();
+			}
+		}
+
+		/**
+		 * Stops the recording without storing anything.
+		 */
+		public void cancel () {
+			recording = false;
+			if ( output != null ) {
+				try {
+					output.close();
+				}
+				catch ( IOException e ) {
+					// Ignore this one
+				}
+				output = null;
+			}
+			if ( tmpFile != null ) {
+				tmpFile.delete();
+				tmpFile = null;
+			}
+		}
+
+	}
+
+	/**
+	 * Replays the events of a document stored in the cache. The events are read one by one.
+	 */
+	public static class Player implements Iterator<Event> {
+
+		private final FilterEventCodec codec = new FilterEventCodec();
+		private final IFilter filter;
+		private DataInputStream input;
+		private Boolean hasNext;
+
+		private Player (DataInputStream input,
+			IFilter filter)
+		{
+			this.input = input;
+			this.filter = filter;
+		}
+
+		@Override
+		public boolean hasNext () {
+			if ( hasNext == null ) {
+				try {
+					hasNext = (( input != null ) && input.readBoolean() );
+				}
+				catch ( IOException e ) {
+					throw new OkapiIOException("Error when reading the cached events.", e);
+				}
+				if ( !hasNext ) close();
+			}
+			return hasNext;
+		}
+
+		@Override
+		public Event next () {
+			if ( !hasNext() ) {
+				throw new NoSuchElementException();
+			}
+			hasNext = null;
+			try {
+				Event event = codec.decode(input);
+				if ( event.getEventType() == EventType.START_DOCUMENT ) {
+					StartDocument sd = event.getStartDocument();
+					if ( codec.lastHadParameters ) {
+						sd.setFilterParameters(filter.getParameters());
+					}
+					sd.setFilterWriter(filter.createFilterWriter());
+				}
+				return event;
+			}
+			catch ( IOException e ) {
+				throw new OkapiIOException("Error when reading the cached events.", e);
+			}
+		}
+
+		@Override
+		public void remove () {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Closes the cached events. This is done automatically once all the events are read.
+		 */
+		public void close () {
+			if ( input == null ) return;
+			try {
+				input.close();
+			}
+			catch ( IOException e ) {
+				// Ignore this one
+			}
+			input = null;
+		}
+
+	}
+
+	/**
+	 * Codec for all the events created by a filter.
+	 */
+	private static class FilterEventCodec extends BinaryEventCodec {
+
+		private static final int STARTDOCUMENT = 11;
+		private static final int ENDDOCUMENT = 12;
+		private static final int STARTSUBDOCUMENT = 13;
+		private static final int ENDSUBDOCUMENT = 14;
+		private static final int STARTGROUP = 15;
+		private static final int ENDGROUP = 16;
+
+		// Indicates if the last decoded START_DOCUMENT had filter parameters
+		private boolean lastHadParameters;
+
+		public FilterEventCodec () {
+			super(true);
+		}
+
+		@Override
+		public boolean canEncode (Event event) {
+			if ( event.getClass() != Event.class ) return false;
+			IResource res = event.getResource();
+			switch ( event.getEventType() ) {
+			case TEXT_UNIT:
+			case DOCUMENT_PART:
+				return super.canEncode(event);
+			case START_DOCUMENT:
+				if (( res == null ) || ( res.getClass() != StartDocument.class )) return false;
+				return canEncodeNameable((StartDocument)res);
+			case START_SUBDOCUMENT:
+				if (( res == null ) || ( res.getClass() != StartSubDocument.class )) return false;
+				if ( ((StartSubDocument)res).getFilterParameters() != null ) return false;
+				return canEncodeNameable((StartSubDocument)res);
+			case START_GROUP:
+				if (( res == null ) || ( res.getClass() != StartGroup.class )) return false;
+				return canEncodeNameable((StartGroup)res);
+			case END_DOCUMENT:
+			case END_SUBDOCUMENT:
+			case END_GROUP:
+				if (( res == null ) || ( res.getClass() != Ending.class )) return false;
+				if ( hasAnnotations(((Ending)res).getAnnotations()) ) return false;
+				return canEncode(res.getSkeleton(), res);
+			default:
+				return false;
+			}
+		}
+
+		@Override
+		public void encode (Event event,
+			DataOutput output)
+			throws IOException
+		{
+			switch ( event.getEventType() ) {
+			case TEXT_UNIT:
+			case DOCUMENT_PART:
+				super.encode(event, output);
+				break;
+			case START_DOCUMENT:
+				StartDocument sd = (StartDocument)event.getResource();
+				output.writeByte(STARTDOCUMENT);
+				writeNameable(output, sd);
+				StreamUtil.writeString(output, sd.getEncoding());
+				output.writeBoolean(sd.hasUTF8BOM());
+				StreamUtil.writeString(output, sd.getLineBreak());
+				StreamUtil.writeString(output, (sd.getLocale() == null) ? null : sd.getLocale().toString());
+				output.writeBoolean(sd.isMultilingual());
+				output.writeBoolean(sd.getFilterParameters() != null);
+				break;
+			case START_SUBDOCUMENT:
+				StartSubDocument ssd = (StartSubDocument)event.getResource();
+				output.writeByte(STARTSUBDOCUMENT);
+				StreamUtil.writeString(output, ssd.getParentId());
+				writeNameable(output, ssd);
+				break;
+			case START_GROUP:
+				StartGroup sg = (StartGroup)event.getResource();
+				output.writeByte(STARTGROUP);
+				StreamUtil.writeString(output, sg.getParentId());
+				output.writeInt(sg.getReferenceCount());
+				writeNameable(output, sg);
+				break;
+			default: // Endings
+				Ending ending = (Ending)event.getResource();
+				if ( event.getEventType() == EventType.END_DOCUMENT ) output.writeByte(ENDDOCUMENT);
+				else if ( event.getEventType() == EventType.END_SUBDOCUMENT ) output.writeByte(ENDSUBDOCUMENT);
+				else output.writeByte(ENDGROUP);
+				StreamUtil.writeString(output, ending.getId());
+				writeSkeleton(output, (GenericSkeleton)ending.getSkeleton(), ending);
+				break;
+			}
+		}
+
+		@Override
+		protected Event decode (int kind,
+			DataInput input)
+			throws IOException
+		{
+			switch ( kind ) {
+			case STARTDOCUMENT:
+				StartDocument sd = new StartDocument(null);
+				readNameable(input, sd);
+				String encoding = StreamUtil.readString(input);
+				sd.setEncoding(encoding, input.readBoolean());
+				sd.setLineBreak(StreamUtil.readString(input));
+				String locId = StreamUtil.readString(input);
+				sd.setLocale((locId == null) ? null : new LocaleId(locId, false));
+				sd.setMultilingual(input.readBoolean());
+				lastHadParameters = input.readBoolean();
+				return new Event(EventType.START_DOCUMENT, sd);
+			case STARTSUBDOCUMENT:
+				StartSubDocument ssd = new StartSubDocument(StreamUtil.readString(input));
+				readNameable(input, ssd);
+				return new Event(EventType.START_SUBDOCUMENT, ssd);
+			case STARTGROUP:
+				StartGroup sg = new StartGroup(StreamUtil.readString(input));
+				sg.setReferenceCount(input.readInt());
+				readNameable(input, sg);
+				return new Event(EventType.START_GROUP, sg);
+			case ENDDOCUMENT:
+			case ENDSUBDOCUMENT:
+			case ENDGROUP:
+				Ending ending = new Ending(StreamUtil.readString(input));
+				ending.setSkeleton(readSkeleton(input, ending));
+				if ( kind == ENDDOCUMENT ) return new Event(EventType.END_DOCUMENT, ending);
+				if ( kind == ENDSUBDOCUMENT ) return new Event(EventType.END_SUBDOCUMENT, ending);
+				return new Event(EventType.END_GROUP, ending);
+			default:
+				return super.decode(kind, input);
+			}
+		}
+
+		private boolean canEncodeNameable (BaseNameable res) {
+			// Target properties are stored as an annotation
+			if ( hasAnnotations(res.getAnnotations()) ) return false;
+			if ( !canEncode(res.getSkeleton(), res) ) return false;
+			for ( String name : res.getPropertyNames() ) {
+				if ( hasAnnotations(res.getProperty(name)) ) return false;
+			}
+			for ( String name : res.getSourcePropertyNames() ) {
+				if ( hasAnnotations(res.getSourceProperty(name)) ) return false;
+			}
+			return true;
+		}
+
+		private void writeNameable (DataOutput output,
+			BaseNameable res)
+			throws IOException
+		{
+			StreamUtil.writeString(output, res.getId());
+			StreamUtil.writeString(output, res.getName());
+			StreamUtil.writeString(output, res.getType());
+			StreamUtil.writeString(output, res.getMimeType());
+			output.writeBoolean(res.isTranslatable());
+			output.writeBoolean(res.preserveWhitespaces());
+			output.writeInt(res.getPropertyNames().size());
+			for ( String name : res.getPropertyNames() ) {
+				writeProperty(output, res.getProperty(name));
+			}
+			output.writeInt(res.getSourcePropertyNames().size());
+			for ( String name : res.getSourcePropertyNames() ) {
+				writeProperty(output, res.getSourceProperty(name));
+			}
+			writeSkeleton(output, (GenericSkeleton)res.getSkeleton(), res);
+		}
+
+		private void readNameable (DataInput input,
+			BaseNameable res)
+			throws IOException
+		{
+			res.setId(StreamUtil.readString(input));
+			res.setName(StreamUtil.readString(input));
+			res.setType(StreamUtil.readString(input));
+			res.setMimeType(StreamUtil.readString(input));
+			res.setIsTranslatable(input.readBoolean());
+			res.setPreserveWhitespaces(input.readBoolean());
+			int count = input.readInt();
+			for ( int i=0; i<count; i++ ) {
+				res.setProperty(readProperty(input));
+			}
+			count = input.readInt();
+			for ( int i=0; i<count; i++ ) {
+				res.setSourceProperty(readProperty(input));
+			}
+			res.setSkeleton(readSkeleton(input, res));
+		}
+
+	}
+
+}
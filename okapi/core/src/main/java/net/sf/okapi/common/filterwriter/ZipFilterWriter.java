@@ -29,11 +29,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.EventType;
 import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.StreamUtil;
 import net.sf.okapi.common.Util;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.encoder.EncoderManager;
@@ -49,13 +49,14 @@ import net.sf.okapi.common.skeleton.ZipSkeleton;
  * Implements the {@link IFilterWriter} interface for filters that handle formats made of
  * a ZIP package with embedded extractable documents, such as IDML or
  * OpenOffice.org files (ODT, ODS, ODP, etc.)
+ * <p>The entries that are not extracted are copied to the output as they are, without
+ * being decompressed and compressed again (see {@link ZipMergeOutputStream}).
  */
 public class ZipFilterWriter implements IFilterWriter {
 
 	private String outputPath;
 	private ZipFile zipOriginal;
-	private ZipOutputStream zipOut;
-	private byte[] buffer;
+	private ZipMergeOutputStream zipOut;
 	private LocaleId outLoc;
 	private String entryName;
 	private IFilterWriter subDocWriter;
@@ -90,12 +91,8 @@ public class ZipFilterWriter implements IFilterWriter {
 			if ( tempZip != null ) {
 				dest = new FileOutputStream(outputPath);
 				orig = new FileInputStream(tempZip); 
-				int len;
-				while ( (len = orig.read(buffer)) > 0 ) {
-					dest.write(buffer, 0, len);
-				}
+				StreamUtil.copy(orig, dest);
 			}
-			buffer = null;
 		}
 		catch ( IOException e ) {
 			err = e;
@@ -206,7 +203,6 @@ public class ZipFilterWriter implements IFilterWriter {
 
 	private void processStartDocument (StartDocument res) {
 		try {
-			buffer = new byte[2048];
 			zipOriginal = null;
 			
 			ZipSkeleton skel = (ZipSkeleton)res.getSkeleton();
@@ -226,11 +222,11 @@ public class ZipFilterWriter implements IFilterWriter {
 				// If it's the input file, IFilter.close() will free it before we
 				// call close() here (that is if IFilter.close() is called correctly!)
 				tempZip = File.createTempFile("zfwTmpZip", null);
-				zipOut = new ZipOutputStream(new FileOutputStream(tempZip.getAbsolutePath()));
+				zipOut = new ZipMergeOutputStream(new FileOutputStream(tempZip.getAbsolutePath()));
 			}
 			else { // Make sure the directory exists
 				Util.createDirectories(outputPath);
-				zipOut = new ZipOutputStream(new FileOutputStream(outputPath));
+				zipOut = new ZipMergeOutputStream(new FileOutputStream(outputPath));
 			}
 		}
 		catch ( FileNotFoundException e ) {
@@ -254,16 +250,9 @@ public class ZipFilterWriter implements IFilterWriter {
 			if (original == null)
 				original = zipOriginal;
 			ZipEntry entry = skel.getEntry();
-			// Copy the entry data
+			// Copy the entry data, without decompressing it
 			try {
-				zipOut.putNextEntry(new ZipEntry(entry.getName()));
-				InputStream input = original.getInputStream(entry); 
-				int len;
-				while ( (len = input.read(buffer)) > 0 ) {
-					zipOut.write(buffer, 0, len);
-				}
-				input.close();
-				zipOut.closeEntry();
+				zipOut.copyEntry(original, entry);
 			}
 			catch ( IOException e ) {
 				throw new RuntimeException(e);
@@ -328,11 +317,12 @@ public class ZipFilterWriter implements IFilterWriter {
 			// Create the new entry from the temporary output file
 			zipOut.putNextEntry(new ZipEntry(entryName));
 			InputStream input = new FileInputStream(tempFile); 
-			int len;
-			while ( (len = input.read(buffer)) > 0 ) {
-				zipOut.write(buffer, 0, len);
+			try {
+				StreamUtil.copy(input, zipOut);
+			}
+			finally {
+				input.close();
 			}
-			input.close();
 			zipOut.closeEntry();
 			// Delete the temporary file
 			tempFile.delete();
@@ -0,0 +1,494 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common.filterwriter;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Output stream writing a ZIP file made of new entries and of entries copied from
+ * existing ZIP files.
+ * <p>New entries are written like with {@link java.util.zip.ZipOutputStream}:
+ * {@link #putNextEntry(ZipEntry)}, then the data, then {@link #closeEntry()}. They are always
+ * compressed with the DEFLATED method.
+ * <p>Entries copied with {@link #copyEntry(ZipFile, ZipEntry)} are not decompressed:
+ * their compressed data and CRC are copied as they are from the original file. This makes
+ * merging packages with many untouched entries (images, fonts, etc.) much cheaper.
+ * When an entry cannot be copied this way (ZIP64 or encrypted entries, original not
+ * available as a file) it is decompressed and compressed again.
+ * <p>ZIP64 output is not supported: the output is limited to 65535 entries and 4GB.
+ */
+public class ZipMergeOutputStream extends OutputStream {
+
+	private static final int LOCSIG = 0x04034b50;
+	private static final int EXTSIG = 0x08074b50;
+	private static final int CENSIG = 0x02014b50;
+	private static final int ENDSIG = 0x06054b50;
+	
+	private static final int LOCHDR = 30;
+	private static final int CENHDR = 46;
+	private static final int ENDHDR = 22;
+	
+	private static final int FLAG_DATADESCR = 0x08;
+	private static final int FLAG_ENCRYPTED = 0x01;
+	private static final int FLAG_UTF8 = 0x800;
+	
+	private static final long MAX_U32 = 0xFFFFFFFFL;
+	
+	private static class EntryInfo {
+		byte[] name;
+		int flag;
+		int method;
+		long dosTime;
+		long crc;
+		long csize;
+		long size;
+		long offset;
+	}
+	
+	private OutputStream out;
+	private long written;
+	private List<EntryInfo> entries;
+	private Set<String> names;
+	private EntryInfo current;
+	private CRC32 crc;
+	private Deflater deflater;
+	private byte[] buffer;
+	private byte[] header;
+	private Map<String, Map<String, EntryInfo>> sourceIndexes;
+	private Map<String, RandomAccessFile> sourceFiles;
+	private boolean finished;
+
+	/**
+	 * Creates a new ZipMergeOutputStream object.
+	 * @param output the stream where to write the ZIP file.
+	 */
+	public ZipMergeOutputStream (OutputStream output) {
+		out = new BufferedOutputStream(output, 8192);
+		entries = new ArrayList<EntryInfo>();
+		names = new HashSet<String>();
+		crc = new CRC32();
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		buffer = new byte[8192];
+		header = new byte[CENHDR];
+		sourceIndexes = new HashMap<String, Map<String, EntryInfo>>();
+		sourceFiles = new HashMap<String, RandomAccessFile>();
+	}
+	
+	/**
+	 * Starts a new entry. The data of the entry must be written with the write() methods
+	 * and the entry completed with {@link #closeEntry()} (or with the start of the next entry).
+	 * @param entry the entry to start. Only its name and time are used.
+	 * @throws IOException if an error occurs, or if an entry of the same name has already
+	 * been written.
+	 */
+	public void putNextEntry (ZipEntry entry)
+		throws IOException
+	{
+		closeEntry();
+		EntryInfo info = createEntryInfo(entry.getName());
+		info.method = ZipEntry.DEFLATED;
+		info.flag |= FLAG_DATADESCR;
+		long time = entry.getTime();
+		info.dosTime = javaToDosTime((time == -1) ? System.currentTimeMillis() : time);
+		writeLocalHeader(info);
+		crc.reset();
+		deflater.reset();
+		current = info;
+	}
+
+	@Override
+	public void write (int b)
+		throws IOException
+	{
+		byte[] buf = new byte[1];
+		buf[0] = (byte)b;
+		write(buf, 0, 1);
+	}
+	
+	@Override
+	public void write (byte[] data,
+		int offset,
+		int length)
+		throws IOException
+	{
+		if ( current == null ) {
+			throw new ZipException("No current ZIP entry.");
+		}
+		if ( length == 0 ) return;
+		crc.update(data, offset, length);
+		current.size += length;
+		deflater.setInput(data, offset, length);
+		while ( !deflater.needsInput() ) {
+			deflate();
+		}
+	}
+
+	/**
+	 * Completes the current entry, if there is one.
+	 * @throws IOException if an error occurs.
+	 */
+	public void closeEntry ()
+		throws IOException
+	{
+		if ( current == null ) return;
+		deflater.finish();
+		while ( !deflater.finished() ) {
+			deflate();
+		}
+		current.crc = crc.getValue();
+		// Data descriptor
+		setInt(header, 0, EXTSIG);
+		setInt(header, 4, current.crc);
+		setInt(header, 8, current.csize);
+		setInt(header, 12, current.size);
+		writeBytes(header, 0, 16);
+		entries.add(current);
+		current = null;
+	}
+	
+	/**
+	 * Copies an entry of an existing ZIP file, without decompressing it when possible.
+	 * The copied entry keeps its original compression method and time.
+	 * @param source the ZIP file where the entry is.
+	 * @param entry the entry to copy.
+	 * @throws IOException if an error occurs, or if an entry of the same name has already
+	 * been written.
+	 */
+	public void copyEntry (ZipFile source,
+		ZipEntry entry)
+		throws IOException
+	{
+		closeEntry();
+		EntryInfo raw = getSourceIndex(source).get(entry.getName());
+		if ( raw == null ) {
+			// Cannot copy the raw data: re-compress it
+			copyEntryData(source, entry);
+			return;
+		}
+		
+		// Find the start of the data in the original file
+		RandomAccessFile raf = sourceFiles.get(source.getName());
+		raf.seek(raw.offset);
+		raf.readFully(header, 0, LOCHDR);
+		if ( getInt(header, 0) != LOCSIG ) {
+			throw new ZipException("Invalid local header for ZIP entry: " + entry.getName());
+		}
+		raf.seek(raw.offset + LOCHDR + getShort(header, 26) + getShort(header, 28));
+		
+		EntryInfo info = createEntryInfo(entry.getName());
+		info.method = raw.method;
+		info.dosTime = raw.dosTime;
+		info.crc = raw.crc;
+		info.csize = raw.csize;
+		info.size = raw.size;
+		writeLocalHeader(info);
+		long remaining = raw.csize;
+		while ( remaining > 0 ) {
+			int n = raf.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+			if ( n < 0 ) {
+				throw new ZipException("Unexpected end of ZIP entry: " + entry.getName());
+			}
+			writeBytes(buffer, 0, n);
+			remaining -= n;
+		}
+		entries.add(info);
+	}
+	
+	/**
+	 * Writes the central directory of the ZIP file, without closing the underlying stream.
+	 * @throws IOException if an error occurs.
+	 */
+	public void finish ()
+		throws IOException
+	{
+		if ( finished ) return;
+		closeEntry();
+		if ( entries.size() > 0xFFFF ) {
+			throw new ZipException("Too many entries for a non-ZIP64 file.");
+		}
+		long cdStart = written;
+		for ( EntryInfo info : entries ) {
+			setInt(header, 0, CENSIG);
+			setShort(header, 4, 20); // Version made by
+			setShort(header, 6, 20); // Version needed
+			setShort(header, 8, info.flag);
+			setShort(header, 10, info.method);
+			setInt(header, 12, info.dosTime);
+			setInt(header, 16, info.crc);
+			setInt(header, 20, info.csize);
+			setInt(header, 24, info.size);
+			setShort(header, 28, info.name.length);
+			setShort(header, 30, 0); // Extra field length
+			setShort(header, 32, 0); // Comment length
+			setShort(header, 34, 0); // Disk number
+			setShort(header, 36, 0); // Internal attributes
+			setInt(header, 38, 0); // External attributes
+			setInt(header, 42, info.offset);
+			writeBytes(header, 0, CENHDR);
+			writeBytes(info.name, 0, info.name.length);
+		}
+		long cdEnd = written;
+		if ( cdEnd > MAX_U32 ) {
+			throw new ZipException("ZIP file too large for a non-ZIP64 file.");
+		}
+		setInt(header, 0, ENDSIG);
+		setShort(header, 4, 0);
+		setShort(header, 6, 0);
+		setShort(header, 8, entries.size());
+		setShort(header, 10, entries.size());
+		setInt(header, 12, cdEnd-cdStart);
+		setInt(header, 16, cdStart);
+		setShort(header, 20, 0);
+		writeBytes(header, 0, ENDHDR);
+		out.flush();
+		finished = true;
+	}
+	
+	/**
+	 * Finishes the ZIP file, closes the underlying stream and releases the original
+	 * files used for copying entries.
+	 * @throws IOException if an error occurs.
+	 */
+	@Override
+	public void close ()
+		throws IOException
+	{
+		try {
+			finish();
+			out.close();
+		}
+		finally {
+			deflater.end();
+			for ( RandomAccessFile raf : sourceFiles.values() ) {
+				raf.close();
+			}
+			sourceFiles.clear();
+			sourceIndexes.clear();
+		}
+	}
+	
+	private void copyEntryData (ZipFile source,
+		ZipEntry entry)
+		throws IOException
+	{
+		ZipEntry newEntry = new ZipEntry(entry.getName());
+		newEntry.setTime(entry.getTime());
+		putNextEntry(newEntry);
+		InputStream input = source.getInputStream(entry);
+		try {
+			int len;
+			while ( (len = input.read(buffer)) > 0 ) {
+				write(buffer, 0, len);
+			}
+		}
+		finally {
+			input.close();
+		}
+		closeEntry();
+	}
+	
+	private EntryInfo createEntryInfo (String name)
+		throws IOException
+	{
+		if ( !names.add(name) ) {
+			throw new ZipException("Duplicate ZIP entry: " + name);
+		}
+		EntryInfo info = new EntryInfo();
+		info.name = name.getBytes("UTF-8");
+		if ( info.name.length != name.length() ) {
+			info.flag = FLAG_UTF8; // Non-ASCII name
+		}
+		info.offset = written;
+		if ( info.offset > MAX_U32 ) {
+			throw new ZipException("ZIP file too large for a non-ZIP64 file.");
+		}
+		return info;
+	}
+	
+	private void writeLocalHeader (EntryInfo info)
+		throws IOException
+	{
+		setInt(header, 0, LOCSIG);
+		setShort(header, 4, 20); // Version needed
+		setShort(header, 6, info.flag);
+		setShort(header, 8, info.method);
+		setInt(header, 10, info.dosTime);
+		// With a data descriptor the CRC and sizes come after the data
+		boolean dd = ((info.flag & FLAG_DATADESCR) != 0);
+		setInt(header, 14, dd ? 0 : info.crc);
+		setInt(header, 18, dd ? 0 : info.csize);
+		setInt(header, 22, dd ? 0 : info.size);
+		setShort(header, 26, info.name.length);
+		setShort(header, 28, 0); // Extra field length
+		writeBytes(header, 0, LOCHDR);
+		writeBytes(info.name, 0, info.name.length);
+	}
+	
+	private void deflate ()
+		throws IOException
+	{
+		int n = deflater.deflate(buffer, 0, buffer.length);
+		if ( n > 0 ) {
+			writeBytes(buffer, 0, n);
+			current.csize += n;
+		}
+	}
+	
+	private void writeBytes (byte[] data,
+		int offset,
+		int length)
+		throws IOException
+	{
+		out.write(data, offset, length);
+		written += length;
+	}
+	
+	/**
+	 * Gets the raw entries of a given ZIP file, reading its central directory if needed.
+	 * @param source the ZIP file.
+	 * @return the map of the entries that can be copied without decompression.
+	 * The map is empty if none can be copied.
+	 */
+	private Map<String, EntryInfo> getSourceIndex (ZipFile source)
+		throws IOException
+	{
+		Map<String, EntryInfo> index = sourceIndexes.get(source.getName());
+		if ( index != null ) return index;
+		
+		index = new HashMap<String, EntryInfo>();
+		sourceIndexes.put(source.getName(), index);
+		File file = new File(source.getName());
+		if ( !file.isFile() ) return index;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		sourceFiles.put(source.getName(), raf);
+		
+		// Look for the end of central directory record (it may be followed by a comment)
+		byte[] tail = new byte[(int)Math.min(raf.length(), ENDHDR + 0xFFFF)];
+		raf.seek(raf.length() - tail.length);
+		raf.readFully(tail);
+		int end = -1;
+		for ( int i=tail.length-ENDHDR; i>=0; i-- ) {
+			if ( getInt(tail, i) == ENDSIG ) {
+				end = i;
+				break;
+			}
+		}
+		if ( end == -1 ) return index;
+		int count = getShort(tail, end+10);
+		long cdSize = getInt(tail, end+12);
+		long cdOffset = getInt(tail, end+16);
+		if (( count == 0xFFFF ) || ( cdSize == MAX_U32 ) || ( cdOffset == MAX_U32 )) {
+			return index; // ZIP64: not supported for raw copy
+		}
+		
+		byte[] cd = new byte[(int)cdSize];
+		raf.seek(cdOffset);
+		raf.readFully(cd);
+		int pos = 0;
+		for ( int i=0; i<count; i++ ) {
+			if ( getInt(cd, pos) != CENSIG ) {
+				index.clear(); // Something is wrong: don't use the raw copy
+				return index;
+			}
+			EntryInfo info = new EntryInfo();
+			info.flag = getShort(cd, pos+8);
+			info.method = getShort(cd, pos+10);
+			info.dosTime = getInt(cd, pos+12);
+			info.crc = getInt(cd, pos+16);
+			info.csize = getInt(cd, pos+20);
+			info.size = getInt(cd, pos+24);
+			int nameLen = getShort(cd, pos+28);
+			int extraLen = getShort(cd, pos+30);
+			int commentLen = getShort(cd, pos+32);
+			info.offset = getInt(cd, pos+42);
+			String name = new String(cd, pos+CENHDR, nameLen, "UTF-8");
+			if (( info.csize != MAX_U32 ) && ( info.size != MAX_U32 ) && ( info.offset != MAX_U32 )
+				&& (( info.flag & FLAG_ENCRYPTED ) == 0 )
+				&& (( info.method == ZipEntry.DEFLATED ) || ( info.method == ZipEntry.STORED )))
+			{
+				index.put(name, info);
+			}
+			pos += CENHDR + nameLen + extraLen + commentLen;
+		}
+		return index;
+	}
+	
+	private static long javaToDosTime (long time) {
+		Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(time);
+		int year = cal.get(Calendar.YEAR);
+		if ( year < 1980 ) {
+			return (1 << 21) | (1 << 16); // 1980-01-01
+		}
+		return ((year - 1980) << 25)
+			| ((cal.get(Calendar.MONTH) + 1) << 21)
+			| (cal.get(Calendar.DAY_OF_MONTH) << 16)
+			| (cal.get(Calendar.HOUR_OF_DAY) << 11)
+			| (cal.get(Calendar.MINUTE) << 5)
+			| (cal.get(Calendar.SECOND) >> 1);
+	}
+	
+	private static int getShort (byte[] data,
+		int offset)
+	{
+		return (data[offset] & 0xFF) | ((data[offset+1] & 0xFF) << 8);
+	}
+	
+	private static long getInt (byte[] data,
+		int offset)
+	{
+		return (getShort(data, offset) | ((long)getShort(data, offset+2) << 16)) & MAX_U32;
+	}
+	
+	private static void setShort (byte[] data,
+		int offset,
+		int value)
+	{
+		data[offset] = (byte)value;
+		data[offset+1] = (byte)(value >> 8);
+	}
+	
+	private static void setInt (byte[] data,
+		int offset,
+		long value)
+	{
+		setShort(data, offset, (int)(value & 0xFFFF));
+		setShort(data, offset+2, (int)((value >> 16) & 0xFFFF));
+	}
+
+}
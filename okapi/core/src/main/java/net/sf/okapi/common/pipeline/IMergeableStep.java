@@ -0,0 +1,54 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common.pipeline;
+
+/**
+ * Interface for the steps that accumulate batch-level data (counts, report entries, etc.)
+ * between the START_BATCH and END_BATCH events.
+ * <p>When a batch is processed with several copies of the same step chain (see
+ * {@link net.sf.okapi.common.pipelinedriver.IPipelineDriver#setThreadCount(int)}), each
+ * copy of the step sees only part of the batch items. Once all items are processed, the data
+ * of each copy is merged into the original step, in the order of the batch items,
+ * before the original step receives the END_BATCH event. The copies do not receive
+ * the END_BATCH event themselves.
+ * <p>The batch is processed in parallel only if all the steps of the pipeline implement
+ * this interface and can be copied. Steps without batch-level data implement it with
+ * an empty {@link #mergeBatchData(IPipelineStep)}.
+ */
+public interface IMergeableStep {
+
+	/**
+	 * Merges the batch-level data accumulated by a copy of this step into this step.
+	 * @param copy the copy of this step to merge. It is always an instance of the same
+	 * class as this step, and it will be destroyed after this call.
+	 */
+	public void mergeBatchData (IPipelineStep copy);
+
+	/**
+	 * Indicates if this step can be copied. The copies are created from the class of the
+	 * step and a copy of its parameters: a step configured with other objects (for example
+	 * a filter or a writer set by the caller) must return false.
+	 * @return true if a copy of this step created from its class and parameters
+	 * processes the batch items the same way as this step.
+	 */
+	public boolean isMergeable ();
+
+}
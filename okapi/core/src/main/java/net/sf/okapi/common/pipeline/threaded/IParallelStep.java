@@ -0,0 +1,34 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common.pipeline.threaded;
+
+/**
+ * Marker interface for the steps that can process several content events at the same time
+ * when they are run in a {@link ThreadedPipeline}.
+ * <p>The {@link net.sf.okapi.common.pipeline.IPipelineStep#handleEvent(net.sf.okapi.common.Event)}
+ * method of such step may be called concurrently from several threads for TEXT_UNIT and DOCUMENT_PART
+ * events. All other events are handled by a single thread, after all the preceding events have been
+ * handled, and before any of the following events is handled. The events are passed to the next step
+ * in the same order they were received, regardless of the order in which they were processed.
+ */
+public interface IParallelStep {
+
+}
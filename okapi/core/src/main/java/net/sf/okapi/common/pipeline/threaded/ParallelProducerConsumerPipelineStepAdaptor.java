@@ -0,0 +1,174 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common.pipeline.threaded;
+
+import java.util.LinkedList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.pipeline.IPipelineStep;
+
+/**
+ * Adaptor for the middle steps implementing {@link IParallelStep}. The content events are
+ * handled by a pool of workers and re-sequenced before being passed to the next step.
+ * As in {@link ProducerConsumerPipelineStepAdaptor}, the original event is passed on,
+ * not the one returned by the step.
+ */
+class ParallelProducerConsumerPipelineStepAdaptor extends BaseThreadedPipelineStepAdaptor implements IProducer,
+		IConsumer {
+	private BlockingQueue<Event> producerQueue;
+	private BlockingQueue<Event> consumerQueue;
+	private final ExecutorService workers;
+	private final LinkedList<Future<Event>> pending;
+	private final int maxPending;
+
+	/**
+	 * Creates a new adaptor.
+	 * @param step the step to wrap.
+	 * @param workerCount the number of workers handling the content events.
+	 * @param maxPending the maximum number of events being processed or waiting to be
+	 * passed to the next step.
+	 */
+	public ParallelProducerConsumerPipelineStepAdaptor(IPipelineStep step,
+		int workerCount,
+		int maxPending)
+	{
+		super(step);
+		workers = Executors.newFixedThreadPool(workerCount);
+		pending = new LinkedList<Future<Event>>();
+		this.maxPending = Math.max(1, maxPending);
+	}
+
+	public void setConsumerQueue(BlockingQueue<Event> consumerQueue) {
+		this.consumerQueue = consumerQueue;
+	}
+
+	public void setProducerQueue(BlockingQueue<Event> producerQueue) {
+		this.producerQueue = producerQueue;
+	}
+
+	protected void addToQueue(Event event) {
+		if (producerQueue == null) {
+			throw new RuntimeException("producer queue is null");
+		}
+		try {
+			producerQueue.put(event);
+		} catch (InterruptedException e) {
+			throw new RuntimeInterruptedException(e);
+		}
+	}
+
+	protected Event takeFromQueue() {
+		if (consumerQueue == null) {
+			throw new RuntimeException("consumer queue is null");
+		}
+
+		Event event;
+		try {
+			event = consumerQueue.take();
+		} catch (InterruptedException e) {
+			throw new RuntimeInterruptedException(e);
+		}
+		return event;
+	}
+
+	private static boolean isParallel(Event event) {
+		switch (event.getEventType()) {
+		case TEXT_UNIT:
+		case DOCUMENT_PART:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Waits for the oldest pending event and passes it to the next step.
+	 */
+	private void sendOldest() {
+		Event event;
+		try {
+			event = pending.removeFirst().get();
+		} catch (InterruptedException e) {
+			throw new RuntimeInterruptedException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		addToQueue(event);
+	}
+
+	@Override
+	protected void processBlockingQueue() {
+		// Look for new input without blocking while some events are still being processed
+		Event e = pending.isEmpty() ? takeFromQueue() : consumerQueue.poll();
+		if (e == null) {
+			sendOldest();
+			return;
+		}
+
+		if (isParallel(e)) {
+			if (pending.size() >= maxPending) {
+				sendOldest();
+			}
+			final Event event = e;
+			pending.add(workers.submit(new Callable<Event>() {
+				public Event call() {
+					getStep().handleEvent(event);
+					return event;
+				}
+			}));
+		} else {
+			// Other events are barriers: all preceding events must be done first
+			while (!pending.isEmpty()) {
+				sendOldest();
+			}
+			getStep().handleEvent(e);
+			addToQueue(e);
+		}
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		workers.shutdownNow();
+	}
+
+	@Override
+	public void destroy() {
+		super.destroy();
+		workers.shutdownNow();
+	}
+
+	@Override
+	protected void clearBlockingQueues() {
+		pending.clear();
+		producerQueue.clear();
+		consumerQueue.clear();
+	}
+}
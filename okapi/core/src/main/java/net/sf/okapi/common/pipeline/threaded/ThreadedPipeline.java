@@ -39,6 +39,7 @@ public class ThreadedPipeline implements IPipeline {
 
 	private ExecutorService executor;
 	private int blockingQueueSize;
+	private int parallelWorkerCount;
 	private int totalThreads;
 	private volatile PipelineReturnValue state;
 	private LinkedList<BaseThreadedPipelineStepAdaptor> threadedSteps;
@@ -46,6 +47,7 @@ public class ThreadedPipeline implements IPipeline {
 //	private ProducerPipelineStepAdaptor firstThreadedStep;
 	private BlockingQueue<Event> previousQueue;
 	private BlockingQueue<Event> inputQueue;
+	private LinkedList<BlockingQueue<Event>> queues;
 	private String id;
 
 	public ThreadedPipeline() {
@@ -56,6 +58,7 @@ public class ThreadedPipeline implements IPipeline {
 		steps = new LinkedList<IPipelineStep>();
 		this.executor = executor;
 		this.blockingQueueSize = blockingQueueSize;
+		parallelWorkerCount = Runtime.getRuntime().availableProcessors();
 		initialize();
 	}
 
@@ -64,6 +67,63 @@ public class ThreadedPipeline implements IPipeline {
 		state = PipelineReturnValue.PAUSED;
 		threadedSteps = new LinkedList<BaseThreadedPipelineStepAdaptor>();
 		inputQueue = new ArrayBlockingQueue<Event>(blockingQueueSize, true);
+		queues = new LinkedList<BlockingQueue<Event>>();
+		queues.add(inputQueue);
+	}
+
+	/**
+	 * Sets the capacity of the queues between the steps. A step producing events
+	 * blocks when the queue to the next step is full. This must be called before
+	 * {@link #startBatch()}.
+	 * @param capacity the new capacity of each queue.
+	 */
+	public void setQueueCapacity(int capacity) {
+		if (!threadedSteps.isEmpty()) {
+			throw new IllegalStateException("The queue capacity cannot be changed once the batch is started.");
+		}
+		blockingQueueSize = capacity;
+		initialize();
+	}
+
+	/**
+	 * Gets the capacity of the queues between the steps.
+	 * @return the capacity of each queue.
+	 */
+	public int getQueueCapacity() {
+		return blockingQueueSize;
+	}
+
+	/**
+	 * Sets the number of workers used for each step implementing {@link IParallelStep}.
+	 * A value of 1 runs such steps like the other ones. This must be called before
+	 * {@link #startBatch()}. The default is the number of available processors.
+	 * @param count the number of workers to use.
+	 */
+	public void setParallelWorkerCount(int count) {
+		parallelWorkerCount = Math.max(1, count);
+	}
+
+	/**
+	 * Gets the number of workers used for each step implementing {@link IParallelStep}.
+	 * @return the number of workers used for each parallel step.
+	 */
+	public int getParallelWorkerCount() {
+		return parallelWorkerCount;
+	}
+
+	/**
+	 * Gets the number of events currently waiting in each queue. The first value is
+	 * for the input queue of the pipeline, the next ones for the queues after each step
+	 * (except the last one).
+	 * @return an array of the current depth of each queue.
+	 */
+	public int[] getQueueSizes() {
+		int[] sizes = new int[queues.size()];
+		int i = 0;
+		for (BlockingQueue<Event> queue : queues) {
+			sizes[i++] = queue.size();
+		}
+		return sizes;
 	}
 
 	private void prepareThreadedSteps() {
@@ -96,13 +156,26 @@ public class ThreadedPipeline implements IPipeline {
 					throw new RuntimeException(
 							"Previous queue should not be null");
 				}
-				ProducerConsumerPipelineStepAdaptor producerConsumerStep = new ProducerConsumerPipelineStepAdaptor(
-						step);
 				queue = new ArrayBlockingQueue<Event>(blockingQueueSize, true);
-				producerConsumerStep.setProducerQueue(queue);
-				producerConsumerStep.setConsumerQueue(previousQueue);
-				executor.submit(producerConsumerStep);
-				threadedSteps.add(producerConsumerStep);
+				if ((step instanceof IParallelStep) && (parallelWorkerCount > 1)) {
+					// content events are handled by several workers and re-sequenced
+					ParallelProducerConsumerPipelineStepAdaptor parallelStep = new ParallelProducerConsumerPipelineStepAdaptor(
+							step, parallelWorkerCount, blockingQueueSize);
+					parallelStep.setProducerQueue(queue);
+					parallelStep.setConsumerQueue(previousQueue);
+					executor.submit(parallelStep);
+					threadedSteps.add(parallelStep);
+				} else {
+					ProducerConsumerPipelineStepAdaptor producerConsumerStep = new ProducerConsumerPipelineStepAdaptor(
+							step);
+					producerConsumerStep.setProducerQueue(queue);
+					producerConsumerStep.setConsumerQueue(previousQueue);
+					executor.submit(producerConsumerStep);
+					threadedSteps.add(producerConsumerStep);
+				}
+			}
+			if (queue != previousQueue) {
+				queues.add(queue);
 			}
 			totalThreads += 1;
 			previousQueue = queue;
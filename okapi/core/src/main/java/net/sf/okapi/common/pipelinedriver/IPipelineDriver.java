@@ -62,6 +62,28 @@ public interface IPipelineDriver {
 	 */
 	public void setUIParent (Object uiParent);
 	
+	/**
+	 * Sets the number of threads to use when processing a batch.
+	 * <p>When the value is greater than 1, the batch items are split into contiguous
+	 * ranges and each range is processed by its own copy of the step chain. The copies
+	 * are created from the class of each step and a copy of its parameters, so the steps
+	 * must not rely on other settings than their parameters and the runtime parameters
+	 * set by the driver. The batch-level data of the steps implementing
+	 * {@link net.sf.okapi.common.pipeline.IMergeableStep} are merged into the steps of the
+	 * pipeline of the driver before it receives the END_BATCH event.
+	 * The batch is processed in parallel only if all the steps implement that interface
+	 * and can be copied: otherwise it is processed serially.
+	 * The observers of the pipeline only receive the events of the first copy.
+	 * @param threadCount the number of threads to use (1 for serial processing, the default).
+	 */
+	public void setThreadCount (int threadCount);
+	
+	/**
+	 * Gets the number of threads used when processing a batch.
+	 * @return the number of threads used when processing a batch.
+	 */
+	public int getThreadCount ();
+	
 	/**
 	 * Gets the {@link IPipeline} currently associated with this driver.
 	 * @return the {@link IPipeline} currently associated with this driver.
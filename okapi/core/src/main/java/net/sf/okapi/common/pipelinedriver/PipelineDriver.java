@@ -26,14 +26,22 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
+import net.sf.okapi.common.IParameters;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.exceptions.OkapiBadStepInputException;
 import net.sf.okapi.common.filters.IFilterConfigurationMapper;
 import net.sf.okapi.common.pipeline.IPipeline;
+import net.sf.okapi.common.pipeline.IMergeableStep;
 import net.sf.okapi.common.pipeline.IPipelineStep;
 import net.sf.okapi.common.pipeline.Pipeline;
+import net.sf.okapi.common.pipeline.PipelineReturnValue;
 import net.sf.okapi.common.pipeline.annotations.ConfigurationParameter;
 import net.sf.okapi.common.pipeline.annotations.StepIntrospector;
 import net.sf.okapi.common.pipeline.annotations.StepParameterType;
@@ -58,6 +66,7 @@ public class PipelineDriver implements IPipelineDriver {
 	private String rootDir;
 	private String inputRootDir;
 	private Object uiParent;
+	private int threadCount;
 	
 	/**
 	 * Creates an new PipelineDriver object with an empty pipeline.
@@ -67,6 +76,7 @@ public class PipelineDriver implements IPipelineDriver {
 		batchItems = new ArrayList<IBatchItemContext>();
 		paramList = new LinkedList<List<ConfigurationParameter>>();
 		maxInputCount = 1;
+		threadCount = 1;
 	}
 
 	@Override
@@ -110,6 +120,16 @@ public class PipelineDriver implements IPipelineDriver {
 									// Also observers of the given pipeline are in place.
 	}
 
+	@Override
+	public void setThreadCount (int threadCount) {
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+	@Override
+	public int getThreadCount () {
+		return threadCount;
+	}
+
 	@Override
 	public IPipeline getPipeline () {
 		return pipeline;
@@ -149,19 +169,176 @@ public class PipelineDriver implements IPipelineDriver {
 		// Set the runtime parameters for the START_BATCH events
 		// Especially source and target languages
 		if ( batchItems.size() > 0 ) {
-			assignRuntimeParameters(batchItems.get(0));
+			assignRuntimeParameters(batchItems.get(0), paramList);
 		}
 		pipeline.startBatch();
+		if (( threadCount > 1 ) && ( batchItems.size() > 1 )) {
+			if ( allStepsMergeable() ) {
+				processBatchInParallel();
+				return;
+			}
+			logger.fine("Some steps cannot be merged: the batch is processed serially.");
+		}
 		// Run each item in the batch
 		for ( IBatchItemContext item : batchItems ) {
+			// Do not start the remaining items if the pipeline was canceled
+			if ( pipeline.getState() == PipelineReturnValue.CANCELLED ) break;
 			displayInput(item);
 			// Set the runtime parameters
-			assignRuntimeParameters(item);
+			assignRuntimeParameters(item, paramList);
 			// Process this input
 			pipeline.process(item.getRawDocument(0));
 		}
 		pipeline.endBatch();
 	}
+
+	/**
+	 * Indicates if all the steps of the pipeline implement {@link IMergeableStep} and can be copied.
+	 * Other steps may write batch-level output at the end of the batch, so they cannot be copied.
+	 * @return true if all the steps can be merged.
+	 */
+	private boolean allStepsMergeable () {
+		for ( IPipelineStep step : pipeline.getSteps() ) {
+			if ( !(step instanceof IMergeableStep) ) return false;
+			if ( !((IMergeableStep)step).isMergeable() ) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Processes the batch items with several copies of the step chain, each running in
+	 * its own thread on a contiguous range of items. The pipeline of the driver must
+	 * have been started already.
+	 */
+	private void processBatchInParallel () {
+		final int count = Math.min(threadCount, batchItems.size());
+		final List<IPipeline> chains = new ArrayList<IPipeline>(count);
+		List<List<IPipelineStep>> chainSteps = new ArrayList<List<IPipelineStep>>(count);
+		List<LinkedList<List<ConfigurationParameter>>> chainParams =
+			new ArrayList<LinkedList<List<ConfigurationParameter>>>(count);
+
+		// The first chain is the pipeline of this driver
+		chains.add(pipeline);
+		chainSteps.add(pipeline.getSteps()); // Steps are available only after startBatch()
+		chainParams.add(paramList);
+
+		// The other chains are copies of it
+		for ( int i=1; i<count; i++ ) {
+			IPipeline chain = new Pipeline();
+			List<IPipelineStep> steps = new ArrayList<IPipelineStep>();
+			LinkedList<List<ConfigurationParameter>> params = new LinkedList<List<ConfigurationParameter>>();
+			for ( IPipelineStep step : chainSteps.get(0) ) {
+				IPipelineStep copy = copyStep(step);
+				chain.addStep(copy);
+				steps.add(copy);
+				params.add(StepIntrospector.getStepParameters(copy));
+			}
+			assignRuntimeParameters(batchItems.get(0), params);
+			chain.startBatch();
+			chains.add(chain);
+			chainSteps.add(steps);
+			chainParams.add(params);
+		}
+
+		// Run each range of items in its own chain
+		ExecutorService executor = Executors.newFixedThreadPool(count);
+		List<Future<Object>> results = new ArrayList<Future<Object>>(count);
+		int size = batchItems.size();
+		for ( int i=0; i<count; i++ ) {
+			final IPipeline chain = chains.get(i);
+			final LinkedList<List<ConfigurationParameter>> params = chainParams.get(i);
+			final int start = (int)(((long)size * i) / count);
+			final int end = (int)(((long)size * (i+1)) / count);
+			results.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call () {
+					try {
+						for ( int j=start; j<end; j++ ) {
+							if (( pipeline.getState() == PipelineReturnValue.CANCELLED )
+								|| ( chain.getState() == PipelineReturnValue.CANCELLED )) {
+								break;
+							}
+							IBatchItemContext item = batchItems.get(j);
+							synchronized ( chains ) {
+								displayInput(item);
+							}
+							assignRuntimeParameters(item, params);
+							chain.process(item.getRawDocument(0));
+						}
+					}
+					catch ( RuntimeException e ) {
+						// Stop the other chains
+						for ( IPipeline other : chains ) {
+							other.cancel();
+						}
+						throw e;
+					}
+					return null;
+				}
+			}));
+		}
+		executor.shutdown();
+
+		RuntimeException error = null;
+		for ( Future<Object> result : results ) {
+			try {
+				result.get();
+			}
+			catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				error = new RuntimeException("Interrupted while processing the batch.", e);
+			}
+			catch ( ExecutionException e ) {
+				if ( error == null ) {
+					if ( e.getCause() instanceof RuntimeException ) error = (RuntimeException)e.getCause();
+					else error = new RuntimeException("Error when processing the batch.", e.getCause());
+				}
+			}
+		}
+
+		// Merge the batch-level data of the copies, in the order of the batch items
+		// The copies never receive END_BATCH: on error their data is dropped
+		List<IPipelineStep> mainSteps = chainSteps.get(0);
+		for ( int i=1; i<count; i++ ) {
+			if ( error == null ) {
+				List<IPipelineStep> steps = chainSteps.get(i);
+				for ( int j=0; j<steps.size(); j++ ) {
+					((IMergeableStep)mainSteps.get(j)).mergeBatchData(steps.get(j));
+				}
+			}
+			chains.get(i).destroy();
+		}
+
+		if ( error != null ) {
+			throw error;
+		}
+		pipeline.endBatch();
+	}
+
+	/**
+	 * Creates a new instance of a given step, with a copy of its parameters.
+	 * @param step the step to copy.
+	 * @return the new step.
+	 */
+	private IPipelineStep copyStep (IPipelineStep step) {
+		try {
+			IPipelineStep copy = step.getClass().newInstance();
+			IParameters params = step.getParameters();
+			if ( params != null ) {
+				IParameters paramsCopy = params.getClass().newInstance();
+				paramsCopy.fromString(params.toString());
+				copy.setParameters(paramsCopy);
+			}
+			copy.setLastOutputStep(step.isLastOutputStep());
+			return copy;
+		}
+		catch ( InstantiationException e ) {
+			throw new RuntimeException(String.format("Cannot create a copy of the step '%s'.", step.getName()), e);
+		}
+		catch ( IllegalAccessException e ) {
+			throw new RuntimeException(String.format("Cannot create a copy of the step '%s'.", step.getName()), e);
+		}
+	}
 	
 	@Override
 	public void addBatchItem (IBatchItemContext item) {
@@ -215,7 +392,8 @@ public class PipelineDriver implements IPipelineDriver {
 
 	/**
 	 * Logs the information about which batch item is about to be processed. This
-	 * method is called inside the loop that process the batch.
+	 * method is called inside the loop that process the batch. When the batch is processed
+	 * in parallel it is called from the thread processing the item, one call at a time.
 	 * @param item the batch item that is about to be processed.
 	 */
 	protected void displayInput (IBatchItemContext item) {
@@ -241,7 +419,9 @@ public class PipelineDriver implements IPipelineDriver {
 		return maxInputCount;
 	}
 
-	private void assignRuntimeParameters (IBatchItemContext item) {
+	private void assignRuntimeParameters (IBatchItemContext item,
+		List<List<ConfigurationParameter>> paramList)
+	{
 		try {
 			RawDocument input = item.getRawDocument(0);
 			// Set the runtime parameters using the method annotations
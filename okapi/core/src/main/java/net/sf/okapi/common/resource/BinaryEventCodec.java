@@ -0,0 +1,369 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common.resource;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.IEventCodec;
+import net.sf.okapi.common.IResource;
+import net.sf.okapi.common.ISkeleton;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.StreamUtil;
+import net.sf.okapi.common.annotation.IAnnotation;
+import net.sf.okapi.common.skeleton.GenericSkeleton;
+import net.sf.okapi.common.skeleton.GenericSkeletonPart;
+
+/**
+ * Implements a binary {@link IEventCodec} for the TEXT_UNIT and DOCUMENT_PART events.
+ * <p>Only the resources made entirely of core objects are encoded: {@link TextUnit} and
+ * {@link DocumentPart} objects without annotations (on the resource, its containers, segments or
+ * properties), without variant sources, and with either no skeleton or a {@link GenericSkeleton}
+ * that refers to no other resource than its own. The referents are not encoded either, as the
+ * resources referring to them must keep pointing to the same objects.
+ * <p>This codec can be used with {@link net.sf.okapi.common.EventStore} to keep the events of
+ * large documents out of memory. Sub-classes can encode other events, and can accept the
+ * referents when all the events of a document are stored together (see
+ * {@link net.sf.okapi.common.filters.FilterEventCache}).
+ */
+public class BinaryEventCodec implements IEventCodec {
+
+	private static final int TEXTUNIT = 1;
+	private static final int DOCUMENTPART = 2;
+	
+	private static final int PARENT_NONE = 0;
+	private static final int PARENT_SELF = 1;
+
+	private final boolean allowReferents;
+	
+	/**
+	 * Creates a new BinaryEventCodec that does not encode the referents.
+	 */
+	public BinaryEventCodec () {
+		this(false);
+	}
+
+	/**
+	 * Creates a new BinaryEventCodec.
+	 * @param allowReferents true to encode the referents too. This is possible only if
+	 * the events referring to them are decoded along with them.
+	 */
+	protected BinaryEventCodec (boolean allowReferents) {
+		this.allowReferents = allowReferents;
+	}
+
+	@Override
+	public boolean canEncode (Event event) {
+		if ( event.getClass() != Event.class ) return false;
+		IResource res = event.getResource();
+		if ( res == null ) return false;
+		if ( event.getEventType() == EventType.TEXT_UNIT ) {
+			if ( res.getClass() != TextUnit.class ) return false;
+			TextUnit tu = (TextUnit)res;
+			if (( !allowReferents && tu.isReferent() ) || tu.hasVariantSources() ) return false;
+			if ( hasAnnotations(tu.getAnnotations()) ) return false;
+			if ( !canEncode(tu.getSkeleton(), tu) ) return false;
+			if ( !canEncode(tu, tu.getPropertyNames()) ) return false;
+			if ( !canEncode(tu.getSource()) ) return false;
+			for ( LocaleId locId : tu.getTargetLocales() ) {
+				if ( !canEncode(tu.getTarget(locId)) ) return false;
+			}
+			return true;
+		}
+		if ( event.getEventType() == EventType.DOCUMENT_PART ) {
+			if ( res.getClass() != DocumentPart.class ) return false;
+			DocumentPart dp = (DocumentPart)res;
+			if ( !allowReferents && dp.isReferent() ) return false;
+			if ( hasAnnotations(dp.getAnnotations()) ) return false;
+			if ( !canEncode(dp.getSkeleton(), dp) ) return false;
+			for ( String name : dp.getPropertyNames() ) {
+				if ( hasAnnotations(dp.getProperty(name).annotations) ) return false;
+			}
+			for ( String name : dp.getSourcePropertyNames() ) {
+				if ( hasAnnotations(dp.getSourceProperty(name).annotations) ) return false;
+			}
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void encode (Event event,
+		DataOutput output)
+		throws IOException
+	{
+		if ( event.getEventType() == EventType.TEXT_UNIT ) {
+			TextUnit tu = (TextUnit)event.getResource();
+			output.writeByte(TEXTUNIT);
+			StreamUtil.writeString(output, tu.getId());
+			output.writeInt(tu.getReferenceCount());
+			StreamUtil.writeString(output, tu.getName());
+			StreamUtil.writeString(output, tu.getType());
+			StreamUtil.writeString(output, tu.getMimeType());
+			output.writeBoolean(tu.isTranslatable());
+			output.writeBoolean(tu.preserveWhitespaces());
+			output.writeInt(tu.getPropertyNames().size());
+			for ( String name : tu.getPropertyNames() ) {
+				writeProperty(output, tu.getProperty(name));
+			}
+			writeSkeleton(output, (GenericSkeleton)tu.getSkeleton(), tu);
+			writeContainer(output, tu.getSource());
+			Set<LocaleId> locales = tu.getTargetLocales();
+			output.writeInt(locales.size());
+			for ( LocaleId locId : locales ) {
+				StreamUtil.writeString(output, locId.toString());
+				writeContainer(output, tu.getTarget(locId));
+			}
+		}
+		else {
+			DocumentPart dp = (DocumentPart)event.getResource();
+			output.writeByte(DOCUMENTPART);
+			StreamUtil.writeString(output, dp.getId());
+			output.writeInt(dp.getReferenceCount());
+			StreamUtil.writeString(output, dp.getParentId());
+			StreamUtil.writeString(output, dp.getName());
+			StreamUtil.writeString(output, dp.getType());
+			StreamUtil.writeString(output, dp.getMimeType());
+			output.writeBoolean(dp.isTranslatable());
+			output.writeBoolean(dp.preserveWhitespaces());
+			output.writeInt(dp.getPropertyNames().size());
+			for ( String name : dp.getPropertyNames() ) {
+				writeProperty(output, dp.getProperty(name));
+			}
+			output.writeInt(dp.getSourcePropertyNames().size());
+			for ( String name : dp.getSourcePropertyNames() ) {
+				writeProperty(output, dp.getSourceProperty(name));
+			}
+			writeSkeleton(output, (GenericSkeleton)dp.getSkeleton(), dp);
+		}
+	}
+
+	@Override
+	public Event decode (DataInput input)
+		throws IOException
+	{
+		return decode(input.readByte(), input);
+	}
+
+	/**
+	 * Decodes an event once its kind has been read.
+	 * @param kind the kind of event, as written by {@link #encode(Event, DataOutput)}.
+	 * @param input the input where to read the rest of the event.
+	 * @return the decoded event.
+	 * @throws IOException if the kind is unknown or an error occurs when reading.
+	 */
+	protected Event decode (int kind,
+		DataInput input)
+		throws IOException
+	{
+		if ( kind == TEXTUNIT ) {
+			TextUnit tu = new TextUnit(StreamUtil.readString(input));
+			tu.setReferenceCount(input.readInt());
+			tu.setName(StreamUtil.readString(input));
+			tu.setType(StreamUtil.readString(input));
+			tu.setMimeType(StreamUtil.readString(input));
+			tu.setIsTranslatable(input.readBoolean());
+			tu.setPreserveWhitespaces(input.readBoolean());
+			int count = input.readInt();
+			for ( int i=0; i<count; i++ ) {
+				tu.setProperty(readProperty(input));
+			}
+			tu.setSkeleton(readSkeleton(input, tu));
+			tu.setSource(readContainer(input));
+			count = input.readInt();
+			for ( int i=0; i<count; i++ ) {
+				LocaleId locId = new LocaleId(StreamUtil.readString(input), false);
+				tu.setTarget(locId, readContainer(input));
+			}
+			return new Event(EventType.TEXT_UNIT, tu);
+		}
+		if ( kind == DOCUMENTPART ) {
+			DocumentPart dp = new DocumentPart(StreamUtil.readString(input), false);
+			dp.setReferenceCount(input.readInt());
+			dp.setParentId(StreamUtil.readString(input));
+			dp.setName(StreamUtil.readString(input));
+			dp.setType(StreamUtil.readString(input));
+			dp.setMimeType(StreamUtil.readString(input));
+			dp.setIsTranslatable(input.readBoolean());
+			dp.setPreserveWhitespaces(input.readBoolean());
+			int count = input.readInt();
+			for ( int i=0; i<count; i++ ) {
+				dp.setProperty(readProperty(input));
+			}
+			count = input.readInt();
+			for ( int i=0; i<count; i++ ) {
+				dp.setSourceProperty(readProperty(input));
+			}
+			dp.setSkeleton(readSkeleton(input, dp));
+			return new Event(EventType.DOCUMENT_PART, dp);
+		}
+		throw new IOException("Invalid kind of stored event: "+kind);
+	}
+
+	protected boolean hasAnnotations (Iterable<IAnnotation> annotations) {
+		return (( annotations != null ) && annotations.iterator().hasNext() );
+	}
+	
+	protected boolean hasAnnotations (Property prop) {
+		return hasAnnotations(prop.annotations);
+	}
+	
+	protected boolean canEncode (ISkeleton skeleton,
+		IResource self)
+	{
+		if ( skeleton == null ) return true;
+		if ( skeleton.getClass() != GenericSkeleton.class ) return false;
+		for ( GenericSkeletonPart part : ((GenericSkeleton)skeleton).getParts() ) {
+			if ( part.getClass() != GenericSkeletonPart.class ) return false;
+			if (( part.getParent() != null ) && ( part.getParent() != self )) return false;
+		}
+		return true;
+	}
+	
+	private boolean canEncode (TextUnit tu,
+		Set<String> propertyNames)
+	{
+		for ( String name : propertyNames ) {
+			if ( hasAnnotations(tu.getProperty(name).annotations) ) return false;
+		}
+		return true;
+	}
+	
+	private boolean canEncode (TextContainer tc) {
+		if ( hasAnnotations(tc.getAnnotations()) ) return false;
+		for ( String name : tc.getPropertyNames() ) {
+			if ( hasAnnotations(tc.getProperty(name).annotations) ) return false;
+		}
+		for ( TextPart part : tc ) {
+			if ( part.getClass() == Segment.class ) {
+				if ( hasAnnotations(((Segment)part).annotations) ) return false;
+			}
+			else if ( part.getClass() != TextPart.class ) return false;
+		}
+		return true;
+	}
+	
+	protected void writeProperty (DataOutput output,
+		Property prop)
+		throws IOException
+	{
+		StreamUtil.writeString(output, prop.getName());
+		StreamUtil.writeString(output, prop.getValue());
+		output.writeBoolean(prop.isReadOnly());
+	}
+	
+	protected Property readProperty (DataInput input)
+		throws IOException
+	{
+		return new Property(StreamUtil.readString(input), StreamUtil.readString(input), input.readBoolean());
+	}
+	
+	protected void writeSkeleton (DataOutput output,
+		GenericSkeleton skeleton,
+		IResource self)
+		throws IOException
+	{
+		if ( skeleton == null ) {
+			output.writeInt(-1);
+			return;
+		}
+		List<GenericSkeletonPart> parts = skeleton.getParts();
+		output.writeInt(parts.size());
+		for ( GenericSkeletonPart part : parts ) {
+			StreamUtil.writeString(output, part.toString());
+			output.writeByte((part.getParent() == self) ? PARENT_SELF : PARENT_NONE);
+			StreamUtil.writeString(output, (part.getLocale() == null) ? null : part.getLocale().toString());
+		}
+	}
+	
+	protected GenericSkeleton readSkeleton (DataInput input,
+		IResource self)
+		throws IOException
+	{
+		int count = input.readInt();
+		if ( count < 0 ) return null;
+		GenericSkeleton skeleton = new GenericSkeleton();
+		List<GenericSkeletonPart> parts = skeleton.getParts();
+		for ( int i=0; i<count; i++ ) {
+			String data = StreamUtil.readString(input);
+			IResource parent = (input.readByte() == PARENT_SELF) ? self : null;
+			String locId = StreamUtil.readString(input);
+			parts.add(new GenericSkeletonPart(data, parent, (locId == null) ? null : new LocaleId(locId, false)));
+		}
+		return skeleton;
+	}
+	
+	private void writeContainer (DataOutput output,
+		TextContainer tc)
+		throws IOException
+	{
+		output.writeBoolean(tc.hasBeenSegmented());
+		output.writeInt(tc.getPropertyNames().size());
+		for ( String name : tc.getPropertyNames() ) {
+			writeProperty(output, tc.getProperty(name));
+		}
+		output.writeInt(tc.count());
+		for ( TextPart part : tc ) {
+			if ( part.isSegment() ) {
+				output.writeBoolean(true);
+				StreamUtil.writeString(output, ((Segment)part).id);
+			}
+			else {
+				output.writeBoolean(false);
+			}
+			StreamUtil.writeString(output, part.text.getCodedText());
+			Code.writeCodes(output, part.text.getCodes(), false);
+			output.writeInt(part.text.lastCodeID);
+		}
+	}
+	
+	private TextContainer readContainer (DataInput input)
+		throws IOException
+	{
+		boolean segmented = input.readBoolean();
+		int count = input.readInt();
+		Property[] props = new Property[count];
+		for ( int i=0; i<count; i++ ) {
+			props[i] = readProperty(input);
+		}
+		count = input.readInt();
+		TextPart[] parts = new TextPart[count];
+		for ( int i=0; i<count; i++ ) {
+			boolean isSegment = input.readBoolean();
+			String segId = (isSegment ? StreamUtil.readString(input) : null);
+			TextFragment tf = new TextFragment(StreamUtil.readString(input), Code.readCodes(input));
+			tf.lastCodeID = input.readInt();
+			parts[i] = (isSegment ? new Segment(segId, tf) : new TextPart(tf));
+		}
+		TextContainer tc = new TextContainer(parts);
+		tc.setHasBeenSegmentedFlag(segmented);
+		for ( Property prop : props ) {
+			tc.setProperty(prop);
+		}
+		return tc;
+	}
+
+}
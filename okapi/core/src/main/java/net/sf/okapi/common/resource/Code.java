@@ -20,15 +20,27 @@
 
 package net.sf.okapi.common.resource;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import net.sf.okapi.common.StreamUtil;
+import net.sf.okapi.common.exceptions.OkapiIOException;
 
 import net.sf.okapi.common.resource.TextFragment.TagType;
 
 /**
  * Represents an abstracted in-line code used in a TextFragment object.
  * For example, a <code>&lt;b></code> tag in an HTML paragraph.
+ * <p>The outer data and the annotations are only allocated when they are set.
  */
 public class Code {
 
@@ -75,6 +87,11 @@ public class Code {
 	 */
 	private static final int DATA_DEFAULT_SIZE = 10;
 	
+	/**
+	 * Version of the binary storage format.
+	 */
+	private static final int BINARY_VERSION = 1;
+	
 	/** Initial capacity for creating annotations maps.
 	 * Keeping it small to save space.
 	 */
@@ -111,6 +128,7 @@ public class Code {
 	/**
 	 * Native data for this code.
 	 * This is used to generate the text output, except if outerData is not null.
+	 * It MUST NEVER be null.
 	 */
 	protected StringBuilder data;
 	/**
@@ -155,14 +173,141 @@ public class Code {
 	{
 		StringBuilder tmp = new StringBuilder();
 		for ( Code code : list ) {
-			tmp.append(String.format("%s\u009C%d\u009C%s\u009C%s\u009C%d\u009C%s\u009C%s\u009D",
-				code.tagType, code.id, code.type, code.data, code.flag,
-				stripOuterData ? null : code.outerData,
-				annotationsToString(code.annotations)));
+			tmp.append(code.tagType).append('\u009C');
+			tmp.append(code.id).append('\u009C');
+			tmp.append(code.type).append('\u009C');
+			tmp.append(code.data).append('\u009C');
+			tmp.append(code.flag).append('\u009C');
+			tmp.append(stripOuterData ? null : code.outerData).append('\u009C');
+			tmp.append(annotationsToString(code.annotations)).append('\u009D');
 		}
 		return tmp.toString();
 	}
 	
+	/**
+	 * Helper method to convert a list of codes into a byte array.
+	 * This binary form is more compact and faster to read than the string form.
+	 * @param list the list of the codes to store.
+	 * @param stripOuterData true to remove the outerData in the storage array, false to keep it.
+	 * @return the byte array with all the codes.
+	 * @see #bytesToCodes(byte[])
+	 * @see #writeCodes(DataOutput, List, boolean)
+	 */
+	public static byte[] codesToBytes (List<Code> list,
+		boolean stripOuterData)
+	{
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream dos = new DataOutputStream(bos);
+			writeCodes(dos, list, stripOuterData);
+			dos.close();
+			return bos.toByteArray();
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error while storing the codes.", e);
+		}
+	}
+	
+	/**
+	 * Helper method to convert a byte array created with {@link #codesToBytes(List, boolean)}
+	 * into a list of codes.
+	 * @param data the byte array to convert (can be null).
+	 * @return a list of the codes in the byte array.
+	 * @see #codesToBytes(List, boolean)
+	 */
+	public static List<Code> bytesToCodes (byte[] data) {
+		if ( data == null ) return new ArrayList<Code>();
+		try {
+			return readCodes(new DataInputStream(new ByteArrayInputStream(data)));
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error while reading the codes.", e);
+		}
+	}
+	
+	/**
+	 * Writes a list of codes in binary form to a given output.
+	 * @param output the output where to write.
+	 * @param list the list of the codes to write.
+	 * @param stripOuterData true to not write the outerData of the codes, false to write it.
+	 * @throws IOException if an error occurs while writing.
+	 * @see #readCodes(DataInput)
+	 */
+	public static void writeCodes (DataOutput output,
+		List<Code> list,
+		boolean stripOuterData)
+		throws IOException
+	{
+		output.writeByte(BINARY_VERSION);
+		output.writeInt(list.size());
+		for ( Code code : list ) {
+			output.writeByte((code.tagType == null) ? -1 : code.tagType.ordinal());
+			StreamUtil.writeString(output, code.type);
+			StreamUtil.writeString(output, code.data.toString());
+			output.writeInt(code.id);
+			output.writeInt(code.flag);
+			StreamUtil.writeString(output, (stripOuterData || ( code.outerData == null )) ? null : code.outerData.toString());
+			if ( code.annotations == null ) {
+				output.writeInt(-1);
+				continue;
+			}
+			output.writeInt(code.annotations.size());
+			for ( Map.Entry<String, InlineAnnotation> entry : code.annotations.entrySet() ) {
+				StreamUtil.writeString(output, entry.getKey());
+				StreamUtil.writeString(output, (entry.getValue()==null) ? null : entry.getValue().toString());
+			}
+		}
+	}
+	
+	/**
+	 * Reads a list of codes written with {@link #writeCodes(DataOutput, List, boolean)}.
+	 * @param input the input where to read.
+	 * @return the list of the codes read.
+	 * @throws IOException if an error occurs while reading.
+	 * @throws OkapiIOException if the data are not valid.
+	 * @see #writeCodes(DataOutput, List, boolean)
+	 */
+	public static List<Code> readCodes (DataInput input)
+		throws IOException
+	{
+		int version = input.readByte();
+		if ( version != BINARY_VERSION ) {
+			throw new OkapiIOException("Unsupported version of stored codes: "+version);
+		}
+		int count = input.readInt();
+		if ( count < 0 ) {
+			throw new OkapiIOException("Invalid number of stored codes: "+count);
+		}
+		TagType[] tagTypes = TagType.values();
+		ArrayList<Code> list = new ArrayList<Code>(Math.min(count, 1024));
+		for ( int i=0; i<count; i++ ) {
+			int tagType = input.readByte();
+			if ( tagType >= tagTypes.length ) {
+				throw new OkapiIOException("Invalid tag type of stored code: "+tagType);
+			}
+			Code code = new Code((tagType < 0) ? null : tagTypes[tagType], StreamUtil.readString(input), StreamUtil.readString(input));
+			code.id = input.readInt();
+			code.flag = input.readInt();
+			code.setOuterData(StreamUtil.readString(input));
+			int annCount = input.readInt();
+			if ( annCount > -1 ) {
+				code.annotations = new LinkedHashMap<String, InlineAnnotation>(Math.max(annCount, ANNOTATIONS_INITCAP));
+				for ( int j=0; j<annCount; j++ ) {
+					String key = StreamUtil.readString(input);
+					String value = StreamUtil.readString(input);
+					InlineAnnotation annotation = null;
+					if ( value != null ) {
+						annotation = new InlineAnnotation();
+						annotation.fromString(value);
+					}
+					code.annotations.put(key, annotation);
+				}
+			}
+			list.add(code);
+		}
+		return list;
+	}
+	
 	/**
 	 * Indicates if two codes-storing strings have the same codes or not.
 	 * @param codes1 the first codes-storing string.
@@ -178,12 +323,7 @@ public class Code {
 			code1 = codes1.get(i);
 			code2 = codes2.get(i);
 			if ( code1.id != code2.id ) return false;
-			if ( code1.data != null ) {
-				if ( !code1.data.equals(code2.data) ) return false;
-			}
-			else {
-				if ( code1.data != null ) return false;
-			}
+			if ( !code1.data.toString().equals(code2.data.toString()) ) return false;
 		}
 		return true;
 	}
@@ -244,27 +384,35 @@ public class Code {
 	 */
 	public static List<Code> stringToCodes (String data) {
 		ArrayList<Code> list = new ArrayList<Code>();
-		if ( data != null ) {
-			String[] tmpCodes = data.split("\u009D");
-			for ( String tmp : tmpCodes ) {
-				if ( tmp.length() == 0 ) continue;
-				String[] tmpFields = tmp.split("\u009C");
-				Code code = new Code(TagType.valueOf(tmpFields[0]), tmpFields[2], tmpFields[3]);
-				code.id = Integer.valueOf(tmpFields[1]);
-				code.flag = Integer.valueOf(tmpFields[4]);
-				if ( !tmpFields[5].equals("null") ) {
-					if (code.outerData == null) {
-						code.outerData = new StringBuilder(DATA_DEFAULT_SIZE);
-					}
-					code.outerData.setLength(0);
-					code.outerData.append(tmpFields[5]);
+		if ( data == null ) return list;
+		// Scan the fields directly rather than splitting the string
+		String[] fields = new String[7];
+		int start = 0;
+		int end;
+		while ( start < data.length() ) {
+			end = data.indexOf('\u009D', start);
+			if ( end == -1 ) end = data.length();
+			if ( end > start ) {
+				int count = 0;
+				int pos = start;
+				while (( pos <= end ) && ( count < fields.length )) {
+					int next = data.indexOf('\u009C', pos);
+					if (( next == -1 ) || ( next > end )) next = end;
+					fields[count++] = data.substring(pos, next);
+					pos = next+1;
+				}
+				Code code = new Code(TagType.valueOf(fields[0]), fields[2], fields[3]);
+				code.id = Integer.parseInt(fields[1]);
+				code.flag = Integer.parseInt(fields[4]);
+				if ( !fields[5].equals("null") ) {
+					code.setOuterData(fields[5]);
 				}
-				if ( tmpFields.length > 6 ) {
-					code.annotations = stringToAnnotations(tmpFields[6]);
+				if ( count > 6 ) {
+					code.annotations = stringToAnnotations(fields[6]);
 				}
-				else code.annotations = null;
 				list.add(code);
 			}
+			start = end+1;
 		}
 		return list;
 	}
@@ -308,27 +456,12 @@ public class Code {
 		else this.type = type;
 		
 		// Initialize data
-		this.data = new StringBuilder(DATA_DEFAULT_SIZE);		
-	
+		this.data = new StringBuilder(DATA_DEFAULT_SIZE);
+		
 		// Use "" for null data
-		if ( data == null ) {
-			data = "";
+		if ( data != null ) {
+			this.data.append(data);
 		}
-		this.data.append(data);
-	}
-	
-	/**
-	 * Creates a new code. By default codes can be both deleted and cloned.
-	 * @param tagType the tag type.
-	 * @param type the type of code (e.g. the name of the tag). The type must be
-	 * exactly the same between the opening and closing codes.
-	 * @param data the content of the code.
-	 */
-	private Code (TagType tagType,
-		String type,
-		StringBuilder data)
-	{
-		this(tagType, type, (data==null ? "" : data.toString()));
 	}
 	
 	/**
@@ -444,14 +577,14 @@ public class Code {
 	 */
 	@Override
 	public Code clone () {
-		Code newCode = new Code(tagType, type, data);
+		Code newCode = new Code(tagType, type, data.toString());
 		newCode.id = id;
 		newCode.outerData = ((outerData == null) ? null : new StringBuilder(outerData));
 		newCode.flag = flag;
 		// Clone the annotations
 		if ( annotations != null ) {
 			InlineAnnotation annot;
-			newCode.annotations = new LinkedHashMap<String, InlineAnnotation>();
+			newCode.annotations = new LinkedHashMap<String, InlineAnnotation>(Math.max(annotations.size(), ANNOTATIONS_INITCAP));
 			for ( String type : annotations.keySet() ) {
 				annot = annotations.get(type);
 				if ( annot == null ) newCode.annotations.put(type, null);
@@ -26,6 +26,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import net.sf.okapi.common.Event;
+import net.sf.okapi.common.IEventStore;
 import net.sf.okapi.common.IResource;
 import net.sf.okapi.common.ISkeleton;
 import net.sf.okapi.common.annotation.Annotations;
@@ -42,6 +43,7 @@ public class MultiEvent implements IResource, Iterable<Event> {
 	private String id;
 	private boolean propagateAsSingleEvent = false;
 	private List<Event> events;
+	private IEventStore store;
 
 	/**
 	 * Creates a new empty MultiEvent object.
@@ -60,20 +62,35 @@ public class MultiEvent implements IResource, Iterable<Event> {
 		this.events = events;;
 	}
 
+	/**
+	 * Creates a new MultiEvent object for the events of a given store.
+	 * The events are read from the store only when this object is iterated.
+	 * @param store the store holding the events.
+	 */
+	public MultiEvent (IEventStore store) {
+		propagateAsSingleEvent = false;
+		this.store = store;
+	}
+
 	/**
 	 * Adds an event to this object.
 	 * @param event the event to add.
 	 */
 	public void addEvent (Event event) {
-		events.add(event);
+		if ( store != null ) store.add(event);
+		else events.add(event);
 	}
 	
 	/**
 	 * Inserts an event in this object at the specified position.
 	 * @param event the event to insert.
 	 * @param index index at which the event is to be inserted.
+	 * @throws OkapiNotImplementedException if this object was created with an {@link IEventStore}.
 	 */
 	public void addEvent (Event event, int index) {
+		if ( store != null ) {
+			throw new OkapiNotImplementedException("Events cannot be inserted in a MultiEvent created from a store.");
+		}
 		events.add(index, event);
 	}
 
@@ -128,6 +145,7 @@ public class MultiEvent implements IResource, Iterable<Event> {
 	 */
 	@Override
 	public Iterator<Event> iterator() {
+		if ( store != null ) return store.iterator();
 		return events.iterator();
 	}
 
@@ -161,6 +179,7 @@ public class MultiEvent implements IResource, Iterable<Event> {
 	 * @return number of events
 	 */
 	public int size() {
+		if ( store != null ) return store.size();
 		return events.size();
 	}
 }
@@ -823,7 +823,8 @@ public class TextFragment implements Appendable, CharSequence, Comparable<Object
 	 * list is returned.
 	 */
 	public List<Code> getCodes () {
-		if ( codes == null ) codes = new ArrayList<Code>();
+		// Do not allocate a list for the fragments without codes
+		if ( codes == null ) return Collections.emptyList();
 		if ( !isBalanced ) balanceMarkers();
 		return Collections.unmodifiableList(codes);
 	}
@@ -1102,8 +1103,9 @@ public class TextFragment implements Appendable, CharSequence, Comparable<Object
 			} // Else: OK to delete all codes
 			codes = null;
 		}
+		else if ( newCodes.isEmpty() ) codes = null;
 		else codes = new ArrayList<Code>(newCodes);
-		if (( codes == null ) || ( codes.size() == 0 )) {
+		if ( codes == null ) {
 			lastCodeID = 0;
 			return; // No codes, all done.
 		}
@@ -20,6 +20,7 @@
 
 package net.sf.okapi.common.resource;
 
+import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -507,6 +508,51 @@ public class TextUnitUtil {
 		return textFragment.getCodedText();
 	}
 
+	/**
+	 * Gets a normalized form of the coded text of a given text fragment, to use as a key when
+	 * comparing or storing fragments. The text is in Unicode NFC form, its line breaks are
+	 * normalized to '\n', and the code markers are re-numbered in their order of appearance.
+	 * Fragments that differ only by these aspects get the same normalized text. The data of the
+	 * codes is not part of the result.
+	 * 
+	 * @param textFragment
+	 *            the given text fragment object (can be null).
+	 * @return the normalized coded text of the given fragment.
+	 */
+	public static String getNormalizedCodedText (TextFragment textFragment) {
+		if (textFragment == null)
+			return "";
+		String codedText = textFragment.getCodedText();
+		StringBuilder tmp = new StringBuilder(codedText.length());
+		int[] newIndices = null;
+		int count = 0;
+		for (int i = 0; i < codedText.length(); i++) {
+			char ch = codedText.charAt(i);
+			if (TextFragment.isMarker(ch) && (i + 1 < codedText.length())) {
+				if (newIndices == null) {
+					newIndices = new int[textFragment.getCodes().size()];
+				}
+				int index = TextFragment.toIndex(codedText.charAt(++i));
+				if ((index < 0) || (index >= newIndices.length)) {
+					tmp.append(ch).append(codedText.charAt(i));
+					continue;
+				}
+				// Indices are stored plus one so zero means not seen yet
+				if (newIndices[index] == 0) {
+					newIndices[index] = ++count;
+				}
+				tmp.append(ch).append(TextFragment.toChar(newIndices[index] - 1));
+			} else if (ch == '\r') {
+				tmp.append('\n');
+				if ((i + 1 < codedText.length()) && (codedText.charAt(i + 1) == '\n'))
+					i++;
+			} else {
+				tmp.append(ch);
+			}
+		}
+		return Normalizer.normalize(tmp, Normalizer.Form.NFC);
+	}
+
 	/**
 	 * Extracts text from the given text fragment. Used to create a copy of the original string but without code
 	 * markers. The original string is not stripped of code markers, and remains intact.
@@ -0,0 +1,225 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import net.sf.okapi.common.annotation.AltTranslationsAnnotation;
+import net.sf.okapi.common.resource.BinaryEventCodec;
+import net.sf.okapi.common.resource.Code;
+import net.sf.okapi.common.resource.DocumentPart;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.MultiEvent;
+import net.sf.okapi.common.resource.Property;
+import net.sf.okapi.common.resource.StartDocument;
+import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextFragment.TagType;
+import net.sf.okapi.common.resource.TextPart;
+import net.sf.okapi.common.resource.TextUnit;
+import net.sf.okapi.common.skeleton.GenericSkeleton;
+import net.sf.okapi.common.skeleton.GenericSkeletonPart;
+
+import org.junit.Test;
+
+public class EventStoreTest {
+
+	private final LocaleId locFR = LocaleId.FRENCH;
+
+	@Test
+	public void testInMemory () {
+		EventStore store = new EventStore();
+		List<Event> events = createEvents();
+		for ( Event event : events ) {
+			store.add(event);
+		}
+		assertEquals(events.size(), store.size());
+		assertEquals(events.size(), store.getInMemoryCount());
+		int i = 0;
+		for ( Event event : store ) {
+			assertSame(events.get(i++), event);
+		}
+		store.close();
+		assertEquals(0, store.size());
+	}
+	
+	@Test
+	public void testSpillToDisk () {
+		EventStore store = new EventStore(1, new BinaryEventCodec());
+		List<Event> events = createEvents();
+		for ( Event event : events ) {
+			store.add(event);
+		}
+		assertEquals(events.size(), store.size());
+		// START_DOCUMENT, annotated text unit and END_DOCUMENT
+		assertEquals(3, store.getInMemoryCount());
+		
+		// Replay twice
+		for ( int pass=0; pass<2; pass++ ) {
+			Iterator<Event> iter = store.iterator();
+			assertSame(events.get(0), iter.next());
+			
+			// Text unit
+			Event event = iter.next();
+			assertNotSame(events.get(1), event);
+			ITextUnit tu = event.getTextUnit();
+			ITextUnit oriTu = events.get(1).getTextUnit();
+			assertEquals("tu1", tu.getId());
+			assertEquals("name1", tu.getName());
+			assertFalse(tu.preserveWhitespaces());
+			assertEquals("pv1", tu.getProperty("p1").getValue());
+			assertEquals("spv1", tu.getSourceProperty("sp1").getValue());
+			assertTrue(tu.getSource().hasBeenSegmented());
+			assertEquals(3, tu.getSource().count());
+			assertEquals("s2", tu.getSource().getSegments().get(1).id);
+			assertEquals(oriTu.getSource().getFirstContent().getCodedText(),
+				tu.getSource().getFirstContent().getCodedText());
+			assertEquals(Code.codesToString(oriTu.getSource().getFirstContent().getCodes()),
+				Code.codesToString(tu.getSource().getFirstContent().getCodes()));
+			assertEquals(oriTu.getSource().getFirstContent().getLastCodeId(),
+				tu.getSource().getFirstContent().getLastCodeId());
+			assertEquals("t1t2", tu.getTarget(locFR).toString());
+			assertEquals(2, tu.getTarget(locFR).getSegments().count());
+			GenericSkeleton skel = (GenericSkeleton)tu.getSkeleton();
+			assertEquals(3, skel.getParts().size());
+			assertSame(tu, skel.getParts().get(1).getParent());
+			assertEquals(locFR, skel.getParts().get(1).getLocale());
+			assertEquals(skel.toString(), oriTu.getSkeleton().toString());
+			
+			// Annotated text unit: kept in memory
+			assertSame(events.get(2), iter.next());
+			
+			// Document part
+			event = iter.next();
+			assertNotSame(events.get(3), event);
+			DocumentPart dp = (DocumentPart)event.getResource();
+			assertEquals("dp1", dp.getId());
+			assertEquals("v1", dp.getProperty("a1").getValue());
+			assertFalse(dp.getProperty("a1").isReadOnly());
+			assertEquals("<p a1=\"[#$$self$@%a1]\">", dp.getSkeleton().toString());
+			assertSame(dp, ((GenericSkeleton)dp.getSkeleton()).getParts().get(1).getParent());
+			
+			assertSame(events.get(4), iter.next());
+			assertFalse(iter.hasNext());
+		}
+		
+		// The store can be wrapped into a MultiEvent
+		MultiEvent me = new MultiEvent(store);
+		assertEquals(events.size(), me.size());
+		int count = 0;
+		for ( @SuppressWarnings("unused") Event event : me ) {
+			count++;
+		}
+		assertEquals(events.size(), count);
+		store.close();
+		assertEquals(0, store.size());
+	}
+	
+	@Test
+	public void testMemoryBudget () {
+		EventStore store = new EventStore(20000, new BinaryEventCodec());
+		for ( int i=0; i<10; i++ ) {
+			store.add(new Event(EventType.TEXT_UNIT, new TextUnit("s"+i, "Short text "+i)));
+		}
+		// The small text units fit in the budget
+		assertEquals(10, store.getInMemoryCount());
+		
+		// A large text unit does not fit
+		StringBuilder tmp = new StringBuilder();
+		for ( int i=0; i<1000; i++ ) {
+			tmp.append("Long text. ");
+		}
+		store.add(new Event(EventType.TEXT_UNIT, new TextUnit("l1", tmp.toString())));
+		assertEquals(10, store.getInMemoryCount());
+		assertTrue(store.getInMemorySize() <= 20000);
+		// But a small one still does
+		store.add(new Event(EventType.TEXT_UNIT, new TextUnit("s10", "Short text 10")));
+		assertEquals(11, store.getInMemoryCount());
+		
+		// The order is kept
+		int i = 0;
+		for ( Event event : store ) {
+			if ( i == 10 ) {
+				assertEquals("l1", event.getTextUnit().getId());
+				assertEquals(tmp.toString(), event.getTextUnit().getSource().toString());
+			}
+			else {
+				assertEquals("s"+(i < 10 ? i : 10), event.getTextUnit().getId());
+			}
+			i++;
+		}
+		assertEquals(12, i);
+		store.close();
+	}
+	
+	private List<Event> createEvents () {
+		ArrayList<Event> list = new ArrayList<Event>();
+		list.add(new Event(EventType.START_DOCUMENT, new StartDocument("sd1")));
+
+		TextUnit tu = new TextUnit("tu1");
+		tu.setName("name1");
+		tu.setPreserveWhitespaces(false);
+		tu.setProperty(new Property("p1", "pv1"));
+		TextFragment tf = new TextFragment("a ");
+		tf.append(TagType.OPENING, "b", "<b>");
+		tf.append("bold");
+		tf.append(TagType.CLOSING, "b", "</b>");
+		tf.append(TagType.PLACEHOLDER, "br", "<br/>");
+		TextContainer tc = new TextContainer(tf);
+		tc.getSegments().append(new TextFragment("seg2"));
+		tc.append(new TextPart(" "));
+		tc.getSegments().get(1).id = "s2";
+		tu.setSource(tc);
+		tu.setSourceProperty(new Property("sp1", "spv1"));
+		TextContainer trg = new TextContainer("t1");
+		trg.getSegments().append(new TextFragment("t2"));
+		tu.setTarget(locFR, trg);
+		GenericSkeleton skel = new GenericSkeleton("<p>");
+		skel.addContentPlaceholder(tu, locFR);
+		skel.add("</p>");
+		tu.setSkeleton(skel);
+		list.add(new Event(EventType.TEXT_UNIT, tu));
+
+		tu = new TextUnit("tu2", "text");
+		tu.getSource().setAnnotation(new AltTranslationsAnnotation());
+		list.add(new Event(EventType.TEXT_UNIT, tu));
+
+		DocumentPart dp = new DocumentPart("dp1", false);
+		dp.setProperty(new Property("a1", "v1", false));
+		skel = new GenericSkeleton("<p a1=\"");
+		skel.addValuePlaceholder(dp, "a1", null);
+		skel.add("\">");
+		dp.setSkeleton(skel);
+		list.add(new Event(EventType.DOCUMENT_PART, dp));
+		
+		list.add(new Event(EventType.END_DOCUMENT));
+		return list;
+	}
+
+}
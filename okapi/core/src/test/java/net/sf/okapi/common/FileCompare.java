@@ -185,8 +185,10 @@ public class FileCompare {
 		try {
 			int ored, gred;
 			while (( ois.available() > 0 ) && ( gis.available() > 0 )) {
-				ored = ois.read(obuf);
-				gred = gis.read(gbuf);
+				// Fill the buffers: the two streams may return data in chunks of different sizes
+				// (e.g. stored and deflated zip entries)
+				ored = fillBuffer(ois, obuf);
+				gred = fillBuffer(gis, gbuf);
 				if ( ored != gred ) {
 					System.err.println("Size difference in files.");
 					return false;
@@ -231,4 +233,17 @@ public class FileCompare {
 		}
 	}
 
+	private int fillBuffer (InputStream is,
+		byte[] buf)
+		throws IOException
+	{
+		int total = 0;
+		while ( total < buf.length ) {
+			int n = is.read(buf, total, buf.length-total);
+			if ( n < 0 ) break;
+			total += n;
+		}
+		return (total == 0) ? -1 : total;
+	}
+
 }
@@ -0,0 +1,267 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common.filters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.annotation.AltTranslationsAnnotation;
+import net.sf.okapi.common.encoder.EncoderManager;
+import net.sf.okapi.common.filterwriter.GenericFilterWriter;
+import net.sf.okapi.common.resource.DocumentPart;
+import net.sf.okapi.common.resource.Ending;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.Property;
+import net.sf.okapi.common.resource.RawDocument;
+import net.sf.okapi.common.resource.StartDocument;
+import net.sf.okapi.common.resource.StartGroup;
+import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.common.resource.TextFragment.TagType;
+import net.sf.okapi.common.resource.TextUnit;
+import net.sf.okapi.common.skeleton.GenericSkeleton;
+import net.sf.okapi.common.skeleton.GenericSkeletonWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FilterEventCacheTest {
+
+	private final LocaleId locEN = LocaleId.ENGLISH;
+	private final LocaleId locFR = LocaleId.FRENCH;
+	private File dir;
+	private FilterEventCache cache;
+
+	@Before
+	public void setUp () {
+		dir = new File(System.getProperty("java.io.tmpdir"), "okapiFilterEventCacheTest");
+		deleteDirectory();
+		cache = new FilterEventCache(dir.getPath());
+	}
+	
+	@After
+	public void tearDown () {
+		deleteDirectory();
+	}
+	
+	@Test
+	public void testRecordAndReplay () {
+		List<Event> events = createEvents();
+		String expected = write(events.iterator());
+
+		FilterEventCache.Recorder recorder = cache.createRecorder("key1");
+		for ( Event event : events ) {
+			recorder.add(event);
+		}
+		assertTrue(recorder.isRecording());
+		assertFalse(cache.contains("key1"));
+		recorder.close();
+		assertTrue(cache.contains("key1"));
+		
+		DummyFilter filter = new DummyFilter();
+		filter.setParameters(new DummyParameters());
+		FilterEventCache.Player player = cache.open("key1", filter);
+		assertNotNull(player);
+		List<Event> replayed = new ArrayList<Event>();
+		while ( player.hasNext() ) {
+			replayed.add(player.next());
+		}
+		assertEquals(events.size(), replayed.size());
+		for ( int i=0; i<events.size(); i++ ) {
+			assertEquals(events.get(i).getEventType(), replayed.get(i).getEventType());
+			assertEquals(events.get(i).getResource().getId(), replayed.get(i).getResource().getId());
+		}
+		StartDocument sd = replayed.get(0).getStartDocument();
+		assertEquals("UTF-8", sd.getEncoding());
+		assertTrue(sd.hasUTF8BOM());
+		assertEquals("\r\n", sd.getLineBreak());
+		assertEquals(locEN, sd.getLocale());
+		assertSame(filter.getParameters(), sd.getFilterParameters());
+		assertNotNull(sd.getFilterWriter());
+		StartGroup group = (StartGroup)replayed.get(1).getResource();
+		assertTrue(group.isReferent());
+		assertEquals("v1", ((DocumentPart)replayed.get(4).getResource()).getProperty("a1").getValue());
+		
+		// The output is the same as with the original events
+		assertTrue(expected.contains("<p a1=\"v1\"><g>Text in group</g>"));
+		assertEquals(expected, write(replayed.iterator()));
+	}
+
+	@Test
+	public void testDocumentNotCached () {
+		List<Event> events = createEvents();
+		events.get(5).getTextUnit().setAnnotation(new AltTranslationsAnnotation());
+		FilterEventCache.Recorder recorder = cache.createRecorder("key2");
+		for ( Event event : events ) {
+			recorder.add(event);
+		}
+		assertFalse(recorder.isRecording());
+		recorder.close();
+		assertFalse(cache.contains("key2"));
+		assertNull(cache.open("key2", new DummyFilter()));
+		assertEquals(0, dir.list().length);
+	}
+
+	@Test
+	public void testIncompleteDocumentNotCached () {
+		List<Event> events = createEvents();
+		FilterEventCache.Recorder recorder = cache.createRecorder("key3");
+		for ( int i=0; i<events.size()-1; i++ ) {
+			recorder.add(events.get(i));
+		}
+		recorder.close();
+		assertFalse(cache.contains("key3"));
+		assertEquals(0, dir.list().length);
+	}
+
+	@Test
+	public void testKey ()
+		throws IOException
+	{
+		dir.mkdirs();
+		File file = new File(dir, "input.txt");
+		writeFile(file, "Text 1");
+		RawDocument rd = new RawDocument(file.toURI(), "UTF-8", locEN, locFR);
+		rd.setFilterConfigId("okf_dummy");
+		String key = FilterEventCache.getKey(rd, null);
+		assertNotNull(key);
+		assertEquals(key, FilterEventCache.getKey(rd, null));
+		
+		// Same content, other configuration
+		rd.setFilterConfigId("okf_dummy@other");
+		assertFalse(key.equals(FilterEventCache.getKey(rd, null)));
+		rd.setFilterConfigId("okf_dummy");
+		// Other content
+		writeFile(file, "Text 2");
+		assertFalse(key.equals(FilterEventCache.getKey(rd, null)));
+		
+		// No key for non-file documents
+		assertNull(FilterEventCache.getKey(new RawDocument("Text", locEN), null));
+	}
+
+	private List<Event> createEvents () {
+		List<Event> list = new ArrayList<Event>();
+		
+		StartDocument sd = new StartDocument("sd1");
+		sd.setEncoding("UTF-8", true);
+		sd.setLineBreak("\r\n");
+		sd.setLocale(locEN);
+		sd.setMultilingual(false);
+		sd.setMimeType("text/xml");
+		sd.setFilterParameters(new DummyParameters());
+		sd.setSkeleton(new GenericSkeleton("<doc>\r\n"));
+		list.add(new Event(EventType.START_DOCUMENT, sd));
+
+		// Referent group
+		StartGroup sg = new StartGroup("sd1", "g1", true);
+		sg.setSkeleton(new GenericSkeleton("<g>"));
+		list.add(new Event(EventType.START_GROUP, sg));
+		ITextUnit tu = new TextUnit("tu1", "Text in group");
+		GenericSkeleton skel = new GenericSkeleton();
+		skel.addContentPlaceholder(tu);
+		tu.setSkeleton(skel);
+		list.add(new Event(EventType.TEXT_UNIT, tu));
+		Ending ending = new Ending("g1e");
+		ending.setSkeleton(new GenericSkeleton("</g>"));
+		list.add(new Event(EventType.END_GROUP, ending));
+		
+		// Document part referring to the group
+		DocumentPart dp = new DocumentPart("dp1", false);
+		dp.setProperty(new Property("a1", "v1", false));
+		skel = new GenericSkeleton("<p a1=\"");
+		skel.addValuePlaceholder(dp, "a1", LocaleId.EMPTY);
+		skel.append("\">");
+		skel.addReference(sg);
+		skel.append("\r\n");
+		dp.setSkeleton(skel);
+		list.add(new Event(EventType.DOCUMENT_PART, dp));
+		
+		tu = new TextUnit("tu2");
+		tu.getSource().getFirstContent().append("Text with ");
+		tu.getSource().getFirstContent().append(TagType.OPENING, "b", "<b>");
+		tu.getSource().getFirstContent().append("code");
+		tu.getSource().getFirstContent().append(TagType.CLOSING, "b", "</b>");
+		tu.setTarget(locFR, new TextContainer("Translated text"));
+		skel = new GenericSkeleton("<t>");
+		skel.addContentPlaceholder(tu, locFR);
+		skel.append("</t>\r\n");
+		tu.setSkeleton(skel);
+		list.add(new Event(EventType.TEXT_UNIT, tu));
+		
+		ending = new Ending("ed1");
+		ending.setSkeleton(new GenericSkeleton("</doc>\r\n"));
+		list.add(new Event(EventType.END_DOCUMENT, ending));
+		return list;
+	}
+
+	private String write (Iterator<Event> events) {
+		GenericFilterWriter writer = new GenericFilterWriter(new GenericSkeletonWriter(), new EncoderManager());
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writer.setOptions(locFR, "UTF-8");
+		writer.setOutput(output);
+		while ( events.hasNext() ) {
+			writer.handleEvent(events.next());
+		}
+		writer.close();
+		try {
+			return new String(output.toByteArray(), "UTF-8");
+		}
+		catch ( UnsupportedEncodingException e ) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private void writeFile (File file,
+		String text)
+		throws IOException
+	{
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		writer.write(text);
+		writer.close();
+	}
+	
+	private void deleteDirectory () {
+		if ( !dir.exists() ) return;
+		for ( File file : dir.listFiles() ) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+}
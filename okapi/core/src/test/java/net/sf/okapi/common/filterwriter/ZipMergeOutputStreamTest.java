@@ -0,0 +1,153 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common.filterwriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ZipMergeOutputStreamTest {
+
+	private File original;
+	private File merged;
+	
+	@Before
+	public void setUp () throws IOException {
+		original = File.createTempFile("zmosOrig", ".zip");
+		merged = File.createTempFile("zmosMerged", ".zip");
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(original));
+		zos.putNextEntry(new ZipEntry("content.xml"));
+		zos.write(getData("<doc>text</doc>", 10));
+		zos.closeEntry();
+		zos.putNextEntry(new ZipEntry("images/pic1.png"));
+		zos.write(getData("binary-data-", 500));
+		zos.closeEntry();
+		// Stored entry: needs the sizes and CRC up front
+		byte[] stored = getData("mimetype", 1);
+		ZipEntry entry = new ZipEntry("mimetype");
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(stored.length);
+		CRC32 crc = new CRC32();
+		crc.update(stored);
+		entry.setCrc(crc.getValue());
+		zos.putNextEntry(entry);
+		zos.write(stored);
+		zos.closeEntry();
+		zos.close();
+	}
+	
+	@After
+	public void tearDown () {
+		original.delete();
+		merged.delete();
+	}
+	
+	@Test
+	public void testMergeRawAndNewEntries () throws IOException {
+		ZipFile zipFile = new ZipFile(original);
+		ZipMergeOutputStream zmos = new ZipMergeOutputStream(new FileOutputStream(merged));
+		zmos.copyEntry(zipFile, zipFile.getEntry("mimetype"));
+		zmos.putNextEntry(new ZipEntry("content.xml"));
+		zmos.write(getData("<doc>texte</doc>", 10));
+		zmos.copyEntry(zipFile, zipFile.getEntry("images/pic1.png"));
+		zmos.putNextEntry(new ZipEntry("\u00e9t\u00e9.xml"));
+		zmos.write(getData("<doc/>", 1));
+		zmos.close();
+		
+		// Read with random access
+		ZipFile result = new ZipFile(merged);
+		assertEquals(4, result.size());
+		assertArrayEquals(getData("mimetype", 1), read(result.getInputStream(result.getEntry("mimetype"))));
+		assertArrayEquals(getData("<doc>texte</doc>", 10), read(result.getInputStream(result.getEntry("content.xml"))));
+		assertArrayEquals(getData("binary-data-", 500), read(result.getInputStream(result.getEntry("images/pic1.png"))));
+		assertArrayEquals(getData("<doc/>", 1), read(result.getInputStream(result.getEntry("\u00e9t\u00e9.xml"))));
+		// The raw entries keep their method and compressed data
+		ZipEntry origEntry = zipFile.getEntry("images/pic1.png");
+		ZipEntry newEntry = result.getEntry("images/pic1.png");
+		assertEquals(origEntry.getCompressedSize(), newEntry.getCompressedSize());
+		assertEquals(origEntry.getCrc(), newEntry.getCrc());
+		assertEquals(ZipEntry.STORED, result.getEntry("mimetype").getMethod());
+		result.close();
+		zipFile.close();
+		
+		// Read sequentially: checks the local headers
+		ZipInputStream zis = new ZipInputStream(new FileInputStream(merged));
+		int count = 0;
+		ZipEntry entry;
+		while ( (entry = zis.getNextEntry()) != null ) {
+			read(zis);
+			assertNotNull(entry.getName());
+			count++;
+		}
+		zis.close();
+		assertEquals(4, count);
+	}
+	
+	@Test(expected=ZipException.class)
+	public void testDuplicateEntry () throws IOException {
+		ZipFile zipFile = new ZipFile(original);
+		ZipMergeOutputStream zmos = new ZipMergeOutputStream(new ByteArrayOutputStream());
+		try {
+			zmos.copyEntry(zipFile, zipFile.getEntry("content.xml"));
+			zmos.putNextEntry(new ZipEntry("content.xml"));
+		}
+		finally {
+			zmos.close();
+			zipFile.close();
+		}
+	}
+
+	private byte[] getData (String text,
+		int repeat)
+		throws IOException
+	{
+		StringBuilder tmp = new StringBuilder();
+		for ( int i=0; i<repeat; i++ ) {
+			tmp.append(text);
+		}
+		return tmp.toString().getBytes("UTF-8");
+	}
+	
+	private byte[] read (InputStream input) throws IOException {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		byte[] buf = new byte[1024];
+		int n;
+		while ( (n = input.read(buf)) > 0 ) {
+			data.write(buf, 0, n);
+		}
+		return data.toByteArray();
+	}
+	
+}
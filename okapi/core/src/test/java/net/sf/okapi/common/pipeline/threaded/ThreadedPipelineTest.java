@@ -20,6 +20,22 @@
 
 package net.sf.okapi.common.pipeline.threaded;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.pipeline.BasePipelineStep;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.TextUnit;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -34,5 +50,96 @@ public class ThreadedPipelineTest {
 	public void runPipelineAsThread() {
 	};
 
+	@Test
+	public void runParallelStepInOrder() throws InterruptedException {
+		ThreadedPipeline pipeline = new ThreadedPipeline(Executors.newCachedThreadPool(), 5);
+		pipeline.setParallelWorkerCount(4);
+		CollectingStep last = new CollectingStep();
+		pipeline.addStep(new PassThroughStep());
+		pipeline.addStep(new SlowParallelStep());
+		pipeline.addStep(last);
+		assertEquals(1, pipeline.getQueueSizes().length);
+
+		pipeline.startBatch();
+		assertEquals(3, pipeline.getQueueSizes().length);
+		for (int i = 0; i < 50; i++) {
+			pipeline.process(new Event(EventType.TEXT_UNIT, new TextUnit(String.valueOf(i), "text" + i)));
+		}
+		pipeline.endBatch();
+
+		assertEquals(true, last.done.await(30, TimeUnit.SECONDS));
+		assertEquals(50, last.ids.size());
+		for (int i = 0; i < 50; i++) {
+			assertEquals(String.valueOf(i), last.ids.get(i));
+			assertEquals("text" + i + "-done", last.texts.get(i));
+		}
+		pipeline.destroy();
+	}
+
+	private static class PassThroughStep extends BasePipelineStep {
+		public String getName() {
+			return "PassThrough";
+		}
+
+		public String getDescription() {
+			return "Description";
+		}
+	}
+
+	private static class SlowParallelStep extends BasePipelineStep implements IParallelStep {
+		private final Random random = new Random(42);
+
+		public String getName() {
+			return "SlowParallel";
+		}
+
+		public String getDescription() {
+			return "Description";
+		}
+
+		@Override
+		protected Event handleTextUnit(Event event) {
+			int delay;
+			synchronized (random) {
+				delay = random.nextInt(10);
+			}
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			ITextUnit tu = event.getTextUnit();
+			tu.getSource().getFirstContent().append("-done");
+			return event;
+		}
+	}
+
+	private static class CollectingStep extends BasePipelineStep {
+		final List<String> ids = Collections.synchronizedList(new ArrayList<String>());
+		final List<String> texts = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch done = new CountDownLatch(1);
+
+		public String getName() {
+			return "Collecting";
+		}
+
+		public String getDescription() {
+			return "Description";
+		}
+
+		@Override
+		protected Event handleTextUnit(Event event) {
+			ids.add(event.getTextUnit().getId());
+			texts.add(event.getTextUnit().getSource().toString());
+			return event;
+		}
+
+		@Override
+		protected Event handleEndBatch(Event event) {
+			done.countDown();
+			return event;
+		}
+	}
+
 	//ExecutorService e = Executors.newSingleThreadExecutor();
 }
@@ -0,0 +1,199 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.common.pipelinedriver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.pipeline.BasePipelineStep;
+import net.sf.okapi.common.pipeline.IMergeableStep;
+import net.sf.okapi.common.pipeline.IPipelineStep;
+
+import org.junit.Test;
+
+public class PipelineDriverTest {
+
+	private static final int ITEM_COUNT = 23;
+
+	@Test
+	public void testSerialBatch () {
+		ItemListStep step = runBatch(1);
+		assertEquals(ITEM_COUNT, step.endBatchCount);
+		assertEquals(expectedItems(), step.items);
+	}
+
+	@Test
+	public void testParallelBatch () {
+		ItemListStep step = runBatch(4);
+		assertEquals(ITEM_COUNT, step.endBatchCount);
+		assertEquals(expectedItems(), step.items);
+	}
+
+	@Test
+	public void testMoreThreadsThanItems () {
+		ItemListStep step = runBatch(ITEM_COUNT+5);
+		assertEquals(ITEM_COUNT, step.endBatchCount);
+		assertEquals(expectedItems(), step.items);
+	}
+
+	@Test
+	public void testNonMergeableStepRunsSerially () {
+		IPipelineDriver driver = new PipelineDriver();
+		ItemListStep step = new ItemListStep();
+		CountStep counter = new CountStep();
+		driver.addStep(step);
+		driver.addStep(counter);
+		driver.setThreadCount(4);
+		for ( int i=0; i<ITEM_COUNT; i++ ) {
+			driver.addBatchItem(URI.create("file:/item" + i), "UTF-8", null,
+				LocaleId.ENGLISH, LocaleId.FRENCH);
+		}
+		driver.processBatch();
+		assertEquals(expectedItems(), step.items);
+		assertEquals(ITEM_COUNT, counter.count);
+		assertEquals(1, counter.endBatchCount);
+	}
+
+	@Test
+	public void testStepThatCannotBeCopiedRunsSerially () {
+		ItemListStep step = runBatch(4, false);
+		assertEquals(expectedItems(), step.items);
+		// All the items were processed by the step itself
+		assertEquals(ITEM_COUNT, step.handledCount);
+	}
+
+	private ItemListStep runBatch (int threadCount) {
+		ItemListStep step = runBatch(threadCount, true);
+		if ( threadCount > 1 ) {
+			// Part of the items were processed by the copies
+			assertTrue(step.handledCount < ITEM_COUNT);
+		}
+		return step;
+	}
+
+	private ItemListStep runBatch (int threadCount,
+		boolean mergeable)
+	{
+		IPipelineDriver driver = new PipelineDriver();
+		ItemListStep step = new ItemListStep();
+		step.mergeable = mergeable;
+		driver.addStep(step);
+		driver.setThreadCount(threadCount);
+		for ( int i=0; i<ITEM_COUNT; i++ ) {
+			driver.addBatchItem(URI.create("file:/item" + i), "UTF-8", null,
+				LocaleId.ENGLISH, LocaleId.FRENCH);
+		}
+		driver.processBatch();
+		return step;
+	}
+
+	private List<String> expectedItems () {
+		List<String> list = new ArrayList<String>();
+		for ( int i=0; i<ITEM_COUNT; i++ ) {
+			list.add("file:/item" + i);
+		}
+		return list;
+	}
+
+	/**
+	 * Step recording the input of each batch item.
+	 */
+	public static class ItemListStep extends BasePipelineStep implements IMergeableStep {
+
+		List<String> items;
+		int endBatchCount = -1;
+		int handledCount; // Not merged
+		boolean mergeable = true;
+
+		public String getName () {
+			return "Item List";
+		}
+
+		public String getDescription () {
+			return "Records the input of each batch item";
+		}
+
+		@Override
+		protected Event handleStartBatch (Event event) {
+			items = new ArrayList<String>();
+			return event;
+		}
+
+		@Override
+		protected Event handleRawDocument (Event event) {
+			items.add(event.getRawDocument().getInputURI().toString());
+			handledCount++;
+			return event;
+		}
+
+		@Override
+		protected Event handleEndBatch (Event event) {
+			endBatchCount = items.size();
+			return event;
+		}
+
+		@Override
+		public void mergeBatchData (IPipelineStep copy) {
+			items.addAll(((ItemListStep)copy).items);
+		}
+
+		@Override
+		public boolean isMergeable () {
+			return mergeable;
+		}
+	}
+
+	/**
+	 * Step that cannot be merged: it counts the batch items and the END_BATCH events it gets.
+	 */
+	public static class CountStep extends BasePipelineStep {
+
+		int count;
+		int endBatchCount;
+
+		public String getName () {
+			return "Count";
+		}
+
+		public String getDescription () {
+			return "Counts the batch items";
+		}
+
+		@Override
+		protected Event handleRawDocument (Event event) {
+			count++;
+			return event;
+		}
+
+		@Override
+		protected Event handleEndBatch (Event event) {
+			endBatchCount++;
+			return event;
+		}
+	}
+
+}
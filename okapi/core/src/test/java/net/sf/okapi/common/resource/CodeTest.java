@@ -23,6 +23,8 @@ package net.sf.okapi.common.resource;
 import java.util.ArrayList;
 import java.util.List;
 
+import net.sf.okapi.common.exceptions.OkapiIOException;
+
 import net.sf.okapi.common.resource.TextFragment.TagType;
 
 import static org.junit.Assert.*;
@@ -76,6 +78,53 @@ public class CodeTest {
     	assertNotSame(c2.outerData, code.outerData);
     }
 
+    @Test
+    public void testAppendToOneCode () {
+    	Code code1 = new Code(TagType.OPENING, "bold", "<b>");
+    	Code code2 = new Code(TagType.OPENING, "bold", "<b>");
+    	code1.append("x");
+    	assertEquals("<b>x", code1.getData());
+    	assertEquals("<b>", code2.getData());
+    }
+
+    @Test
+    public void testBytes () {
+    	ArrayList<Code> codes = new ArrayList<Code>();
+    	Code code = new Code(TagType.OPENING, "bold", "<b>");
+    	code.setId(1);
+    	code.setOuterData("<bpt id='1'>&lt;b></bpt>");
+    	code.setAnnotation("protected", null);
+    	codes.add(code);
+    	codes.add(new Code(TagType.PLACEHOLDER, "break", ""));
+    	code = new Code(TagType.CLOSING, "bold", "</b>");
+    	code.setDeleteable(true);
+    	codes.add(code);
+    	
+    	List<Code> codesAfter = Code.bytesToCodes(Code.codesToBytes(codes, false));
+    	assertEquals(3, codesAfter.size());
+    	assertEquals(Code.codesToString(codes), Code.codesToString(codesAfter));
+    	code = codesAfter.get(0);
+    	assertEquals(1, code.getId());
+    	assertEquals("<bpt id='1'>&lt;b></bpt>", code.getOuterData());
+    	assertTrue(code.hasAnnotation("protected"));
+    	assertNull(code.getAnnotation("protected"));
+    	assertEquals("", codesAfter.get(1).getData());
+    	assertTrue(codesAfter.get(2).isDeleteable());
+    	
+    	codesAfter = Code.bytesToCodes(Code.codesToBytes(codes, true));
+    	assertFalse(codesAfter.get(0).hasOuterData());
+    	assertEquals(0, Code.bytesToCodes(null).size());
+    }
+
+    @Test(expected=OkapiIOException.class)
+    public void testBytesWithInvalidTagType () {
+    	ArrayList<Code> codes = new ArrayList<Code>();
+    	codes.add(new Code(TagType.OPENING, "bold", "<b>"));
+    	byte[] data = Code.codesToBytes(codes, false);
+    	data[5] = 42; // Tag type of the first code, after the version and the count
+    	Code.bytesToCodes(data);
+    }
+
     @Test
     public void testStrings () {
     	ArrayList<Code> codes = new ArrayList<Code>();
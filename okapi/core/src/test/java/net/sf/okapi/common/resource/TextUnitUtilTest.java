@@ -51,6 +51,21 @@ public class TextUnitUtilTest {
 	private GenericContent fmt = new GenericContent();
 	private LocaleId locTrg = LocaleId.fromString("trg");
 
+	@Test
+	public void testNormalizedCodedText () {
+		ArrayList<Code> codes = new ArrayList<Code>();
+		codes.add(new Code(TagType.PLACEHOLDER, "br", "<br/>"));
+		codes.add(new Code(TagType.PLACEHOLDER, "img", "<img/>"));
+		String iso = String.valueOf((char)TextFragment.MARKER_ISOLATED);
+		// Same text with the codes stored in another order
+		TextFragment tf1 = new TextFragment("A"+iso+TextFragment.toChar(1)+"B"+iso+TextFragment.toChar(0)+"C", codes);
+		TextFragment tf2 = new TextFragment("A"+iso+TextFragment.toChar(0)+"B"+iso+TextFragment.toChar(1)+"C", codes);
+		assertEquals(TextUnitUtil.getNormalizedCodedText(tf2), TextUnitUtil.getNormalizedCodedText(tf1));
+		// Line breaks and composed characters
+		assertEquals("a\nb\u00e9", TextUnitUtil.getNormalizedCodedText(new TextFragment("a\r\nbe\u0301")));
+		assertEquals("", TextUnitUtil.getNormalizedCodedText(null));
+	}
+	
 	@Test
 	public void testAdjustTargetFragment () {
 		TextFragment toTransSrc = makeFragment1();
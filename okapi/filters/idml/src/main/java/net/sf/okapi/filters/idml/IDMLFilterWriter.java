@@ -24,7 +24,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.util.ArrayList;
@@ -34,7 +33,6 @@ import java.util.Stack;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -62,6 +60,7 @@ import net.sf.okapi.common.Util;
 import net.sf.okapi.common.encoder.EncoderManager;
 import net.sf.okapi.common.exceptions.OkapiIOException;
 import net.sf.okapi.common.filterwriter.IFilterWriter;
+import net.sf.okapi.common.filterwriter.ZipMergeOutputStream;
 import net.sf.okapi.common.resource.Ending;
 import net.sf.okapi.common.resource.IReferenceable;
 import net.sf.okapi.common.resource.StartDocument;
@@ -79,9 +78,8 @@ public class IDMLFilterWriter implements IFilterWriter {
 	private String outputPath;
 	private LocaleId trgLoc;
 	private ZipFile zipOriginal;
-	private ZipOutputStream zipOutStream;
+	private ZipMergeOutputStream zipOutStream;
 	private File tempFile;
-	private byte[] buffer;
 	private Transformer xformer;
 	private ZipEntry entry;
 	private Document doc;
@@ -115,7 +113,6 @@ public class IDMLFilterWriter implements IFilterWriter {
 			// Close the output
 			zipOutStream.close();
 			zipOutStream = null;
-			buffer = null;
 
 			// If it was in a temporary file, copy it over the existing one
 			// If the IFilter.close() is called before IFilterWriter.close()
@@ -218,16 +215,13 @@ public class IDMLFilterWriter implements IFilterWriter {
 				// If it's the input file, IFilter.close() will free it before we
 				// call close() here (that is if IFilter.close() is called correctly!)
 				tempFile = File.createTempFile("idmlTmpZip", null);
-				zipOutStream = new ZipOutputStream(new FileOutputStream(tempFile.getAbsolutePath()));
+				zipOutStream = new ZipMergeOutputStream(new FileOutputStream(tempFile.getAbsolutePath()));
 			}
 			else { // Make sure the directory exists
 				Util.createDirectories(outputPath);
-				zipOutStream = new ZipOutputStream(new FileOutputStream(outputPath));
+				zipOutStream = new ZipMergeOutputStream(new FileOutputStream(outputPath));
 			}
 			
-			// Create buffer for transfer
-			buffer = new byte[2048];
-			
 			// Copy all entries of the original ZIP file into the output,
 			// except for the stories entries.
 			Enumeration<? extends ZipEntry> entries = zipOriginal.entries();
@@ -239,15 +233,8 @@ public class IDMLFilterWriter implements IFilterWriter {
 						continue; // Not yet
 					}
 				}
-				// Else: copy the entry into the output ZIP file
-				zipOutStream.putNextEntry(new ZipEntry(entry.getName()));
-				InputStream input = zipOriginal.getInputStream(entry); 
-				int len;
-				while ( (len = input.read(buffer)) > 0 ) {
-					zipOutStream.write(buffer, 0, len);
-				}
-				input.close();
-				zipOutStream.closeEntry();
+				// Else: copy the entry into the output ZIP file (without decompressing it)
+				zipOutStream.copyEntry(zipOriginal, entry);
 			}
 		}
 		catch ( IOException e ) {
@@ -263,14 +250,7 @@ public class IDMLFilterWriter implements IFilterWriter {
 					ZipEntry entry = entries.nextElement();
 					if ( storiesLeft.contains(entry.getName()) ) {
 						// Copy the entry into the output ZIP file
-						zipOutStream.putNextEntry(new ZipEntry(entry.getName()));
-						InputStream input = zipOriginal.getInputStream(entry); 
-						int len;
-						while ( (len = input.read(buffer)) > 0 ) {
-							zipOutStream.write(buffer, 0, len);
-						}
-						input.close();
-						zipOutStream.closeEntry();
+						zipOutStream.copyEntry(zipOriginal, entry);
 						storiesLeft.remove(entry.getName());
 					}
 				}
@@ -26,6 +26,7 @@ import net.sf.okapi.common.filters.FilterConfiguration;
 import net.sf.okapi.common.filters.FilterTestDriver;
 import net.sf.okapi.common.filters.InputDocument;
 import net.sf.okapi.common.filters.RoundTripComparison;
+import net.sf.okapi.common.filterwriter.IFilterWriter;
 import net.sf.okapi.common.resource.RawDocument;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.ITextUnit;
@@ -38,8 +39,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 public class IDMLFilterTest {
 
@@ -115,6 +120,50 @@ public class IDMLFilterTest {
 		assertTrue(rtc.executeCompare(filter, list, "UTF-8", locEN, locEN, "output"));
 	}
 
+	@Test
+	public void testUntouchedEntriesCopiedRaw () throws IOException {
+		File outFile = File.createTempFile("okp-idml_", ".idml");
+		IFilterWriter writer = filter.createFilterWriter();
+		ZipFile original = null;
+		ZipFile output = null;
+		try {
+			try {
+				filter.open(new RawDocument(new File(root+"Test01.idml").toURI(), "UTF-8", locEN));
+				writer.setOptions(locEN, "UTF-8");
+				writer.setOutput(outFile.getPath());
+				while ( filter.hasNext() ) {
+					writer.handleEvent(filter.next());
+				}
+			}
+			finally {
+				filter.close();
+				writer.close();
+			}
+
+			original = new ZipFile(root+"Test01.idml");
+			output = new ZipFile(outFile);
+			// The entries that are not stories keep their original compressed data
+			int count = 0;
+			Enumeration<? extends ZipEntry> entries = original.entries();
+			while ( entries.hasMoreElements() ) {
+				ZipEntry entry = entries.nextElement();
+				ZipEntry outEntry = output.getEntry(entry.getName());
+				assertNotNull(outEntry);
+				count++;
+				if ( entry.getName().startsWith("Stories/") ) continue;
+				assertEquals(entry.getName(), entry.getMethod(), outEntry.getMethod());
+				assertEquals(entry.getName(), entry.getCompressedSize(), outEntry.getCompressedSize());
+				assertEquals(entry.getName(), entry.getCrc(), outEntry.getCrc());
+			}
+			assertEquals(count, output.size());
+		}
+		finally {
+			if ( output != null ) output.close();
+			if ( original != null ) original.close();
+			outFile.delete();
+		}
+	}
+
 	private ArrayList<Event> getEvents (String path) {
 		ArrayList<Event> list = new ArrayList<Event>();
 		RawDocument rd = new RawDocument(new File(path).toURI(), "UTF-8", locEN);
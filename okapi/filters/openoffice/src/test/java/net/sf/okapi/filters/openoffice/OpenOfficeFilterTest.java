@@ -24,17 +24,24 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import net.sf.okapi.common.TestUtil;
 import net.sf.okapi.common.filters.FilterConfiguration;
 import net.sf.okapi.common.filters.FilterTestDriver;
 import net.sf.okapi.common.filters.InputDocument;
 import net.sf.okapi.common.filters.RoundTripComparison;
+import net.sf.okapi.common.filterwriter.IFilterWriter;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.resource.RawDocument;
 import net.sf.okapi.filters.openoffice.OpenOfficeFilter;
 
 import org.junit.Before;
@@ -93,4 +100,45 @@ public class OpenOfficeFilterTest {
 		assertTrue(rtc.executeCompare(filter, list, "UTF-8", locEN, locEN, ""));
 	}
 
+	@Test
+	public void testUntouchedEntriesCopiedRaw () throws IOException {
+		File outFile = File.createTempFile("okp-odt_", ".odt");
+		IFilterWriter writer = filter.createFilterWriter();
+		ZipFile original = null;
+		ZipFile output = null;
+		try {
+			try {
+				filter.open(new RawDocument(new File(root+"TestDocument02.odt").toURI(), "UTF-8", locEN));
+				writer.setOptions(locEN, "UTF-8");
+				writer.setOutput(outFile.getPath());
+				while ( filter.hasNext() ) {
+					writer.handleEvent(filter.next());
+				}
+			}
+			finally {
+				filter.close();
+				writer.close();
+			}
+			
+			original = new ZipFile(root+"TestDocument02.odt");
+			output = new ZipFile(outFile);
+			// The entries that are not extracted keep their original compressed data
+			Enumeration<? extends ZipEntry> entries = original.entries();
+			while ( entries.hasMoreElements() ) {
+				ZipEntry entry = entries.nextElement();
+				if ( entry.getName().endsWith(".xml") ) continue;
+				ZipEntry outEntry = output.getEntry(entry.getName());
+				assertNotNull(outEntry);
+				assertEquals(entry.getMethod(), outEntry.getMethod());
+				assertEquals(entry.getCompressedSize(), outEntry.getCompressedSize());
+				assertEquals(entry.getCrc(), outEntry.getCrc());
+			}
+		}
+		finally {
+			if ( output != null ) output.close();
+			if ( original != null ) original.close();
+			outFile.delete();
+		}
+	}
+
 }
@@ -53,6 +53,7 @@ public class ConditionalParameters extends BaseParameters {
 	public TreeSet<String> tsExcelExcludedColumns; // exclude if bPreferenceTranslateExcelExcludeCells 
 	public TreeSet<String> tsExcludeWordStyles; // exclude if !bPreferenceTranslateWordAllStyles
 	public int nFileType=MSWORD; // DWH 6-27-09
+	public int nThreadCount; // threads parsing Powerpoint and Excel parts ahead, 1 to parse them in sequence
 	
 	public ConditionalParameters () {
 		reset();
@@ -72,6 +73,7 @@ public class ConditionalParameters extends BaseParameters {
 		tsExcelExcludedColors = new TreeSet<String>(); // exclude if bPreferenceTranslateExcelExcludeColors
 		tsExcelExcludedColumns = new TreeSet<String>(); // exclude if bPreferenceTranslateExcelExcludeCells 
 		tsExcludeWordStyles = new TreeSet<String>(); // exclude if !bPreferenceTranslateWordAllStyles
+		nThreadCount = 1; // parse the parts in sequence
 	}
 
 	public void fromString (String data) {
@@ -88,6 +90,7 @@ public class ConditionalParameters extends BaseParameters {
 		bPreferenceTranslateWordHidden = buffer.getBoolean("bPreferenceTranslateWordHidden", bPreferenceTranslateWordHidden);
 		bPreferenceTranslateExcelExcludeColors = buffer.getBoolean("bPreferenceTranslateExcelExcludeColors", bPreferenceTranslateExcelExcludeColors);
 		bPreferenceTranslateExcelExcludeColumns = buffer.getBoolean("bPreferenceTranslateExcelExcludeColumns", bPreferenceTranslateExcelExcludeColumns);
+		nThreadCount = buffer.getInteger("nThreadCount", nThreadCount);
 
 		tsExcelExcludedColors = new TreeSet<String>();
 		siz = buffer.getInteger("tsExcelExcludedColors");
@@ -123,6 +126,7 @@ public class ConditionalParameters extends BaseParameters {
 		buffer.setBoolean("bPreferenceTranslateWordHidden", bPreferenceTranslateWordHidden);
 		buffer.setBoolean("bPreferenceTranslateExcelExcludeColors", bPreferenceTranslateExcelExcludeColors);
 		buffer.setBoolean("bPreferenceTranslateExcelExcludeColumns", bPreferenceTranslateExcelExcludeColumns);
+		buffer.setInteger("nThreadCount", nThreadCount);
 
 		if (tsExcelExcludedColors==null)
 			siz = 0;
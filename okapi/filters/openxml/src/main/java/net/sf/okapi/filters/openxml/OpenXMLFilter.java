@@ -29,9 +29,16 @@ import java.io.PipedOutputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -97,7 +104,8 @@ public class OpenXMLFilter implements IFilter {
 	private ZipEntry entry;
 	private NextAction nextAction;
 	private URI docURI;
-	private Enumeration<? extends ZipEntry> entries;
+	private List<ZipEntry> zipEntries; // all the entries, read once when the zip file is opened
+	private int nextEntry; // index of the next entry to process in zipEntries
 	private int subDocId;
 	private LinkedList<Event> queue;
 	private LocaleId srcLang;
@@ -132,6 +140,11 @@ public class OpenXMLFilter implements IFilter {
 	private YamlParameters yparams=null;
 	private String encoding="UTF-8"; // DWH 8-10-09 issue 104
 	private EncoderManager encoderManager;
+	private int threadCount = 1;
+	private ExecutorService parseExecutor;
+	private LinkedList<ZipEntry> partsToParse; // translatable parts not yet parsed ahead
+	private Map<String,Future<List<Event>>> parsedParts; // parts parsed ahead, by entry name
+	private LinkedList<Event> subDocEvents; // events of the current part if it was parsed ahead
 
 	public OpenXMLFilter () {
 		cparams = new ConditionalParameters(); // DWH 6-16-09
@@ -171,6 +184,7 @@ public class OpenXMLFilter implements IFilter {
 			tsExcelExcludedColumns = cparams.tsExcelExcludedColumns;
 			tsExcludeWordStyles = cparams.tsExcludeWordStyles;
 			nFileType = cparams.nFileType; // DWH 6-27-09
+			threadCount = cparams.nThreadCount;
 		}
 		catch(Exception e) {};
 	}
@@ -181,6 +195,7 @@ public class OpenXMLFilter implements IFilter {
 	public void close () {
 		try {
 			nextAction = NextAction.DONE;
+			stopParsingAhead();
 			if ( zipFile != null ) {
 				zipFile.close();
 				zipFile = null;
@@ -206,6 +221,7 @@ public class OpenXMLFilter implements IFilter {
 		this.nLogLevel = nLogLevel;
 	}
 	
+	
 	/**
 	 * Creates the skeleton writer for use with this filter.
 	 * Null return means implies GenericSkeletonWriter. 
@@ -512,12 +528,16 @@ public class OpenXMLFilter implements IFilter {
 		{
 			fZip = new File(docURI.getPath());
 			zipFile = new ZipFile(fZip,ZipFile.OPEN_READ);
-			entries = zipFile.entries();
+			// Read the entries once: the parts are visited several times (styles first, Excel sheets first, etc.)
+			zipEntries = new ArrayList<ZipEntry>(zipFile.size());
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while( entries.hasMoreElements() )
+				zipEntries.add(entries.nextElement());
 
 			nZipType = -1;
-			while( entries.hasMoreElements() )
+			for( ZipEntry zipEntry : zipEntries )
 			{ // note that [Content_Types].xml is always first
-				entry = entries.nextElement();
+				entry = zipEntry;
 				sEntryName = entry.getName();
 				iCute = 0;
 			    iCute = sEntryName.indexOf("/");
@@ -554,7 +574,7 @@ public class OpenXMLFilter implements IFilter {
 			}
 			if (nZipType==MSWORD && !bPreferenceTranslateWordHidden)
 				bMinedHiddenStyles = false; // DWH 5-28-09 so mine hidden styles first
-			entries = zipFile.entries();
+			nextEntry = 0;
 			openXMLContentFilter.initFileTypes(); // new HashTable for file types in zip file
 			openXMLContentFilter.setBPreferenceTranslateWordHidden(bPreferenceTranslateWordHidden);
 				// DWH 5-29-09 whether or not to translate hidden text
@@ -595,13 +615,10 @@ public class OpenXMLFilter implements IFilter {
 		int iCute; // DWH 2-26-09
 		boolean bInMainFile; // DWH 4-15-09
 		boolean bInSettingsFile; // DWH 4-15-09
-		while( entries.hasMoreElements() ) { // note that [Content_Types].xml is always first
-			entry = entries.nextElement();
+		while( nextEntry<zipEntries.size() ) { // note that [Content_Types].xml is always first
+			entry = zipEntries.get(nextEntry++);
 			sEntryName = entry.getName();
-			sDocType = openXMLContentFilter.getContentType("/"+sEntryName);
-		    iCute = sDocType.lastIndexOf('.', sDocType.length()-1);
-		    if (iCute>0)
-			    sDocType = sDocType.substring(iCute+1);
+			sDocType = getPartDocType(sEntryName);
 			if (nZipType==MSEXCEL)
 			{
 				openXMLContentFilter.setBPreferenceTranslateExcelExcludeColors(bPreferenceTranslateExcelExcludeColors);
@@ -649,7 +666,7 @@ public class OpenXMLFilter implements IFilter {
 			    	if (sEntryName.equals("word/styles.xml"))
 			    	{
 			    		bMinedHiddenStyles = true;
-			    		entries = zipFile.entries(); // reset to go through all of them except styles and Content_Types
+			    		nextEntry = 0; // reset to go through all of them except styles and Content_Types
 			    	}
 			    	else if (!sEntryName.equals("[Content_Types].xml"))
 			    		continue;                    // save all but styles and Content_Types for 2nd go around
@@ -661,10 +678,7 @@ public class OpenXMLFilter implements IFilter {
 			    	continue;
 			          // DWH 5-29-09 these two files have already been added to the zip, so don't add them again
 		    }
-			bInMainFile = (sEntryName.endsWith(".xml") &&
-			    		  (nZipType==MSWORD && sDocType.equals("main+xml") ||
-			    		   nZipType==MSPOWERPOINT && sDocType.equals("slide+xml")));
-		                    // DWH 5-26-09 translate if translating Powerpoint master slides
+			bInMainFile = isMainPart(sEntryName, sDocType);
 			openXMLContentFilter.setBInMainFile(bInMainFile); // DWH 4-15-09 only allow blank text in main files
 			bInSettingsFile = sDocType.equals("settings+xml"); // DWH 4-12-10 for <v:textbox
 			openXMLContentFilter.setBInSettingsFile(bInSettingsFile); // DWH 4-12-10 for <v:textbox in settings file
@@ -679,44 +693,8 @@ public class OpenXMLFilter implements IFilter {
 				resetExcel(); // DWH 6-25-09 if Excel and excluding colors or columns, start through zips again if done with worksheets
 				return ually; // DWH 6-25-09 now return the event
 			}
-			else if ( sEntryName.equals("[Content_Types].xml") ||
-				   (sEntryName.endsWith(".xml") &&
-				    ((nZipType==MSWORD &&
-				    	   (sDocType.equals("main+xml") ||
-			   				sDocType.equals("footnotes+xml") ||
-			   				sDocType.equals("endnotes+xml") ||
-		                    (sDocType.equals("header+xml") && bPreferenceTranslateWordHeadersFooters) ||
-		                    (sDocType.equals("footer+xml") && bPreferenceTranslateWordHeadersFooters) ||
-		                    (sDocType.equals("comments+xml") && bPreferenceTranslateComments) ||
-		                      // DWH 5-25-09 translate if translating comments
-		                    sDocType.equals("chart+xml") ||
-		                    (sEntryName.equals("word/styles.xml") && !bPreferenceTranslateWordHidden) ||
-//		                    (sDocType.equals("styles+xml") && !bPreferenceTranslateWordHidden) ||
-		                    sDocType.equals("settings+xml") ||
-		                    (sDocType.equals("core-properties+xml") && bPreferenceTranslateDocProperties) ||
-		                      // DWH 5-25-09 translate if translating document properties
-		                    sDocType.equals("glossary+xml"))) ||
-		             (nZipType==MSEXCEL &&
-		            	   (sDocType.equals("sharedStrings+xml") ||
-		            	    (sDocType.equals("worksheet+xml") &&
-		            	      (bPreferenceTranslateExcelExcludeColors || bPreferenceTranslateExcelExcludeColumns)) ||
-		            	//	sDocType.equals("main+xml") || DWH 5-15-09 workbook.xml has nothing translatable
-		            		(sDocType.equals("comments+xml") && bPreferenceTranslateDocProperties) ||
-		                      // DWH 5-25-09 translate if translating comments
-		            	    sDocType.equals("table+xml"))
-				   			) ||
-				   	 (nZipType==MSPOWERPOINT &&
-				   	       (((sDocType.equals("notesSlide+xml") && bPreferenceTranslatePowerpointNotes)) ||
-				   	    	  sDocType.equals("slideMaster+xml") && bPreferenceTranslatePowerpointMasters))))) {
-						     // DWH 5-26-09 translate if translating Powerpoint notes
-				if (nZipType==MSWORD && sDocType.equals("chart+xml")) // DWH 4-16-09
-					nFileType = MSWORDCHART;
-				else if (nZipType==MSWORD && sDocType.equals("core-properties+xml"))
-					nFileType = MSWORDDOCPROPERTIES; // DWH 5-25-09
-				else if (nZipType==MSEXCEL && sDocType.equals("comments+xml")) // DWH 5-13-09
-					nFileType = MSEXCELCOMMENT;
-				else
-					nFileType = nZipType;
+			else if (isTranslatablePart(sEntryName, sDocType)) {
+				nFileType = getPartFileType(sDocType);
 				openXMLContentFilter.setUpConfig(nFileType);
 				yparams = (YamlParameters)openXMLContentFilter.getParameters();
 				  // DWH 6-15-09 fully specified Parameters
@@ -744,6 +722,85 @@ public class OpenXMLFilter implements IFilter {
 		return new Event(EventType.END_DOCUMENT, ending);
 	}
 	
+	/**
+	 * Returns the last part of the content type of a file in the zip file,
+	 * as declared in [Content_Types].xml, for example "main+xml".
+	 * @param sEntryName name of the file in the zip file
+	 * @return the type of the file, or an empty string if it is not known
+	 */
+	private String getPartDocType (String sEntryName)
+	{
+		String sDocType = openXMLContentFilter.getContentType("/"+sEntryName);
+		int iCute = sDocType.lastIndexOf('.', sDocType.length()-1);
+		if (iCute>0)
+			sDocType = sDocType.substring(iCute+1);
+		return sDocType;
+	}
+	
+	/**
+	 * Returns true if a file of the zip file is a main file, whose text runs can be combined.
+	 */
+	private boolean isMainPart (String sEntryName, String sDocType)
+	{
+		return (sEntryName.endsWith(".xml") &&
+	    		  (nZipType==MSWORD && sDocType.equals("main+xml") ||
+	    		   nZipType==MSPOWERPOINT && sDocType.equals("slide+xml")));
+                    // DWH 5-26-09 translate if translating Powerpoint master slides
+	}
+	
+	/**
+	 * Returns true if a file of the zip file (other than a main file being squished)
+	 * must be sent as a subdocument rather than passed through unaltered.
+	 */
+	private boolean isTranslatablePart (String sEntryName, String sDocType)
+	{
+		return ( sEntryName.equals("[Content_Types].xml") ||
+			   (sEntryName.endsWith(".xml") &&
+			    ((nZipType==MSWORD &&
+			    	   (sDocType.equals("main+xml") ||
+		   				sDocType.equals("footnotes+xml") ||
+		   				sDocType.equals("endnotes+xml") ||
+	                    (sDocType.equals("header+xml") && bPreferenceTranslateWordHeadersFooters) ||
+	                    (sDocType.equals("footer+xml") && bPreferenceTranslateWordHeadersFooters) ||
+	                    (sDocType.equals("comments+xml") && bPreferenceTranslateComments) ||
+	                      // DWH 5-25-09 translate if translating comments
+	                    sDocType.equals("chart+xml") ||
+	                    (sEntryName.equals("word/styles.xml") && !bPreferenceTranslateWordHidden) ||
+//	                    (sDocType.equals("styles+xml") && !bPreferenceTranslateWordHidden) ||
+	                    sDocType.equals("settings+xml") ||
+	                    (sDocType.equals("core-properties+xml") && bPreferenceTranslateDocProperties) ||
+	                      // DWH 5-25-09 translate if translating document properties
+	                    sDocType.equals("glossary+xml"))) ||
+	             (nZipType==MSEXCEL &&
+	            	   (sDocType.equals("sharedStrings+xml") ||
+	            	    (sDocType.equals("worksheet+xml") &&
+	            	      (bPreferenceTranslateExcelExcludeColors || bPreferenceTranslateExcelExcludeColumns)) ||
+	            	//	sDocType.equals("main+xml") || DWH 5-15-09 workbook.xml has nothing translatable
+	            		(sDocType.equals("comments+xml") && bPreferenceTranslateDocProperties) ||
+	                      // DWH 5-25-09 translate if translating comments
+	            	    sDocType.equals("table+xml"))
+			   			) ||
+			   	 (nZipType==MSPOWERPOINT &&
+			   	       (((sDocType.equals("notesSlide+xml") && bPreferenceTranslatePowerpointNotes)) ||
+			   	    	  sDocType.equals("slideMaster+xml") && bPreferenceTranslatePowerpointMasters)))));
+					     // DWH 5-26-09 translate if translating Powerpoint notes
+	}
+	
+	/**
+	 * Returns the file type to use for a translatable file that is not a main file.
+	 */
+	private int getPartFileType (String sDocType)
+	{
+		if (nZipType==MSWORD && sDocType.equals("chart+xml")) // DWH 4-16-09
+			return MSWORDCHART;
+		else if (nZipType==MSWORD && sDocType.equals("core-properties+xml"))
+			return MSWORDDOCPROPERTIES; // DWH 5-25-09
+		else if (nZipType==MSEXCEL && sDocType.equals("comments+xml")) // DWH 5-13-09
+			return MSEXCELCOMMENT;
+		else
+			return nZipType;
+	}
+	
 	/**
 	 * Opens an XML file in the zip file, sets its parameters, combines
 	 * compatible contiguous text runs if desired, and creates a 
@@ -763,7 +820,14 @@ public class OpenXMLFilter implements IFilter {
 		  // needed for cases where subDocs are read in different orders
 		//YS openXMLContentFilter.setOptions(srcLang, "UTF-8", true);
 		Event event;
-		try
+		Future<List<Event>> parsedPart = (parsedParts==null) ? null : parsedParts.remove(entry.getName());
+		if (parsedPart!=null)
+		{ // This part was parsed ahead: use its events
+			subDocEvents = new LinkedList<Event>(getParsedPart(parsedPart));
+			parseNextParts(); // keep the other threads busy
+			event = subDocEvents.poll(); // START_DOCUMENT
+		}
+		else try
 		{
 			isInputStream = zipFile.getInputStream(entry);
 			if (bSquishing)
@@ -826,8 +890,8 @@ public class OpenXMLFilter implements IFilter {
 	 */
 	private Event nextInSubDocument () {
 		Event event;
-		while ( openXMLContentFilter.hasNext() ) {
-			event = openXMLContentFilter.next();
+		while ( (subDocEvents!=null) ? !subDocEvents.isEmpty() : openXMLContentFilter.hasNext() ) {
+			event = (subDocEvents!=null) ? subDocEvents.poll() : openXMLContentFilter.next();
 			switch ( event.getEventType() ) {
 				case TEXT_UNIT:
 					if (translator!=null)
@@ -850,8 +914,11 @@ public class OpenXMLFilter implements IFilter {
 					// Read the FINISHED event
 	//				openXMLContentFilter.next();
 					// Change the END_DOCUMENT to END_SUBDOCUMENT
-					if (!bPreferenceTranslateWordHidden) // DWH 5-28-09 save mined styles
+					if (!bPreferenceTranslateWordHidden && subDocEvents==null) // DWH 5-28-09 save mined styles
 						tsExcludeWordStyles = openXMLContentFilter.getTsExcludeWordStyles();
+					subDocEvents = null;
+					if (entry.getName().equals("[Content_Types].xml"))
+						startParsingAhead(); // the content types of the parts are known now
 					Ending ending = new Ending(String.valueOf(subDocId));
 					nextAction = NextAction.NEXTINZIP;
 					ZipSkeleton skel = new ZipSkeleton(
@@ -891,12 +958,140 @@ public class OpenXMLFilter implements IFilter {
 	 */
 	private void resetExcel()
 	{
-		if (!bProcessedExcelSheets && !entries.hasMoreElements()) // DWH 6-13-09 Excel options
+		if (!bProcessedExcelSheets && nextEntry>=zipEntries.size()) // DWH 6-13-09 Excel options
 		{ // this only happens if bPreferenceTranslateExcelExcludeColors || bPreferenceTranslateExcelExcludeColumns
-			entries = zipFile.entries();  // after going through all the sheets, reset to go through the rest
+			nextEntry = 0;  // after going through all the sheets, reset to go through the rest
 			bProcessedExcelSheets = true; // and indicate you have already gone through the sheets
 		}
 	}
+	/**
+	 * Starts parsing ahead the translatable parts that follow the current one, if the
+	 * filter uses several threads (see {@link ConditionalParameters#nThreadCount}) and
+	 * the parts can be parsed independently. The parts are parsed concurrently and their
+	 * events are buffered until they are needed, so the events are still returned in the
+	 * order of the parts in the zip file. This applies to Powerpoint files, and to Excel
+	 * files when no colors or columns are excluded. The parts of the other files depend
+	 * on each other (hidden styles in Word, shared strings in Excel) and are always
+	 * parsed one after the other.
+	 */
+	private void startParsingAhead()
+	{
+		if (threadCount<2 || partsToParse!=null)
+			return;
+		if (nZipType==MSWORD) // hidden styles are mined from styles.xml and shared by all the parts
+			return;
+		if (nZipType==MSEXCEL &&
+			(bPreferenceTranslateExcelExcludeColors || bPreferenceTranslateExcelExcludeColumns))
+			return; // shared strings are tracked across the sheets
+		partsToParse = new LinkedList<ZipEntry>();
+		for(int i=nextEntry;i<zipEntries.size();i++)
+		{
+			ZipEntry zipEntry = zipEntries.get(i);
+			String sEntryName = zipEntry.getName();
+			String sDocType = getPartDocType(sEntryName);
+			if ((isMainPart(sEntryName, sDocType) && bSquishable) || isTranslatablePart(sEntryName, sDocType))
+				partsToParse.add(zipEntry);
+		}
+		parsedParts = new HashMap<String,Future<List<Event>>>();
+		parseExecutor = Executors.newFixedThreadPool(threadCount);
+		parseNextParts();
+	}
+	
+	/**
+	 * Submits the next parts to parse ahead. The number of parts parsed ahead and not yet
+	 * used is limited, so the buffered events do not take too much memory.
+	 */
+	private void parseNextParts()
+	{
+		if (partsToParse==null)
+			return;
+		while (!partsToParse.isEmpty() && parsedParts.size()<threadCount*2)
+		{
+			final ZipEntry zipEntry = partsToParse.poll();
+			parsedParts.put(zipEntry.getName(), parseExecutor.submit(new Callable<List<Event>>() {
+				public List<Event> call() throws IOException {
+					return parsePart(zipEntry);
+				}
+			}));
+		}
+	}
+	
+	/**
+	 * Parses a part of the zip file with its own OpenXMLContentFilter, the same way
+	 * openSubDocument() and nextInSubDocument() would, and returns all its events.
+	 * This is called from the parsing threads.
+	 * @param partEntry the entry of the part to parse
+	 * @return the list of events of the part, from START_DOCUMENT to END_DOCUMENT
+	 */
+	private List<Event> parsePart(ZipEntry partEntry) throws IOException
+	{
+		String sEntryName = partEntry.getName();
+		String sDocType = getPartDocType(sEntryName);
+		boolean bMain = isMainPart(sEntryName, sDocType) && bSquishable;
+		OpenXMLContentFilter partFilter = new OpenXMLContentFilter();
+		partFilter.setLogger(LOGGER);
+		partFilter.setBPreferenceTranslateWordHidden(bPreferenceTranslateWordHidden);
+		partFilter.setBInMainFile(isMainPart(sEntryName, sDocType));
+		partFilter.setBInSettingsFile(sDocType.equals("settings+xml"));
+		partFilter.setUpConfig(bMain ? nZipType : getPartFileType(sDocType));
+		List<Event> events = new ArrayList<Event>();
+		try
+		{
+			InputStream isInputStream = zipFile.getInputStream(partEntry);
+			if (bMain)
+				isInputStream = partFilter.combineRepeatedFormat(isInputStream, new PipedOutputStream());
+			partFilter.open(new RawDocument(new BufferedInputStream(isInputStream), "UTF-8", srcLang));
+			while (partFilter.hasNext())
+			{
+				Event event = partFilter.next();
+				events.add(event);
+				if (event.getEventType()==EventType.END_DOCUMENT)
+					break;
+			}
+		}
+		finally
+		{
+			partFilter.close();
+		}
+		return events;
+	}
+	
+	/**
+	 * Waits for a part parsed ahead and returns its events.
+	 */
+	private List<Event> getParsedPart(Future<List<Event>> parsedPart)
+	{
+		try
+		{
+			return parsedPart.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new OkapiIOException("Interrupted while reading zipped input file.", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new OkapiIOException("Error reading zipped input file.", e.getCause());
+		}
+	}
+	
+	/**
+	 * Stops the parsing threads and drops the parts parsed ahead.
+	 */
+	private void stopParsingAhead()
+	{
+		if (parseExecutor!=null)
+		{
+			parseExecutor.shutdownNow();
+			parseExecutor = null;
+		}
+		partsToParse = null;
+		parsedParts = null;
+		subDocEvents = null;
+	}
 	public void cancel() {
 		// TODO Auto-generated method stub		
 	}
@@ -30,7 +30,6 @@ import java.io.OutputStream;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.EventType;
@@ -40,6 +39,7 @@ import net.sf.okapi.common.encoder.EncoderManager;
 import net.sf.okapi.common.exceptions.*;
 import net.sf.okapi.common.filterwriter.GenericFilterWriter;
 import net.sf.okapi.common.filterwriter.IFilterWriter;
+import net.sf.okapi.common.filterwriter.ZipMergeOutputStream;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.resource.DocumentPart;
 import net.sf.okapi.common.resource.Ending;
@@ -70,7 +70,7 @@ public class OpenXMLZipFilterWriter implements IFilterWriter {
 	public final static int MSWORDDOCPROPERTIES=6; // DWH 5-25-09
 	private String outputPath;
 	private ZipFile zipOriginal;
-	private ZipOutputStream zipOut;
+	private ZipMergeOutputStream zipOut;
 	private byte[] buffer;
 	private LocaleId outTargetLang;
 	private ZipEntry subDocEntry;
@@ -268,11 +268,11 @@ public class OpenXMLZipFilterWriter implements IFilterWriter {
 				// If it's the input file, IFilter.close() will free it before we
 				// call close() here (that is if IFilter.close() is called correctly
 				tempZip = File.createTempFile("zfwTmpZip", null);
-				zipOut = new ZipOutputStream(new FileOutputStream(tempZip.getAbsolutePath()));
+				zipOut = new ZipMergeOutputStream(new FileOutputStream(tempZip.getAbsolutePath()));
 			}
 			else { // Make sure the directory exists
 				Util.createDirectories(outputPath);
-				zipOut = new ZipOutputStream(new FileOutputStream(outputPath));
+				zipOut = new ZipMergeOutputStream(new FileOutputStream(outputPath));
 			}
 		}
 		catch ( FileNotFoundException e ) {
@@ -289,29 +289,18 @@ public class OpenXMLZipFilterWriter implements IFilterWriter {
 	
 	/**
 	 * This passes a file that doesn't need processing from the input zip
-               * file to the output zip file.
+               * file to the output zip file. The compressed data is copied as it is.
 	 * @param event corresponding to the file to be passed through
 	 */
 	private void processDocumentPart (Event event) {
 		// Treat top-level ZipSkeleton events
-		String naym;
-		ZipEntry entree;
 		DocumentPart res = (DocumentPart)event.getResource();
 		if ( res.getSkeleton() instanceof ZipSkeleton ) {
 			ZipSkeleton skel = (ZipSkeleton)res.getSkeleton();
 			ZipEntry entry = skel.getEntry();
 			// Copy the entry data
 			try {
-				naym = entry.getName();
-				entree = new ZipEntry(naym);
-				zipOut.putNextEntry(entree);
-				InputStream input = zipOriginal.getInputStream(entry); 
-				int len;
-				while ( (len = input.read(buffer)) > 0 ) {
-					zipOut.write(buffer, 0, len);
-				}
-				input.close();
-				zipOut.closeEntry();
+				zipOut.copyEntry(zipOriginal, entry);
 			}
 			catch ( IOException e ) {
 				throw new OkapiIOException("Error writing zip file entry.");
@@ -0,0 +1,123 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.filters.openxml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.TestUtil;
+import net.sf.okapi.common.resource.RawDocument;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that parsing the parts of the zip file with several threads gives
+ * the same events and the same output as parsing them in sequence.
+ */
+public class OpenXMLParallelParsingTest {
+
+	private LocaleId locLA = LocaleId.fromString("la");
+	private LocaleId locENUS = LocaleId.fromString("en-us");
+	private String root;
+	private ZipCompare zc;
+	
+	@Before
+	public void setUp () {
+		root = TestUtil.getParentDir(this.getClass(), "/BoldWorld.docx");
+		zc = new ZipCompare();
+	}
+
+	@Test
+	public void testSameEvents () {
+		String[] files = { "sample.pptx", "sampleMore.pptx", "InsertText.pptx",
+			"Endpara.pptx", "sample.xlsx", "sampleMore.xlsx", "commentTable.xlsx",
+			"ExcelColors.xlsx", "sample.docx" };
+		for ( String file : files ) {
+			List<String> sequential = getEvents(file, 1);
+			List<String> parallel = getEvents(file, 4);
+			assertEquals(file, sequential, parallel);
+		}
+	}
+	
+	@Test
+	public void testSameOutput () {
+		String[] files = { "sample.pptx", "sampleMore.pptx", "sample.xlsx", "sampleMore.xlsx" };
+		for ( String file : files ) {
+			OpenXMLFilter filter = new OpenXMLFilter(new PigLatinTranslator(), locLA);
+			((ConditionalParameters)filter.getParameters()).nThreadCount = 4;
+			OpenXMLZipFilterWriter writer = new OpenXMLZipFilterWriter();
+			try {
+				filter.open(new RawDocument(new File(root+file).toURI(), "UTF-8", locENUS), true, true, Level.FINEST);
+				writer.setOptions(locLA, "UTF-8");
+				writer.setOutput(root+"output/ParTran"+file);
+				while ( filter.hasNext() ) {
+					writer.handleEvent(filter.next());
+				}
+			}
+			finally {
+				writer.close();
+				filter.close();
+			}
+			assertTrue(file, zc.zipsExactlyTheSame(root+"output/ParTran"+file, root+"gold/Tran"+file));
+		}
+	}
+	
+	private List<String> getEvents (String file,
+		int threadCount)
+	{
+		List<String> list = new ArrayList<String>();
+		OpenXMLFilter filter = new OpenXMLFilter();
+		((ConditionalParameters)filter.getParameters()).nThreadCount = threadCount;
+		try {
+			URI uri = new File(root+file).toURI();
+			filter.open(new RawDocument(uri, "UTF-8", locENUS), true, true, Level.FINEST);
+			while ( filter.hasNext() ) {
+				Event event = filter.next();
+				StringBuilder tmp = new StringBuilder(event.getEventType().toString());
+				if ( event.getResource() != null ) {
+					tmp.append(" id=" + event.getResource().getId());
+					if ( event.getEventType() == EventType.TEXT_UNIT ) {
+						tmp.append(" text=" + event.getTextUnit().getSource().toString());
+					}
+					if ( event.getResource().getSkeleton() != null ) {
+						tmp.append(" skel=" + event.getResource().getSkeleton().toString());
+					}
+				}
+				list.add(tmp.toString());
+			}
+		}
+		finally {
+			filter.close();
+		}
+		return list;
+	}
+
+}
@@ -20,6 +20,8 @@
 
 package net.sf.okapi.filters.pensieve;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -31,6 +33,7 @@ import net.sf.okapi.common.UsingParameters;
 import net.sf.okapi.common.Util;
 import net.sf.okapi.common.encoder.EncoderManager;
 import net.sf.okapi.common.exceptions.OkapiBadFilterInputException;
+import net.sf.okapi.common.exceptions.OkapiIOException;
 import net.sf.okapi.common.filters.FilterConfiguration;
 import net.sf.okapi.common.filters.IFilter;
 import net.sf.okapi.common.filters.IFilterConfigurationMapper;
@@ -72,7 +75,16 @@ public class PensieveFilter implements IFilter {
 
 	@Override
 	public void close() {
-		// Nothing to do
+		// Release the TM reader held by the iterator
+		if ( iterator instanceof Closeable ) {
+			try {
+				((Closeable)iterator).close();
+			}
+			catch ( IOException e ) {
+				throw new OkapiIOException("Error closing the TM iterator.", e);
+			}
+		}
+		iterator = null;
 		state = 0;
 	}
 
@@ -188,6 +200,7 @@ public class PensieveFilter implements IFilter {
 	public void open (RawDocument input,
 		boolean generateSkeleton)
 	{
+		close();
 		srcLoc = input.getSourceLocale();
 		trgLoc = input.getTargetLocale();
 		if ( input.getInputURI() == null ) {
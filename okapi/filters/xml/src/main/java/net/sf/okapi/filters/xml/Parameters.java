@@ -69,6 +69,7 @@ public class Parameters implements IParameters {
 	private static final String OMITXMLDECLARATION = "omitXMLDeclaration";
 	private static final String ESCAPEQUOTES = "escapeQuotes";
 	private static final String EXTRACTIFONLYCODES = "extractIfOnlyCodes";
+	private static final String STREAMING = "streaming";
 
 	private static final String OKP_NS_PREFIX = "okp";
 	private static final String OKP_NS_URI = "okapi-framework:xmlfilter-options";
@@ -99,6 +100,7 @@ public class Parameters implements IParameters {
 	public boolean omitXMLDeclaration;
 	public boolean escapeQuotes;
 	public boolean extractIfOnlyCodes;
+	public boolean streaming;
 	// Write-only parameters
 	public boolean quoteModeDefined;
 	public int quoteMode;
@@ -247,6 +249,7 @@ public class Parameters implements IParameters {
 		// Quote escaping option
 		escapeQuotes = true;
 		extractIfOnlyCodes = true;
+		streaming = false;
 	}
 
 	@Override
@@ -302,6 +305,7 @@ public class Parameters implements IParameters {
 		if ( name.equals(XMLEncoder.QUOTEMODEDEFINED) ) return quoteModeDefined;
 		if ( name.equals(ESCAPEQUOTES) ) return escapeQuotes;
 		if ( name.equals(EXTRACTIFONLYCODES) ) return extractIfOnlyCodes;
+		if ( name.equals(STREAMING) ) return streaming;
 		return false;
 	}
 
@@ -318,6 +322,7 @@ public class Parameters implements IParameters {
 		else if ( name.equals(XMLEncoder.QUOTEMODEDEFINED) ) quoteModeDefined = value;
 		else if ( name.equals(ESCAPEQUOTES) ) escapeQuotes = value;
 		else if ( name.equals(EXTRACTIFONLYCODES) ) extractIfOnlyCodes = value;
+		else if ( name.equals(STREAMING) ) streaming = value;
 	}
 
 	@Override
@@ -388,6 +393,10 @@ public class Parameters implements IParameters {
 			if ( !Util.isEmpty(tmp) ) {
 				omitXMLDeclaration = tmp.equals("yes");
 			}
+			tmp = elem.getAttribute(STREAMING);
+			if ( !Util.isEmpty(tmp) ) {
+				streaming = tmp.equals("yes");
+			}
 		}
 		// Get the code finder data
 		nl = (NodeList)xpath.evaluate("//"+OKP_NS_PREFIX+":codeFinder", doc, XPathConstants.NODESET);
@@ -21,6 +21,8 @@
 package net.sf.okapi.filters.xml;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -69,6 +71,8 @@ import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.its.IProcessor;
 import org.w3c.its.ITSEngine;
+import org.w3c.its.ITSException;
+import org.w3c.its.ITSStreamEngine;
 import org.w3c.its.ITraversal;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -76,11 +80,15 @@ import org.xml.sax.SAXException;
 @UsingParameters(Parameters.class)
 public class XMLFilter implements IFilter {
 
+	private static final int DATA_CATEGORIES = IProcessor.DC_TRANSLATE | IProcessor.DC_LANGINFO 
+		| IProcessor.DC_LOCNOTE | IProcessor.DC_WITHINTEXT | IProcessor.DC_TERMINOLOGY;
+
 	private String docName;
 	private String encoding;
 	private LocaleId srcLang;
 	private String lineBreak;
 	private Document doc;
+	private ITSStreamEngine streamEng;
 	private ITraversal trav;
 	private LinkedList<Event> queue;
 	private int tuId;
@@ -103,6 +111,10 @@ public class XMLFilter implements IFilter {
 	}
 
 	public void close () {
+		if ( streamEng != null ) {
+			streamEng.close();
+			streamEng = null;
+		}
 	}
 
 	public ISkeletonWriter createSkeletonWriter () {
@@ -182,6 +194,15 @@ public class XMLFilter implements IFilter {
 		return params;
 	}
 
+	/**
+	 * Indicates if the document currently open is read with the streaming engine.
+	 * @return true if the document is streamed, false if its tree was built
+	 * (or if no document is open).
+	 */
+	boolean isStreaming () {
+		return (( streamEng != null ) && ( trav == streamEng ));
+	}
+
 	public boolean hasNext () {
 		return (queue != null);
 	}
@@ -231,6 +252,61 @@ public class XMLFilter implements IFilter {
 		tuId = 0;
 		otherId = new IdGenerator(null, "o");
 
+		if ( params.useCodeFinder ) {
+			params.codeFinder.compile();
+		}
+
+		input.setEncoding("UTF-8"); // Default for XML, other should be auto-detected
+		BOMNewlineEncodingDetector detector = new BOMNewlineEncodingDetector(input.getStream(), input.getEncoding());
+		detector.detectBom();
+		
+		if ( detector.isAutodetected() ) {
+			encoding = detector.getEncoding();
+			//--Start workaround issue with XML Parser
+			// "UTF-16xx" are not handled as expected, using "UTF-16" alone 
+			// seems to resolve the issue.
+			if (( encoding.equals("UTF-16LE") ) || ( encoding.equals("UTF-16BE") )) {
+				encoding = "UTF-16";
+			}
+			//--End workaround
+			input.setEncoding(encoding);
+		}
+
+		srcLang = input.getSourceLocale();
+		if ( srcLang == null ) throw new NullPointerException("Source language not set.");
+		hasUTF8BOM = detector.hasUtf8Bom();
+		lineBreak = detector.getNewlineType().toString();
+		if ( input.getInputURI() != null ) {
+			docName = input.getInputURI().getPath();
+		}
+
+		// Use the streaming engine if requested and if the rules allow it.
+		// The document is read twice (first for its internal rules), so its input must be re-readable
+		if ( params.streaming && (( input.getInputURI() != null ) || ( input.getInputCharSequence() != null )) ) {
+			streamEng = new ITSStreamEngine(input.getInputURI(), !params.protectEntityRef);
+			if ( params.getDocument() != null ) {
+				streamEng.addExternalRules(params.getDocument(), params.getURI());
+			}
+			if ( streamEng.canStream(DATA_CATEGORIES) && scanRules(input.getStream()) ) {
+				if ( openStream(input.getStream(), detector) ) return;
+			}
+			// Else: some rules need the document tree
+			streamEng.close();
+			streamEng = null;
+		}
+		openDocument(input.getStream(), input.getInputURI(), detector);
+	}
+
+	/**
+	 * Opens the document by building its tree and applying the ITS rules on it.
+	 * @param input the stream of the document to open.
+	 * @param inputURI the URI of the document (can be null).
+	 * @param detector the detector used for the encoding and line-breaks.
+	 */
+	private void openDocument (InputStream input,
+		URI inputURI,
+		BOMNewlineEncodingDetector detector)
+	{
 		// Create the document builder factory
 		DocumentBuilderFactory fact = DocumentBuilderFactory.newInstance();
 		fact.setNamespaceAware(true);
@@ -251,24 +327,8 @@ public class XMLFilter implements IFilter {
 		// Avoid DTD declaration
 		docBuilder.setEntityResolver(new DefaultEntityResolver());
 
-		input.setEncoding("UTF-8"); // Default for XML, other should be auto-detected
-		BOMNewlineEncodingDetector detector = new BOMNewlineEncodingDetector(input.getStream(), input.getEncoding());
-		detector.detectBom();
-		
-		if ( detector.isAutodetected() ) {
-			encoding = detector.getEncoding();
-			//--Start workaround issue with XML Parser
-			// "UTF-16xx" are not handled as expected, using "UTF-16" alone 
-			// seems to resolve the issue.
-			if (( encoding.equals("UTF-16LE") ) || ( encoding.equals("UTF-16BE") )) {
-				encoding = "UTF-16";
-			}
-			//--End workaround
-			input.setEncoding(encoding);
-		}
-		
 		try {
-			InputSource is = new InputSource(input.getStream());
+			InputSource is = new InputSource(input);
 			//is.setEncoding(input.getEncoding());
 			doc = docBuilder.parse(is);
 		}
@@ -283,21 +343,10 @@ public class XMLFilter implements IFilter {
 		if ( encoding == null ) {
 			encoding = detector.getEncoding();
 		}
-		srcLang = input.getSourceLocale();
-		if ( srcLang == null ) throw new NullPointerException("Source language not set.");
-		hasUTF8BOM = detector.hasUtf8Bom();
-		lineBreak = detector.getNewlineType().toString();
-		if ( input.getInputURI() != null ) {
-			docName = input.getInputURI().getPath();
-		}
-		
-		if ( params.useCodeFinder ) {
-			params.codeFinder.compile();
-		}
 
 		// Create the ITS engine
 		ITSEngine itsEng;
-		itsEng = new ITSEngine(doc, input.getInputURI());
+		itsEng = new ITSEngine(doc, inputURI);
 		// Load the parameters file if there is one
 		if ( params != null ) {
 			if ( params.getDocument() != null ) {
@@ -306,10 +355,82 @@ public class XMLFilter implements IFilter {
 		}
 		
 		// Apply the all rules (external and internal) to the document
-		itsEng.applyRules(IProcessor.DC_TRANSLATE | IProcessor.DC_LANGINFO 
-			| IProcessor.DC_LOCNOTE | IProcessor.DC_WITHINTEXT | IProcessor.DC_TERMINOLOGY);
+		itsEng.applyRules(DATA_CATEGORIES);
 		
 		trav = itsEng;
+		String realEnc = doc.getInputEncoding();
+		if ( realEnc != null ) encoding = realEnc;
+		
+		startDocument(doc.getXmlVersion(), doc.getXmlStandalone(),
+			itsEng.getTranslatableAttributeRuleTriggered());
+		// Add the DTD if needed
+		DocumentType dt = doc.getDoctype();
+		if ( dt != null ) {
+			rebuildDocTypeSection(dt.getName(), dt.getPublicId(), dt.getSystemId(), dt.getInternalSubset());
+		}
+	}
+
+	/**
+	 * Reads the internal rules of the whole document with the streaming engine.
+	 * @param input the stream of the document.
+	 * @return true if all the rules can be applied while streaming, false otherwise.
+	 */
+	private boolean scanRules (InputStream input) {
+		try {
+			return streamEng.scanRules(input);
+		}
+		catch ( ITSException e ) {
+			throw new OkapiIOException("Error when parsing the document.\n"+e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Opens the document for streaming: the nodes are read as they are needed and
+	 * the ITS rules are applied on the fly, so the tree of the document is never built.
+	 * @param input the stream of the document to open.
+	 * @param detector the detector used for the encoding and line-breaks.
+	 * @return true if the document is open, false if it needs to be open with
+	 * {@link #openDocument(InputStream, URI, BOMNewlineEncodingDetector)} instead.
+	 */
+	private boolean openStream (InputStream input,
+		BOMNewlineEncodingDetector detector)
+	{
+		doc = null;
+		try {
+			if ( !streamEng.open(input) ) return false;
+		}
+		catch ( ITSException e ) {
+			throw new OkapiIOException("Error when parsing the document.\n"+e.getMessage(), e);
+		}
+		encoding = streamEng.getXmlEncoding();
+		if ( encoding == null ) {
+			encoding = detector.getEncoding();
+		}
+		String realEnc = streamEng.getInputEncoding();
+		if ( realEnc != null ) encoding = realEnc;
+
+		trav = streamEng;
+		startDocument(streamEng.getXmlVersion(), streamEng.getXmlStandalone(),
+			streamEng.getTranslatableAttributeRuleTriggered());
+		// Add the DTD if needed
+		String[] dt = streamEng.getDocType();
+		if ( dt != null ) {
+			rebuildDocTypeSection(dt[0], dt[1], dt[2], dt[3]);
+		}
+		return true;
+	}
+
+	/**
+	 * Starts the traversal and creates the start document event. The skeleton of the
+	 * start document is left open so the document type declaration can be added to it.
+	 * @param xmlVersion the version of the document.
+	 * @param xmlStandalone true if the document is declared standalone.
+	 * @param translatableAttributes true if some attributes may be translatable.
+	 */
+	private void startDocument (String xmlVersion,
+		boolean xmlStandalone,
+		boolean translatableAttributes)
+	{
 		trav.startTraversal();
 		context = new Stack<ContextItem>();
 		
@@ -318,8 +439,6 @@ public class XMLFilter implements IFilter {
 
 		StartDocument startDoc = new StartDocument(otherId.createId());
 		startDoc.setName(docName);
-		String realEnc = doc.getInputEncoding();
-		if ( realEnc != null ) encoding = realEnc;
 		startDoc.setEncoding(encoding, hasUTF8BOM);
 		startDoc.setLineBreak(lineBreak);
 		startDoc.setLocale(srcLang);
@@ -329,7 +448,7 @@ public class XMLFilter implements IFilter {
 		params.quoteMode = 3; // quote is escaped, apos is not
 		// Change the escapeQuotes option depending on whether translatable attributes rule
 		// was triggered or not
-		if ( !itsEng.getTranslatableAttributeRuleTriggered() ) {
+		if ( !translatableAttributes ) {
 			// Allow to not escape quotes only if there is no translatable attributes
 			if ( !params.escapeQuotes ) {
 				params.quoteModeDefined = true;
@@ -345,49 +464,47 @@ public class XMLFilter implements IFilter {
 		// Add the XML declaration
 		skel = new GenericSkeleton();
 		if ( !params.omitXMLDeclaration ) {
-			skel.add("<?xml version=\"" + doc.getXmlVersion() + "\"");
+			skel.add("<?xml version=\"" + xmlVersion + "\"");
 			skel.add(" encoding=\"");
 			skel.addValuePlaceholder(startDoc, Property.ENCODING, LocaleId.EMPTY);
 			skel.add("\"");
 			startDoc.setProperty(new Property(Property.ENCODING, encoding, false));
-			if ( doc.getXmlStandalone() ) skel.add(" standalone=\"yes\"");
+			if ( xmlStandalone ) skel.add(" standalone=\"yes\"");
 			skel.add("?>"+lineBreak);
 		}
 
-		// Add the DTD if needed
-		DocumentType dt = doc.getDoctype();
-		if ( dt != null ) {
-			rebuildDocTypeSection(dt);
-		}
-		
 		startDoc.setSkeleton(skel);
 		// Put the start document in the queue
 		queue.add(new Event(EventType.START_DOCUMENT, startDoc));
 	}
 
-	private void rebuildDocTypeSection (DocumentType dt) {
+	private void rebuildDocTypeSection (String name,
+		String publicId,
+		String systemId,
+		String internalSubset)
+	{
 		StringBuilder tmp = new StringBuilder();
 		// Set the start syntax
-		if ( dt.getPublicId() != null ) {
+		if ( publicId != null ) {
 			tmp.append(String.format("<!DOCTYPE %s PUBLIC \"%s\" \"%s\"",
-				dt.getName(),
-				dt.getPublicId(),
-				dt.getSystemId()));
+				name,
+				publicId,
+				systemId));
 		}
-		else if ( dt.getSystemId() != null ) {
+		else if ( systemId != null ) {
 			tmp.append(String.format("<!DOCTYPE %s SYSTEM \"%s\"",
-				dt.getName(),
-				dt.getSystemId()));
+				name,
+				systemId));
 		}
-		else if ( dt.getInternalSubset() != null ) {
+		else if ( internalSubset != null ) {
 			tmp.append(String.format("<!DOCTYPE %s",
-				dt.getName()));
+				name));
 		}
 		
 		// Add the internal sub-set if there is any
-		if ( dt.getInternalSubset() != null ) {
+		if ( internalSubset != null ) {
 			tmp.append(" [");
-			tmp.append(dt.getInternalSubset().replace("\n", lineBreak));
+			tmp.append(internalSubset.replace("\n", lineBreak));
 			tmp.append("]");
 		}
 		
@@ -52,35 +52,35 @@ public class ITSEngine implements IProcessor, ITraversal
 	public static final String    XLINK_NS_URI = "http://www.w3.org/1999/xlink";
 	public static final String    XLINK_NS_PREFIX = "xlink";
 	
-	private static final String   FLAGNAME            = "\u00ff";
-	private static final String   FLAGSEP             = "\u001c";
+	static final String           FLAGNAME            = "\u00ff";
+	static final String           FLAGSEP             = "\u001c";
 	// Must have +FLAGSEP as many time as there are FP_XXX_DATA entries +1
-	private static final String   FLAGDEFAULTDATA     = "???????"+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP;
+	static final String           FLAGDEFAULTDATA     = "???????"+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP;
 
-	private static final int      FP_TRANSLATE        = 0;
-	private static final int      FP_DIRECTIONALITY   = 1;
-	private static final int      FP_WITHINTEXT       = 2;
-	private static final int      FP_TERMINOLOGY      = 3;
-	private static final int      FP_LOCNOTE          = 4;
-	private static final int      FP_PRESERVEWS       = 5;
-	private static final int      FP_LANGINFO         = 6;
+	static final int              FP_TRANSLATE        = 0;
+	static final int              FP_DIRECTIONALITY   = 1;
+	static final int              FP_WITHINTEXT       = 2;
+	static final int              FP_TERMINOLOGY      = 3;
+	static final int              FP_LOCNOTE          = 4;
+	static final int              FP_PRESERVEWS       = 5;
+	static final int              FP_LANGINFO         = 6;
 	
-	private static final int      FP_TERMINOLOGY_DATA      = 0;
-	private static final int      FP_LOCNOTE_DATA          = 1;
-	private static final int      FP_LANGINFO_DATA         = 2;
-	private static final int      FP_TRGPOINTER_DATA       = 3;
-	private static final int      FP_IDVALUE_DATA          = 4;
+	static final int              FP_TERMINOLOGY_DATA      = 0;
+	static final int              FP_LOCNOTE_DATA          = 1;
+	static final int              FP_LANGINFO_DATA         = 2;
+	static final int              FP_TRGPOINTER_DATA       = 3;
+	static final int              FP_IDVALUE_DATA          = 4;
 	
-	private static final int      TERMINFOTYPE_POINTER     = 1;
-	private static final int      TERMINFOTYPE_REF         = 2;
-	private static final int      TERMINFOTYPE_REFPOINTER  = 3;
+	static final int              TERMINFOTYPE_POINTER     = 1;
+	static final int              TERMINFOTYPE_REF         = 2;
+	static final int              TERMINFOTYPE_REFPOINTER  = 3;
 	
-	private static final int      LOCNOTETYPE_TEXT         = 1;
-	private static final int      LOCNOTETYPE_POINTER      = 2;
-	private static final int      LOCNOTETYPE_REF          = 3;
-	private static final int      LOCNOTETYPE_REFPOINTER   = 4;
+	static final int              LOCNOTETYPE_TEXT         = 1;
+	static final int              LOCNOTETYPE_POINTER      = 2;
+	static final int              LOCNOTETYPE_REF          = 3;
+	static final int              LOCNOTETYPE_REFPOINTER   = 4;
 
-	private static final int      TRANSLATE_TRGPOINTER     = 1;
+	static final int              TRANSLATE_TRGPOINTER     = 1;
 
 	private DocumentBuilderFactory fact; 
 	private Document doc;
@@ -152,6 +152,32 @@ public class ITSEngine implements IProcessor, ITraversal
 	{
 		compileRules(rulesDoc, docURI, false);
 	}
+
+	/**
+	 * Adds a set of internal global rules (found in the processed document itself).
+	 * This is used when the rules are collected while reading the document rather
+	 * than from the document tree.
+	 * @param rulesDoc Document containing the its:rules element to compile.
+	 */
+	void addInternalRules (Document rulesDoc) {
+		compileRules(rulesDoc, docURI, true);
+	}
+
+	/**
+	 * Gets the list of the compiled global rules, in the order they must be applied.
+	 * @return the list of the compiled global rules.
+	 */
+	ArrayList<ITSRule> getRules () {
+		return rules;
+	}
+
+	/**
+	 * Gets the namespace context used to resolve the prefixes of the rules selectors.
+	 * @return the namespace context of the rules.
+	 */
+	NSContextManager getNamespaceContext () {
+		return nsContext;
+	}
 	
 	private void compileRules (Document rulesDoc,
 		URI docURI,
@@ -556,27 +582,37 @@ public class ITSEngine implements IProcessor, ITraversal
 		// If this node has no ITS flags, then we leave the current states
 		// as they are. They have been set by inheritance.
 		if ( data == null ) return;
-		
-		// Otherwise: see if there are any flags to change
+		updateTrace(trace.peek(), data);
+	}
+	
+	/**
+	 * Updates a trace with the flags of a node.
+	 * @param current the trace to update.
+	 * @param data the flag data of the node (must not be null).
+	 */
+	static void updateTrace (ITSTrace current,
+		String data)
+	{
+		// See if there are any flags to change
 		if ( data.charAt(FP_TRANSLATE) != '?' ) {
-			trace.peek().translate = (data.charAt(FP_TRANSLATE) == 'y');
-			trace.peek().targetPointer = getFlagData(data, FP_TRGPOINTER_DATA);
+			current.translate = (data.charAt(FP_TRANSLATE) == 'y');
+			current.targetPointer = getFlagData(data, FP_TRGPOINTER_DATA);
 		}
-		trace.peek().idValue = getFlagData(data, FP_IDVALUE_DATA);
+		current.idValue = getFlagData(data, FP_IDVALUE_DATA);
 		
 		if ( data.charAt(FP_DIRECTIONALITY) != '?' ) {
 			switch ( data.charAt(FP_DIRECTIONALITY) ) {
 			case '0':
-				trace.peek().dir = DIR_LTR;
+				current.dir = DIR_LTR;
 				break;
 			case '1':
-				trace.peek().dir = DIR_RTL;
+				current.dir = DIR_RTL;
 				break;
 			case '2':
-				trace.peek().dir = DIR_LRO;
+				current.dir = DIR_LRO;
 				break;
 			case '3':
-				trace.peek().dir = DIR_LRO;
+				current.dir = DIR_LRO;
 				break;
 			}
 		}
@@ -584,33 +620,33 @@ public class ITSEngine implements IProcessor, ITraversal
 		if ( data.charAt(FP_WITHINTEXT) != '?' ) {
 			switch ( data.charAt(FP_WITHINTEXT) ) {
 			case '0':
-				trace.peek().withinText = WITHINTEXT_NO;
+				current.withinText = WITHINTEXT_NO;
 				break;
 			case '1':
-				trace.peek().withinText = WITHINTEXT_YES;
+				current.withinText = WITHINTEXT_YES;
 				break;
 			case '2':
-				trace.peek().withinText = WITHINTEXT_NESTED;
+				current.withinText = WITHINTEXT_NESTED;
 				break;
 			}
 		}
 		
 		if ( data.charAt(FP_TERMINOLOGY) != '?' ) {
-			trace.peek().term = (data.charAt(FP_TERMINOLOGY) == 'y');
-			trace.peek().termInfo = getFlagData(data, FP_TERMINOLOGY_DATA);
+			current.term = (data.charAt(FP_TERMINOLOGY) == 'y');
+			current.termInfo = getFlagData(data, FP_TERMINOLOGY_DATA);
 		}
 		
 		if ( data.charAt(FP_LOCNOTE) != '?' ) {
-			trace.peek().locNote = getFlagData(data, FP_LOCNOTE_DATA);
+			current.locNote = getFlagData(data, FP_LOCNOTE_DATA);
 		}
 
 		// Preserve white spaces
 		if ( data.charAt(FP_PRESERVEWS) != '?' ) {
-			trace.peek().preserveWS = (data.charAt(FP_PRESERVEWS) == 'y');
+			current.preserveWS = (data.charAt(FP_PRESERVEWS) == 'y');
 		}
 		
 		if ( data.charAt(FP_LANGINFO) != '?' ) {
-			trace.peek().language = getFlagData(data, FP_LANGINFO_DATA);
+			current.language = getFlagData(data, FP_LANGINFO_DATA);
 		}
 
 	}
@@ -927,16 +963,33 @@ public class ITSEngine implements IProcessor, ITraversal
 		int position,
 		char value,
 		boolean override)
+	{
+		node.setUserData(FLAGNAME, setFlag((String)node.getUserData(FLAGNAME),
+			position, value, override), null);
+	}
+
+	/**
+	 * Sets a flag in a given flag data string.
+	 * @param flags The current flag data, or null if there is none yet.
+	 * @param position The position for the data category.
+	 * @param value The value to set.
+	 * @param override True if the value should override an existing value.
+	 * @return The new flag data.
+	 */
+	static String setFlag (String flags,
+		int position,
+		char value,
+		boolean override)
 	{
 		StringBuilder data = new StringBuilder();
-		if ( node.getUserData(FLAGNAME) == null )
+		if ( flags == null )
 			data.append(FLAGDEFAULTDATA);
 		else
-			data.append((String)node.getUserData(FLAGNAME));
+			data.append(flags);
 		// Set the new value (if not there yet or override requested)
 		if ( override || ( data.charAt(position) != '?' )) 
 			data.setCharAt(position, value);
-		node.setUserData(FLAGNAME, data.toString(), null);
+		return data.toString();
 	}
 
 	/**
@@ -951,12 +1004,29 @@ public class ITSEngine implements IProcessor, ITraversal
 		int position,
 		String value,
 		boolean override)
+	{
+		node.setUserData(FLAGNAME, setFlag((String)node.getUserData(FLAGNAME),
+			position, value, override), null);
+	}
+	
+	/**
+	 * Sets the data for a flag in a given flag data string.
+	 * @param flags The current flag data, or null if there is none yet.
+	 * @param position The position for the data category.
+	 * @param value The value to set.
+	 * @param override True if the value should override an existing value.
+	 * @return The new flag data.
+	 */
+	static String setFlag (String flags,
+		int position,
+		String value,
+		boolean override)
 	{
 		StringBuilder data = new StringBuilder();
-		if ( node.getUserData(FLAGNAME) == null )
+		if ( flags == null )
 			data.append(FLAGDEFAULTDATA);
 		else
-			data.append((String)node.getUserData(FLAGNAME));
+			data.append(flags);
 		// Get the data
 		int n1 = 0;
 		int n2 = data.indexOf(FLAGSEP, 0);
@@ -968,10 +1038,10 @@ public class ITSEngine implements IProcessor, ITraversal
 		if ( override || ( n2>n1+1 )) {
 			data.replace(n1+1, n2, value);
 		}
-		node.setUserData(FLAGNAME, data.toString(), null);
+		return data.toString();
 	}
 	
-	private String getFlagData (String data,
+	static String getFlagData (String data,
 		int position)
 	{
 		int n1 = 0;
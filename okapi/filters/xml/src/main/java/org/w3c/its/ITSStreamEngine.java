@@ -0,0 +1,954 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package org.w3c.its;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Stack;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Implements the ITS traversal on a document read with a StAX parser, without
+ * building the tree of the whole document.
+ * <p>The nodes are created as the traversal needs them, and the nodes that have been
+ * traversed are discarded, so the memory used does not depend on the size of
+ * the document. Only the ancestors of the current node (and the first child of each
+ * of them) are kept, so the nodes returned by {@link #nextNode()} can be used
+ * like the nodes of a normal document tree.
+ * <p>The global rules are applied to each element when it is read. This is possible only
+ * for the rules that do not need the rest of the document: the selectors must use the
+ * sub-set of XPath supported by {@link SimpleSelector}, and the pointers must be of the
+ * form <code>@name</code>. Use {@link #canStream(int)} to verify the rules before
+ * calling {@link #open(InputStream)}.
+ * <p>The internal global rules must apply to the whole document, like with {@link ITSEngine}.
+ * Call {@link #scanRules(InputStream)} before {@link #open(InputStream)} to read all of
+ * them first. Otherwise only the rules declared in the start of the document (see
+ * {@link #LOOKAHEAD}) can be used, and an internal global rule found after that causes
+ * an {@link ITSException}.
+ */
+public class ITSStreamEngine implements ITraversal {
+
+	/**
+	 * Number of characters read in advance when the document is opened.
+	 */
+	public static final int LOOKAHEAD = 65536;
+
+	private static final String CDATAEVENT = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+	private static final Pattern POINTER = Pattern.compile("\\s*@([\\w.\\-]+:)?[\\w.\\-]+\\s*");
+	private static final Pattern DOCTYPE = Pattern.compile("<!DOCTYPE\\s+([^\\s\\[>]+)"
+		+ "(?:\\s+PUBLIC\\s+(?:\"([^\"]*)\"|'([^']*)')\\s+(?:\"([^\"]*)\"|'([^']*)')"
+		+ "|\\s+SYSTEM\\s+(?:\"([^\"]*)\"|'([^']*)'))?"
+		+ "\\s*(?:\\[(.*)\\])?\\s*>", Pattern.DOTALL);
+
+	private final URI docURI;
+	private final boolean expandEntityReferences;
+	private final ITSEngine rulesEngine;
+	private final ArrayList<SimpleSelector> selectors;
+	private final IdentityHashMap<Node, String> flags;
+	private final DocumentBuilder docBuilder;
+	private int dataCategories;
+	private XMLStreamReader reader;
+	private Document doc;
+	private Stack<Element> openElements;
+	private boolean pendingEvent;
+	private boolean docDone;
+	private boolean lookingAhead;
+	private boolean unsupportedRules;
+	private boolean rulesScanned;
+	private boolean scanning;
+	private boolean readingRules;
+	private Node node;
+	private boolean startTraversal;
+	private Stack<ITSTrace> trace;
+	private boolean backTracking;
+	private boolean translatableAttributeRuleTriggered;
+	private boolean translatableAttributeRuleDefined;
+	private String xmlVersion;
+	private String xmlEncoding;
+	private String inputEncoding;
+	private boolean xmlStandalone;
+	private String docType;
+
+	/**
+	 * Creates a new streaming engine.
+	 * @param docURI URI of the document to process (can be null).
+	 * @param expandEntityReferences true to expand the entity references, false to
+	 * get them as entity reference nodes.
+	 */
+	public ITSStreamEngine (URI docURI,
+		boolean expandEntityReferences)
+	{
+		this.docURI = docURI;
+		this.expandEntityReferences = expandEntityReferences;
+		rulesEngine = new ITSEngine(null, docURI);
+		selectors = new ArrayList<SimpleSelector>();
+		flags = new IdentityHashMap<Node, String>();
+		try {
+			DocumentBuilderFactory fact = DocumentBuilderFactory.newInstance();
+			fact.setNamespaceAware(true);
+			docBuilder = fact.newDocumentBuilder();
+		}
+		catch ( ParserConfigurationException e ) {
+			throw new ITSException(e);
+		}
+	}
+
+	/**
+	 * Adds a set of global rules to the document to process.
+	 * @param rulesDoc Document where the global rules are declared.
+	 * @param rulesURI URI of the rules document.
+	 * @see IProcessor#addExternalRules(Document, URI)
+	 */
+	public void addExternalRules (Document rulesDoc,
+		URI rulesURI)
+	{
+		rulesEngine.addExternalRules(rulesDoc, rulesURI);
+	}
+
+	/**
+	 * Indicates if the current global rules can be applied while streaming the document.
+	 * This also sets the data categories to apply.
+	 * @param dataCategories Flag indicating what data categories to apply (one or more
+	 * of the IProcessor.DC_* values).
+	 * @return true if all the rules can be applied, false if the document tree is needed.
+	 */
+	public boolean canStream (int dataCategories) {
+		this.dataCategories = dataCategories;
+		selectors.clear();
+		translatableAttributeRuleDefined = false;
+		return compileSelectors();
+	}
+
+	/**
+	 * Reads a whole document to collect its internal global rules, so they apply to
+	 * all of the document when it is opened with {@link #open(InputStream)}. Only the
+	 * ancestors of the current element are kept while reading.
+	 * <p>Call this method after {@link #canStream(int)}, with a stream of the same
+	 * document as the one given later to {@link #open(InputStream)}.
+	 * @param input the stream of the document.
+	 * @return true if all the internal global rules can be applied while streaming,
+	 * false if the document tree is needed.
+	 */
+	public boolean scanRules (InputStream input) {
+		close();
+		createReader(input);
+		doc = docBuilder.newDocument();
+		openElements = new Stack<Element>();
+		pendingEvent = false;
+		docDone = false;
+		unsupportedRules = false;
+		scanning = true;
+		try {
+			while ( !docDone && !unsupportedRules ) {
+				readNext();
+			}
+		}
+		finally {
+			scanning = false;
+			close();
+		}
+		doc = null;
+		openElements = null;
+		if ( unsupportedRules ) return false;
+		rulesScanned = true;
+		return true;
+	}
+
+	/**
+	 * Starts reading a document. The prolog and the first {@link #LOOKAHEAD} characters
+	 * of the document are read, so the information about the XML declaration and the
+	 * document type are available after this call, as well as the internal global rules
+	 * declared at the start of the document.
+	 * @param input the stream of the document.
+	 * @return true if the document can be streamed, false if some of its internal
+	 * global rules cannot be applied without the document tree. 
+	 */
+	public boolean open (InputStream input) {
+		close();
+		createReader(input);
+		xmlVersion = reader.getVersion();
+		if ( xmlVersion == null ) xmlVersion = "1.0";
+		xmlEncoding = reader.getCharacterEncodingScheme();
+		inputEncoding = reader.getEncoding();
+		xmlStandalone = reader.standaloneSet() && reader.isStandalone();
+
+		doc = docBuilder.newDocument();
+		openElements = new Stack<Element>();
+		flags.clear();
+		pendingEvent = false;
+		docDone = false;
+		docType = null;
+		unsupportedRules = false;
+		translatableAttributeRuleTriggered = false;
+		// Read the prolog and the start of the document
+		lookingAhead = true;
+		while ( !docDone && !unsupportedRules ) {
+			if ( doc.getDocumentElement() != null ) {
+				int offset = reader.getLocation().getCharacterOffset();
+				if (( offset < 0 ) || ( offset > LOOKAHEAD )) break;
+			}
+			readNext();
+		}
+		lookingAhead = false;
+		return !unsupportedRules;
+	}
+
+	private void createReader (InputStream input) {
+		XMLInputFactory fact = XMLInputFactory.newInstance();
+		fact.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		fact.setProperty(XMLInputFactory.IS_COALESCING, false);
+		fact.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, expandEntityReferences);
+		if ( fact.isPropertySupported(CDATAEVENT) ) {
+			fact.setProperty(CDATAEVENT, true);
+		}
+		// Avoid reading the external DTD (like DefaultEntityResolver)
+		fact.setXMLResolver(new XMLResolver() {
+			public Object resolveEntity (String publicID,
+				String systemID,
+				String baseURI,
+				String namespace)
+			{
+				return new ByteArrayInputStream(new byte[0]);
+			}
+		});
+		try {
+			if ( docURI != null ) reader = fact.createXMLStreamReader(docURI.toString(), input);
+			else reader = fact.createXMLStreamReader(input);
+		}
+		catch ( XMLStreamException e ) {
+			throw new ITSException(e);
+		}
+	}
+
+	/**
+	 * Closes the parser. This does not close the input stream.
+	 */
+	public void close () {
+		if ( reader != null ) {
+			try {
+				reader.close();
+			}
+			catch ( XMLStreamException e ) {
+				throw new ITSException(e);
+			}
+			reader = null;
+		}
+	}
+
+	/**
+	 * Indicates if the processed document may trigger a rule for a translatable attribute.
+	 * If the document has not been read entirely, this is true as soon as one of
+	 * the rules that select attributes sets them as translatable.
+	 * @return true if the document may trigger a rule for a translatable attribute.
+	 */
+	public boolean getTranslatableAttributeRuleTriggered () {
+		if ( docDone ) return translatableAttributeRuleTriggered;
+		return translatableAttributeRuleTriggered || translatableAttributeRuleDefined;
+	}
+
+	/**
+	 * Gets the version of the document, as declared in the XML declaration.
+	 * @return the version of the document ("1.0" if none is declared).
+	 */
+	public String getXmlVersion () {
+		return xmlVersion;
+	}
+
+	/**
+	 * Gets the encoding declared in the XML declaration.
+	 * @return the declared encoding, or null if none is declared.
+	 */
+	public String getXmlEncoding () {
+		return xmlEncoding;
+	}
+
+	/**
+	 * Gets the encoding used to read the document.
+	 * @return the encoding used to read the document, or null if it is not known.
+	 */
+	public String getInputEncoding () {
+		return inputEncoding;
+	}
+
+	/**
+	 * Indicates if the document is declared as standalone.
+	 * @return true if the document is declared as standalone.
+	 */
+	public boolean getXmlStandalone () {
+		return xmlStandalone;
+	}
+
+	/**
+	 * Gets the parts of the document type declaration.
+	 * @return an array with the name, the public identifier, the system identifier and 
+	 * the internal subset (each can be null), or null if there is no document type declaration.
+	 */
+	public String[] getDocType () {
+		if ( docType == null ) return null;
+		Matcher m = DOCTYPE.matcher(docType);
+		if ( !m.find() ) return null;
+		String[] res = new String[4];
+		res[0] = m.group(1);
+		res[1] = (m.group(2) != null) ? m.group(2) : m.group(3);
+		if ( res[1] != null ) res[2] = (m.group(4) != null) ? m.group(4) : m.group(5);
+		else res[2] = (m.group(6) != null) ? m.group(6) : m.group(7);
+		res[3] = m.group(8);
+		return res;
+	}
+
+	public void startTraversal () {
+		node = null;
+		trace = new Stack<ITSTrace>();
+		startTraversal = true;
+	}
+
+	public boolean backTracking () {
+		return backTracking;
+	}
+
+	public Node nextNode () {
+		if ( startTraversal ) {
+			startTraversal = false;
+			// Set the initial trace with default behaviors
+			ITSTrace startTrace = new ITSTrace();
+			startTrace.translate = true;
+			startTrace.isChildDone = true;
+			trace.push(startTrace); // For first child
+			node = doc.getFirstChild();
+			trace.push(new ITSTrace(trace.peek(), false));
+		}
+		else if ( node != null ) {
+			backTracking = false;
+			if ( !trace.peek().isChildDone && hasChildNodes(node) ) {
+				// Change the flag for the current node
+				ITSTrace tmp = new ITSTrace(trace.peek(), true);
+				trace.pop();
+				trace.push(tmp);
+				// Get the new node and push its flag
+				node = node.getFirstChild();
+				trace.push(new ITSTrace(trace.peek(), false));
+			}
+			else {
+				Node tmpNode = getNextSibling(node);
+				Node parent = node.getParentNode();
+				release(node);
+				if ( tmpNode == null ) {
+					node = parent;
+					trace.pop();
+					backTracking = true;
+				}
+				else {
+					node = tmpNode;
+					trace.pop(); // Remove flag for previous sibling
+					trace.push(new ITSTrace(trace.peek(), false)); // Set new flag for new sibling
+				}
+			}
+		}
+		if ( node == null ) return null;
+		// Make sure the caller can tell if the element has content
+		if ( !backTracking && ( node.getNodeType() == Node.ELEMENT_NODE )) {
+			hasChildNodes(node);
+		}
+		// Update the trace
+		String data = flags.get(node);
+		if ( data != null ) {
+			ITSEngine.updateTrace(trace.peek(), data);
+		}
+		return node;
+	}
+
+	public boolean translate () {
+		return trace.peek().translate;
+	}
+	
+	public boolean translate (Attr attribute) {
+		if ( attribute == null ) return false;
+		String tmp;
+		if ( (tmp = flags.get(attribute)) == null ) return false;
+		return (tmp.charAt(ITSEngine.FP_TRANSLATE) == 'y');
+	}
+
+	public String getTargetPointer () {
+		return trace.peek().targetPointer;
+	}
+	
+	public String getIdValue () {
+		return trace.peek().idValue;
+	}
+	
+	public int getDirectionality () {
+		return trace.peek().dir;
+	}
+
+	public int getDirectionality (Attr attribute) {
+		if ( attribute == null ) return DIR_LTR;
+		String tmp;
+		if ( (tmp = flags.get(attribute)) == null ) return DIR_LTR;
+		return Integer.valueOf(tmp.charAt(ITSEngine.FP_DIRECTIONALITY));
+	}
+	
+	public int getWithinText () {
+		return trace.peek().withinText;
+	}
+	
+	public boolean isTerm () {
+		return trace.peek().term;
+	}
+	
+	public String getTermInfo () {
+		return trace.peek().termInfo;
+	}
+
+	public boolean isTerm (Attr attribute) {
+		if ( attribute == null ) return false;
+		String tmp;
+		if ( (tmp = flags.get(attribute)) == null ) return false;
+		return (tmp.charAt(ITSEngine.FP_TERMINOLOGY) == 'y');
+	}
+
+	public String getNote () {
+		return trace.peek().locNote;
+	}
+	
+	public String getNote (Attr attribute) {
+		if ( attribute == null ) return null;
+		String tmp;
+		if ( (tmp = flags.get(attribute)) == null ) return null;
+		if ( tmp.charAt(ITSEngine.FP_LOCNOTE) != 'y' ) return null;
+		return ITSEngine.getFlagData(tmp, ITSEngine.FP_LOCNOTE_DATA);
+	}
+
+	public boolean preserveWS () {
+		return trace.peek().preserveWS;
+	}
+
+	public String getLanguage () {
+		return trace.peek().language;
+	}
+
+	/**
+	 * Compiles the selectors of the rules that have not been compiled yet.
+	 * @return false if one of the rules is not supported, true otherwise.
+	 */
+	private boolean compileSelectors () {
+		ArrayList<ITSRule> rules = rulesEngine.getRules();
+		for ( int i=selectors.size(); i<rules.size(); i++ ) {
+			ITSRule rule = rules.get(i);
+			SimpleSelector sel = null;
+			if ( (dataCategories & rule.ruleType) != 0 ) {
+				if ( !isSupported(rule) ) return false;
+				sel = SimpleSelector.compile(rule.selector, rulesEngine.getNamespaceContext());
+				if ( sel == null ) return false;
+				if (( rule.ruleType == IProcessor.DC_TRANSLATE ) && rule.flag && sel.selectsAttributes() ) {
+					translatableAttributeRuleDefined = true;
+				}
+			}
+			selectors.add(sel);
+		}
+		return true;
+	}
+	
+	private boolean isSupported (ITSRule rule) {
+		switch ( rule.ruleType ) {
+		case IProcessor.DC_TRANSLATE:
+			return (( rule.idValue == null ) || isPointer(rule.idValue));
+		case IProcessor.DC_TERMINOLOGY:
+			if (( rule.infoType == ITSEngine.TERMINFOTYPE_POINTER )
+				|| ( rule.infoType == ITSEngine.TERMINFOTYPE_REFPOINTER )) {
+				return isPointer(rule.info);
+			}
+			return true;
+		case IProcessor.DC_LOCNOTE:
+			if (( rule.infoType == ITSEngine.LOCNOTETYPE_POINTER )
+				|| ( rule.infoType == ITSEngine.LOCNOTETYPE_REFPOINTER )) {
+				return isPointer(rule.info);
+			}
+			return true;
+		case IProcessor.DC_LANGINFO:
+			return isPointer(rule.info);
+		case IProcessor.DC_DIRECTIONALITY:
+		case IProcessor.DC_WITHINTEXT:
+			return true;
+		}
+		return false;
+	}
+
+	private boolean isPointer (String pointer) {
+		return (( pointer != null ) && POINTER.matcher(pointer).matches());
+	}
+	
+	/**
+	 * Resolves a pointer of the form <code>@name</code>.
+	 * @param node the node where the rule applies.
+	 * @param pointer the pointer to resolve.
+	 * @return the value of the attribute, or an empty string.
+	 */
+	private String resolvePointer (Node node,
+		String pointer)
+	{
+		if ( node.getNodeType() != Node.ELEMENT_NODE ) return "";
+		String name = pointer.trim().substring(1);
+		String nsURI = null;
+		int n = name.indexOf(':');
+		if ( n > -1 ) {
+			nsURI = rulesEngine.getNamespaceContext().getNamespaceURI(name.substring(0, n));
+			name = name.substring(n+1);
+		}
+		Attr attr = ((Element)node).getAttributeNodeNS(nsURI, name);
+		return (attr == null) ? "" : attr.getValue();
+	}
+
+	private void setFlag (Node node,
+		int position,
+		char value,
+		boolean override)
+	{
+		flags.put(node, ITSEngine.setFlag(flags.get(node), position, value, override));
+	}
+
+	private void setFlag (Node node,
+		int position,
+		String value,
+		boolean override)
+	{
+		flags.put(node, ITSEngine.setFlag(flags.get(node), position, value, override));
+	}
+
+	/**
+	 * Applies the global and local rules to a new element and its attributes.
+	 * @param elem the element to process.
+	 */
+	private void applyRules (Element elem) {
+		ArrayList<ITSRule> rules = rulesEngine.getRules();
+		NamedNodeMap attrs = elem.getAttributes();
+		for ( int i=0; i<selectors.size(); i++ ) {
+			SimpleSelector sel = selectors.get(i);
+			if ( sel == null ) continue;
+			if ( sel.matches(elem) ) {
+				applyRule(elem, rules.get(i));
+			}
+			if ( sel.selectsAttributes() ) {
+				for ( int j=0; j<attrs.getLength(); j++ ) {
+					Attr attr = (Attr)attrs.item(j);
+					if ( XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI()) ) continue;
+					if ( sel.matches(attr) ) applyRule(attr, rules.get(i));
+				}
+			}
+		}
+		for ( int j=0; j<attrs.getLength(); j++ ) {
+			applyLocalRule(elem, (Attr)attrs.item(j));
+		}
+	}
+
+	private void applyRule (Node node,
+		ITSRule rule)
+	{
+		switch ( rule.ruleType ) {
+		case IProcessor.DC_TRANSLATE:
+			setFlag(node, ITSEngine.FP_TRANSLATE, (rule.flag ? 'y' : 'n'), true);
+			if ( rule.flag && ( node.getNodeType() == Node.ATTRIBUTE_NODE )) {
+				translatableAttributeRuleTriggered = true;
+			}
+			if ( rule.infoType == ITSEngine.TRANSLATE_TRGPOINTER ) {
+				setFlag(node, ITSEngine.FP_TRGPOINTER_DATA, rule.info, true);
+			}
+			if ( rule.idValue != null ) {
+				setFlag(node, ITSEngine.FP_IDVALUE_DATA, resolvePointer(node, rule.idValue), true);
+			}
+			setFlag(node, ITSEngine.FP_PRESERVEWS, (rule.preserveWS ? 'y' : '?'), true);
+			break;
+		case IProcessor.DC_DIRECTIONALITY:
+			setFlag(node, ITSEngine.FP_DIRECTIONALITY, String.valueOf(rule.value).charAt(0), true);
+			break;
+		case IProcessor.DC_WITHINTEXT:
+			setFlag(node, ITSEngine.FP_WITHINTEXT, String.valueOf(rule.value).charAt(0), true);
+			break;
+		case IProcessor.DC_TERMINOLOGY:
+			setFlag(node, ITSEngine.FP_TERMINOLOGY, (rule.flag ? 'y' : 'n'), true);
+			switch ( rule.infoType ) {
+			case ITSEngine.TERMINFOTYPE_POINTER:
+				setFlag(node, ITSEngine.FP_TERMINOLOGY_DATA, resolvePointer(node, rule.info), true);
+				break;
+			case ITSEngine.TERMINFOTYPE_REF:
+				setFlag(node, ITSEngine.FP_TERMINOLOGY_DATA, "REF:"+rule.info, true);
+				break;
+			case ITSEngine.TERMINFOTYPE_REFPOINTER:
+				setFlag(node, ITSEngine.FP_TERMINOLOGY_DATA, "REF:"+resolvePointer(node, rule.info), true);
+				break;
+			}
+			break;
+		case IProcessor.DC_LOCNOTE:
+			setFlag(node, ITSEngine.FP_LOCNOTE, 'y', true);
+			switch ( rule.infoType ) {
+			case ITSEngine.LOCNOTETYPE_TEXT:
+				setFlag(node, ITSEngine.FP_LOCNOTE_DATA, rule.info, true);
+				break;
+			case ITSEngine.LOCNOTETYPE_POINTER:
+				setFlag(node, ITSEngine.FP_LOCNOTE_DATA, resolvePointer(node, rule.info), true);
+				break;
+			case ITSEngine.LOCNOTETYPE_REF:
+				setFlag(node, ITSEngine.FP_LOCNOTE_DATA, "REF:"+rule.info, true);
+				break;
+			case ITSEngine.LOCNOTETYPE_REFPOINTER:
+				setFlag(node, ITSEngine.FP_LOCNOTE_DATA, "REF:"+resolvePointer(node, rule.info), true);
+				break;
+			}
+			break;
+		case IProcessor.DC_LANGINFO:
+			setFlag(node, ITSEngine.FP_LANGINFO, 'y', true);
+			setFlag(node, ITSEngine.FP_LANGINFO_DATA, resolvePointer(node, rule.info), true);
+			break;
+		}
+	}
+
+	/**
+	 * Applies the local ITS markup, xml:space and xml:id of a given attribute.
+	 * This follows the same logic as the local rules of {@link ITSEngine}.
+	 * @param elem the element of the attribute.
+	 * @param attr the attribute to process.
+	 */
+	private void applyLocalRule (Element elem,
+		Attr attr)
+	{
+		String nsURI = attr.getNamespaceURI();
+		String name = attr.getLocalName();
+		String value = attr.getValue();
+		boolean inITSSpan = ITSEngine.ITS_NS_URI.equals(elem.getNamespaceURI())
+			&& "span".equals(elem.getLocalName());
+		boolean isITSAttr = ITSEngine.ITS_NS_URI.equals(nsURI);
+		boolean isLocalAttr = inITSSpan && ( nsURI == null );
+		String ruleName = ITSEngine.ITS_NS_URI.equals(elem.getNamespaceURI()) ? elem.getLocalName() : null;
+
+		if ( "translate".equals(name) && ( isITSAttr || isLocalAttr )) {
+			if ( (dataCategories & IProcessor.DC_TRANSLATE) == 0 ) return;
+			if ( "translateRule".equals(ruleName) ) return;
+			if (( !"yes".equals(value) ) && ( !"no".equals(value) )) {
+				throw new ITSException("Invalid value for 'translate'.");
+			}
+			setFlag(elem, ITSEngine.FP_TRANSLATE, value.charAt(0), true);
+		}
+		else if ( "dir".equals(name) && ( isITSAttr || isLocalAttr )) {
+			if ( (dataCategories & IProcessor.DC_DIRECTIONALITY) == 0 ) return;
+			if ( "dirRule".equals(ruleName) ) return;
+			int n = DIR_LTR;
+			if ( "rtl".equals(value) ) n = DIR_LTR; 
+			else if ( "ltr".equals(value) ) n = DIR_RTL; 
+			else if ( "rlo".equals(value) ) n = DIR_RLO; 
+			else if ( "lro".equals(value) ) n = DIR_LRO;
+			else throw new ITSException("Invalid value for 'dir'."); 
+			setFlag(elem, ITSEngine.FP_DIRECTIONALITY, String.format("%d", n).charAt(0), true);
+		}
+		else if ( "term".equals(name) && isITSAttr ) {
+			if ( (dataCategories & IProcessor.DC_TERMINOLOGY) == 0 ) return;
+			if ( "termRule".equals(ruleName) ) return;
+			if (( !"yes".equals(value) ) && ( !"no".equals(value) )) {
+				throw new ITSException("Invalid value for 'term'.");
+			}
+			setFlag(elem, ITSEngine.FP_TERMINOLOGY, value.charAt(0), true);
+		}
+		else if (( "locNote".equals(name) && isITSAttr ) || ( "locNoteRef".equals(name) && isLocalAttr )) {
+			if ( (dataCategories & IProcessor.DC_LOCNOTE) == 0 ) return;
+			if ( "locNoteRule".equals(ruleName) ) return;
+			setFlag(elem, ITSEngine.FP_LOCNOTE, 'y', true);
+			if ( name.equals("locNote") ) {
+				setFlag(elem, ITSEngine.FP_LOCNOTE_DATA, value, true);
+			}
+		}
+		else if ( ITSEngine.XML_NS_URI.equals(nsURI) ) {
+			if ( "lang".equals(name) ) {
+				if ( (dataCategories & IProcessor.DC_LANGINFO) == 0 ) return;
+				setFlag(elem, ITSEngine.FP_LANGINFO, 'y', true);
+				setFlag(elem, ITSEngine.FP_LANGINFO_DATA, value, true);
+			}
+			else if ( "space".equals(name) ) { // Always applied
+				if (( !"preserve".equals(value) ) && ( !"default".equals(value) )) {
+					throw new ITSException("Invalid value for 'xml:space'.");
+				}
+				setFlag(elem, ITSEngine.FP_PRESERVEWS, ("preserve".equals(value) ? 'y' : '?'), true);
+			}
+			else if ( "id".equals(name) ) { // Always applied
+				if ( value.length() > 0 ) {
+					setFlag(elem, ITSEngine.FP_IDVALUE_DATA, value, true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indicates if a node has children, reading the document if needed.
+	 * @param node the node to check.
+	 * @return true if the node has at least one child.
+	 */
+	private boolean hasChildNodes (Node node) {
+		while ( !node.hasChildNodes() && isOpen(node) ) {
+			readNext();
+		}
+		return node.hasChildNodes();
+	}
+	
+	/**
+	 * Gets the next sibling of a node, reading the document if needed.
+	 * @param node the node for which to get the next sibling.
+	 * @return the next sibling of the node, or null if there is none.
+	 */
+	private Node getNextSibling (Node node) {
+		Node parent = node.getParentNode();
+		if ( parent == null ) return null;
+		while (( node.getNextSibling() == null ) && isOpen(parent) ) {
+			readNext();
+		}
+		return node.getNextSibling();
+	}
+	
+	private boolean isOpen (Node node) {
+		if ( node.getNodeType() == Node.DOCUMENT_NODE ) return !docDone;
+		return ( !openElements.isEmpty() && ( openElements.peek() == node ));
+	}
+
+	/**
+	 * Discards a node that has been traversed. The first child of a node is always
+	 * kept, so its parent still reports it has children. The content of the terms
+	 * is kept until the term is traversed.
+	 * @param done the node to discard.
+	 */
+	private void release (Node done) {
+		Node parent = done.getParentNode();
+		if (( parent == null ) || ( parent.getFirstChild() == done )) return;
+		Node tmp = parent;
+		while (( tmp != null ) && ( tmp.getNodeType() == Node.ELEMENT_NODE )) {
+			String data = flags.get(tmp);
+			if (( data != null ) && ( data.charAt(ITSEngine.FP_TERMINOLOGY) == 'y' )) return;
+			tmp = tmp.getParentNode();
+		}
+		parent.removeChild(done);
+		forget(done);
+	}
+	
+	private void forget (Node done) {
+		flags.remove(done);
+		if ( done.getNodeType() == Node.ELEMENT_NODE ) {
+			NamedNodeMap attrs = done.getAttributes();
+			for ( int i=0; i<attrs.getLength(); i++ ) {
+				flags.remove(attrs.item(i));
+			}
+		}
+		for ( Node child=done.getFirstChild(); child!=null; child=child.getNextSibling() ) {
+			forget(child);
+		}
+	}
+
+	/**
+	 * Reads the next node of the document and adds it to the tree.
+	 */
+	private void readNext () {
+		try {
+			while ( true ) {
+				int type = (pendingEvent ? reader.getEventType() : reader.next());
+				pendingEvent = false;
+				switch ( type ) {
+				case XMLStreamConstants.START_ELEMENT:
+					startElement();
+					return;
+				case XMLStreamConstants.END_ELEMENT:
+					Element done = openElements.pop();
+					if ( scanning && !readingRules ) {
+						// Only the ancestors are needed to read the rules
+						done.getParentNode().removeChild(done);
+					}
+					return;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+					if ( openElements.isEmpty() ) continue; // White spaces outside the document element
+					// Group consecutive chunks of text in a single node
+					StringBuilder tmp = new StringBuilder(reader.getText());
+					while ( true ) {
+						type = reader.next();
+						if (( type != XMLStreamConstants.CHARACTERS ) && ( type != XMLStreamConstants.SPACE )) break;
+						tmp.append(reader.getText());
+					}
+					pendingEvent = true;
+					append(doc.createTextNode(tmp.toString()));
+					return;
+				case XMLStreamConstants.CDATA:
+					append(doc.createCDATASection(reader.getText()));
+					return;
+				case XMLStreamConstants.COMMENT:
+					append(doc.createComment(reader.getText()));
+					return;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					String data = reader.getPIData();
+					append(doc.createProcessingInstruction(reader.getPITarget(),
+						(data == null) ? "" : data.trim()));
+					return;
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					append(doc.createEntityReference(reader.getLocalName()));
+					return;
+				case XMLStreamConstants.DTD:
+					docType = reader.getText();
+					continue;
+				case XMLStreamConstants.END_DOCUMENT:
+					docDone = true;
+					return;
+				default:
+					continue;
+				}
+			}
+		}
+		catch ( XMLStreamException e ) {
+			throw new ITSException(e);
+		}
+	}
+
+	private void append (Node newNode) {
+		if ( scanning && !readingRules && ( newNode.getNodeType() != Node.ELEMENT_NODE )) return;
+		if ( openElements.isEmpty() ) doc.appendChild(newNode);
+		else openElements.peek().appendChild(newNode);
+	}
+	
+	private void startElement () {
+		Element elem = doc.createElementNS(emptyToNull(reader.getNamespaceURI()),
+			makeQName(reader.getPrefix(), reader.getLocalName()));
+		// Namespace declarations
+		for ( int i=0; i<reader.getNamespaceCount(); i++ ) {
+			String prefix = emptyToNull(reader.getNamespacePrefix(i));
+			String uri = reader.getNamespaceURI(i);
+			elem.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+				(prefix == null) ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE+":"+prefix,
+				(uri == null) ? "" : uri);
+		}
+		// Attributes (default attributes are not part of the output)
+		for ( int i=0; i<reader.getAttributeCount(); i++ ) {
+			if ( !reader.isAttributeSpecified(i) ) continue;
+			elem.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)),
+				makeQName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+				reader.getAttributeValue(i));
+		}
+		append(elem);
+		openElements.push(elem);
+		if ( !scanning ) applyRules(elem);
+		
+		// Internal rules: read the whole element and add its rules
+		if ( ITSEngine.ITS_NS_URI.equals(elem.getNamespaceURI()) && "rules".equals(elem.getLocalName()) ) {
+			int depth = openElements.size();
+			readingRules = scanning;
+			try {
+				while ( openElements.size() >= depth ) {
+					readNext();
+				}
+			}
+			finally {
+				readingRules = false;
+			}
+			// The rules of the whole document have been added already if it was scanned
+			if ( !rulesScanned || scanning ) addInternalRules(elem);
+			if ( scanning ) elem.getParentNode().removeChild(elem);
+		}
+	}
+	
+	private void addInternalRules (Element rulesElem) {
+		Document rulesDoc = docBuilder.newDocument();
+		Element root = (Element)rulesDoc.importNode(rulesElem, true);
+		rulesDoc.appendChild(root);
+		// Copy the namespace declarations in scope
+		Node tmp = rulesElem.getParentNode();
+		while (( tmp != null ) && ( tmp.getNodeType() == Node.ELEMENT_NODE )) {
+			NamedNodeMap attrs = tmp.getAttributes();
+			for ( int i=0; i<attrs.getLength(); i++ ) {
+				Attr attr = (Attr)attrs.item(i);
+				if ( !XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI()) ) continue;
+				if ( root.hasAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attr.getLocalName()) ) continue;
+				root.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attr.getName(), attr.getValue());
+			}
+			tmp = tmp.getParentNode();
+		}
+		rulesEngine.addInternalRules(rulesDoc);
+		boolean supported = compileSelectors();
+		if ( scanning ) {
+			if ( !supported ) unsupportedRules = true;
+			return;
+		}
+		if ( lookingAhead ) {
+			// Nothing has been traversed yet: the rules can apply to the whole document
+			if ( supported ) reapplyRules(doc.getDocumentElement());
+			else unsupportedRules = true;
+			return;
+		}
+		if ( !supported ) {
+			throw new ITSException(String.format("The rule with the selector \"%s\" cannot be applied "
+				+ "while streaming the document.", rulesEngine.getRules().get(selectors.size()).selector));
+		}
+		throw new ITSException("The internal rules found after the start of the document cannot be "
+			+ "applied while streaming it. Use scanRules() before opening the document.");
+	}
+	
+	/**
+	 * Re-applies the rules to a given element and all the elements after it that have
+	 * been read already.
+	 * @param elem the element where to start.
+	 */
+	private void reapplyRules (Element elem) {
+		flags.remove(elem);
+		NamedNodeMap attrs = elem.getAttributes();
+		for ( int i=0; i<attrs.getLength(); i++ ) {
+			flags.remove(attrs.item(i));
+		}
+		applyRules(elem);
+		for ( Node child=elem.getFirstChild(); child!=null; child=child.getNextSibling() ) {
+			if ( child.getNodeType() == Node.ELEMENT_NODE ) {
+				reapplyRules((Element)child);
+			}
+		}
+	}
+
+	private String emptyToNull (String text) {
+		if (( text == null ) || ( text.length() == 0 )) return null;
+		return text;
+	}
+	
+	private String makeQName (String prefix,
+		String localName)
+	{
+		if (( prefix == null ) || ( prefix.length() == 0 )) return localName;
+		return prefix+":"+localName;
+	}
+
+}
@@ -0,0 +1,302 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package org.w3c.its;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Simple XPath selector that can be evaluated for one node at a time, using only
+ * the ancestors of the node. This is used to apply global rules while the document
+ * is read, without the document tree.
+ * <p>Only the following sub-set of XPath is supported: absolute location paths
+ * made of child (<code>/</code>) and descendant (<code>//</code>) steps, with name tests
+ * (<code>name</code>, <code>prefix:name</code>, <code>prefix:*</code> or <code>*</code>),
+ * optional attribute predicates (<code>[@name]</code> or <code>[@name='value']</code>)
+ * and an optional final attribute step (<code>/@name</code> or <code>//@name</code>).
+ * Several paths can be combined with <code>|</code>.
+ */
+class SimpleSelector {
+
+	private static class NameTest {
+		String nsURI; // Null for any namespace
+		String localName; // Null for any name
+		
+		boolean matches (Node node) {
+			if ( localName != null ) {
+				if ( !localName.equals(node.getLocalName()) ) return false;
+			}
+			if ( nsURI == null ) return true;
+			String tmp = node.getNamespaceURI();
+			if ( tmp == null ) tmp = XMLConstants.NULL_NS_URI;
+			return nsURI.equals(tmp);
+		}
+	}
+	
+	private static class Step {
+		boolean descendant;
+		NameTest test;
+		List<NameTest> predAttrs;
+		List<String> predValues;
+		
+		boolean matches (Element elem) {
+			if ( !test.matches(elem) ) return false;
+			if ( predAttrs == null ) return true;
+			for ( int i=0; i<predAttrs.size(); i++ ) {
+				NameTest pred = predAttrs.get(i);
+				Attr attr = elem.getAttributeNodeNS(
+					(XMLConstants.NULL_NS_URI.equals(pred.nsURI) ? null : pred.nsURI), pred.localName);
+				if ( attr == null ) return false;
+				if (( predValues.get(i) != null ) && !predValues.get(i).equals(attr.getValue()) ) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+	
+	private static class Path {
+		List<Step> steps = new ArrayList<Step>();
+		Step attrStep; // Null if the path selects elements
+	}
+	
+	private List<Path> paths;
+	
+	private SimpleSelector () {
+		paths = new ArrayList<Path>();
+	}
+
+	/**
+	 * Compiles a selector.
+	 * @param selector the XPath expression to compile.
+	 * @param nsContext the namespace context to use to resolve the prefixes.
+	 * @return the compiled selector, or null if the expression is not part of the
+	 * supported sub-set of XPath.
+	 */
+	static SimpleSelector compile (String selector,
+		NamespaceContext nsContext)
+	{
+		if ( selector == null ) return null;
+		SimpleSelector sel = new SimpleSelector();
+		int pos = 0;
+		int len = selector.length();
+		while ( true ) {
+			Path path = new Path();
+			pos = skipSpaces(selector, pos);
+			while (( pos < len ) && ( selector.charAt(pos) == '/' )) {
+				Step step = new Step();
+				pos++;
+				if (( pos < len ) && ( selector.charAt(pos) == '/' )) {
+					step.descendant = true;
+					pos++;
+				}
+				if ( path.attrStep != null ) return null; // Nothing allowed after the attribute
+				boolean isAttr = (( pos < len ) && ( selector.charAt(pos) == '@' ));
+				if ( isAttr ) pos++;
+				int end = scanName(selector, pos);
+				if ( end == pos ) return null;
+				step.test = compileNameTest(selector.substring(pos, end), nsContext, isAttr);
+				if ( step.test == null ) return null;
+				pos = end;
+				if ( isAttr ) {
+					path.attrStep = step;
+					continue;
+				}
+				// Predicates
+				while (( pos < len ) && ( selector.charAt(pos) == '[' )) {
+					pos = skipSpaces(selector, pos+1);
+					if (( pos >= len ) || ( selector.charAt(pos) != '@' )) return null;
+					end = scanName(selector, ++pos);
+					if ( end == pos ) return null;
+					NameTest pred = compileNameTest(selector.substring(pos, end), nsContext, true);
+					if (( pred == null ) || ( pred.localName == null )) return null;
+					String value = null;
+					pos = skipSpaces(selector, end);
+					if (( pos < len ) && ( selector.charAt(pos) == '=' )) {
+						pos = skipSpaces(selector, pos+1);
+						if ( pos >= len ) return null;
+						char quote = selector.charAt(pos);
+						if (( quote != '\'' ) && ( quote != '"' )) return null;
+						end = selector.indexOf(quote, pos+1);
+						if ( end == -1 ) return null;
+						value = selector.substring(pos+1, end);
+						pos = skipSpaces(selector, end+1);
+					}
+					if (( pos >= len ) || ( selector.charAt(pos) != ']' )) return null;
+					pos++;
+					if ( step.predAttrs == null ) {
+						step.predAttrs = new ArrayList<NameTest>();
+						step.predValues = new ArrayList<String>();
+					}
+					step.predAttrs.add(pred);
+					step.predValues.add(value);
+				}
+				path.steps.add(step);
+			}
+			if (( path.steps.size() == 0 ) && ( path.attrStep == null )) return null;
+			sel.paths.add(path);
+			pos = skipSpaces(selector, pos);
+			if ( pos == len ) break;
+			if ( selector.charAt(pos) != '|' ) return null;
+			pos++;
+		}
+		return sel;
+	}
+
+	/**
+	 * Indicates if this selector selects a given element.
+	 * @param elem the element to evaluate. All its ancestors must be available.
+	 * @return true if the element is selected, false otherwise.
+	 */
+	boolean matches (Element elem) {
+		List<Element> chain = null;
+		for ( Path path : paths ) {
+			if ( path.attrStep != null ) continue;
+			if ( chain == null ) chain = getChain(elem);
+			if ( matches(path.steps, path.steps.size()-1, chain, chain.size()-1) ) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Indicates if this selector selects a given attribute.
+	 * @param attr the attribute to evaluate. All the ancestors of its element must be available.
+	 * @return true if the attribute is selected, false otherwise.
+	 */
+	boolean matches (Attr attr) {
+		List<Element> chain = null;
+		for ( Path path : paths ) {
+			if ( path.attrStep == null ) continue;
+			if ( !path.attrStep.test.matches(attr) ) continue;
+			if ( path.steps.size() == 0 ) {
+				// '//@name' selects the attribute on any element, '/@name' selects nothing
+				if ( path.attrStep.descendant ) return true;
+				continue;
+			}
+			if ( chain == null ) chain = getChain(attr.getOwnerElement());
+			int last = path.steps.size()-1;
+			if ( path.attrStep.descendant ) {
+				for ( int i=chain.size()-1; i>=0; i-- ) {
+					if ( matches(path.steps, last, chain, i) ) return true;
+				}
+			}
+			else if ( matches(path.steps, last, chain, chain.size()-1) ) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Indicates if this selector may select attributes.
+	 * @return true if at least one of the paths of this selector ends with an attribute step.
+	 */
+	boolean selectsAttributes () {
+		for ( Path path : paths ) {
+			if ( path.attrStep != null ) return true;
+		}
+		return false;
+	}
+
+	private static boolean matches (List<Step> steps,
+		int stepIndex,
+		List<Element> chain,
+		int elemIndex)
+	{
+		Step step = steps.get(stepIndex);
+		if ( !step.matches(chain.get(elemIndex)) ) return false;
+		if ( stepIndex == 0 ) {
+			// First step: '/' is the document element, '//' any element
+			return ( step.descendant || ( elemIndex == 0 ));
+		}
+		if ( !step.descendant ) {
+			return (( elemIndex > 0 ) && matches(steps, stepIndex-1, chain, elemIndex-1));
+		}
+		for ( int i=elemIndex-1; i>=0; i-- ) {
+			if ( matches(steps, stepIndex-1, chain, i) ) return true;
+		}
+		return false;
+	}
+	
+	private static List<Element> getChain (Element elem) {
+		ArrayList<Element> chain = new ArrayList<Element>();
+		Node node = elem;
+		while (( node != null ) && ( node.getNodeType() == Node.ELEMENT_NODE )) {
+			chain.add(0, (Element)node);
+			node = node.getParentNode();
+		}
+		return chain;
+	}
+
+	private static NameTest compileNameTest (String name,
+		NamespaceContext nsContext,
+		boolean isAttr)
+	{
+		NameTest test = new NameTest();
+		if ( "*".equals(name) ) return test; // Any name in any namespace
+		int n = name.indexOf(':');
+		if ( n == -1 ) {
+			test.nsURI = XMLConstants.NULL_NS_URI;
+			test.localName = name;
+		}
+		else {
+			test.nsURI = nsContext.getNamespaceURI(name.substring(0, n));
+			if ( XMLConstants.NULL_NS_URI.equals(test.nsURI) ) return null; // Undefined prefix
+			test.localName = name.substring(n+1);
+			if ( "*".equals(test.localName) ) test.localName = null;
+		}
+		if ( isAttr && ( test.localName == null ) && ( test.nsURI != null )) {
+			return null; // Keep attribute tests simple
+		}
+		if ( test.localName != null ) {
+			if (( test.localName.length() == 0 ) || ( test.localName.indexOf(':') > -1 )
+				|| ( test.localName.indexOf('*') > -1 )) return null;
+		}
+		return test;
+	}
+	
+	private static int scanName (String text,
+		int pos)
+	{
+		while ( pos < text.length() ) {
+			char ch = text.charAt(pos);
+			if ( Character.isLetterOrDigit(ch) || ( ch == '_' ) || ( ch == '-' )
+				|| ( ch == '.' ) || ( ch == ':' ) || ( ch == '*' )) {
+				pos++;
+			}
+			else break;
+		}
+		return pos;
+	}
+	
+	private static int skipSpaces (String text,
+		int pos)
+	{
+		while (( pos < text.length() ) && Character.isWhitespace(text.charAt(pos)) ) pos++;
+		return pos;
+	}
+
+}
@@ -21,6 +21,7 @@
 package net.sf.okapi.filters.xml;
 
 import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
 import net.sf.okapi.common.TestUtil;
 import net.sf.okapi.common.filters.FilterConfiguration;
 import net.sf.okapi.common.filters.FilterTestDriver;
@@ -37,6 +38,7 @@ import static org.junit.Assert.*;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.w3c.its.ITSStreamEngine;
 
 import java.io.File;
 import java.net.URISyntaxException;
@@ -49,6 +51,7 @@ public class XMLFilterTest {
 	private GenericContent fmt;
 	private String root;
 	private LocaleId locEN = LocaleId.fromString("en");
+	private boolean streamed; // Set by getEvents()
 
 	@Before
 	public void setUp() {
@@ -648,9 +651,127 @@ public class XMLFilterTest {
 		assertTrue(rtc.executeCompare(filter, list, "UTF-8", locEN, locEN));
 	}
 
+	@Test
+	public void testStreamingSameAsDocument () {
+		String snippet = "<?xml version=\"1.0\"?>\n"
+			+ "<!--start--><doc xmlns:its=\"http://www.w3.org/2005/11/its\"><head>"
+			+ "<its:rules version=\"1.0\">"
+			+ "<its:translateRule selector=\"/doc\" translate=\"no\"/>"
+			+ "<its:translateRule selector=\"//body//p|//title\" translate=\"yes\"/>"
+			+ "<its:translateRule selector=\"//p/@alt\" translate=\"yes\"/>"
+			+ "<its:withinTextRule selector=\"//b|//code\" withinText=\"yes\"/>"
+			+ "<its:translateRule selector=\"//code\" translate=\"no\"/>"
+			+ "<its:locNoteRule selector=\"//p[@type='note']\" locNoteType=\"description\">"
+			+ "<its:locNote>A note</its:locNote></its:locNoteRule>"
+			+ "</its:rules><title>Title</title></head><body>\n"
+			+ "<p alt=\"alt text\">Text <b>bold</b> &amp; <code>x=1</code> end</p>\n"
+			+ "<p type=\"note\" xml:space=\"preserve\">  Text with <![CDATA[<cdata>]]> "
+			+ "<?pi data?><!--comment--></p>\n"
+			+ "<p its:translate=\"no\">Not translatable</p><p/>\n"
+			+ "</body></doc><!--end-->";
+		
+		String expected = generateOutput(snippet, false);
+		ArrayList<Event> expectedEvents = getEvents(snippet);
+		assertFalse(streamed);
+		assertEquals(expected, generateOutput(snippet, true));
+		ArrayList<Event> events = getEvents(snippet);
+		assertTrue(streamed);
+		assertEquals(countTextUnits(expectedEvents), countTextUnits(events));
+		for ( int i=1; i<=countTextUnits(events); i++ ) {
+			ITextUnit tu1 = FilterTestDriver.getTextUnit(expectedEvents, i);
+			ITextUnit tu2 = FilterTestDriver.getTextUnit(events, i);
+			assertEquals(fmt.setContent(tu1.getSource().getFirstContent()).toString(),
+				fmt.setContent(tu2.getSource().getFirstContent()).toString());
+			assertEquals(tu1.getProperty("note") == null, tu2.getProperty("note") == null);
+			assertEquals(tu1.preserveWhitespaces(), tu2.preserveWhitespaces());
+		}
+	}
+
+	@Test
+	public void testStreamingLargeDocument () {
+		StringBuilder tmp = new StringBuilder("<?xml version=\"1.0\"?>\n<doc>"
+			+ "<its:rules version=\"1.0\" xmlns:its=\"http://www.w3.org/2005/11/its\">"
+			+ "<its:withinTextRule selector=\"//b\" withinText=\"yes\"/></its:rules>");
+		for ( int i=0; i<10000; i++ ) {
+			tmp.append("<p>Text "+i+" <b>bold</b>.</p>\n");
+		}
+		tmp.append("</doc>");
+		String snippet = tmp.toString();
+		assertTrue(snippet.length() > ITSStreamEngine.LOOKAHEAD);
+
+		String expected = generateOutput(snippet, false);
+		assertEquals(expected, generateOutput(snippet, true));
+		ArrayList<Event> events = getEvents(snippet);
+		assertTrue(streamed);
+		assertEquals(10000, countTextUnits(events));
+		assertEquals("Text 9999 <1>bold</1>.", fmt.setContent(
+			FilterTestDriver.getTextUnit(events, 10000).getSource().getFirstContent()).toString());
+	}
+
+	@Test
+	public void testStreamingFallback () {
+		// The selector is not supported when streaming: the document tree is used instead
+		String snippet = "<?xml version=\"1.0\"?>\n"
+			+ "<doc><its:rules version=\"1.0\" xmlns:its=\"http://www.w3.org/2005/11/its\">"
+			+ "<its:translateRule selector=\"//p[2]\" translate=\"no\"/>"
+			+ "</its:rules><p>text 1</p><p>text 2</p><p>text 3</p></doc>";
+		((Parameters)filter.getParameters()).streaming = true;
+		ArrayList<Event> events = getEvents(snippet);
+		assertFalse(streamed);
+		assertEquals(2, countTextUnits(events));
+		assertEquals("text 3", FilterTestDriver.getTextUnit(events, 2).getSource().toString());
+	}
+
+	@Test
+	public void testStreamingLateRules () {
+		// Rules declared after the look-ahead apply to the whole document
+		StringBuilder tmp = new StringBuilder("<?xml version=\"1.0\"?>\n<doc>"
+			+ "<p type=\"skip\">First</p>\n");
+		for ( int i=0; i<5000; i++ ) {
+			tmp.append("<p>Text "+i+".</p>\n");
+		}
+		String start = tmp.toString();
+		String snippet = start + "<its:rules version=\"1.0\" xmlns:its=\"http://www.w3.org/2005/11/its\">"
+			+ "<its:translateRule selector=\"//p[@type='skip']\" translate=\"no\"/></its:rules></doc>";
+		assertTrue(start.length() > ITSStreamEngine.LOOKAHEAD);
+		String expected = generateOutput(snippet, false);
+		assertEquals(expected, generateOutput(snippet, true));
+		ArrayList<Event> events = getEvents(snippet);
+		assertTrue(streamed);
+		assertEquals(5000, countTextUnits(events));
+		assertEquals("Text 0.", FilterTestDriver.getTextUnit(events, 1).getSource().toString());
+		
+		// Late rules that cannot be applied while streaming: the document tree is used instead
+		snippet = start + "<its:rules version=\"1.0\" xmlns:its=\"http://www.w3.org/2005/11/its\">"
+			+ "<its:translateRule selector=\"//p[1]\" translate=\"no\"/></its:rules></doc>";
+		expected = generateOutput(snippet, false);
+		assertEquals(expected, generateOutput(snippet, true));
+		events = getEvents(snippet);
+		assertFalse(streamed);
+		assertEquals(5000, countTextUnits(events));
+		assertEquals("Text 0.", FilterTestDriver.getTextUnit(events, 1).getSource().toString());
+	}
+
+	private String generateOutput (String snippet,
+		boolean streaming)
+	{
+		((Parameters)filter.getParameters()).streaming = streaming;
+		return FilterTestDriver.generateOutput(getEvents(snippet),
+			filter.getEncoderManager(), locEN);
+	}
+	
+	private int countTextUnits (List<Event> events) {
+		int count = 0;
+		for ( Event event : events ) {
+			if ( event.getEventType() == EventType.TEXT_UNIT ) count++;
+		}
+		return count;
+	}
+
 	private ArrayList<Event> getEvents(String snippet) {
 		ArrayList<Event> list = new ArrayList<Event>();
 		filter.open(new RawDocument(snippet, locEN));
+		streamed = filter.isStreaming();
 		while ( filter.hasNext() ) {
 			Event event = filter.next();
 			list.add(event);
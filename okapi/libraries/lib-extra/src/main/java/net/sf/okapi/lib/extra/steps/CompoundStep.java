@@ -28,6 +28,7 @@ import java.util.List;
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.EventType;
 import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.pipeline.IMergeableStep;
 import net.sf.okapi.common.pipeline.IPipelineStep;
 import net.sf.okapi.common.pipeline.annotations.ConfigurationParameter;
 import net.sf.okapi.common.pipeline.annotations.StepIntrospector;
@@ -36,7 +37,7 @@ import net.sf.okapi.common.pipeline.annotations.StepParameterType;
 import net.sf.okapi.common.resource.MultiEvent;
 import net.sf.okapi.lib.extra.pipelinebuilder.XPipelineStep;
 
-public abstract class CompoundStep extends AbstractPipelineStep {
+public abstract class CompoundStep extends AbstractPipelineStep implements IMergeableStep {
 
 	protected LinkedList<IPipelineStep> steps = new LinkedList<IPipelineStep>();
 	private LinkedList<List<ConfigurationParameter>> paramList;
@@ -62,6 +63,31 @@ public abstract class CompoundStep extends AbstractPipelineStep {
 		// Stub not to implement in subclasses as would've been required otherwise
 	}
 
+	/**
+	 * Merges the batch-level data of the internal steps of a copy of this step
+	 * into the corresponding internal steps of this step.
+	 */
+	@Override
+	public void mergeBatchData(IPipelineStep copy) {
+		LinkedList<IPipelineStep> otherSteps = ((CompoundStep) copy).steps;
+		for (int i = 0; i < steps.size(); i++) {
+			((IMergeableStep) steps.get(i)).mergeBatchData(otherSteps.get(i));
+		}
+	}
+
+	/**
+	 * A compound step can be copied only if all its internal steps can be copied.
+	 */
+	@Override
+	public boolean isMergeable() {
+		for (IPipelineStep step : steps) {
+			if (!(step instanceof IMergeableStep) || !((IMergeableStep) step).isMergeable()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	private Event expandEvent(Event event, IPipelineStep currentStep) {
 		if (event.getEventType() == EventType.MULTI_EVENT
 				&& !(((MultiEvent) event.getResource()).isPropagateAsSingleEvent())) {
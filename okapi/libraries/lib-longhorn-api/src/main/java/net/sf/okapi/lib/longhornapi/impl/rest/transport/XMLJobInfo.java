@@ -0,0 +1,107 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.lib.longhornapi.impl.rest.transport;
+
+import java.io.ByteArrayInputStream;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Helper class to transform the status of an asynchronous project execution
+ * to XML using JAXB and back.
+ */
+@XmlRootElement(name="job")
+public class XMLJobInfo {
+
+	@XmlElement(name = "id")
+	private int id;
+	@XmlElement(name = "status")
+	private String status;
+	@XmlElement(name = "documents")
+	private int documentCount;
+	@XmlElement(name = "processed")
+	private int processedCount;
+	@XmlElement(name = "error")
+	private String error;
+
+	/**
+	 * Creates a new empty job information (needed by JAXB).
+	 */
+	public XMLJobInfo() {
+	}
+
+	/**
+	 * @param id The id of the job
+	 * @param status The status of the job (QUEUED, RUNNING, SUCCEEDED, FAILED or CANCELED)
+	 * @param documentCount The number of documents to process
+	 * @param processedCount The number of documents processed so far
+	 * @param error The error that stopped the job, or null
+	 */
+	public XMLJobInfo(int id, String status, int documentCount, int processedCount, String error) {
+		this.id = id;
+		this.status = status;
+		this.documentCount = documentCount;
+		this.processedCount = processedCount;
+		this.error = error;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public int getDocumentCount() {
+		return documentCount;
+	}
+
+	public int getProcessedCount() {
+		return processedCount;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * Transforms the XML representation of an <code>XMLJobInfo</code> back into an object.
+	 * 
+	 * @param xml An XMLJobInfo as XML
+	 * @return The job information
+	 * @throws JAXBException If an error occurred during the unmarshalling
+	 */
+	public static XMLJobInfo unmarshal(String xml) throws JAXBException {
+		try {
+			JAXBContext jc = JAXBContext.newInstance(XMLJobInfo.class);
+			Unmarshaller u = jc.createUnmarshaller();
+			return (XMLJobInfo) u.unmarshal(new ByteArrayInputStream(xml.getBytes()));
+		}
+		catch (JAXBException e) {
+			throw new JAXBException(xml, e);
+		}
+	}
+}
@@ -240,6 +240,20 @@ public class ReportGenerator {
 		}
 	}
 		
+	/**
+	 * Appends the values of the multi-value (table) fields of a given generator 
+	 * after the values of the same fields in this generator. 
+	 * @param other the generator with the values to append. 
+	 */
+	public void appendMultiFields(ReportGenerator other) {
+		for (String fieldName : multiFields.keySet()) {
+			List<String> values = other.multiFields.get(fieldName);
+			if (values != null) {
+				multiFields.get(fieldName).addAll(values);
+			}
+		}
+	}
+		
 	private String getData(String fieldName) {		
 		String st = "";
 		
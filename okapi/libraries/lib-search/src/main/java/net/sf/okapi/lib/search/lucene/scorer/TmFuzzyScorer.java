@@ -3,20 +3,35 @@ package net.sf.okapi.lib.search.lucene.scorer;
 import gnu.trove.map.hash.TIntIntHashMap;
 
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.index.TermPositions;
+import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Similarity;
-import org.apache.lucene.util.OpenBitSet;
-import org.apache.lucene.util.OpenBitSetIterator;
 
 /**
+ * Scores documents with Dice's coefficient on their unique n-grams.
+ * <p>The query n-grams are processed from the rarest to the most frequent. Only the documents
+ * found with the rarest n-grams can reach the threshold, so the postings of the frequent n-grams
+ * are only skipped through for these candidates, and candidates that can no longer reach the
+ * threshold are dropped as soon as possible. The number of unique n-grams of each document is
+ * cached per index segment.
+ * <p>The pruning relies on a document having at least as many unique terms in the term count
+ * field as it has terms in common with the query. This holds when the query terms belong to the
+ * term count field and that field is indexed with term vectors, as the Pensieve and TMDB sources
+ * are. When some query terms belong to another field, only the rough cutoff is used to select
+ * the documents and every candidate is scored.
+ * 
  * @author HARGRAVEJE
  *
  */
@@ -25,16 +40,24 @@ public class TmFuzzyScorer extends Scorer {
 	// TODO: externalize this
 	private static float ROUGH_CUTOFF = 0.50f;
 
+	// Number of unique terms per document, per index segment and field
+	private static final Map<Object, Map<String, int[]>> termCounts =
+		new WeakHashMap<Object, Map<String, int[]>>();
+
 	private List<Term> terms;
 	private IndexReader reader;
 	private float threshold;
 	private float score;
 	private int currentDoc;
 	private int roughThresholdFreq;
-	private OpenBitSetIterator docPointerIterator;
-	private TIntIntHashMap scoredDocs;
 	private int uniqueTermSize;
 	private String termCountField;
+	private boolean overlapBounded;
+	private int[] candidates;
+	private int[] candidateFreqs;
+	private int candidateCount;
+	private int candidateIndex;
+	private int[] docTermCounts;
 
 	/**
 	 * @param threshold
@@ -50,37 +73,124 @@ public class TmFuzzyScorer extends Scorer {
 		this.threshold = threshold;
 		this.terms = terms;
 		this.termCountField = termCountField;
-		this.scoredDocs = new TIntIntHashMap();
 		this.currentDoc = -1;
 	}
 
 	private void calculateScores() throws IOException {
-		// initialize buffers
-		OpenBitSet docPointers = new OpenBitSet(reader.maxDoc());
-		TermPositions tp = null;
-		
-		List<Term> uniqueTerms = new LinkedList<Term>(new LinkedHashSet<Term>(terms));
+		candidates = new int[0];
+		candidateFreqs = new int[0];
+		candidateIndex = -1;
+		candidateCount = 0;
+
+		// Process the unique terms from the rarest to the most frequent
+		List<Term> uniqueTerms = new ArrayList<Term>(new LinkedHashSet<Term>(terms));
 		uniqueTermSize = uniqueTerms.size();
 		this.roughThresholdFreq = (int) (uniqueTermSize * ROUGH_CUTOFF);
-		for (Iterator<Term> iter = uniqueTerms.iterator(); iter.hasNext();) {
+		overlapBounded = true;
+		for (Term term : uniqueTerms) {
+			if (!term.field().equals(termCountField)) {
+				overlapBounded = false;
+				break;
+			}
+		}
+		final Map<Term, Integer> docFreqs = new HashMap<Term, Integer>();
+		for (Term term : uniqueTerms) {
+			docFreqs.put(term, reader.docFreq(term));
+		}
+		Collections.sort(uniqueTerms, new Comparator<Term>() {
+			public int compare(Term t1, Term t2) {
+				return docFreqs.get(t1).compareTo(docFreqs.get(t2));
+			}
+		});
+
+		// Minimal number of common terms a document needs to be scored
+		int minFreq = Math.max(roughThresholdFreq + 1, getMinimalOverlap());
+		if (minFreq > uniqueTermSize) {
+			return;
+		}
+		// A document without any of the first rarest terms cannot have enough common terms
+		int prefixSize = uniqueTermSize - minFreq + 1;
+
+		// Collect the candidates from the rarest terms
+		TIntIntHashMap scoredDocs = new TIntIntHashMap();
+		for (int i = 0; i < prefixSize; i++) {
+			TermDocs td = reader.termDocs(uniqueTerms.get(i));
 			try {
-				tp = reader.termPositions(iter.next());
-				while (tp.next()) {
-					int f = scoredDocs.adjustOrPutValue(tp.doc(), 1, 1);
-					if (f > roughThresholdFreq) {
-						docPointers.fastSet(tp.doc());
-					}
+				while (td.next()) {
+					scoredDocs.adjustOrPutValue(td.doc(), 1, 1);
 				}
 			} finally {
-				if (tp != null) {
-					tp.close();
+				td.close();
+			}
+		}
+		candidates = scoredDocs.keys();
+		Arrays.sort(candidates);
+		candidateFreqs = new int[candidates.length];
+		for (int i = 0; i < candidates.length; i++) {
+			candidateFreqs[i] = scoredDocs.get(candidates[i]);
+		}
+		candidateCount = candidates.length;
+
+		// Count the other terms for the candidates only
+		for (int i = prefixSize; i < uniqueTermSize; i++) {
+			pruneCandidates(minFreq - (uniqueTermSize - i));
+			if (candidateCount == 0) {
+				return;
+			}
+			TermDocs td = reader.termDocs(uniqueTerms.get(i));
+			try {
+				int doc = -1;
+				for (int j = 0; j < candidateCount; j++) {
+					if (doc < candidates[j]) {
+						if (!td.skipTo(candidates[j])) {
+							break;
+						}
+						doc = td.doc();
+					}
+					if (doc == candidates[j]) {
+						candidateFreqs[j]++;
+					}
 				}
+			} finally {
+				td.close();
 			}
 		}
+		pruneCandidates(minFreq);
+	}
+
+	/**
+	 * Gets the minimal number of unique terms a document must have in common with the query
+	 * to reach the threshold. Dice's coefficient 2c/(d+q) is at most 2c/(c+q), since a document
+	 * with c common terms has at least c terms. This bound is only used when all the query terms
+	 * belong to the term count field.
+	 * 
+	 * @return the minimal number of common terms.
+	 */
+	private int getMinimalOverlap() {
+		float t = threshold / 100.0f;
+		if (!overlapBounded || t <= 0.0f) {
+			return 0;
+		}
+		// Allow for rounding errors: this is a lower bound
+		return (int) Math.ceil((t * uniqueTermSize) / (2.0f - t) - 0.0001f);
+	}
 
-		if (docPointers.cardinality() > 0) {
-			docPointerIterator = (OpenBitSetIterator) docPointers.iterator();
+	/**
+	 * Removes the candidates with fewer common terms than a given number.
+	 * 
+	 * @param minFreq
+	 *            the minimal number of common terms to keep a candidate.
+	 */
+	private void pruneCandidates(int minFreq) {
+		int j = 0;
+		for (int i = 0; i < candidateCount; i++) {
+			if (candidateFreqs[i] >= minFreq) {
+				candidates[j] = candidates[i];
+				candidateFreqs[j] = candidateFreqs[i];
+				j++;
+			}
 		}
+		candidateCount = j;
 	}
 
 	@Override
@@ -112,33 +222,70 @@ public class TmFuzzyScorer extends Scorer {
 	@Override
 	public int nextDoc() throws IOException {
 		// test for first time
-		if (docPointerIterator == null) {
+		if (candidates == null) {
 			calculateScores();
-			if (docPointerIterator == null) {
-				currentDoc = NO_MORE_DOCS;
-				return NO_MORE_DOCS;
-			}
 		}
 
 		while (true) {
-			currentDoc = docPointerIterator.nextDoc();
-			if (currentDoc == NO_MORE_DOCS) {
+			if (++candidateIndex >= candidateCount) {
+				currentDoc = NO_MORE_DOCS;
 				return currentDoc;
 			}
+			currentDoc = candidates[candidateIndex];
 			
-			if (calculateScore() >= threshold) {
+			if (calculateScore(candidateFreqs[candidateIndex]) >= threshold) {
 				return currentDoc;
 			} 
 		}
 	}
 	
-	private float calculateScore() throws IOException {
-		score = (float) ((2.0f * (float) scoredDocs.get(currentDoc)) / 
-					(float) (reader.getTermFreqVector(currentDoc, termCountField).size() + uniqueTermSize)) * 100.0f;
+	private float calculateScore(int freq) throws IOException {
+		// Skip the documents that cannot reach the threshold whatever their size
+		if (overlapBounded) {
+			score = (float) ((2.0f * (float) freq) / (float) (freq + uniqueTermSize)) * 100.0f;
+			if (score < threshold) {
+				return score;
+			}
+		}
+		score = (float) ((2.0f * (float) freq) / 
+					(float) (getTermCount(currentDoc) + uniqueTermSize)) * 100.0f;
 		
 		return score;
 	}
 
+	/**
+	 * Gets the number of unique terms of a document, from the cache if possible.
+	 * 
+	 * @param doc
+	 *            the document.
+	 * @return the number of unique terms of the document for the term count field.
+	 * @throws IOException
+	 */
+	private int getTermCount(int doc) throws IOException {
+		if (docTermCounts == null) {
+			synchronized (termCounts) {
+				Map<String, int[]> fields = termCounts.get(reader.getCoreCacheKey());
+				if (fields == null) {
+					fields = new HashMap<String, int[]>();
+					termCounts.put(reader.getCoreCacheKey(), fields);
+				}
+				docTermCounts = fields.get(termCountField);
+				if (docTermCounts == null) {
+					docTermCounts = new int[reader.maxDoc()];
+					fields.put(termCountField, docTermCounts);
+				}
+			}
+		}
+		// 0 means not cached yet: the term count of a matching document is at least 1
+		// (concurrent scorers may both compute the same value)
+		int count = docTermCounts[doc];
+		if (count == 0) {
+			count = reader.getTermFreqVector(doc, termCountField).size();
+			docTermCounts[doc] = count;
+		}
+		return count;
+	}
+
 	@Override
 	public int docID() {
 		return currentDoc;
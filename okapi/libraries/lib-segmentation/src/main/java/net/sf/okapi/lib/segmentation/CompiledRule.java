@@ -20,17 +20,250 @@
 
 package net.sf.okapi.lib.segmentation;
 
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 class CompiledRule {
 	
 	protected Pattern pattern;
 	protected boolean isBreak;
+	/**
+	 * Characters that any text must contain for the pattern to match it.
+	 * Empty if no such character could be determined.
+	 */
+	protected char[] requiredChars;
 	
 	CompiledRule (String pattern,
 		boolean isBreak)
 	{
 		this.pattern = Pattern.compile(pattern);
 		this.isBreak = isBreak;
+		this.requiredChars = getRequiredChars(pattern);
+	}
+
+	/**
+	 * Indicates if this rule may match a text, based on the characters it contains.
+	 * @param textChars the set of the characters of the text.
+	 * @return false if the rule cannot match the text, true if it may match it.
+	 */
+	boolean mayMatch (BitSet textChars) {
+		for ( char ch : requiredChars ) {
+			if ( !textChars.get(ch) ) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the literal characters that must be in a text for a given regular expression
+	 * to match it. The analysis is conservative: constructs it does not handle contribute
+	 * no character, and patterns with inline flags or quoted sections have no required characters.
+	 * @param regex the regular expression to analyze.
+	 * @return the list of required characters (can be empty, but never null).
+	 */
+	static char[] getRequiredChars (String regex) {
+		RequiredCharsParser parser = new RequiredCharsParser(regex);
+		Set<Character> set = parser.parse();
+		if ( set == null ) return new char[0];
+		char[] res = new char[set.size()];
+		int i = 0;
+		for ( Character ch : set ) {
+			res[i++] = ch;
+		}
+		return res;
+	}
+
+	private static class RequiredCharsParser {
+
+		private final String p;
+		private int pos;
+		private boolean unsupported;
+		
+		RequiredCharsParser (String regex) {
+			p = regex;
+		}
+		
+		Set<Character> parse () {
+			Set<Character> res = alternation();
+			if ( unsupported || ( pos < p.length() )) return null;
+			return res;
+		}
+		
+		private Set<Character> alternation () {
+			Set<Character> res = sequence();
+			while (( pos < p.length() ) && ( p.charAt(pos) == '|' )) {
+				pos++;
+				res.retainAll(sequence());
+			}
+			return res;
+		}
+		
+		private Set<Character> sequence () {
+			Set<Character> res = new HashSet<Character>();
+			while (( pos < p.length() ) && !unsupported ) {
+				char ch = p.charAt(pos);
+				if (( ch == '|' ) || ( ch == ')' )) break;
+				Set<Character> item = atom();
+				if ( quantifierMinimum() > 0 ) res.addAll(item);
+			}
+			return res;
+		}
+		
+		private Set<Character> atom () {
+			Set<Character> res = new HashSet<Character>();
+			char ch = p.charAt(pos++);
+			switch ( ch ) {
+			case '(':
+				boolean keep = true;
+				if ( p.startsWith("?", pos) ) {
+					if ( p.startsWith("?:", pos) || p.startsWith("?>", pos) ) {
+						pos += 2;
+					}
+					else if ( p.startsWith("?=", pos) || p.startsWith("?!", pos) ) {
+						pos += 2;
+						keep = false;
+					}
+					else if ( p.startsWith("?<=", pos) || p.startsWith("?<!", pos) ) {
+						pos += 3;
+						keep = false;
+					}
+					else if ( p.startsWith("?<", pos) ) { // Named group
+						int n = p.indexOf('>', pos);
+						if ( n == -1 ) unsupported = true;
+						else pos = n+1;
+					}
+					else { // Inline flags
+						unsupported = true;
+						return res;
+					}
+				}
+				Set<Character> inner = alternation();
+				if (( pos < p.length() ) && ( p.charAt(pos) == ')' )) pos++;
+				else unsupported = true;
+				if ( keep ) res = inner;
+				break;
+			case '[':
+				skipClass();
+				break;
+			case '\\':
+				escape(res);
+				break;
+			case '.':
+			case '^':
+			case '$':
+				break;
+			default:
+				res.add(ch);
+			}
+			return res;
+		}
+		
+		private void skipClass () {
+			int depth = 1;
+			if (( pos < p.length() ) && ( p.charAt(pos) == '^' )) pos++;
+			if (( pos < p.length() ) && ( p.charAt(pos) == ']' )) pos++; // Literal ']'
+			while (( pos < p.length() ) && ( depth > 0 )) {
+				char ch = p.charAt(pos++);
+				if ( ch == '\\' ) {
+					if ( p.startsWith("Q", pos) ) unsupported = true;
+					pos++;
+				}
+				else if ( ch == '[' ) depth++;
+				else if ( ch == ']' ) depth--;
+			}
+			if ( depth > 0 ) unsupported = true;
+		}
+		
+		private void escape (Set<Character> res) {
+			if ( pos >= p.length() ) {
+				unsupported = true;
+				return;
+			}
+			char ch = p.charAt(pos++);
+			switch ( ch ) {
+			case 't': res.add('\t'); break;
+			case 'n': res.add('\n'); break;
+			case 'r': res.add('\r'); break;
+			case 'f': res.add('\f'); break;
+			case 'a': res.add('\u0007'); break;
+			case 'e': res.add('\u001B'); break;
+			case 'u':
+				if ( pos+4 <= p.length() ) {
+					try {
+						res.add((char)Integer.parseInt(p.substring(pos, pos+4), 16));
+						pos += 4;
+					}
+					catch ( NumberFormatException e ) {
+						unsupported = true;
+					}
+				}
+				else unsupported = true;
+				break;
+			case 'p':
+			case 'P':
+			case 'N':
+			case 'x':
+			case 'k':
+				// Properties, named characters, hexadecimal values and named references
+				if ( p.startsWith("{", pos) || p.startsWith("<", pos) ) {
+					int n = p.indexOf(p.charAt(pos) == '{' ? '}' : '>', pos);
+					if ( n == -1 ) unsupported = true;
+					else pos = n+1;
+				}
+				else if ( ch == 'x' ) pos += 2;
+				else pos++;
+				break;
+			case 'c':
+				pos++;
+				break;
+			case 'Q':
+				unsupported = true;
+				break;
+			default:
+				if ( Character.isDigit(ch) ) { // Back-references and octal values
+					while (( pos < p.length() ) && Character.isDigit(p.charAt(pos))) pos++;
+				}
+				else if ( !Character.isLetter(ch) ) {
+					res.add(ch); // Escaped literal
+				}
+				// Else: character classes and boundaries
+			}
+		}
+		
+		private int quantifierMinimum () {
+			if ( pos >= p.length() ) return 1;
+			int min = 1;
+			switch ( p.charAt(pos) ) {
+			case '?':
+			case '*':
+				min = 0;
+				pos++;
+				break;
+			case '+':
+				pos++;
+				break;
+			case '{':
+				int n = p.indexOf('}', pos);
+				if ( n == -1 ) {
+					unsupported = true;
+					return 0;
+				}
+				String[] parts = p.substring(pos+1, n).split(",", -1);
+				try {
+					min = Integer.parseInt(parts[0].trim());
+				}
+				catch ( NumberFormatException e ) {
+					unsupported = true;
+				}
+				pos = n+1;
+				break;
+			default:
+				return 1;
+			}
+			// Lazy and possessive forms
+			if (( pos < p.length() ) && (( p.charAt(pos) == '?' ) || ( p.charAt(pos) == '+' ))) pos++;
+			return min;
+		}
 	}
 }
@@ -0,0 +1,93 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.lib.segmentation;
+
+import java.util.List;
+
+import net.sf.okapi.common.ISegmenter;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.Range;
+import net.sf.okapi.common.resource.TextContainer;
+
+/**
+ * Thread-safe implementation of the {@link ISegmenter} interface for SRX rules.
+ * <p>The results of {@link #computeSegments(TextContainer)} are kept per thread, so
+ * {@link #getRanges()} and {@link #getSplitPositions()} return the results of the last
+ * call made in the same thread. All threads share the same compiled {@link SRXRuleSet}.
+ */
+public class ConcurrentSRXSegmenter implements ISegmenter {
+
+	private final SRXRuleSet ruleSet;
+	private final ThreadLocal<ISegmenter> segmenters;
+
+	/**
+	 * Creates a new ConcurrentSRXSegmenter object for a given rule set.
+	 * @param ruleSet the compiled rules to use.
+	 */
+	public ConcurrentSRXSegmenter (SRXRuleSet ruleSet) {
+		this.ruleSet = ruleSet;
+		segmenters = new ThreadLocal<ISegmenter>() {
+			@Override
+			protected ISegmenter initialValue () {
+				return ConcurrentSRXSegmenter.this.ruleSet.createSegmenter();
+			}
+		};
+	}
+
+	/**
+	 * Gets the rule set used by this segmenter.
+	 * @return the rule set of this segmenter.
+	 */
+	public SRXRuleSet getRuleSet () {
+		return ruleSet;
+	}
+
+	@Override
+	public int computeSegments (String text) {
+		return segmenters.get().computeSegments(text);
+	}
+
+	@Override
+	public int computeSegments (TextContainer container) {
+		return segmenters.get().computeSegments(container);
+	}
+
+	@Override
+	public Range getNextSegmentRange (TextContainer container) {
+		return segmenters.get().getNextSegmentRange(container);
+	}
+
+	@Override
+	public List<Integer> getSplitPositions () {
+		return segmenters.get().getSplitPositions();
+	}
+
+	@Override
+	public List<Range> getRanges () {
+		return segmenters.get().getRanges();
+	}
+
+	@Override
+	public LocaleId getLanguage () {
+		return ruleSet.getLocale();
+	}
+
+}
@@ -125,10 +125,38 @@ public class ICURegex {
 		hasICURules = false;
 	}
 
+	/**
+	 * Creates a new ICURegex object with the placeholders of a given one, as set by
+	 * {@link #processRule(String)} when the rules were compiled. The break iterators of the
+	 * placeholders are cloned, so the new object can process texts in another thread.
+	 * @param template the object to copy.
+	 */
+	ICURegex(ICURegex template) {
+		this();
+		hasICURules = template.hasICURules;
+		hasGraphemClusterPh = template.hasGraphemClusterPh;
+		hasWordBoundaryPh = template.hasWordBoundaryPh;
+		graphemeCluster = template.graphemeCluster.copy();
+		for (Map.Entry<String, Placeholder> entry : template.placeholders.entrySet()) {
+			Placeholder ph = entry.getValue().copy();
+			placeholders.put(entry.getKey(), ph);
+			phIterators.put(entry.getKey(), ph.getIterator());
+		}
+	}
+	
 	public void setHasICURules(boolean hasICURules) {
 		this.hasICURules = hasICURules;
 	}
 	
+	/**
+	 * Indicates if some of the rules use ICU-specific patterns. Such rules are
+	 * compiled again for each text processed.
+	 * @return true if some of the rules use ICU-specific patterns.
+	 */
+	boolean hasICURules() {
+		return hasICURules;
+	}
+	
 	public static boolean isICURule(String rule) {
 		return ICU_PATTERN.matcher(rule).find(); 
 	}
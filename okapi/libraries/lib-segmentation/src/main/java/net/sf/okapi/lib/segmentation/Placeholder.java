@@ -161,6 +161,16 @@ class Placeholder {
 		return iterator;
 	}
 
+	/**
+	 * Creates a copy of this placeholder with its own break iterator and no characters.
+	 * @return the new placeholder.
+	 */
+	Placeholder copy() {
+		Placeholder ph = new Placeholder(value, (RuleBasedBreakIterator)iterator.clone(), lexemId);
+		ph.index = index;
+		return ph;
+	}
+	
 	public void processText(String codedText) {
 		int start = 0;
 		int end = 0;
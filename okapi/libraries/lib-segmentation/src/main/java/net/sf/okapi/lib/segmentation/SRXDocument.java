@@ -605,6 +605,18 @@ public class SRXDocument {
 		return segmenter;
 	}
 	
+	/**
+	 * Gets the immutable compiled rules of this document for a given language.
+	 * <p>Rule sets are cached by content of the document (including its current options)
+	 * and language, so calling this method for the same rules does not compile them again.
+	 * Unlike segmenters, rule sets can be shared between threads.
+	 * @param languageCode the language code the rules should be compiled for.
+	 * @return the compiled rule set.
+	 */
+	public SRXRuleSet compileRuleSet (LocaleId languageCode) {
+		return SRXRuleSet.getRuleSet(this, languageCode);
+	}
+	
 	/**
 	 * Compiles a single language rule group and assign it to a segmenter.
 	 * @param ruleName the name of the rule group to apply.
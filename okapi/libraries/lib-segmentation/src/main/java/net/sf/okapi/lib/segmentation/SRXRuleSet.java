@@ -0,0 +1,177 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.lib.segmentation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import net.sf.okapi.common.ISegmenter;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.StringUtil;
+
+/**
+ * Immutable set of SRX rules compiled for a given locale.
+ * <p>A rule set can be shared between threads: each segmenter created with
+ * {@link #createSegmenter()} re-uses the compiled rules instead of compiling them again.
+ * Rules with ICU-specific patterns are adapted to each text by the segmenter: each segmenter
+ * gets its own list of the compiled rules and its own copy of the ICU placeholders (with
+ * cloned break iterators), but the SRX document is not parsed nor compiled again.
+ * Rule sets are obtained with {@link SRXDocument#compileRuleSet(LocaleId)}, which caches
+ * them by content of the SRX document and locale. Only the {@link #MAX_CACHED} most
+ * recently used rule sets are kept in the cache.
+ */
+public final class SRXRuleSet {
+
+	/**
+	 * Maximum number of rule sets kept in the cache.
+	 */
+	public static final int MAX_CACHED = 32;
+
+	// Access-ordered map: the least recently used rule set is removed first
+	private static final Map<String, SRXRuleSet> cache = new LinkedHashMap<String, SRXRuleSet>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry (Map.Entry<String, SRXRuleSet> eldest) {
+			return size() > MAX_CACHED;
+		}
+	};
+
+	private final LocaleId locale;
+	private final boolean segmentSubFlows;
+	private final boolean cascade;
+	private final boolean includeStartCodes;
+	private final boolean includeEndCodes;
+	private final boolean includeIsolatedCodes;
+	private final boolean oneSegmentIncludesAll;
+	private final boolean trimLeadingWS;
+	private final boolean trimTrailingWS;
+	private final boolean useJavaRegex;
+	private final ArrayList<CompiledRule> rules;
+	private final Pattern maskRule;
+	private final ICURegex icuRegex; // Null if the rules have no ICU-specific patterns
+
+	/**
+	 * Gets the rule set for a given SRX document and a given locale, compiling it
+	 * only if it is not already in the cache.
+	 * @param srxDoc the SRX document with the rules to compile.
+	 * @param locale the locale for which to compile the rules.
+	 * @return the compiled rule set.
+	 */
+	static SRXRuleSet getRuleSet (SRXDocument srxDoc,
+		LocaleId locale)
+	{
+		String srx = srxDoc.saveRulesToString(true, false);
+		String key = StringUtil.digest(srx) + "|" + locale.toString();
+		SRXRuleSet ruleSet;
+		synchronized ( cache ) {
+			ruleSet = cache.get(key);
+		}
+		if ( ruleSet != null ) return ruleSet;
+
+		// Compile outside the lock, another thread may have done it in the meantime
+		ruleSet = new SRXRuleSet(locale,
+			(SRXSegmenter)srxDoc.compileLanguageRules(locale, null));
+		synchronized ( cache ) {
+			SRXRuleSet existing = cache.get(key);
+			if ( existing != null ) return existing;
+			cache.put(key, ruleSet);
+		}
+		return ruleSet;
+	}
+
+	/**
+	 * Removes all the rule sets from the cache.
+	 */
+	public static void clearCache () {
+		synchronized ( cache ) {
+			cache.clear();
+		}
+	}
+
+	private SRXRuleSet (LocaleId locale,
+		SRXSegmenter compiled)
+	{
+		this.locale = locale;
+		segmentSubFlows = compiled.segmentSubFlows();
+		cascade = compiled.cascade();
+		includeStartCodes = compiled.includeStartCodes();
+		includeEndCodes = compiled.includeEndCodes();
+		includeIsolatedCodes = compiled.includeIsolatedCodes();
+		oneSegmentIncludesAll = compiled.oneSegmentIncludesAll();
+		trimLeadingWS = compiled.trimLeadingWhitespaces();
+		trimTrailingWS = compiled.trimTrailingWhitespaces();
+		useJavaRegex = compiled.useJavaRegex();
+		rules = new ArrayList<CompiledRule>(compiled.getRules());
+		maskRule = compiled.getMaskRule();
+		// The compiled segmenter is not used: its ICU placeholders are the template for the copies
+		if ( !useJavaRegex && compiled.getICURegex().hasICURules() ) {
+			icuRegex = compiled.getICURegex();
+		}
+		else {
+			icuRegex = null;
+		}
+	}
+
+	/**
+	 * Gets the locale for which this rule set was compiled.
+	 * @return the locale of this rule set.
+	 */
+	public LocaleId getLocale () {
+		return locale;
+	}
+
+	/**
+	 * Indicates if the segmenters created from this set share the same list of compiled rules.
+	 * Rules with ICU-specific patterns are re-compiled for each text to segment, so each
+	 * segmenter for such rules gets its own list (starting with the same compiled patterns).
+	 * @return true if the segmenters share the list of compiled rules, false otherwise.
+	 */
+	public boolean isShareable () {
+		return ( icuRegex == null );
+	}
+
+	/**
+	 * Creates a new segmenter that uses the rules of this set.
+	 * The segmenter itself is not thread-safe: use one segmenter per thread, or
+	 * a {@link ConcurrentSRXSegmenter}.
+	 * @return a new segmenter for the rules of this set.
+	 */
+	public ISegmenter createSegmenter () {
+		SRXSegmenter segmenter = new SRXSegmenter();
+		segmenter.setCascade(cascade);
+		segmenter.setOptions(segmentSubFlows, includeStartCodes,
+			includeEndCodes, includeIsolatedCodes, oneSegmentIncludesAll,
+			trimLeadingWS, trimTrailingWS, useJavaRegex);
+		if ( isShareable() ) {
+			segmenter.setRules(rules, maskRule);
+		}
+		else {
+			segmenter.setRules(new ArrayList<CompiledRule>(rules), maskRule);
+			segmenter.setICURegex(new ICURegex(icuRegex));
+		}
+		segmenter.setLanguage(locale);
+		return segmenter;
+	}
+
+}
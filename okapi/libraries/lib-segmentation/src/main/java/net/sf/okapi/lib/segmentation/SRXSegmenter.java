@@ -21,9 +21,9 @@
 package net.sf.okapi.lib.segmentation;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
-import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -38,6 +38,11 @@ import net.sf.okapi.common.resource.TextFragment;
  */
 public class SRXSegmenter implements ISegmenter {
 	
+	// Values for the split positions
+	private static final byte NOSPLIT = 0;
+	private static final byte BREAK = 1;
+	private static final byte NOBREAK = 2;
+	
 	private boolean segmentSubFlows;
 	private boolean cascade;
 	private boolean includeStartCodes;
@@ -51,7 +56,7 @@ public class SRXSegmenter implements ISegmenter {
 	private boolean trimCodes; // Extension
 	private ArrayList<CompiledRule> rules;
 	private Pattern maskRule; // Extension
-	private TreeMap<Integer, Boolean> splits;
+	private byte[] splits;
 	private List<Integer> finalSplits;
 	private ArrayList<Integer> starts;
 	private ArrayList<Integer> ends;
@@ -232,9 +237,16 @@ public class SRXSegmenter implements ISegmenter {
 		String codedText = container.getCodedText();
 		if (!useJavaRegex) icuRegex.processText(codedText, rules);
 
-		splits = new TreeMap<Integer, Boolean>();
+		// One entry per position (plus one for the mask rule at the end of the text)
+		splits = new byte[codedText.length()+1];
+		// Rules requiring characters not in the text cannot match: skip them
+		BitSet textChars = new BitSet();
+		for ( int i=0; i<codedText.length(); i++ ) {
+			textChars.set(codedText.charAt(i));
+		}
 		Matcher m;
 		for ( CompiledRule rule : rules ) {
+			if ( !rule.mayMatch(textChars) ) continue;
 			
 			m = rule.pattern.matcher(codedText);
 			while ( m.find() ) {
@@ -243,11 +255,11 @@ public class SRXSegmenter implements ISegmenter {
 				
 				// Already a match: Per SRX algorithm, we use the first one only
 				// see http://www.gala-global.org/oscarStandards/srx/srx20.html#Struct_classdefinitions
-				if ( splits.containsKey(n) ) continue;
+				if ( splits[n] != NOSPLIT ) continue;
 				if (!useJavaRegex && !icuRegex.verifyPos(n, rule, m)) continue;
 				
 				// Else add a split marker
-				splits.put(n, rule.isBreak);
+				splits[n] = (rule.isBreak ? BREAK : NOBREAK);
 			}
 		}
 		
@@ -260,14 +272,12 @@ public class SRXSegmenter implements ISegmenter {
 			while ( m.find() ) {
 				// Remove any existing marker inside the range
 				for ( int n=m.start(); n<m.end(); n++ ) {
-					if ( splits.containsKey(n) ) {
-						splits.remove(n);
-					}
+					splits[n] = NOSPLIT;
 				}
 				// Then set the start and end of the range as breaks
 				// Don't include a split at 0 because it's an implicit one
-				if ( m.start() > 0 ) splits.put(m.start(), true);
-				splits.put(m.end(), true);
+				if ( m.start() > 0 ) splits[m.start()] = BREAK;
+				splits[m.end()] = BREAK;
 			}
 		}
 		
@@ -277,8 +287,8 @@ public class SRXSegmenter implements ISegmenter {
 		if ( hasCode ) { // Do this only if we have in-line codes
 			int finalPos;
 			boolean done;
-			for ( int pos : splits.keySet() ) {
-				if ( !splits.get(pos) ) continue; // Skip non-break positions
+			for ( int pos=0; pos<splits.length; pos++ ) {
+				if ( splits[pos] != BREAK ) continue; // Skip non-break positions
 				// Walk back through all sequential codes before the break
 				finalPos = pos;
 				done = false;
@@ -321,8 +331,8 @@ public class SRXSegmenter implements ISegmenter {
 			}
 		}
 		else { // Just copy the real splits
-			for ( int pos : splits.keySet() ) {
-				if ( splits.get(pos) ) finalSplits.add(pos);
+			for ( int pos=0; pos<splits.length; pos++ ) {
+				if ( splits[pos] == BREAK ) finalSplits.add(pos);
 			}
 		}
 		
@@ -510,6 +520,37 @@ return null;
 		rules.add(compiledRule);
 	}
 	
+	/**
+	 * Sets the compiled rules and mask rule of this segmenter. The list of rules
+	 * is used as it, and must not be modified afterward. Rules with ICU-specific
+	 * patterns are re-compiled in the list for each text: such a list must not be
+	 * shared with another segmenter.
+	 * @param rules the compiled rules to use.
+	 * @param maskRule the compiled mask rule to use (can be null).
+	 */
+	void setRules (ArrayList<CompiledRule> rules,
+		Pattern maskRule)
+	{
+		this.rules = rules;
+		this.maskRule = maskRule;
+	}
+
+	/**
+	 * Gets the compiled rules of this segmenter.
+	 * @return the list of the compiled rules.
+	 */
+	List<CompiledRule> getRules () {
+		return rules;
+	}
+
+	/**
+	 * Gets the compiled mask rule of this segmenter.
+	 * @return the compiled mask rule, or null if there is none.
+	 */
+	Pattern getMaskRule () {
+		return maskRule;
+	}
+
 	/**
 	 * Sets the pattern for the mask rule.
 	 * @param pattern the new pattern to use for the mask rule.
@@ -525,4 +566,12 @@ return null;
 		return icuRegex;
 	}
 
+	/**
+	 * Sets the object processing the ICU-specific patterns of the rules of this segmenter.
+	 * @param icuRegex the object to use (must not be shared with another segmenter).
+	 */
+	void setICURegex (ICURegex icuRegex) {
+		this.icuRegex = icuRegex;
+	}
+
 }
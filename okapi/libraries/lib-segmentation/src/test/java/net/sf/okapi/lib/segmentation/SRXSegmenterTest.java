@@ -294,6 +294,129 @@ public class SRXSegmenterTest {
 		assertEquals(1, segmenter.computeSegments("\u20ac\u1680")); // Euro + Ogham space -> no break
 	}
 	
+	@Test
+	public void testRequiredCharsOfRules () {
+		assertEquals(".", new String(CompiledRule.getRequiredChars("(\\.)(\\s)")));
+		assertEquals(0, CompiledRule.getRequiredChars("([.?!])(\\s)").length);
+		assertEquals(0, CompiledRule.getRequiredChars("(\\.|\\?)(\\s)").length);
+		assertEquals(0, CompiledRule.getRequiredChars("(x?\\.?)(\\s)").length);
+		assertEquals(0, CompiledRule.getRequiredChars("(?i)(etc\\.)(\\s)").length);
+		assertEquals(0, CompiledRule.getRequiredChars("((?=\\.)x*)").length);
+		assertEquals("\u2026", new String(CompiledRule.getRequiredChars("(\\u2026+)(\\s)")));
+		assertEquals("-", new String(CompiledRule.getRequiredChars("(a-|b-)(\\p{Lu}{1,2})")));
+	}
+	
+	@Test
+	public void testRulesWithMissingCharsAreSkipped () {
+		SRXDocument doc = new SRXDocument();
+		doc.addLanguageMap(new LanguageMap(".*", "default"));
+		ArrayList<Rule> langRules = new ArrayList<Rule>();
+		langRules.add(new Rule("\\b(Mr|Dr)\\.", "\\s", false));
+		langRules.add(new Rule("[.?!]", "\\s", true));
+		doc.addLanguageRule("default", langRules);
+		ISegmenter seg = doc.compileLanguageRules(LocaleId.fromString("en"), null);
+		// No 'M' nor 'D' in the text: the first rule is not used
+		TextContainer tc = new TextContainer("Part 1? Part 2! Part 3.");
+		assertEquals(3, seg.computeSegments(tc));
+		// Both rules used
+		tc = new TextContainer("Ask Dr. Who. Now.");
+		assertEquals(2, seg.computeSegments(tc));
+		assertEquals(12, (int)seg.getSplitPositions().get(0));
+	}
+	
+	@Test
+	public void testCompiledRuleSetIsCached () {
+		SRXDocument doc = createDocumentWithRules();
+		SRXRuleSet set1 = doc.compileRuleSet(LocaleId.ENGLISH);
+		// Same rules and same locale: same compiled set
+		assertSame(set1, createDocumentWithRules().compileRuleSet(LocaleId.ENGLISH));
+		assertTrue(set1.isShareable());
+		// Other locale or other options: other compiled set
+		assertNotSame(set1, doc.compileRuleSet(LocaleId.FRENCH));
+		doc.setTrimLeadingWhitespaces(!doc.trimLeadingWhitespaces());
+		assertNotSame(set1, doc.compileRuleSet(LocaleId.ENGLISH));
+	}
+	
+	@Test
+	public void testRuleSetCacheIsBounded () {
+		SRXRuleSet.clearCache();
+		SRXDocument doc = createDocumentWithRules();
+		SRXRuleSet first = doc.compileRuleSet(LocaleId.ENGLISH);
+		SRXRuleSet recent = doc.compileRuleSet(LocaleId.FRENCH);
+		for ( int i=0; i<SRXRuleSet.MAX_CACHED; i++ ) {
+			doc.compileRuleSet(LocaleId.fromString("x-test"+i));
+			// Keep one rule set in use
+			assertSame(recent, doc.compileRuleSet(LocaleId.FRENCH));
+		}
+		// The least recently used rule set has been removed
+		assertNotSame(first, doc.compileRuleSet(LocaleId.ENGLISH));
+	}
+	
+	@Test
+	public void testICURuleSetSegmenters () {
+		SRXDocument doc = new SRXDocument(); // ICU engine
+		doc.addLanguageMap(new LanguageMap(".*", "default"));
+		ArrayList<Rule> langRules = new ArrayList<Rule>();
+		langRules.add(new Rule("\\b(Mr|Dr)\\.", "\\s", false));
+		langRules.add(new Rule("[.?!]", "\\s\\p{Lu}", true));
+		doc.addLanguageRule("default", langRules);
+		SRXRuleSet ruleSet = doc.compileRuleSet(LocaleId.ENGLISH);
+		assertFalse(ruleSet.isShareable());
+		
+		ISegmenter expected = doc.compileLanguageRules(LocaleId.ENGLISH, null);
+		ISegmenter seg1 = ruleSet.createSegmenter();
+		ISegmenter seg2 = ruleSet.createSegmenter();
+		String[] texts = { "Ask Dr. Who. Now it is late.", "Part one. part two! Part three?" };
+		int[] counts = { 2, 2 };
+		for ( int i=0; i<texts.length; i++ ) {
+			// The other segmenter of the same set works on another text in-between
+			seg2.computeSegments(texts[texts.length-1-i]);
+			assertEquals(counts[i], expected.computeSegments(texts[i]));
+			assertEquals(counts[i], seg1.computeSegments(texts[i]));
+			assertEquals(expected.getSplitPositions(), seg1.getSplitPositions());
+		}
+	}
+	
+	@Test
+	public void testConcurrentSegmenter () throws InterruptedException {
+		final ISegmenter seg = new ConcurrentSRXSegmenter(
+			createDocumentWithRules().compileRuleSet(LocaleId.ENGLISH));
+		final int[] failures = new int[1];
+		Thread[] threads = new Thread[4];
+		for ( int i=0; i<threads.length; i++ ) {
+			final int count = i+1;
+			threads[i] = new Thread() {
+				@Override
+				public void run () {
+					StringBuilder tmp = new StringBuilder();
+					for ( int j=0; j<count; j++ ) tmp.append("Part. ");
+					for ( int j=0; j<200; j++ ) {
+						seg.computeSegments(tmp.toString().trim());
+						if ( seg.getRanges().size() != count ) {
+							synchronized ( failures ) { failures[0]++; }
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for ( Thread thread : threads ) {
+			thread.join();
+		}
+		assertEquals(0, failures[0]);
+		assertEquals(LocaleId.ENGLISH, seg.getLanguage());
+	}
+	
+	private SRXDocument createDocumentWithRules () {
+		SRXDocument doc = new SRXDocument();
+		doc.setUseJavaRegex(true);
+		doc.addLanguageMap(new LanguageMap(".*", "default"));
+		ArrayList<Rule> langRules = new ArrayList<Rule>();
+		langRules.add(new Rule("\\.", "\\s", true));
+		doc.addLanguageRule("default", langRules);
+		return doc;
+	}
+	
 	private ISegmenter createSegmenterWithRules (LocaleId locId) {
 		SRXDocument doc = new SRXDocument();
 		LanguageMap langMap = new LanguageMap(".*", "default");
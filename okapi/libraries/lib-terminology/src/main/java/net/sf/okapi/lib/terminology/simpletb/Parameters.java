@@ -31,10 +31,14 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 	private static final String GLOSSARYPATH = "glossaryPath";
 	private static final String SOURCELOCALE = "sourceLocale";
 	private static final String TARGETLOCALE = "targetLocale";
+	private static final String IGNORECASE = "ignoreCase";
+	private static final String IGNOREDIACRITICS = "ignoreDiacritics";
 
 	private String glossaryPath;
 	private LocaleId sourceLocale;
 	private LocaleId targetLocale;
+	private boolean ignoreCase;
+	private boolean ignoreDiacritics;
 	
 	public Parameters () {
 		reset();
@@ -65,6 +69,22 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 		targetLocale = locId;
 	}
 	
+	public boolean getIgnoreCase () {
+		return ignoreCase;
+	}
+	
+	public void setIgnoreCase (boolean ignoreCase) {
+		this.ignoreCase = ignoreCase;
+	}
+	
+	public boolean getIgnoreDiacritics () {
+		return ignoreDiacritics;
+	}
+	
+	public void setIgnoreDiacritics (boolean ignoreDiacritics) {
+		this.ignoreDiacritics = ignoreDiacritics;
+	}
+	
 	@Override
 	public void fromString (String data) {
 		reset();
@@ -72,6 +92,8 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 		glossaryPath = buffer.getString(GLOSSARYPATH, glossaryPath);
 		sourceLocale = LocaleId.fromString(buffer.getString(SOURCELOCALE, sourceLocale.toString()));
 		targetLocale = LocaleId.fromString(buffer.getString(TARGETLOCALE, targetLocale.toString()));
+		ignoreCase = buffer.getBoolean(IGNORECASE, ignoreCase);
+		ignoreDiacritics = buffer.getBoolean(IGNOREDIACRITICS, ignoreDiacritics);
 	}
 
 	@Override
@@ -79,6 +101,8 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 		glossaryPath = "";
 		sourceLocale = LocaleId.ENGLISH;
 		targetLocale = LocaleId.FRENCH;
+		ignoreCase = false;
+		ignoreDiacritics = false;
 	}
 
 	@Override
@@ -87,6 +111,8 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 		buffer.setString(GLOSSARYPATH, glossaryPath);
 		buffer.setString(SOURCELOCALE, sourceLocale.toString());
 		buffer.setString(TARGETLOCALE, targetLocale.toString());
+		buffer.setBoolean(IGNORECASE, ignoreCase);
+		buffer.setBoolean(IGNOREDIACRITICS, ignoreDiacritics);
 		return buffer.toString();
 	}
 
@@ -96,6 +122,8 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 		desc.add(GLOSSARYPATH, "TBX document", "Full path of the TBX document");
 		desc.add(SOURCELOCALE, "Source locale", "Locale identifier for the source");
 		desc.add(TARGETLOCALE, "Target locale", "Locale identifier for the target");
+		desc.add(IGNORECASE, "Ignore the case", "Match the strings regardless of their case");
+		desc.add(IGNOREDIACRITICS, "Ignore the diacritics", "Match the strings regardless of their diacritics");
 		return desc;
 	}
 
@@ -105,6 +133,8 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 		desc.addPathInputPart(paramsDesc.get(Parameters.GLOSSARYPATH), "TBX File", false);
 		desc.addTextInputPart(paramsDesc.get(Parameters.SOURCELOCALE));
 		desc.addTextInputPart(paramsDesc.get(Parameters.TARGETLOCALE));
+		desc.addCheckboxPart(paramsDesc.get(Parameters.IGNORECASE));
+		desc.addCheckboxPart(paramsDesc.get(Parameters.IGNOREDIACRITICS));
 		return desc;
 	}
 
@@ -20,6 +20,8 @@
 
 package net.sf.okapi.lib.terminology.simpletb;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -27,9 +29,11 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.Range;
@@ -48,15 +52,31 @@ import net.sf.okapi.lib.terminology.tsv.TSVReader;
 /**
  * Very basic memory-only simple termbase.
  * This is used for prototyping the terminology interface.
+ * <p>The searches are done with {@link TermMatcher} automata built from the entries, so each
+ * fragment is scanned only once whatever the number of entries. The automata are built when
+ * needed (the one for the source terms in {@link #initialize(boolean, boolean, boolean, boolean)}),
+ * and are saved along with the entries in a file next to the termbase file (see {@link #save(String)}).
+ * <p>Once initialized, the termbase can be searched by several threads at the same time,
+ * as long as its entries are not modified.
  */
 public class SimpleTB {
 	
 	private static final String SIGNATURE = "SimpleTB-v1";
+	private static final String INDEX_SIGNATURE = "SimpleTB-index-v2";
+	private static final String INDEX_EXTENSION = ".idx";
+	
+	// Keys of the automata
+	private static final int MATCHER_TARGET = 1;
+	private static final int MATCHER_TERMS = 2;
 	
 	LocaleId srcLoc;
 	LocaleId trgLoc;
 	private List<Entry> entries;
 	private boolean betweenCodes;
+	private boolean ignoreCase;
+	private boolean ignoreDiacritics;
+	private Map<Integer, TermMatcher> matchers;
+	private Map<Integer, TermMatcher> storedMatchers;
 	
 	public SimpleTB (LocaleId srcLoc,
 		LocaleId trgLoc)
@@ -68,16 +88,40 @@ public class SimpleTB {
 	
 	private void reset () {
 		entries = new ArrayList<Entry>();
+		matchers = new ConcurrentHashMap<Integer, TermMatcher>();
+		storedMatchers = new HashMap<Integer, TermMatcher>();
 	}
 	
 	public void initialize (boolean stringSearch,
 		boolean betweenCodes)
+	{
+		initialize(stringSearch, betweenCodes, false, false);
+	}
+	
+	/**
+	 * Prepares the termbase for the searches.
+	 * This must be called again after the entries have been modified.
+	 * @param stringSearch true for string-based searches, false for term-based searches.
+	 * @param betweenCodes true if the strings must be between inline codes.
+	 * @param ignoreCase true to match the strings regardless of their case
+	 * (term-based searches always ignore the case).
+	 * @param ignoreDiacritics true to match the strings regardless of their diacritics.
+	 */
+	public void initialize (boolean stringSearch,
+		boolean betweenCodes,
+		boolean ignoreCase,
+		boolean ignoreDiacritics)
 	{
 		this.betweenCodes = betweenCodes;
+		this.ignoreCase = ignoreCase;
+		this.ignoreDiacritics = ignoreDiacritics;
 		// In case of a string-based search: we sort the source terms: longer first
 		if ( stringSearch ) {
 			Collections.sort(entries);
 		}
+		matchers.clear();
+		// Build the automaton for the source terms now rather than on the first search
+		getMatcher(true, !stringSearch);
 	}
 	
 	public void guessAndImport (File file) {
@@ -123,11 +167,13 @@ public class SimpleTB {
 		}
 		finally {
 			if ( reader != null ) reader.close();
+			matchers.clear();
 		}
 	}
 	
 	public void removeAll () {
 		entries.clear();
+		matchers.clear();
 	}
 
 	public Entry addEntry (String srcTerm,
@@ -136,9 +182,71 @@ public class SimpleTB {
 		Entry ent = new Entry(srcTerm);
 		ent.setTargetTerm(trgTerm);
 		entries.add(ent);
+		matchers.clear();
 		return ent;
 	}
 
+	/**
+	 * Gets the automaton for a given type of search, building it if needed.
+	 * @param searchSource true to search the source terms, false to search the target terms.
+	 * @param termSearch true for a term-based search, false for a string-based search.
+	 * @return the automaton for the given search. The term indices are the entry indices.
+	 */
+	private TermMatcher getMatcher (boolean searchSource,
+		boolean termSearch)
+	{
+		int key = (searchSource ? 0 : MATCHER_TARGET) | (termSearch ? MATCHER_TERMS : 0);
+		TermMatcher matcher = matchers.get(key);
+		if ( matcher != null ) return matcher;
+		// Several threads may search at the same time: build each automaton only once
+		synchronized ( matchers ) {
+			matcher = matchers.get(key);
+			if ( matcher != null ) return matcher;
+			matcher = createMatcher(key, searchSource, termSearch);
+			matchers.put(key, matcher);
+			return matcher;
+		}
+	}
+	
+	private TermMatcher createMatcher (int key,
+		boolean searchSource,
+		boolean termSearch)
+	{
+		// Term-based searches compare whole lower-cased tokens
+		boolean foldCase = termSearch || ignoreCase;
+		boolean foldDiacritics = !termSearch && ignoreDiacritics;
+		List<String> terms = new ArrayList<String>(entries.size());
+		for ( Entry ent : entries ) {
+			String term = (searchSource ? ent.getSourceTerm() : ent.getTargetTerm());
+			String other = (searchSource ? ent.getTargetTerm() : ent.getSourceTerm());
+			if (( other == null ) || ( termSearch && ( term != null ) && hasWhitespace(term) )) {
+				term = null; // Cannot be matched
+			}
+			terms.add(term);
+		}
+		// Re-use the automaton loaded with the termbase if it is still valid
+		TermMatcher matcher = storedMatchers.get(key);
+		if (( matcher == null ) || !matcher.isBuiltFor(terms, foldCase, foldDiacritics) ) {
+			matcher = new TermMatcher(terms, foldCase, foldDiacritics);
+		}
+		return matcher;
+	}
+	
+	/**
+	 * Indicates if a character is a whitespace, as defined by the regular expression class \s.
+	 */
+	private static boolean isWhitespace (char ch) {
+		return (( ch == ' ' ) || ( ch == '\t' ) || ( ch == '\n' ) || ( ch == '\u000B' )
+			|| ( ch == '\f' ) || ( ch == '\r' ));
+	}
+	
+	private static boolean hasWhitespace (String text) {
+		for ( int i=0; i<text.length(); i++ ) {
+			if ( isWhitespace(text.charAt(i)) ) return true;
+		}
+		return false;
+	}
+
 	public List<TermHit> getExistingStrings (TextFragment frag,
 		LocaleId fragmentLoc,
 		LocaleId otherLoc)
@@ -153,43 +261,73 @@ public class SimpleTB {
 			}
 		}
 
-		String stringToMatch;
-		String otherString;
-		StringBuilder text = new StringBuilder(frag);
-		Range location = new Range(0, 0);
-		
-		// For each term in the list
-		for ( Entry ent : entries ) {
-			// Select the source and target terms to search for
-			if ( searchSource ) {
-				stringToMatch = ent.getSourceTerm();
-				otherString = ent.getTargetTerm();
-			}
-			else {
-				stringToMatch = ent.getTargetTerm();
-				otherString = ent.getSourceTerm();
-			}
-			
-			if (( stringToMatch == null ) || ( otherString == null )) continue;
-			
-			while ( true ) {
-				if ( !isValidMatch(text, stringToMatch, location, betweenCodes) ) break;
-				// Else: Save the term
-				TermHit th = new TermHit();
-				th.sourceTerm = new TermEntry(stringToMatch);
-				th.targetTerm = new TermEntry(otherString);
-				th.range = new Range(location.start, location.end);
-				res.add(th);
-				// Obliterate the match so we don't re-match it 
-				for ( int i=location.start; i<location.end; i++ ) {
-					text.setCharAt(i, '`');
-				}
+		// Get all occurrences, in the order of the entries then of the positions.
+		// A match is taken only if it does not overlap an earlier one: with the entries
+		// sorted longer first, the longer terms win.
+		long[] found = getMatcher(searchSource, false).find(frag);
+		boolean[] taken = new boolean[frag.length()];
+		for ( long key : found ) {
+			Entry ent = entries.get((int)(key >>> 32));
+			String stringToMatch = (searchSource ? ent.getSourceTerm() : ent.getTargetTerm());
+			int start = (int)key;
+			int end = start+stringToMatch.length();
+			if ( !isValidMatch(frag, start, end, taken, betweenCodes) ) continue;
+			// Else: Save the term
+			TermHit th = new TermHit();
+			th.sourceTerm = new TermEntry(stringToMatch);
+			th.targetTerm = new TermEntry(searchSource ? ent.getTargetTerm() : ent.getSourceTerm());
+			th.range = new Range(start, end);
+			res.add(th);
+			// Mark the match so we don't re-match it 
+			for ( int i=start; i<end; i++ ) {
+				taken[i] = true;
 			}
 		}
 		
 		return res;
 	}
 
+	/**
+	 * Checks a match found by the automaton, the same way as {@link #isValidMatch(StringBuilder, String, Range, boolean)}:
+	 * the characters of the matches already taken are seen as neither letters nor markers.
+	 */
+	private static boolean isValidMatch (CharSequence text,
+		int start,
+		int end,
+		boolean[] taken,
+		boolean betweenCodes)
+	{
+		for ( int i=start; i<end; i++ ) {
+			if ( taken[i] ) return false;
+		}
+		// Check "word boundaries"
+		if (( start > 0 ) && !taken[start-1] && isWordChar(Character.codePointAt(text, start-1)) ) {
+			return false;
+		}
+		if ( betweenCodes ) {
+			if (( start <= 1 ) || taken[start-2] || !TextFragment.isMarker(text.charAt(start-2)) ) {
+				return false;
+			}
+		}
+		if (( end < text.length() ) && !taken[end] && isWordChar(Character.codePointAt(text, end)) ) {
+			return false;
+		}
+		if ( betweenCodes ) {
+			if (( end+1 > text.length() ) || taken[end] || !TextFragment.isMarker(text.charAt(end)) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isWordChar (int cp) {
+		int type = Character.getType(cp);
+		return (( type == Character.LOWERCASE_LETTER ) ||
+			( type == Character.UPPERCASE_LETTER ) ||
+			( type == Character.TITLECASE_LETTER ) ||
+			( type == Character.DECIMAL_DIGIT_NUMBER ));
+	}
+
 	/**
 	 * Searches for a given string in a text. The location parameter is updated with the position of the first 
 	 * character and the one of the character after the last one.
@@ -248,14 +386,13 @@ public class SimpleTB {
 	}
 	
 	/*
-	 * Very crude implementation of the search terms function.
+	 * Very crude implementation of the search terms function: the terms must match
+	 * whole whitespace-delimited tokens, regardless of their case.
 	 */
 	public List<TermHit> getExistingTerms (TextFragment frag,
 		LocaleId fragmentLoc,
 		LocaleId otherLoc)
 	{
-		String text = frag.getCodedText().toLowerCase();
-		List<String> parts = Arrays.asList(text.split("\\s"));
 		List<TermHit> res = new ArrayList<TermHit>();
 	
 		// Determine if the termbase has the searched locale
@@ -266,29 +403,32 @@ public class SimpleTB {
 			}
 		}
 
-		String termToMatch;
-		String otherTerm;
-		for ( Entry ent : entries ) {
-			if ( searchSource ) {
-				termToMatch = ent.getSourceTerm();
-				otherTerm = ent.getTargetTerm();
-			}
-			else {
-				termToMatch = ent.getTargetTerm();
-				otherTerm = ent.getSourceTerm();
-			}
-			if (( termToMatch == null ) || ( otherTerm == null )) continue;
-			if ( parts.contains(termToMatch.toLowerCase()) ) {
-				TermHit th = new TermHit();
-				th.sourceTerm = new TermEntry(termToMatch);
-				th.targetTerm = new TermEntry(otherTerm);
-				res.add(th);
-			}
+		long[] found = getMatcher(searchSource, true).find(frag);
+		int last = -1;
+		for ( long key : found ) {
+			int index = (int)(key >>> 32);
+			if ( index == last ) continue; // Each entry is reported once
+			Entry ent = entries.get(index);
+			String termToMatch = (searchSource ? ent.getSourceTerm() : ent.getTargetTerm());
+			int start = (int)key;
+			int end = start+termToMatch.length();
+			if (( start > 0 ) && !isWhitespace(frag.charAt(start-1)) ) continue;
+			if (( end < frag.length() ) && !isWhitespace(frag.charAt(end)) ) continue;
+			TermHit th = new TermHit();
+			th.sourceTerm = new TermEntry(termToMatch);
+			th.targetTerm = new TermEntry(searchSource ? ent.getTargetTerm() : ent.getSourceTerm());
+			res.add(th);
+			last = index;
 		}
 		
 		return res;
 	}
 
+	/**
+	 * Saves the entries of this termbase. The automata built so far are saved in a second
+	 * file, with the same path plus ".idx", so they do not have to be re-built after {@link #load(String)}.
+	 * @param path the path of the termbase file.
+	 */
 	public void save (String path) {
 		DataOutputStream dos = null;
 		try {
@@ -321,6 +461,66 @@ public class SimpleTB {
 				}
 			}
 		}
+		saveIndex(path+INDEX_EXTENSION);
+	}
+	
+	private void saveIndex (String path) {
+		DataOutputStream dos = null;
+		try {
+			dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+			dos.writeUTF(INDEX_SIGNATURE);
+			dos.writeInt(matchers.size());
+			for ( Map.Entry<Integer, TermMatcher> entry : matchers.entrySet() ) {
+				dos.writeInt(entry.getKey());
+				entry.getValue().write(dos);
+			}
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error while saving the index.", e);
+		}
+		finally {
+			if ( dos != null ) {
+				try {
+					dos.close();
+				}
+				catch ( IOException e ) {
+					throw new OkapiIOException("Error closing file.", e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Loads the automata saved with the entries, if there are any. They are used only if they
+	 * still correspond to the entries when the searches are initialized.
+	 */
+	private void loadIndex (String path) {
+		File file = new File(path);
+		if ( !file.exists() ) return;
+		DataInputStream dis = null;
+		try {
+			dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if ( !dis.readUTF().equals(INDEX_SIGNATURE) ) return;
+			int count = dis.readInt();
+			for ( int i=0; i<count; i++ ) {
+				int key = dis.readInt();
+				storedMatchers.put(key, TermMatcher.read(dis));
+			}
+		}
+		catch ( IOException e ) {
+			// The index is only a cache: the automata will be re-built
+			storedMatchers.clear();
+		}
+		finally {
+			if ( dis != null ) {
+				try {
+					dis.close();
+				}
+				catch ( IOException e ) {
+					throw new OkapiIOException("Error closing file.", e);
+				}
+			}
+		}
 	}
 	
 	public void load (String path) {
@@ -364,6 +564,7 @@ public class SimpleTB {
 				}
 			}
 		}
+		loadIndex(path+INDEX_EXTENSION);
 	}
 
 }
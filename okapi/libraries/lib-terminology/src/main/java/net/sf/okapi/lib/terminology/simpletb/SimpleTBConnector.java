@@ -79,10 +79,16 @@ public class SimpleTBConnector implements ITermAccess {
 		return tb.getExistingStrings(fragment, fragmentLocId, otherLocId);
 	}
 	
+	/**
+	 * Prepares the termbase for the searches. The case and the diacritics are ignored
+	 * in the string-based searches if the parameters say so.
+	 * @param stringSearch true for string-based searches, false for term-based searches.
+	 * @param betweenCodes true if the strings must be between inline codes.
+	 */
 	public void initializeSearch(boolean stringSearch,
 		boolean betweenCodes)
 	{
-		tb.initialize(stringSearch, betweenCodes);
+		tb.initialize(stringSearch, betweenCodes, params.getIgnoreCase(), params.getIgnoreDiacritics());
 	}
 	
 	public Entry addEntry (String srcTerm,
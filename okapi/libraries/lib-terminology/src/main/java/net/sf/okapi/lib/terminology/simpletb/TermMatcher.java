@@ -0,0 +1,410 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.lib.terminology.simpletb;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import net.sf.okapi.common.StringUtil;
+
+/**
+ * Aho-Corasick automaton finding all the occurrences of a list of terms in a text in a single pass.
+ * <p>The automaton can fold the case and/or remove the diacritics of both the terms and the text.
+ * The folding is done character by character, so the positions of the occurrences are always
+ * the positions in the original text.
+ * <p>The automaton is immutable once built and can be used by several threads at the same time.
+ */
+public class TermMatcher {
+
+	private static char[] baseChars;
+	
+	private final boolean ignoreCase;
+	private final boolean ignoreDiacritics;
+	// SHA-1 digest of the terms and options the automaton was built for
+	private final String termsDigest;
+	// Length of each term (0 for the terms not in the automaton)
+	private final int[] termLengths;
+	// Next term with the same text as a given term (or -1)
+	private final int[] nextTerm;
+	
+	// The states are numbered in breadth-first order, so the children of a state are
+	// contiguous and sorted by label
+	private final char[] labels;
+	private final int[] firstChild;
+	private final int[] childCount;
+	private final int[] failure;
+	// First term ending at a given state (or -1)
+	private final int[] firstTerm;
+	// Nearest state on the failure path where a term ends (or 0 for none)
+	private final int[] output;
+	
+	/**
+	 * Creates a new automaton for a given list of terms.
+	 * @param terms the terms to look for. Null and empty terms are ignored, but
+	 * they keep their index.
+	 * @param ignoreCase true to match without taking the case into account.
+	 * @param ignoreDiacritics true to match without taking the diacritics into account.
+	 */
+	public TermMatcher (List<String> terms,
+		boolean ignoreCase,
+		boolean ignoreDiacritics)
+	{
+		this.ignoreCase = ignoreCase;
+		this.ignoreDiacritics = ignoreDiacritics;
+		termsDigest = digest(terms, ignoreCase, ignoreDiacritics);
+		termLengths = new int[terms.size()];
+		nextTerm = new int[terms.size()];
+		Arrays.fill(nextTerm, -1);
+		
+		// Sort the folded terms, so each child in the trie is created in label order
+		// and the matching child when adding a term is always the last one created
+		String[] folded = new String[terms.size()];
+		Integer[] order = new Integer[terms.size()];
+		int count = 0;
+		for ( int i=0; i<terms.size(); i++ ) {
+			String term = terms.get(i);
+			if (( term == null ) || ( term.length() == 0 )) continue;
+			folded[i] = fold(term);
+			termLengths[i] = term.length();
+			order[count++] = i;
+		}
+		final String[] keys = folded;
+		Arrays.sort(order, 0, count, new Comparator<Integer>() {
+			@Override
+			public int compare (Integer a, Integer b) {
+				int n = keys[a].compareTo(keys[b]);
+				return (n != 0) ? n : a.compareTo(b);
+			}
+		});
+		
+		// Build the trie as linked lists
+		IntList trieLabel = new IntList();
+		IntList trieFirstChild = new IntList();
+		IntList trieLastChild = new IntList();
+		IntList trieNextSibling = new IntList();
+		IntList trieTerm = new IntList();
+		addNode(trieLabel, trieFirstChild, trieLastChild, trieNextSibling, trieTerm, 0); // Root
+		IntList lastTerm = new IntList();
+		lastTerm.add(-1);
+		for ( int n=0; n<count; n++ ) {
+			int index = order[n];
+			String key = folded[index];
+			int node = 0;
+			for ( int i=0; i<key.length(); i++ ) {
+				char ch = key.charAt(i);
+				int child = trieLastChild.get(node);
+				if (( child == -1 ) || ( trieLabel.get(child) != ch )) {
+					int newChild = addNode(trieLabel, trieFirstChild, trieLastChild, trieNextSibling, trieTerm, ch);
+					lastTerm.add(-1);
+					if ( child == -1 ) trieFirstChild.set(node, newChild);
+					else trieNextSibling.set(child, newChild);
+					trieLastChild.set(node, newChild);
+					child = newChild;
+				}
+				node = child;
+			}
+			// Chain the terms with the same text, in index order
+			if ( trieTerm.get(node) == -1 ) trieTerm.set(node, index);
+			else nextTerm[lastTerm.get(node)] = index;
+			lastTerm.set(node, index);
+		}
+		
+		// Renumber the states in breadth-first order
+		int size = trieLabel.size();
+		labels = new char[size];
+		firstChild = new int[size];
+		childCount = new int[size];
+		failure = new int[size];
+		firstTerm = new int[size];
+		output = new int[size];
+		int[] queue = new int[size]; // Trie nodes in breadth-first order
+		queue[0] = 0;
+		int tail = 1;
+		for ( int state=0; state<size; state++ ) {
+			int node = queue[state];
+			labels[state] = (char)trieLabel.get(node);
+			firstTerm[state] = trieTerm.get(node);
+			firstChild[state] = tail;
+			for ( int child=trieFirstChild.get(node); child!=-1; child=trieNextSibling.get(child) ) {
+				queue[tail++] = child;
+			}
+			childCount[state] = tail-firstChild[state];
+		}
+		
+		// Compute the failure and output links (parents are always processed before their children)
+		for ( int state=0; state<size; state++ ) {
+			for ( int child=firstChild[state]; child<firstChild[state]+childCount[state]; child++ ) {
+				int fail = 0;
+				if ( state != 0 ) {
+					int f = failure[state];
+					while ( true ) {
+						int next = getChild(f, labels[child]);
+						if ( next != -1 ) {
+							fail = next;
+							break;
+						}
+						if ( f == 0 ) break;
+						f = failure[f];
+					}
+				}
+				failure[child] = fail;
+				output[child] = (firstTerm[fail] != -1) ? fail : output[fail];
+			}
+		}
+	}
+	
+	private TermMatcher (DataInputStream dis)
+		throws IOException
+	{
+		ignoreCase = dis.readBoolean();
+		ignoreDiacritics = dis.readBoolean();
+		termsDigest = dis.readUTF();
+		int count = dis.readInt();
+		termLengths = new int[count];
+		nextTerm = new int[count];
+		for ( int i=0; i<count; i++ ) {
+			termLengths[i] = dis.readInt();
+			nextTerm[i] = dis.readInt();
+		}
+		int size = dis.readInt();
+		labels = new char[size];
+		firstChild = new int[size];
+		childCount = new int[size];
+		failure = new int[size];
+		firstTerm = new int[size];
+		output = new int[size];
+		for ( int i=0; i<size; i++ ) {
+			labels[i] = dis.readChar();
+			firstChild[i] = dis.readInt();
+			childCount[i] = dis.readInt();
+			failure[i] = dis.readInt();
+			firstTerm[i] = dis.readInt();
+			output[i] = dis.readInt();
+		}
+	}
+	
+	/**
+	 * Reads an automaton written with {@link #write(DataOutputStream)}.
+	 * @param dis the stream where to read.
+	 * @return the automaton.
+	 * @throws IOException if an error occurs.
+	 */
+	public static TermMatcher read (DataInputStream dis)
+		throws IOException
+	{
+		return new TermMatcher(dis);
+	}
+	
+	/**
+	 * Writes this automaton.
+	 * @param dos the stream where to write.
+	 * @throws IOException if an error occurs.
+	 */
+	public void write (DataOutputStream dos)
+		throws IOException
+	{
+		dos.writeBoolean(ignoreCase);
+		dos.writeBoolean(ignoreDiacritics);
+		dos.writeUTF(termsDigest);
+		dos.writeInt(termLengths.length);
+		for ( int i=0; i<termLengths.length; i++ ) {
+			dos.writeInt(termLengths[i]);
+			dos.writeInt(nextTerm[i]);
+		}
+		dos.writeInt(labels.length);
+		for ( int i=0; i<labels.length; i++ ) {
+			dos.writeChar(labels[i]);
+			dos.writeInt(firstChild[i]);
+			dos.writeInt(childCount[i]);
+			dos.writeInt(failure[i]);
+			dos.writeInt(firstTerm[i]);
+			dos.writeInt(output[i]);
+		}
+	}
+	
+	/**
+	 * Indicates if this automaton was built for a given list of terms and options.
+	 * @param terms the list of terms.
+	 * @param ignoreCase the case option.
+	 * @param ignoreDiacritics the diacritics option.
+	 * @return true if the automaton can be used for the given terms and options.
+	 */
+	public boolean isBuiltFor (List<String> terms,
+		boolean ignoreCase,
+		boolean ignoreDiacritics)
+	{
+		return (( this.ignoreCase == ignoreCase ) && ( this.ignoreDiacritics == ignoreDiacritics )
+			&& ( termLengths.length == terms.size() )
+			&& termsDigest.equals(digest(terms, ignoreCase, ignoreDiacritics)));
+	}
+	
+	/**
+	 * Finds all the occurrences of the terms in a given text, including the overlapping ones.
+	 * @param text the text where to search.
+	 * @return the occurrences, each encoded as <code>(termIndex &lt;&lt; 32) | start</code>,
+	 * sorted by term index and then by position.
+	 */
+	public long[] find (CharSequence text) {
+		long[] res = new long[16];
+		int count = 0;
+		int state = 0;
+		for ( int i=0; i<text.length(); i++ ) {
+			char ch = fold(text.charAt(i));
+			while ( true ) {
+				int next = getChild(state, ch);
+				if ( next != -1 ) {
+					state = next;
+					break;
+				}
+				if ( state == 0 ) break;
+				state = failure[state];
+			}
+			int match = (firstTerm[state] != -1) ? state : output[state];
+			while ( match != 0 ) {
+				for ( int term=firstTerm[match]; term!=-1; term=nextTerm[term] ) {
+					if ( count == res.length ) res = Arrays.copyOf(res, count*2);
+					res[count++] = ((long)term << 32) | (i+1-termLengths[term]);
+				}
+				match = output[match];
+			}
+		}
+		res = Arrays.copyOf(res, count);
+		Arrays.sort(res);
+		return res;
+	}
+	
+	/**
+	 * Gets the child of a state for a given label.
+	 * @return the child state, or -1 if there is none.
+	 */
+	private int getChild (int state,
+		char ch)
+	{
+		int low = firstChild[state];
+		int high = low+childCount[state]-1;
+		while ( low <= high ) {
+			int mid = (low+high) >>> 1;
+			char label = labels[mid];
+			if ( label < ch ) low = mid+1;
+			else if ( label > ch ) high = mid-1;
+			else return mid;
+		}
+		return -1;
+	}
+	
+	private String fold (String text) {
+		if ( !ignoreCase && !ignoreDiacritics ) return text;
+		char[] chars = text.toCharArray();
+		for ( int i=0; i<chars.length; i++ ) {
+			chars[i] = fold(chars[i]);
+		}
+		return new String(chars);
+	}
+	
+	private char fold (char ch) {
+		if ( ignoreDiacritics ) ch = getBaseChars()[ch];
+		if ( ignoreCase ) ch = Character.toLowerCase(ch);
+		return ch;
+	}
+	
+	/**
+	 * Gets the table of the characters without their diacritics.
+	 */
+	private static synchronized char[] getBaseChars () {
+		if ( baseChars == null ) {
+			char[] table = new char[Character.MAX_VALUE+1];
+			for ( int i=0; i<table.length; i++ ) {
+				char ch = (char)i;
+				table[i] = ch;
+				if ( Character.isLetter(ch) ) {
+					String tmp = Normalizer.normalize(String.valueOf(ch), Normalizer.Form.NFD);
+					if ( tmp.length() > 1 ) table[i] = tmp.charAt(0);
+				}
+			}
+			baseChars = table;
+		}
+		return baseChars;
+	}
+	
+	/**
+	 * Computes the digest identifying a list of terms and options.
+	 * Each term is prefixed with its length, so two different lists cannot give the same string.
+	 */
+	private static String digest (List<String> terms,
+		boolean ignoreCase,
+		boolean ignoreDiacritics)
+	{
+		StringBuilder tmp = new StringBuilder();
+		tmp.append(ignoreCase ? '1' : '0').append(ignoreDiacritics ? '1' : '0');
+		for ( String term : terms ) {
+			if ( term == null ) tmp.append('-');
+			else tmp.append(term.length()).append(':').append(term);
+			tmp.append(';');
+		}
+		return StringUtil.digest(tmp.toString());
+	}
+	
+	private static int addNode (IntList label,
+		IntList firstChild,
+		IntList lastChild,
+		IntList nextSibling,
+		IntList term,
+		int ch)
+	{
+		label.add(ch);
+		firstChild.add(-1);
+		lastChild.add(-1);
+		nextSibling.add(-1);
+		term.add(-1);
+		return label.size()-1;
+	}
+	
+	/**
+	 * Minimal growable list of primitive integers.
+	 */
+	private static class IntList {
+		private int[] data = new int[1024];
+		private int size;
+		
+		void add (int value) {
+			if ( size == data.length ) data = Arrays.copyOf(data, size*2);
+			data[size++] = value;
+		}
+		
+		int get (int index) {
+			return data[index];
+		}
+		
+		void set (int index, int value) {
+			data[index] = value;
+		}
+		
+		int size () {
+			return size;
+		}
+	}
+
+}
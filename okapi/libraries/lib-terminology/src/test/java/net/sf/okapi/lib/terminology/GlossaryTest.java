@@ -20,12 +20,21 @@
 
 package net.sf.okapi.lib.terminology;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.lib.terminology.simpletb.Parameters;
+import net.sf.okapi.lib.terminology.simpletb.SimpleTB;
 import net.sf.okapi.lib.terminology.simpletb.SimpleTBConnector;
+import net.sf.okapi.lib.terminology.simpletb.TermMatcher;
 
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -91,7 +100,152 @@ public class GlossaryTest {
 		assertEquals(2, found1.size());
 		assertEquals("Src1 src2", found1.get(0).sourceTerm.getText());
 		assertEquals("src2", found1.get(1).sourceTerm.getText());
+		assertEquals(1, found1.get(1).range.start);
 		
 	}
 
+	@Test
+	public void testGetExistingStringsAllOccurrences () {
+		SimpleTB tb = new SimpleTB(locEN, locFR);
+		tb.addEntry("file", "fichier");
+		tb.addEntry("open file", "fichier ouvert");
+		tb.initialize(true, false);
+		
+		TextFragment srcFrag = new TextFragment("Profile: open file, then save the file (files).");
+		List<TermHit> found = tb.getExistingStrings(srcFrag, locEN, locFR);
+		assertEquals(2, found.size());
+		assertEquals("open file", found.get(0).sourceTerm.getText());
+		assertEquals(9, found.get(0).range.start);
+		assertEquals("file", found.get(1).sourceTerm.getText());
+		assertEquals(34, found.get(1).range.start);
+		
+		// Search from the target side
+		found = tb.getExistingStrings(new TextFragment("Le fichier ouvert"), locFR, locEN);
+		assertEquals(1, found.size());
+		assertEquals("fichier ouvert", found.get(0).sourceTerm.getText());
+		assertEquals("open file", found.get(0).targetTerm.getText());
+	}
+	
+	@Test
+	public void testGetExistingStringsFolded () {
+		SimpleTB tb = new SimpleTB(locEN, locFR);
+		tb.addEntry("Resume", "CV");
+		tb.initialize(true, false, true, true);
+		
+		List<TermHit> found = tb.getExistingStrings(new TextFragment("Send your r\u00E9sum\u00E9 today"), locEN, locFR);
+		assertEquals(1, found.size());
+		assertEquals("Resume", found.get(0).sourceTerm.getText());
+		assertEquals(10, found.get(0).range.start);
+		assertEquals(16, found.get(0).range.end);
+		
+		tb.initialize(true, false);
+		assertEquals(0, tb.getExistingStrings(new TextFragment("Send your r\u00E9sum\u00E9 today"), locEN, locFR).size());
+	}
+	
+	@Test
+	public void testConnectorFolding () {
+		SimpleTBConnector ta = new SimpleTBConnector();
+		Parameters params = (Parameters)ta.getParameters();
+		params.setSourceLocale(locEN);
+		params.setTargetLocale(locFR);
+		params.setIgnoreCase(true);
+		params.setIgnoreDiacritics(true);
+		// The options are kept in the parameters string
+		params.fromString(params.toString());
+		assertTrue(params.getIgnoreCase());
+		assertTrue(params.getIgnoreDiacritics());
+		ta.open();
+		ta.addEntry("Resume", "CV");
+		ta.initializeSearch(true, false);
+		
+		List<TermHit> found = ta.getExistingStrings(new TextFragment("R\u00C9SUM\u00C9"), locEN, locFR);
+		assertEquals(1, found.size());
+		assertEquals("Resume", found.get(0).sourceTerm.getText());
+	}
+	
+	@Test
+	public void testConcurrentSearches ()
+		throws Exception
+	{
+		final SimpleTB tb = new SimpleTB(locEN, locFR);
+		for ( int i=0; i<200; i++ ) {
+			tb.addEntry("term"+i, "terme"+i);
+		}
+		tb.initialize(true, false);
+		// The automaton for the target side is built by the first search
+		final AtomicInteger errors = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for ( int i=0; i<threads.length; i++ ) {
+			threads[i] = new Thread() {
+				@Override
+				public void run () {
+					for ( int j=0; j<200; j++ ) {
+						List<TermHit> found = tb.getExistingStrings(new TextFragment("Le terme"+j+" ici"), locFR, locEN);
+						if (( found.size() != 1 ) || !found.get(0).sourceTerm.getText().equals("terme"+j) ) {
+							errors.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for ( Thread thread : threads ) {
+			thread.join();
+		}
+		assertEquals(0, errors.get());
+	}
+	
+	@Test
+	public void testSaveAndLoad () {
+		String path = GlossaryTest.class.getResource("/test01.tbx").getPath();
+		File file = new File(new File(path).getParentFile(), "glossaryTest.tb");
+		SimpleTB tb = new SimpleTB(locEN, locFR);
+		tb.addEntry("watch", "montre").setdefinition("");
+		tb.addEntry("time", "temps").setdefinition("");
+		tb.initialize(true, false);
+		tb.save(file.getPath());
+		assertTrue(new File(file.getPath()+".idx").exists());
+		
+		SimpleTB tb2 = new SimpleTB(locEN, locFR);
+		tb2.load(file.getPath());
+		tb2.initialize(true, false);
+		List<TermHit> found = tb2.getExistingStrings(new TextFragment("This watch shows a time"), locEN, locFR);
+		assertEquals(2, found.size());
+		assertEquals("watch", found.get(0).sourceTerm.getText());
+		assertEquals("time", found.get(1).sourceTerm.getText());
+	}
+	
+	@Test
+	public void testTermMatcher () {
+		TermMatcher matcher = new TermMatcher(java.util.Arrays.asList("he", "she", null, "his", "hers", "he"), false, false);
+		long[] found = matcher.find("ushers");
+		// Sorted by term index then position
+		assertEquals(4, found.length);
+		assertEquals((0L << 32) | 2, found[0]); // he
+		assertEquals((1L << 32) | 1, found[1]); // she
+		assertEquals((4L << 32) | 2, found[2]); // hers
+		assertEquals((5L << 32) | 2, found[3]); // he (duplicate)
+	}
+	
+	@Test
+	public void testTermMatcherIsBuiltFor ()
+		throws IOException
+	{
+		List<String> terms = java.util.Arrays.asList("Aa", "x", null);
+		TermMatcher matcher = new TermMatcher(terms, true, false);
+		assertTrue(matcher.isBuiltFor(java.util.Arrays.asList("Aa", "x", null), true, false));
+		assertFalse(matcher.isBuiltFor(terms, false, false));
+		// Same String.hashCode() as "Aa"
+		assertFalse(matcher.isBuiltFor(java.util.Arrays.asList("BB", "x", null), true, false));
+		assertFalse(matcher.isBuiltFor(java.util.Arrays.asList("Aa", "x", ""), true, false));
+		
+		// The check still works once the automaton is written and read back
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		matcher.write(new DataOutputStream(bos));
+		TermMatcher copy = TermMatcher.read(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())));
+		assertTrue(copy.isBuiltFor(terms, true, false));
+		assertFalse(copy.isBuiltFor(java.util.Arrays.asList("BB", "x", null), true, false));
+		assertArrayEquals(matcher.find("aa X"), copy.find("aa X"));
+	}
+
 }
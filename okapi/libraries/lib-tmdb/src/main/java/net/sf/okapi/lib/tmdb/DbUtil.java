@@ -264,4 +264,18 @@ public class DbUtil {
 		return tmp.toString();
 	}
 	
+	/**
+	 * Creates the throughput report of a process.
+	 * @param count the number of entries processed.
+	 * @param startTime the time the process started, in milliseconds (as given by {@link System#currentTimeMillis()}).
+	 * @return the text of the report.
+	 */
+	public static String getThroughputReport (long count,
+		long startTime)
+	{
+		long duration = Math.max(1, System.currentTimeMillis()-startTime);
+		return String.format("%d entries processed in %.1f seconds (%d entries per second).",
+			count, duration/1000.0, (count*1000)/duration);
+	}
+	
 }
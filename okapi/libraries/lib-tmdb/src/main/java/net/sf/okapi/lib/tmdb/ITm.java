@@ -142,6 +142,9 @@ public interface ITm {
 	
 	/**
 	 * Finishes a batch of {@link #addRecord(long, Map, Map)}.
+	 * <p>The records may be buffered and added to the repository in bulk: some of them may not be
+	 * committed until this method is called. Any index needed by the repository is also created
+	 * or updated here, rather than for each record.
 	 * @see #startImport()
 	 * @see #addRecord(long, Map, Map)
 	 */
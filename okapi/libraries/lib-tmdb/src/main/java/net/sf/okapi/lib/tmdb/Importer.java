@@ -58,6 +58,7 @@ public class Importer implements Runnable {
 		IFilter filter = null;
 		boolean canceled = false;
 		boolean flag;
+		long startTime = System.currentTimeMillis();
 		try {
 			callback.startProcess("Importing "+rd.getInputURI().getPath()+"...");
 			filter = fcMapper.createFilter(rd.getFilterConfigId());
@@ -158,11 +159,17 @@ public class Importer implements Runnable {
 		}
 		finally {
 			// Final update (includes notifying the observers that we are done)
-			tm.finishImport();
-			if ( filter != null ) {
-				filter.close();
+			try {
+				// Commits the remaining records and creates the indexes
+				tm.finishImport();
+				callback.logMessage(IProgressCallback.MSGTYPE_INFO, DbUtil.getThroughputReport(count, startTime));
+			}
+			finally {
+				if ( filter != null ) {
+					filter.close();
+				}
+				callback.endProcess(count, false);
 			}
-			callback.endProcess(count, false);
 		}
 	}
 
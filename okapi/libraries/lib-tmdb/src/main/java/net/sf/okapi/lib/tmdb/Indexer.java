@@ -20,7 +20,13 @@
 
 package net.sf.okapi.lib.tmdb;
 
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sf.okapi.lib.tmdb.IProgressCallback;
 import net.sf.okapi.lib.tmdb.ITm;
@@ -29,12 +35,38 @@ import net.sf.okapi.lib.tmdb.lucene.TmEntry;
 import net.sf.okapi.lib.tmdb.lucene.Variant;
 import net.sf.okapi.lib.tmdb.lucene.Writer;
 
+/**
+ * Indexes the entries of a TM.
+ * <p>The records are read from the database in the calling thread, and the Lucene documents are
+ * built and added to the index by a pool of threads, in chunks of entries.
+ */
 public class Indexer implements Runnable {
 
+	/**
+	 * Number of entries indexed by each task of the pool.
+	 */
+	private static final int CHUNK_SIZE = 500;
+
 	private final IProgressCallback callback;
 	private final IRepository repo;
 	private final String tmName;
 	private final List<String> fields;
+	private final int threadCount;
+	
+	/**
+	 * Creates the indexer object, with a single thread adding the documents to the index.
+	 * @param progressCallback the callback object for the progress.
+	 * @param repo the repository of the TM to index.
+	 * @param tmName the name of the TM to index.
+	 * @param fields list of the text fields to index and attributes to store. 
+	 */
+	public Indexer (IProgressCallback progressCallback,
+		IRepository repo,
+		String tmName,
+		List<String> fields)
+	{
+		this(progressCallback, repo, tmName, fields, 1);
+	}
 	
 	/**
 	 * Creates the indexer object.
@@ -44,16 +76,19 @@ public class Indexer implements Runnable {
 	 * @param fields list of the text fields to index and attributes to store. 
 	 * @param locale the Olifant locale name of the locale to index.
 	 * @param metaFields the list of the TM columns to use as metadata (can be null).
+	 * @param threadCount the number of threads adding the documents to the index (1 or more).
 	 */
 	public Indexer (IProgressCallback progressCallback,
 		IRepository repo,
 		String tmName,
-		List<String> fields)
+		List<String> fields,
+		int threadCount)
 	{
 		this.callback = progressCallback;
 		this.repo = repo;
 		this.tmName = tmName;
 		this.fields = fields;
+		this.threadCount = Math.max(1, threadCount);
 	}
 	
 	@Override
@@ -62,6 +97,10 @@ public class Indexer implements Runnable {
 		ITm tm = null;
 		boolean canceled = false;
 		IIndexAccess ia = null;
+		long startTime = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		// Bound the number of chunks waiting to be indexed to limit the memory used
+		LinkedList<Future<?>> pending = new LinkedList<Future<?>>();
 		
 		try {
 			callback.startProcess(String.format("Indexing %s...", tmName));
@@ -75,6 +114,7 @@ public class Indexer implements Runnable {
 
 			ia = repo.getIndexAccess();
 			Writer writer = ia.getWriter();
+			List<TmEntry> chunk = new ArrayList<TmEntry>(CHUNK_SIZE);
 			
 			IRecordSet rs = tm.getFirstPage();
 			while  (( rs != null ) && !canceled ) {
@@ -92,8 +132,15 @@ public class Indexer implements Runnable {
 							entry.setAttribute(fn, rs.getString(fn));
 						}
 					}
-					// Index the entry
-				    writer.index(entry);
+					// Index the entries by chunks
+					chunk.add(entry);
+					if ( chunk.size() == CHUNK_SIZE ) {
+						pending.add(executor.submit(new IndexTask(writer, chunk)));
+						chunk = new ArrayList<TmEntry>(CHUNK_SIZE);
+						if ( pending.size() > threadCount*2 ) {
+							waitFor(pending.removeFirst());
+						}
+					}
 					
 					// Update UI from time to time
 					if ( (totalCount % 652) == 0 ) {
@@ -110,7 +157,14 @@ public class Indexer implements Runnable {
 					rs = tm.getNextPage();
 				}
 			}
+			if ( !chunk.isEmpty() ) {
+				pending.add(executor.submit(new IndexTask(writer, chunk)));
+			}
+			while ( !pending.isEmpty() ) {
+				waitFor(pending.removeFirst());
+			}
 			writer.commit();
+			callback.logMessage(IProgressCallback.MSGTYPE_INFO, DbUtil.getThroughputReport(totalCount, startTime));
 			
 			// Now: update the index information in the TM database
 			tm.setIndexInfo(DbUtil.indexInfoToString(fields));
@@ -119,8 +173,43 @@ public class Indexer implements Runnable {
 			callback.logMessage(IProgressCallback.MSGTYPE_ERROR, e.getMessage());
 		}
 		finally {
+			executor.shutdownNow();
 			callback.endProcess(totalCount, false);
 		}
 	}
 
+	private void waitFor (Future<?> future)
+		throws Throwable
+	{
+		try {
+			future.get();
+		}
+		catch ( ExecutionException e ) {
+			throw e.getCause();
+		}
+	}
+	
+	/**
+	 * Adds a chunk of entries to the index. The Lucene writer can be used by several threads at the same time.
+	 */
+	private static class IndexTask implements Runnable {
+
+		private final Writer writer;
+		private final List<TmEntry> entries;
+		
+		public IndexTask (Writer writer,
+			List<TmEntry> entries)
+		{
+			this.writer = writer;
+			this.entries = entries;
+		}
+		
+		@Override
+		public void run () {
+			for ( TmEntry entry : entries ) {
+				writer.index(entry);
+			}
+		}
+	}
+
 }
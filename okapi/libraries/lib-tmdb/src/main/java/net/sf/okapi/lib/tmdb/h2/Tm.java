@@ -42,6 +42,15 @@ import net.sf.okapi.lib.tmdb.filter.ValueNode.TYPE;
 
 public class Tm implements ITm {
 
+	/**
+	 * Number of segment records sent to the database in one JDBC batch during an import.
+	 */
+	static final int IMPORT_BATCH_SIZE = 1000;
+	/**
+	 * Number of records added in one transaction during an import.
+	 */
+	static final int IMPORT_COMMIT_SIZE = 20000;
+
 	private final Repository store;
 	private final String uuid;
 	
@@ -67,6 +76,9 @@ public class Tm implements ITm {
 	private ArrayList<String> existingTuFields;
 	private ArrayList<String> existingSegFields;
 	private LinkedHashMap<String, Object> fieldsToImport;
+	private int pendingSegCount;
+	private long uncommittedCount;
+	private boolean autoCommit;
 	
 	private PreparedStatement pstmUpdSeg;
 	private ArrayList<String> updSegFields;
@@ -397,7 +409,11 @@ public class Tm implements ITm {
 			existingSegFields.add(DbUtil.FLAG_NAME);
 			// Create the list of the fields to import (to use with the pre-defined statement
 			fieldsToImport = new LinkedHashMap<String, Object>();
-			
+			// The records are added in transactions of IMPORT_COMMIT_SIZE records
+			pendingSegCount = 0;
+			uncommittedCount = 0;
+			autoCommit = store.getConnection().getAutoCommit();
+			store.getConnection().setAutoCommit(false);
 		}
 		catch ( SQLException e ) {
 			throw new RuntimeException(e);
@@ -406,14 +422,55 @@ public class Tm implements ITm {
 
 	@Override
 	public void finishImport () {
+		if ( fieldsToImport == null ) return; // Not importing
 		try {
-			closeAddStatements();
+			executeSegmentBatch();
+			store.getConnection().commit();
+			// Create the index on the text unit reference once all the records are in
+			// (maintaining it during the import would slow down each insert)
+			createTuRefIndex();
+		}
+		catch ( SQLException e ) {
+			throw new RuntimeException(e);
+		}
+		finally {
+			try {
+				closeAddStatements();
+				store.getConnection().setAutoCommit(autoCommit);
+			}
+			catch ( SQLException e ) {
+				throw new RuntimeException(e);
+			}
 			existingTuFields = null;
 			existingSegFields = null;
 			fieldsToImport = null;
 		}
-		catch ( SQLException e ) {
-			throw new RuntimeException(e);
+	}
+
+	/**
+	 * Sends the segment records added to the current JDBC batch to the database.
+	 */
+	private void executeSegmentBatch ()
+		throws SQLException
+	{
+		if (( pstmAddSeg != null ) && ( pendingSegCount > 0 )) {
+			pstmAddSeg.executeBatch();
+		}
+		pendingSegCount = 0;
+	}
+
+	private void createTuRefIndex ()
+		throws SQLException
+	{
+		Statement stm = null;
+		try {
+			stm = store.getConnection().createStatement();
+			stm.execute("CREATE INDEX IF NOT EXISTS \""+name+"_TUREF\" ON "+segTable+" (\""+DbUtil.TUREF_NAME+"\")");
+		}
+		finally {
+			if ( stm != null ) {
+				stm.close();
+			}
 		}
 	}
 
@@ -422,14 +479,15 @@ public class Tm implements ITm {
 		Map<String, Object> tuFields,
 		Map<String, Object> segFields)
 	{
-		//TODO: need to wrap this into a transaction
 		try {
 			verifyFieldsToImport(false, tuFields, false);
 			verifyFieldsToImport(true, segFields, false);
 		
-			fillStatement(false, tuFields, 0); // tuKey not used here
-			pstmAddTu.executeUpdate();
+			// The text unit record is added only for the first segment of the text unit
+			// Its key is needed right away, so it cannot be batched
 			if ( tuKey == -1 ) {
+				fillStatement(false, tuFields, 0); // tuKey not used here
+				pstmAddTu.executeUpdate();
 				ResultSet keys = pstmAddTu.getGeneratedKeys();
 				if ( keys.next() ) {
 					tuKey = keys.getLong(1);
@@ -439,7 +497,15 @@ public class Tm implements ITm {
 			// It's unlikely there are no segment-level fields but it could happens 
 			if ( pstmAddSeg != null ) {
 				fillStatement(true, segFields, tuKey);
-				pstmAddSeg.executeUpdate();
+				pstmAddSeg.addBatch();
+				if ( ++pendingSegCount >= IMPORT_BATCH_SIZE ) {
+					executeSegmentBatch();
+				}
+			}
+			if ( ++uncommittedCount >= IMPORT_COMMIT_SIZE ) {
+				executeSegmentBatch();
+				store.getConnection().commit();
+				uncommittedCount = 0;
 			}
 			
 			// We changed the number of rows
@@ -582,6 +648,10 @@ public class Tm implements ITm {
 
 				// Create the new fields as needed, and update the lists
 				// The lists can be null or empty in this call
+				// The pending segments must be sent before the table is changed
+				if ( !Util.isEmpty(fieldsToCreate) ) {
+					executeSegmentBatch();
+				}
 				store.createNewFields(name, segmentLevel, fieldsToCreate, existingFields);
 			}
 			
@@ -589,6 +659,7 @@ public class Tm implements ITm {
 			if ( segmentLevel ) {
 				if (( pstmAddSeg == null ) || !Util.isEmpty(fieldsToCreate) ) {
 					if ( pstmAddSeg != null ) {
+						executeSegmentBatch();
 						pstmAddSeg.close();
 					}
 					boolean first = true;
@@ -44,6 +44,12 @@ public class Writer {
 	
 	private static final Logger LOGGER = Logger.getLogger(Writer.class.getName());
 
+	/**
+	 * Size of the RAM buffer used before the documents are flushed to the index. The buffer
+	 * is filled only as documents are added, so this affects mostly the bulk indexing.
+	 */
+	static final double RAM_BUFFER_SIZE_MB = 64.0;
+
 	private IndexWriter indexWriter;
 
 	/**
@@ -62,6 +68,7 @@ public class Writer {
 	{
 		IndexWriterConfig iwc = new IndexWriterConfig(Version.LUCENE_31, new NgramAnalyzer(Locale.ENGLISH, 4));
 		iwc.setOpenMode(createNewTmIndex ? OpenMode.CREATE: OpenMode.CREATE_OR_APPEND);
+		iwc.setRAMBufferSizeMB(RAM_BUFFER_SIZE_MB);
 		indexWriter = new IndexWriter(indexDirectory, iwc);
 	}
 
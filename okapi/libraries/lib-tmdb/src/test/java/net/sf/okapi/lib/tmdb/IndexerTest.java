@@ -0,0 +1,139 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.lib.tmdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import net.sf.okapi.common.observer.IObserver;
+import net.sf.okapi.lib.tmdb.h2.Repository;
+
+import org.junit.Test;
+
+public class IndexerTest {
+
+	@Test
+	public void testIndexWithSeveralThreads ()
+		throws IOException
+	{
+		IRepository repo = new Repository(null, false);
+		try {
+			ITm tm = repo.createTm("toIndex", null, "EN");
+			// Several chunks of entries, with a partial one at the end
+			int count = 1234;
+			tm.startImport();
+			for ( int i=0; i<count; i++ ) {
+				LinkedHashMap<String, Object> segFields = new LinkedHashMap<String, Object>();
+				segFields.put(DbUtil.TEXT_PREFIX+"EN", "Text EN "+i);
+				segFields.put(DbUtil.CODES_PREFIX+"EN", null);
+				tm.addRecord(-1, null, segFields);
+			}
+			tm.finishImport();
+			
+			Callback callback = new Callback();
+			new Indexer(callback, repo, "toIndex", Arrays.asList(DbUtil.TEXT_PREFIX+"EN"), 3).run();
+			
+			assertNull(callback.error);
+			assertEquals(count, callback.endCount);
+			assertEquals(1, callback.infos.size());
+			assertTrue(callback.infos.get(0).startsWith(count+" entries processed"));
+			assertEquals(count, repo.getIndexAccess().getWriter().getIndexWriter().numDocs());
+		}
+		finally {
+			repo.close();
+		}
+	}
+	
+	private static class Callback implements IProgressCallback {
+
+		String error;
+		List<String> infos = new ArrayList<String>();
+		long endCount = -1;
+		
+		@Override
+		public void startProcess (String text) {
+		}
+
+		@Override
+		public void endProcess (long count,
+			Boolean updateRepositories)
+		{
+			endCount = count;
+		}
+
+		@Override
+		public boolean updateProgress (long count) {
+			return true;
+		}
+
+		@Override
+		public boolean logMessage (int type,
+			String text)
+		{
+			if ( type == MSGTYPE_ERROR ) error = text;
+			else if ( type == MSGTYPE_INFO ) infos.add(text);
+			return true;
+		}
+
+		@Override
+		public boolean isCanceled () {
+			return false;
+		}
+
+		@Override
+		public void addObserver (IObserver observer) {
+		}
+
+		@Override
+		public int countObservers () {
+			return 0;
+		}
+
+		@Override
+		public List<IObserver> getObservers () {
+			return null;
+		}
+
+		@Override
+		public void deleteObserver (IObserver observer) {
+		}
+
+		@Override
+		public void deleteObservers () {
+		}
+
+		@Override
+		public void notifyObservers () {
+		}
+
+		@Override
+		public void notifyObservers (Object arg) {
+		}
+	}
+
+}
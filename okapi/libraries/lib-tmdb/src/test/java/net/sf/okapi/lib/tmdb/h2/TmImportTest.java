@@ -0,0 +1,146 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.lib.tmdb.h2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+
+import net.sf.okapi.lib.tmdb.DbUtil;
+import net.sf.okapi.lib.tmdb.ITm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TmImportTest {
+
+	private Repository repo;
+	
+	@Before
+	public void setUp () {
+		repo = new Repository(null, false);
+	}
+	
+	@After
+	public void tearDown () {
+		repo.close();
+	}
+	
+	@Test
+	public void testBatchedImport ()
+		throws SQLException
+	{
+		ITm tm = repo.createTm("batch", null, "EN");
+		// Several batches, with a partial one at the end
+		int count = Tm.IMPORT_BATCH_SIZE*2+5;
+		tm.startImport();
+		long tuKey = -1;
+		for ( int i=0; i<count; i++ ) {
+			if (( i % 5 ) == 0 ) tuKey = -1; // Text units of five segments
+			tuKey = tm.addRecord(tuKey, createTuFields(i), createSegFields(i));
+		}
+		tm.finishImport();
+		
+		assertEquals(count, tm.getTotalSegmentCount());
+		// Only one row per text unit
+		assertEquals(count/5, countRows("\"batch_TU\""));
+		// The segments are linked to their text unit
+		assertEquals(count/5, countRows("(SELECT DISTINCT \""+DbUtil.TUREF_NAME+"\" FROM \"batch_SEG\")"));
+		// The index on the text unit reference is created at the end of the import
+		assertEquals(1, countRows("INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME='batch_TUREF'"));
+		assertTrue(repo.getConnection().getAutoCommit());
+	}
+	
+	@Test
+	public void testNewFieldInBatch ()
+		throws SQLException
+	{
+		ITm tm = repo.createTm("fields", null, "EN");
+		tm.startImport();
+		for ( int i=0; i<10; i++ ) {
+			LinkedHashMap<String, Object> segFields = createSegFields(i);
+			// New column while segments are waiting in the batch
+			if ( i >= 5 ) segFields.put(DbUtil.TEXT_PREFIX+"FR", "Text FR "+i);
+			tm.addRecord(-1, createTuFields(i), segFields);
+		}
+		tm.finishImport();
+		
+		assertEquals(10, tm.getTotalSegmentCount());
+		assertEquals(5, countRows("\"fields_SEG\" WHERE \""+DbUtil.TEXT_PREFIX+"FR\" IS NOT NULL"));
+	}
+	
+	@Test
+	public void testCommitInterval ()
+		throws SQLException
+	{
+		ITm tm = repo.createTm("commit", null, "EN");
+		tm.startImport();
+		assertFalse(repo.getConnection().getAutoCommit());
+		// The last record of the loop triggers a commit
+		int i = 0;
+		for ( ; i<Tm.IMPORT_COMMIT_SIZE; i++ ) {
+			tm.addRecord(-1, createTuFields(i), createSegFields(i));
+		}
+		// These records are sent to the database but not committed
+		for ( ; i<Tm.IMPORT_COMMIT_SIZE+Tm.IMPORT_BATCH_SIZE; i++ ) {
+			tm.addRecord(-1, createTuFields(i), createSegFields(i));
+		}
+		repo.getConnection().rollback();
+		tm.finishImport();
+		
+		assertEquals(Tm.IMPORT_COMMIT_SIZE, tm.getTotalSegmentCount());
+		assertEquals(Tm.IMPORT_COMMIT_SIZE, countRows("\"commit_TU\""));
+	}
+	
+	private LinkedHashMap<String, Object> createTuFields (int index) {
+		LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("TUInfo", "Info "+index);
+		return map;
+	}
+	
+	private LinkedHashMap<String, Object> createSegFields (int index) {
+		LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put(DbUtil.TEXT_PREFIX+"EN", "Text EN "+index);
+		map.put(DbUtil.CODES_PREFIX+"EN", null);
+		return map;
+	}
+	
+	private int countRows (String from)
+		throws SQLException
+	{
+		Statement stm = repo.getConnection().createStatement();
+		try {
+			ResultSet result = stm.executeQuery("SELECT COUNT(*) FROM "+from);
+			result.next();
+			return result.getInt(1);
+		}
+		finally {
+			stm.close();
+		}
+	}
+
+}
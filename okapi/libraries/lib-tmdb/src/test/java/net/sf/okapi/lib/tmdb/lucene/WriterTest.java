@@ -56,6 +56,12 @@ public class WriterTest {
 		writer = tmWriter.getIndexWriter();
 	}
 	
+	@Test
+	public void ramBufferSize () {
+		assertEquals(64.0, Writer.RAM_BUFFER_SIZE_MB, 0.0);
+		assertEquals(Writer.RAM_BUFFER_SIZE_MB, writer.getConfig().getRAMBufferSizeMB(), 0.0);
+	}
+	
 	@Test
 	public void indexRecord () throws IOException {
 	    TmEntry entry = new TmEntry("1", "tmId1_", locEN, "Text EN 1", null);
@@ -54,6 +54,9 @@ public abstract class BaseConnector implements IQuery {
 	protected int current = -1;
 	private int weight;
 	private int noQueryThreshold = 101;
+	private LeverageCache cache;
+	private String cacheKey;
+	private String batchCacheKey;
 
 	@Override
 	public LocaleId getSourceLanguage () {
@@ -158,7 +161,6 @@ public abstract class BaseConnector implements IQuery {
 		if (( tu == null ) || !tu.isTranslatable() ) {
 			return; // No need to query
 		}
-		QueryResult qr;
 		AltTranslationsAnnotation at = null;
 
 		// We assume here that if there is a target content it match the segmentation of the source
@@ -183,10 +185,8 @@ public abstract class BaseConnector implements IQuery {
 			}
 		
 			// Do the query for the source segment
-			query(srcSeg.text);
 			// Then process each result
-			while ( hasNext() ) {
-				qr = next();
+			for ( QueryResult qr : queryForLeverage(srcSeg.text) ) {
 					
 				// Adjust codes so that leveraged target matches the source
 				// !!! We assume codes have been aligned - use TextFragment::alignCodeIds if needed
@@ -257,6 +257,81 @@ public abstract class BaseConnector implements IQuery {
 		return noQueryThreshold;
 	}
 
+	/**
+	 * Sets the cache to use for the results of the queries done when leveraging.
+	 * <p>Only the leverage methods of this class use the cache: {@link #leverage(ITextUnit)},
+	 * {@link #batchLeverage(List)}, {@link #leverageUsingBatchQuery(ITextUnit)} and
+	 * {@link #batchLeverageUsingBatchQuery(List)}. A cached entry holds the results of
+	 * {@link #query(TextFragment)} or of {@link #batchQuery(List)}, as they were returned by
+	 * this connector, so the candidates are the same with or without cache.
+	 * Connectors leveraging with their own code do not use the cache.
+	 * @param cache the cache to use, or null to not use a cache.
+	 * @param resourceKey the key of this connector in the cache
+	 * (see {@link LeverageCache#getResourceKey(IQuery)}).
+	 */
+	public void setCache (LeverageCache cache,
+		String resourceKey)
+	{
+		this.cache = cache;
+		cacheKey = resourceKey;
+		batchCacheKey = (cache == null) ? null : LeverageCache.getVariantKey(resourceKey, "batch");
+	}
+	
+	/**
+	 * Gets the results of {@link #query(TextFragment)} for a given fragment, from the cache if possible.
+	 * @param text the fragment to query.
+	 * @return the list of results (can be empty).
+	 */
+	private List<QueryResult> queryForLeverage (TextFragment text) {
+		List<QueryResult> list;
+		if ( cache != null ) {
+			list = cache.get(cacheKey, getSourceLanguage(), getTargetLanguage(), text);
+			if ( list != null ) return list;
+		}
+		list = new ArrayList<QueryResult>();
+		query(text);
+		while ( hasNext() ) {
+			list.add(next());
+		}
+		if ( cache != null ) {
+			cache.put(cacheKey, getSourceLanguage(), getTargetLanguage(), text, list);
+		}
+		return list;
+	}
+	
+	/**
+	 * Gets the results of {@link #batchQuery(List)} for a list of fragments. Only the fragments
+	 * not in the cache are queried.
+	 * @param frags the fragments to query.
+	 * @return the list of results for each fragment, in the same order.
+	 */
+	private List<List<QueryResult>> batchQueryForLeverage (List<TextFragment> frags) {
+		if ( cache == null ) {
+			return batchQuery(frags);
+		}
+		ArrayList<List<QueryResult>> res = new ArrayList<List<QueryResult>>(frags.size());
+		ArrayList<TextFragment> toQuery = new ArrayList<TextFragment>();
+		ArrayList<Integer> indices = new ArrayList<Integer>();
+		for ( int i=0; i<frags.size(); i++ ) {
+			List<QueryResult> list = cache.get(batchCacheKey, getSourceLanguage(), getTargetLanguage(), frags.get(i));
+			if ( list == null ) {
+				toQuery.add(frags.get(i));
+				indices.add(i);
+			}
+			res.add(list);
+		}
+		if ( toQuery.isEmpty() ) return res;
+		
+		List<List<QueryResult>> found = batchQuery(toQuery);
+		for ( int i=0; i<indices.size(); i++ ) {
+			List<QueryResult> list = found.get(i);
+			if ( list == null ) list = new ArrayList<QueryResult>();
+			cache.put(batchCacheKey, getSourceLanguage(), getTargetLanguage(), toQuery.get(i), list);
+			res.set(indices.get(i), list);
+		}
+		return res;
+	}
+	
 	/**
 	 * Call this method inside the overriding {@link #leverage(ITextUnit)} method
 	 * of the derived class, if that class offers a fast {@link #batchQuery(List)} method.
@@ -310,7 +385,7 @@ public abstract class BaseConnector implements IQuery {
 		}
 		
 		// Do the query for the list of fragments
-		List<List<QueryResult>> allResults = batchQuery(frags);
+		List<List<QueryResult>> allResults = batchQueryForLeverage(frags);
 
 		// Place the translations
 		int transIndex = -1;
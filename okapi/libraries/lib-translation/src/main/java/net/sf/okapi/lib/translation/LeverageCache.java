@@ -0,0 +1,453 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.lib.translation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.StreamUtil;
+import net.sf.okapi.common.StringUtil;
+import net.sf.okapi.common.exceptions.OkapiIOException;
+import net.sf.okapi.common.query.IQuery;
+import net.sf.okapi.common.query.MatchType;
+import net.sf.okapi.common.query.QueryResult;
+import net.sf.okapi.common.resource.Code;
+import net.sf.okapi.common.resource.TextFragment;
+
+/**
+ * Cache for the results of the queries sent to translation resources.
+ * <p>The entries are keyed by the resource (see {@link #getResourceKey(IQuery)}), the locale pair and
+ * the exact content of the queried fragment: its coded text and the data of its inline codes
+ * (see {@link Code#codesToString(List)}). The connectors may score the candidates on the whitespace,
+ * the case and the codes of the query, so two queries differing only there do not share an entry.
+ * <p>The cache holds up to a given number of entries and drops the least recently used ones first.
+ * Entries older than the time-to-live are ignored. If the cache is created with a file, the entries
+ * are loaded from that file when the cache is created and saved into it when {@link #save()} or
+ * {@link #close()} is called.
+ * <p>The cache knows nothing about the content of the resources: call {@link #invalidate(String)}
+ * (or {@link QueryManager#invalidateCache(int)}) when a resource has been modified.
+ * <p>The methods of this class are thread-safe.
+ */
+public class LeverageCache {
+
+	private static final String SIGNATURE = "OKAPI-LEVCACHE";
+	private static final int VERSION = 4;
+	private static final char SEPARATOR = '\n';
+
+	private final File file;
+	private final int maxEntries;
+	private final long timeToLive;
+	private final LinkedHashMap<String, Entry> entries;
+	private int hits;
+	private int misses;
+
+	private static class Entry {
+		long time;
+		byte[] data;
+
+		Entry (long time, byte[] data) {
+			this.time = time;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * Creates a new in-memory cache.
+	 * @param maxEntries the maximum number of entries to keep.
+	 * @param timeToLive the time after which an entry is obsolete (in milliseconds), or 0 to keep the entries
+	 * as long as possible.
+	 */
+	public LeverageCache (int maxEntries,
+		long timeToLive)
+	{
+		this(null, maxEntries, timeToLive);
+	}
+
+	/**
+	 * Creates a new cache stored in a given file. If the file exists its entries are loaded.
+	 * @param file the file where to store the cache (can be null for an in-memory cache).
+	 * @param maxEntries the maximum number of entries to keep.
+	 * @param timeToLive the time after which an entry is obsolete (in milliseconds), or 0 to keep the entries
+	 * as long as possible.
+	 * @throws OkapiIOException if the file cannot be read.
+	 */
+	public LeverageCache (File file,
+		int maxEntries,
+		long timeToLive)
+	{
+		if ( maxEntries < 1 ) {
+			throw new IllegalArgumentException("The maximum number of entries must be greater than 0.");
+		}
+		this.file = file;
+		this.maxEntries = maxEntries;
+		this.timeToLive = timeToLive;
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry (Map.Entry<String, Entry> eldest) {
+				return (size() > LeverageCache.this.maxEntries);
+			}
+		};
+		if (( file != null ) && file.exists() ) {
+			load();
+		}
+	}
+
+	/**
+	 * Gets the key identifying a translation resource in the cache. The key is made of the class of
+	 * the connector and its parameters, as well as the threshold and the maximum number of hits for
+	 * a {@link ITMQuery} resource.
+	 * <p>The key is a digest of the parameters: compute it once for a given configuration of the resource,
+	 * not for each query.
+	 * @param query the translation resource.
+	 * @return the key for the given resource.
+	 */
+	public static String getResourceKey (IQuery query) {
+		StringBuilder tmp = new StringBuilder(query.getClass().getName());
+		IParameters params = query.getParameters();
+		tmp.append(SEPARATOR);
+		if ( params != null ) {
+			tmp.append(params.toString());
+		}
+		if ( query instanceof ITMQuery ) {
+			ITMQuery tmq = (ITMQuery)query;
+			tmp.append(SEPARATOR).append(tmq.getThreshold());
+			tmp.append(SEPARATOR).append(tmq.getMaximumHits());
+		}
+		return StringUtil.digest(tmp.toString());
+	}
+
+	/**
+	 * Gets the key for a variant of the results of a translation resource, for example the results of its
+	 * batch queries, which may differ from the results of its single queries.
+	 * The entries of a variant are removed when their resource is invalidated.
+	 * @param resourceKey the key of the translation resource.
+	 * @param variant the name of the variant.
+	 * @return the key for the given variant.
+	 */
+	public static String getVariantKey (String resourceKey,
+		String variant)
+	{
+		return resourceKey + SEPARATOR + variant;
+	}
+
+	/**
+	 * Gets the cached results for a given query.
+	 * @param resourceKey the key of the translation resource.
+	 * @param srcLoc the source locale.
+	 * @param trgLoc the target locale.
+	 * @param fragment the queried fragment.
+	 * @return a new copy of the cached results (possibly empty), or null if the query is not in the cache
+	 * or if its entry is obsolete.
+	 */
+	public synchronized List<QueryResult> get (String resourceKey,
+		LocaleId srcLoc,
+		LocaleId trgLoc,
+		TextFragment fragment)
+	{
+		String key = makeKey(resourceKey, srcLoc, trgLoc, fragment);
+		Entry entry = entries.get(key);
+		if (( entry != null ) && isObsolete(entry, System.currentTimeMillis()) ) {
+			entries.remove(key);
+			entry = null;
+		}
+		if ( entry == null ) {
+			misses++;
+			return null;
+		}
+		hits++;
+		try {
+			return readResults(entry.data);
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Cannot read a cache entry.", e);
+		}
+	}
+
+	/**
+	 * Puts the results of a given query in the cache. The results are copied: they can be modified
+	 * after this call without changing the cache.
+	 * @param resourceKey the key of the translation resource.
+	 * @param srcLoc the source locale.
+	 * @param trgLoc the target locale.
+	 * @param fragment the queried fragment.
+	 * @param results the results of the query (can be empty).
+	 */
+	public synchronized void put (String resourceKey,
+		LocaleId srcLoc,
+		LocaleId trgLoc,
+		TextFragment fragment,
+		List<QueryResult> results)
+	{
+		try {
+			entries.put(makeKey(resourceKey, srcLoc, trgLoc, fragment),
+				new Entry(System.currentTimeMillis(), writeResults(results)));
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Cannot create a cache entry.", e);
+		}
+	}
+
+	/**
+	 * Removes all the entries of a given translation resource.
+	 * @param resourceKey the key of the translation resource.
+	 */
+	public synchronized void invalidate (String resourceKey) {
+		String prefix = resourceKey + SEPARATOR;
+		Iterator<String> iter = entries.keySet().iterator();
+		while ( iter.hasNext() ) {
+			if ( iter.next().startsWith(prefix) ) iter.remove();
+		}
+	}
+
+	/**
+	 * Removes all the entries of this cache.
+	 */
+	public synchronized void clear () {
+		entries.clear();
+	}
+
+	/**
+	 * Gets the number of entries in this cache (including the obsolete entries not removed yet).
+	 * @return the number of entries in this cache.
+	 */
+	public synchronized int size () {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the number of queries found in this cache since it was created.
+	 * @return the number of cache hits.
+	 */
+	public synchronized int getHits () {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of queries not found in this cache since it was created.
+	 * @return the number of cache misses.
+	 */
+	public synchronized int getMisses () {
+		return misses;
+	}
+
+	/**
+	 * Saves the entries of this cache into its file. The obsolete entries are not saved.
+	 * This method does nothing for an in-memory cache.
+	 * @throws OkapiIOException if the file cannot be written.
+	 */
+	public synchronized void save () {
+		if ( file == null ) return;
+		File tmpFile = new File(file.getPath()+".tmp");
+		DataOutputStream dos = null;
+		try {
+			File dir = file.getAbsoluteFile().getParentFile();
+			if ( dir != null ) dir.mkdirs();
+			dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			dos.writeUTF(SIGNATURE);
+			dos.writeInt(VERSION);
+			long now = System.currentTimeMillis();
+			int count = 0;
+			for ( Entry entry : entries.values() ) {
+				if ( !isObsolete(entry, now) ) count++;
+			}
+			dos.writeInt(count);
+			// Least recently used entries first, so the order is restored when loading
+			for ( Map.Entry<String, Entry> me : entries.entrySet() ) {
+				Entry entry = me.getValue();
+				if ( isObsolete(entry, now) ) continue;
+				StreamUtil.writeString(dos, me.getKey());
+				dos.writeLong(entry.time);
+				dos.writeInt(entry.data.length);
+				dos.write(entry.data);
+			}
+			dos.close();
+			dos = null;
+			if ( file.exists() && !file.delete() ) {
+				throw new OkapiIOException("Cannot replace the cache file "+file.getPath());
+			}
+			if ( !tmpFile.renameTo(file) ) {
+				throw new OkapiIOException("Cannot rename the cache file "+tmpFile.getPath());
+			}
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Cannot save the cache file "+file.getPath(), e);
+		}
+		finally {
+			if ( dos != null ) {
+				try {
+					dos.close();
+				}
+				catch ( IOException e ) {
+					// Ignore this error: the original one is reported
+				}
+				tmpFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Closes this cache. The entries are saved if the cache has a file.
+	 */
+	public void close () {
+		save();
+	}
+
+	private void load () {
+		DataInputStream dis = null;
+		try {
+			dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if ( !SIGNATURE.equals(dis.readUTF()) || ( dis.readInt() != VERSION )) {
+				return; // Not a cache file or a different version: start with an empty cache
+			}
+			long now = System.currentTimeMillis();
+			int count = dis.readInt();
+			for ( int i=0; i<count; i++ ) {
+				String key = StreamUtil.readString(dis);
+				long time = dis.readLong();
+				byte[] data = new byte[dis.readInt()];
+				dis.readFully(data);
+				Entry entry = new Entry(time, data);
+				if ( !isObsolete(entry, now) ) {
+					entries.put(key, entry);
+				}
+			}
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Cannot load the cache file "+file.getPath(), e);
+		}
+		finally {
+			if ( dis != null ) {
+				try {
+					dis.close();
+				}
+				catch ( IOException e ) {
+					// Nothing to do
+				}
+			}
+		}
+	}
+
+	private boolean isObsolete (Entry entry,
+		long now)
+	{
+		return (( timeToLive > 0 ) && ( now-entry.time > timeToLive ));
+	}
+
+	private String makeKey (String resourceKey,
+		LocaleId srcLoc,
+		LocaleId trgLoc,
+		TextFragment fragment)
+	{
+		StringBuilder tmp = new StringBuilder(resourceKey);
+		tmp.append(SEPARATOR).append(srcLoc==null ? "" : srcLoc.toString());
+		tmp.append(SEPARATOR).append(trgLoc==null ? "" : trgLoc.toString());
+		if ( fragment != null ) {
+			tmp.append(SEPARATOR).append(fragment.getCodedText());
+			tmp.append(SEPARATOR).append(Code.codesToString(fragment.getCodes()));
+		}
+		return tmp.toString();
+	}
+
+	private byte[] writeResults (List<QueryResult> results)
+		throws IOException
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(bos);
+		dos.writeInt(results.size());
+		for ( QueryResult qr : results ) {
+			dos.writeInt(qr.weight);
+			dos.writeUTF(qr.matchType.name());
+			dos.writeInt(qr.getFuzzyScore());
+			dos.writeInt(qr.getCombinedScore());
+			dos.writeInt(qr.getQuality());
+			writeFragment(dos, qr.source);
+			writeFragment(dos, qr.target);
+			dos.writeLong(qr.creationDate==null ? 0 : qr.creationDate.getTime());
+			StreamUtil.writeString(dos, qr.entryId);
+			StreamUtil.writeString(dos, qr.origin);
+		}
+		dos.close();
+		return bos.toByteArray();
+	}
+
+	private List<QueryResult> readResults (byte[] data)
+		throws IOException
+	{
+		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
+		int count = dis.readInt();
+		ArrayList<QueryResult> list = new ArrayList<QueryResult>(count);
+		for ( int i=0; i<count; i++ ) {
+			QueryResult qr = new QueryResult();
+			qr.weight = dis.readInt();
+			qr.matchType = MatchType.valueOf(dis.readUTF());
+			qr.setFuzzyScore(dis.readInt());
+			int combinedScore = dis.readInt();
+			// The combined score defaults to the fuzzy score
+			if ( combinedScore != qr.getFuzzyScore() ) qr.setCombinedScore(combinedScore);
+			qr.setQuality(dis.readInt());
+			qr.source = readFragment(dis);
+			qr.target = readFragment(dis);
+			qr.creationDate = new Date(dis.readLong());
+			qr.entryId = StreamUtil.readString(dis);
+			qr.origin = StreamUtil.readString(dis);
+			list.add(qr);
+		}
+		return list;
+	}
+
+	private void writeFragment (DataOutputStream dos,
+		TextFragment frag)
+		throws IOException
+	{
+		if ( frag == null ) {
+			StreamUtil.writeString(dos, null);
+			return;
+		}
+		StreamUtil.writeString(dos, frag.getCodedText());
+		Code.writeCodes(dos, frag.getCodes(), false);
+	}
+
+	private TextFragment readFragment (DataInputStream dis)
+		throws IOException
+	{
+		String codedText = StreamUtil.readString(dis);
+		if ( codedText == null ) return null;
+		return new TextFragment(codedText, Code.readCodes(dis));
+	}
+
+}
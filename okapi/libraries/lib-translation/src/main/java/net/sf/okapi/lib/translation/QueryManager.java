@@ -21,20 +21,35 @@
 package net.sf.okapi.lib.translation;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
 
 import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.IResource;
 import net.sf.okapi.common.annotation.AltTranslation;
 import net.sf.okapi.common.annotation.AltTranslationsAnnotation;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.query.IQuery;
 import net.sf.okapi.common.query.QueryResult;
+import net.sf.okapi.common.resource.ISegments;
 import net.sf.okapi.common.resource.Segment;
 import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.TextUnitUtil;
 
 /**
  * Provides a wrapper to manage and query several translation resources at the 
@@ -42,6 +57,8 @@ import net.sf.okapi.common.resource.ITextUnit;
  */
 public class QueryManager {
 
+	private final Logger logger = Logger.getLogger(getClass().getName());
+
 	private LinkedHashMap<Integer, ResourceItem> resList;
 	private ArrayList<QueryResult> results;
 	private int current = -1;
@@ -64,6 +81,19 @@ public class QueryManager {
 	private String targetPrefix = null;
 	private int thresholdToPrefix = 99;
 	private boolean copySourceOnNoText = false;
+	// Concurrent mode
+	private boolean concurrentQueries = false;
+	private long resourceTimeout = 0;
+	private LinkedHashMap<Integer, ExecutorService> executors;
+	private LeverageCache cache;
+	private Map<Integer, String> cacheKeys;
+	
+	/**
+	 * Interface for the work done on one translation resource in concurrent mode.
+	 */
+	private interface ResourceTask<T> {
+		T run (int resourceId, IQuery query);
+	}
 	
 	/**
 	 * Creates a new QueryManager object.
@@ -72,6 +102,8 @@ public class QueryManager {
 		resList = new LinkedHashMap<Integer, ResourceItem>();
 		results = new ArrayList<QueryResult>();
 		attributes = new LinkedHashMap<String, String>();		
+		executors = new LinkedHashMap<Integer, ExecutorService>();
+		cacheKeys = new LinkedHashMap<Integer, String>();
 	}
 	
 	/**
@@ -88,6 +120,7 @@ public class QueryManager {
 		ri.enabled = true;
 		ri.name = name;
 		resList.put(++lastId, ri);
+		updateCacheKey(lastId);
 		return lastId;
 	}
 	
@@ -123,6 +156,8 @@ public class QueryManager {
 			((ITMQuery)connector).setThreshold(threshold);
 			((ITMQuery)connector).setMaximumHits(maxHits);
 		}
+		// The parameters are part of the key
+		updateCacheKey(id);
 		return id;
 	}
 	
@@ -217,6 +252,9 @@ public class QueryManager {
 	 */
 	public void remove (int resourceId) {
 		resList.remove(resourceId);
+		cacheKeys.remove(resourceId);
+		ExecutorService executor = executors.remove(resourceId);
+		if ( executor != null ) executor.shutdown();
 	}
 	
 	/**
@@ -262,11 +300,121 @@ public class QueryManager {
 	 * Closes all translation resources in this manager.
 	 */
 	public void close () {
+		for ( ExecutorService executor : executors.values() ) {
+			executor.shutdown();
+		}
+		executors.clear();
 		for ( ResourceItem ri : resList.values() ) {
 			ri.query.close();
 		}
 	}
 
+	/**
+	 * Sets the flag indicating if the translation resources are queried concurrently.
+	 * <p>In concurrent mode the queries and the leverage calls are sent to all the enabled
+	 * resources at the same time, each resource being called from its own thread, and the
+	 * results are merged once all resources have answered or timed out.
+	 * When leveraging, each resource leverages its own copy of the text units with
+	 * {@link IQuery#batchLeverage(List)}. The new candidates with a score equal to or above the
+	 * threshold of this manager are then added to the text units, in the order of the resources.
+	 * The no-query threshold of a resource applies then only to the candidates that existed
+	 * before the call, not to the ones found by the other resources.
+	 * @param concurrentQueries true to query the resources concurrently, false to query them
+	 * one after the other (the default).
+	 * @see #setResourceTimeout(long)
+	 */
+	public void setConcurrentQueries (boolean concurrentQueries) {
+		this.concurrentQueries = concurrentQueries;
+	}
+	
+	/**
+	 * Indicates if the translation resources are queried concurrently.
+	 * @return true if the resources are queried concurrently, false otherwise.
+	 */
+	public boolean getConcurrentQueries () {
+		return concurrentQueries;
+	}
+	
+	/**
+	 * Sets the maximum time to wait for the results of each translation resource in concurrent mode.
+	 * The results of a resource that does not answer in time are ignored for the given query.
+	 * @param timeout the timeout in milliseconds, or 0 to wait without limit (the default).
+	 */
+	public void setResourceTimeout (long timeout) {
+		this.resourceTimeout = timeout;
+	}
+	
+	/**
+	 * Gets the maximum time to wait for the results of each translation resource in concurrent mode.
+	 * @return the timeout in milliseconds, or 0 if there is no limit.
+	 */
+	public long getResourceTimeout () {
+		return resourceTimeout;
+	}
+
+	/**
+	 * Sets the cache to use for the results of the translation resources.
+	 * <p>When a cache is set, the queries done with a {@link TextFragment} look for the results of
+	 * each resource in the cache first, and only query the resources for the texts that are not in
+	 * the cache. The resources based on {@link BaseConnector} use the cache also when leveraging
+	 * (see {@link BaseConnector#setCache(LeverageCache, String)}); the other resources leverage
+	 * without cache. The cache holds the results as returned by the resources, so using a cache
+	 * does not change the candidates.
+	 * <p>The key of each resource in the cache is computed when the resource is added and when
+	 * the threshold or the maximum number of hits change. Call {@link #updateCacheKey(int)} after
+	 * changing directly the parameters of a resource.
+	 * <p>The cache is not closed by this manager.
+	 * @param cache the cache to use, or null to not use a cache (the default).
+	 */
+	public void setCache (LeverageCache cache) {
+		this.cache = cache;
+		for ( int id : resList.keySet() ) {
+			updateCacheKey(id);
+		}
+	}
+	
+	/**
+	 * Gets the cache used for the results of the translation resources.
+	 * @return the cache used, or null if there is none.
+	 */
+	public LeverageCache getCache () {
+		return cache;
+	}
+	
+	/**
+	 * Removes from the cache all the results of a given translation resource.
+	 * This should be called when the content of the resource has changed.
+	 * This method does nothing if there is no cache.
+	 * @param resourceId ID of the translation resource.
+	 */
+	public void invalidateCache (int resourceId) {
+		if ( cache == null ) return;
+		cache.invalidate(cacheKeys.get(resourceId));
+	}
+	
+	/**
+	 * Computes again the key of a given translation resource in the cache.
+	 * This should be called when the parameters of the resource have been changed
+	 * directly through its interface.
+	 * This method does nothing if there is no cache.
+	 * @param resourceId ID of the translation resource.
+	 */
+	public void updateCacheKey (int resourceId) {
+		IQuery query = resList.get(resourceId).query;
+		if ( cache == null ) {
+			cacheKeys.remove(resourceId);
+			if ( query instanceof BaseConnector ) {
+				((BaseConnector)query).setCache(null, null);
+			}
+			return;
+		}
+		String key = LeverageCache.getResourceKey(query);
+		cacheKeys.put(resourceId, key);
+		if ( query instanceof BaseConnector ) {
+			((BaseConnector)query).setCache(cache, key);
+		}
+	}
+
 	/**
 	 * Gets the list of all hit results of the last query.
 	 * @return A list of all hit results of the last query.
@@ -313,21 +461,16 @@ public class QueryManager {
 	 * @param plainText The text to query.
 	 * @return The number of hits for the given query.
 	 */
-	public int query (String plainText) {
+	public int query (final String plainText) {
 		results.clear();
-		ResourceItem ri;
-		for ( int id : resList.keySet() ) {
-			ri = resList.get(id);
-			if ( !ri.enabled ) continue; // Skip disabled entries
-			if ( ri.query.query(plainText) > 0 ) {
-				QueryResult res = null;
-				while ( ri.query.hasNext() ) {
-					res = ri.query.next();
-					res.connectorId = id;
-					if ( res.getCombinedScore() < threshold ) break; // Weed out MT if needed
-					results.add(res);
-				}
+		Map<Integer, List<QueryResult>> all = runOnResources(new ResourceTask<List<QueryResult>>() {
+			public List<QueryResult> run (int resourceId, IQuery query) {
+				if ( query.query(plainText) > 0 ) return getResults(query, resourceId);
+				return Collections.emptyList();
 			}
+		});
+		for ( List<QueryResult> list : all.values() ) {
+			results.addAll(list);
 		}
 		
 		// remove duplicates based on QueryResult.equals
@@ -343,21 +486,38 @@ public class QueryManager {
 	 * @param text The text to query.
 	 * @return The number of hits for the given query.
 	 */
-	public int query (TextFragment text) {
+	public int query (final TextFragment text) {
 		results.clear();
-		ResourceItem ri;
-		for ( int id : resList.keySet() ) {
-			ri = resList.get(id);
-			if ( !ri.enabled ) continue; // Skip disabled entries
-			if ( ri.query.query(text) > 0 ) {
-				QueryResult res = null;
-				while ( ri.query.hasNext() ) {
-					res = ri.query.next();
-					if ( res.getCombinedScore() < threshold ) break;
-					res.connectorId = id;
-					results.add(res);
+		Map<Integer, List<QueryResult>> all = runOnResources(new ResourceTask<List<QueryResult>>() {
+			public List<QueryResult> run (int resourceId, IQuery query) {
+				String key = cacheKeys.get(resourceId);
+				if ( key != null ) {
+					List<QueryResult> list = cache.get(key, srcLoc, trgLoc, text);
+					if ( list != null ) {
+						return filterResults(list, resourceId);
+					}
 				}
+				// In concurrent mode each resource gets its own copy of the fragment
+				if ( query.query(concurrentQueries ? text.clone() : text) < 1 ) {
+					if ( key != null ) {
+						cache.put(key, srcLoc, trgLoc, text, Collections.<QueryResult>emptyList());
+					}
+					return Collections.emptyList();
+				}
+				if ( key == null ) {
+					return getResults(query, resourceId);
+				}
+				// The cache holds all the results, as the leverage methods of the connector see them
+				ArrayList<QueryResult> list = new ArrayList<QueryResult>();
+				while ( query.hasNext() ) {
+					list.add(query.next());
+				}
+				cache.put(key, srcLoc, trgLoc, text, list);
+				return filterResults(list, resourceId);
 			}
+		});
+		for ( List<QueryResult> list : all.values() ) {
+			results.addAll(list);
 		}
 		
 		// Remove duplicates based on QueryResult.equals
@@ -368,6 +528,137 @@ public class QueryManager {
 		return results.size();
 	}
 
+	/**
+	 * Gets the results of the last query of a given translation resource.
+	 * @param query the translation resource.
+	 * @param resourceId the identifier of the translation resource.
+	 * @return the list of the results above the threshold (can be empty).
+	 */
+	private List<QueryResult> getResults (IQuery query,
+		int resourceId)
+	{
+		ArrayList<QueryResult> list = new ArrayList<QueryResult>();
+		QueryResult res = null;
+		while ( query.hasNext() ) {
+			res = query.next();
+			if ( res.getCombinedScore() < threshold ) break; // Weed out MT if needed
+			res.connectorId = resourceId;
+			list.add(res);
+		}
+		return list;
+	}
+
+	/**
+	 * Gets the results above the threshold from a list of results.
+	 * @param list the list of results, in ranked order.
+	 * @param resourceId the identifier of the translation resource.
+	 * @return the list of the results above the threshold (can be empty).
+	 */
+	private List<QueryResult> filterResults (List<QueryResult> list,
+		int resourceId)
+	{
+		ArrayList<QueryResult> res = new ArrayList<QueryResult>(list.size());
+		for ( QueryResult qr : list ) {
+			if ( qr.getCombinedScore() < threshold ) break; // Weed out MT if needed
+			qr.connectorId = resourceId;
+			res.add(qr);
+		}
+		return res;
+	}
+
+	/**
+	 * Runs a task for each enabled translation resource, concurrently or one after the other
+	 * depending on the current mode.
+	 * @param task the task to run.
+	 * @return the results of the task for each resource, in the order of the resources.
+	 * @see #setConcurrentQueries(boolean)
+	 */
+	private <T> Map<Integer, T> runOnResources (ResourceTask<T> task) {
+		if ( concurrentQueries ) {
+			return runConcurrently(task);
+		}
+		LinkedHashMap<Integer, T> res = new LinkedHashMap<Integer, T>();
+		for ( int id : resList.keySet() ) {
+			ResourceItem ri = resList.get(id);
+			if ( !ri.enabled ) continue; // Skip disabled entries
+			res.put(id, task.run(id, ri.query));
+		}
+		return res;
+	}
+
+	/**
+	 * Runs a task for each enabled translation resource, each resource in its own thread,
+	 * and waits for the results.
+	 * @param task the task to run.
+	 * @return the results of the task for each resource, in the order of the resources.
+	 * The resources that timed out have no entry.
+	 */
+	private <T> Map<Integer, T> runConcurrently (final ResourceTask<T> task) {
+		LinkedHashMap<Integer, Future<T>> futures = new LinkedHashMap<Integer, Future<T>>();
+		for ( final int id : resList.keySet() ) {
+			final ResourceItem ri = resList.get(id);
+			if ( !ri.enabled ) continue; // Skip disabled entries
+			futures.put(id, getExecutor(id).submit(new Callable<T>() {
+				public T call () {
+					return task.run(id, ri.query);
+				}
+			}));
+		}
+		
+		LinkedHashMap<Integer, T> res = new LinkedHashMap<Integer, T>();
+		long deadline = System.currentTimeMillis() + resourceTimeout;
+		for ( int id : futures.keySet() ) {
+			Future<T> future = futures.get(id);
+			try {
+				if ( resourceTimeout > 0 ) {
+					long wait = Math.max(0, deadline-System.currentTimeMillis());
+					res.put(id, future.get(wait, TimeUnit.MILLISECONDS));
+				}
+				else {
+					res.put(id, future.get());
+				}
+			}
+			catch ( TimeoutException e ) {
+				future.cancel(true);
+				logger.warning(String.format("The translation resource '%s' did not answer within %d ms. Its results are ignored.",
+					resList.get(id).name, resourceTimeout));
+			}
+			catch ( ExecutionException e ) {
+				if ( e.getCause() instanceof RuntimeException ) {
+					throw (RuntimeException)e.getCause();
+				}
+				throw new RuntimeException("Error querying a translation resource.", e.getCause());
+			}
+			catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while querying the translation resources.", e);
+			}
+		}
+		return res;
+	}
+	
+	/**
+	 * Gets the executor for a given translation resource. Each resource has a single thread,
+	 * so a resource is never called by two threads at the same time, even after a time-out.
+	 * @param resourceId the identifier of the translation resource.
+	 * @return the executor for the given resource.
+	 */
+	private ExecutorService getExecutor (int resourceId) {
+		ExecutorService executor = executors.get(resourceId);
+		if ( executor == null ) {
+			final String name = "QueryManager-" + resList.get(resourceId).name;
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread (Runnable runnable) {
+					Thread thread = new Thread(runnable, name);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			executors.put(resourceId, executor);
+		}
+		return executor;
+	}
+
 	/**
 	 * Sets an attribute for this manager and all translation resources in
 	 * this manager.
@@ -445,9 +736,11 @@ public class QueryManager {
 	 */
 	public void setThreshold (int value) {
 		threshold = value;
-		for ( ResourceItem ri : resList.values() ) {
+		for ( int id : resList.keySet() ) {
+			ResourceItem ri = resList.get(id);
 			if ( ri.query instanceof ITMQuery ) {
 				((ITMQuery)ri.query).setThreshold(threshold);
+				updateCacheKey(id);
 			}
 		}
 	}
@@ -459,9 +752,11 @@ public class QueryManager {
 	 */
 	public void setMaximumHits (int max) {
 		maxHits = max;
-		for ( ResourceItem ri : resList.values() ) {
+		for ( int id : resList.keySet() ) {
+			ResourceItem ri = resList.get(id);
 			if ( ri.query instanceof ITMQuery ) {
 				((ITMQuery)ri.query).setMaximumHits(maxHits);
+				updateCacheKey(id);
 			}
 		}
 	}
@@ -545,12 +840,190 @@ public class QueryManager {
 		totalSegments += tu.getSource().getSegments().count();
 		
 		// Query each translation resource
+		if ( concurrentQueries ) {
+			leverageConcurrently(Collections.singletonList(tu));
+		}
+		else {
+			for ( int id : resList.keySet() ) {
+				ResourceItem ri = resList.get(id);
+				if ( !ri.enabled ) continue; // Skip disabled entries
+				ri.query.leverage(tu);
+			}
+		}
+		
+		selectBestMatches(tu);
+	}
+	
+	/**
+	 * Leverages a list of text units (segmented or not) based on the current settings.
+	 * The whole list is passed at once to the {@link IQuery#batchLeverage(List)} method of each
+	 * translation resource. In concurrent mode each resource leverages its own copy of the list (see
+	 * {@link #setConcurrentQueries(boolean)}).
+	 * Any options or attributes needed must be set before calling this method.
+	 * @param tus the list of the text units to leverage.
+	 * @see #leverage(ITextUnit)
+	 */
+	public void leverage (List<ITextUnit> tus) {
+		ArrayList<ITextUnit> list = new ArrayList<ITextUnit>(tus.size());
+		for ( ITextUnit tu : tus ) {
+			if ( !tu.isTranslatable() ) continue;
+			totalSegments += tu.getSource().getSegments().count();
+			list.add(tu);
+		}
+		if ( list.isEmpty() ) return;
+
+		// Query each translation resource
+		if ( concurrentQueries ) {
+			leverageConcurrently(list);
+		}
+		else {
+			for ( int id : resList.keySet() ) {
+				ResourceItem ri = resList.get(id);
+				if ( !ri.enabled ) continue; // Skip disabled entries
+				ri.query.batchLeverage(list);
+			}
+		}
+		
+		for ( ITextUnit tu : list ) {
+			selectBestMatches(tu);
+		}
+	}
+	
+	/**
+	 * Leverages the given text units with all enabled translation resources at the same time.
+	 * <p>Annotations are shared between clones of a text unit, so the resources cannot work on
+	 * the same units from several threads. Each resource leverages instead its own copies, with
+	 * their own lists of candidates, and the new candidates are then moved to the text units.
+	 * @param tus the translatable text units to leverage.
+	 */
+	private void leverageConcurrently (List<ITextUnit> tus) {
+		final Map<Integer, List<ITextUnit>> copies = new LinkedHashMap<Integer, List<ITextUnit>>();
 		for ( int id : resList.keySet() ) {
-			ResourceItem ri = resList.get(id);
-			if ( !ri.enabled ) continue; // Skip disabled entries
-			ri.query.leverage(tu);
+			if ( !resList.get(id).enabled ) continue; // Skip disabled entries
+			ArrayList<ITextUnit> list = new ArrayList<ITextUnit>(tus.size());
+			for ( ITextUnit tu : tus ) {
+				list.add(createWorkCopy(tu));
+			}
+			copies.put(id, list);
 		}
 		
+		Map<Integer, List<ITextUnit>> all = runOnResources(new ResourceTask<List<ITextUnit>>() {
+			public List<ITextUnit> run (int resourceId, IQuery query) {
+				List<ITextUnit> list = copies.get(resourceId);
+				query.batchLeverage(list);
+				return list;
+			}
+		});
+		
+		// Move the new candidates, in the order of the resources
+		for ( int i=0; i<tus.size(); i++ ) {
+			ITextUnit tu = tus.get(i);
+			Set<AltTranslation> existing = getCandidates(tu);
+			TextContainer trgCont = tu.createTarget(trgLoc, false, IResource.COPY_SEGMENTATION);
+			for ( int id : all.keySet() ) {
+				TextContainer copyCont = all.get(id).get(i).getTarget(trgLoc);
+				if ( copyCont == null ) continue;
+				addNewCandidates(copyCont.getAnnotation(AltTranslationsAnnotation.class),
+					existing, trgCont, null);
+				for ( Segment copySeg : copyCont.getSegments() ) {
+					addNewCandidates(copySeg.getAnnotation(AltTranslationsAnnotation.class),
+						existing, trgCont, copySeg.id);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Creates a copy of a text unit that a translation resource can leverage on its own.
+	 * The target of the copy has its own lists of candidates, starting with the candidates
+	 * of the original text unit.
+	 * @param tu the text unit to copy.
+	 * @return the copy of the text unit.
+	 */
+	private ITextUnit createWorkCopy (ITextUnit tu) {
+		ITextUnit copy = tu.clone();
+		TextContainer trgCont = copy.getTarget(trgLoc);
+		if ( trgCont == null ) return copy;
+		AltTranslationsAnnotation ann = trgCont.getAnnotation(AltTranslationsAnnotation.class);
+		if ( ann != null ) trgCont.setAnnotation(copyCandidates(ann));
+		for ( Segment seg : trgCont.getSegments() ) {
+			ann = seg.getAnnotation(AltTranslationsAnnotation.class);
+			if ( ann != null ) seg.setAnnotation(copyCandidates(ann));
+		}
+		return copy;
+	}
+	
+	private AltTranslationsAnnotation copyCandidates (AltTranslationsAnnotation ann) {
+		AltTranslationsAnnotation copy = new AltTranslationsAnnotation();
+		for ( AltTranslation alt : ann ) {
+			copy.add(alt);
+		}
+		return copy;
+	}
+	
+	/**
+	 * Gets the candidates that are in the target of a text unit before it is leveraged.
+	 * @param tu the text unit.
+	 * @return the set of the candidates, compared by identity.
+	 */
+	private Set<AltTranslation> getCandidates (ITextUnit tu) {
+		Set<AltTranslation> set = Collections.newSetFromMap(new IdentityHashMap<AltTranslation, Boolean>());
+		TextContainer trgCont = tu.getTarget(trgLoc);
+		if ( trgCont == null ) return set;
+		AltTranslationsAnnotation ann = trgCont.getAnnotation(AltTranslationsAnnotation.class);
+		if ( ann != null ) {
+			for ( AltTranslation alt : ann ) set.add(alt);
+		}
+		for ( Segment seg : trgCont.getSegments() ) {
+			ann = seg.getAnnotation(AltTranslationsAnnotation.class);
+			if ( ann == null ) continue;
+			for ( AltTranslation alt : ann ) set.add(alt);
+		}
+		return set;
+	}
+	
+	/**
+	 * Adds to a target the candidates found by a translation resource.
+	 * @param found the candidates of the copy leveraged by the resource (can be null).
+	 * @param existing the candidates the text unit had before the resource was called.
+	 * @param trgCont the target where to add the candidates.
+	 * @param segId the identifier of the target segment where to add the candidates,
+	 * or null to add them to the container.
+	 */
+	private void addNewCandidates (AltTranslationsAnnotation found,
+		Set<AltTranslation> existing,
+		TextContainer trgCont,
+		String segId)
+	{
+		if ( found == null ) return;
+		AltTranslationsAnnotation at = null;
+		for ( AltTranslation alt : found ) {
+			if ( existing.contains(alt) ) continue;
+			if ( alt.getCombinedScore() < threshold ) continue; // Weed out MT if needed
+			if ( segId == null ) {
+				at = TextUnitUtil.addAltTranslation(trgCont, alt);
+			}
+			else {
+				ISegments trgSegs = trgCont.getSegments();
+				Segment ts = trgSegs.get(segId);
+				if ( ts == null ) {
+					ts = new Segment(segId, new TextFragment(""));
+					trgSegs.append(ts);
+				}
+				at = TextUnitUtil.addAltTranslation(ts, alt);
+			}
+		}
+		if ( at != null ) {
+			at.sort();
+		}
+	}
+	
+	/**
+	 * Sorts the candidates of a leveraged text unit, updates the statistics and fills
+	 * the target with the best match if requested.
+	 * @param tu the leveraged text unit.
+	 */
+	private void selectBestMatches (ITextUnit tu) {
 		// Sort annotations added across IQuery.leverage calls
 		// and fill in best matching target if needed
 		AltTranslationsAnnotation altTrans = null;
@@ -0,0 +1,196 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.lib.translation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.query.MatchType;
+import net.sf.okapi.common.query.QueryResult;
+import net.sf.okapi.common.resource.Code;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextFragment.TagType;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LeverageCacheTest {
+
+	private LocaleId locSrc = LocaleId.fromString("en");
+	private LocaleId locTrg = LocaleId.fromString("fr");
+
+	@Test
+	public void testPutAndGet () {
+		LeverageCache cache = new LeverageCache(10, 0);
+		TextFragment src = createFragment("src");
+		assertNull(cache.get("res", locSrc, locTrg, src));
+		
+		cache.put("res", locSrc, locTrg, src, createResults());
+		List<QueryResult> list = cache.get("res", locSrc, locTrg, createFragment("src"));
+		checkResults(list);
+		// The cached results are copies
+		list.get(0).target.append("changed");
+		checkResults(cache.get("res", locSrc, locTrg, src));
+		// Other resource or locales
+		assertNull(cache.get("res2", locSrc, locTrg, src));
+		assertNull(cache.get("res", locSrc, LocaleId.fromString("de"), src));
+		assertEquals(2, cache.getHits());
+		assertEquals(3, cache.getMisses());
+	}
+
+	@Test
+	public void testExactKey () {
+		LeverageCache cache = new LeverageCache(10, 0);
+		cache.put("res", locSrc, locTrg, createFragment("src"), createResults());
+		checkResults(cache.get("res", locSrc, locTrg, createFragment("src")));
+		// Same text and code markers, other code data
+		TextFragment tf = new TextFragment("src");
+		tf.append(TagType.OPENING, "b", "<b class='x'>");
+		tf.append("bold");
+		tf.append(TagType.CLOSING, "b", "</b>");
+		assertEquals(createFragment("src").getCodedText(), tf.getCodedText());
+		assertNull(cache.get("res", locSrc, locTrg, tf));
+		// Other whitespace or line breaks
+		cache.put("res", locSrc, locTrg, new TextFragment("a\r\nb"), createResults());
+		assertNull(cache.get("res", locSrc, locTrg, new TextFragment("a\nb")));
+		assertNull(cache.get("res", locSrc, locTrg, new TextFragment("a\r\n b")));
+		assertEquals(2, cache.size());
+		cache.clear();
+		// Variants are separate entries, removed with their resource
+		String batchKey = LeverageCache.getVariantKey("res", "batch");
+		assertNull(cache.get(batchKey, locSrc, locTrg, new TextFragment("a\nb")));
+		cache.put("res", locSrc, locTrg, new TextFragment("a\nb"), createResults());
+		cache.put(batchKey, locSrc, locTrg, new TextFragment("a\nb"), createResults());
+		assertEquals(2, cache.size());
+		cache.invalidate("res");
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testEviction () {
+		LeverageCache cache = new LeverageCache(2, 0);
+		List<QueryResult> empty = new ArrayList<QueryResult>();
+		cache.put("res", locSrc, locTrg, new TextFragment("1"), empty);
+		cache.put("res", locSrc, locTrg, new TextFragment("2"), empty);
+		// Use 1 so 2 is the least recently used
+		assertNotNull(cache.get("res", locSrc, locTrg, new TextFragment("1")));
+		cache.put("res", locSrc, locTrg, new TextFragment("3"), empty);
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get("res", locSrc, locTrg, new TextFragment("1")));
+		assertNull(cache.get("res", locSrc, locTrg, new TextFragment("2")));
+		assertNotNull(cache.get("res", locSrc, locTrg, new TextFragment("3")));
+	}
+
+	@Test
+	public void testTimeToLive ()
+		throws InterruptedException
+	{
+		LeverageCache cache = new LeverageCache(10, 50);
+		cache.put("res", locSrc, locTrg, new TextFragment("1"), createResults());
+		assertNotNull(cache.get("res", locSrc, locTrg, new TextFragment("1")));
+		Thread.sleep(100);
+		assertNull(cache.get("res", locSrc, locTrg, new TextFragment("1")));
+	}
+
+	@Test
+	public void testInvalidate () {
+		LeverageCache cache = new LeverageCache(10, 0);
+		cache.put("res1", locSrc, locTrg, new TextFragment("1"), createResults());
+		cache.put("res2", locSrc, locTrg, new TextFragment("1"), createResults());
+		cache.invalidate("res1");
+		assertNull(cache.get("res1", locSrc, locTrg, new TextFragment("1")));
+		assertNotNull(cache.get("res2", locSrc, locTrg, new TextFragment("1")));
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testResourceKey () {
+		DummyConnector conn1 = new DummyConnector();
+		assertEquals(LeverageCache.getResourceKey(conn1), LeverageCache.getResourceKey(new DummyConnector()));
+		assertFalse(LeverageCache.getResourceKey(conn1).equals(LeverageCache.getResourceKey(new DummyConnector() {})));
+	}
+
+	@Test
+	public void testSaveAndLoad ()
+		throws Exception
+	{
+		File file = File.createTempFile("okp-levcache", ".bin");
+		file.delete();
+		LeverageCache cache = new LeverageCache(file, 10, 0);
+		cache.put("res", locSrc, locTrg, createFragment("src"), createResults());
+		cache.close();
+		assertTrue(file.exists());
+		
+		cache = new LeverageCache(file, 10, 0);
+		assertEquals(1, cache.size());
+		checkResults(cache.get("res", locSrc, locTrg, createFragment("src")));
+		file.delete();
+	}
+
+	private TextFragment createFragment (String text) {
+		TextFragment tf = new TextFragment(text);
+		tf.append(TagType.OPENING, "b", "<b>");
+		tf.append("bold");
+		tf.append(TagType.CLOSING, "b", "</b>");
+		return tf;
+	}
+	
+	private List<QueryResult> createResults () {
+		ArrayList<QueryResult> list = new ArrayList<QueryResult>();
+		QueryResult qr = new QueryResult();
+		qr.source = createFragment("src");
+		qr.target = createFragment("trg");
+		qr.setFuzzyScore(95);
+		qr.setCombinedScore(90);
+		qr.matchType = MatchType.FUZZY;
+		qr.origin = "origin";
+		qr.weight = 2;
+		list.add(qr);
+		qr = new QueryResult();
+		qr.source = new TextFragment("src");
+		qr.target = new TextFragment("trg2");
+		qr.setFuzzyScore(80);
+		list.add(qr);
+		return list;
+	}
+	
+	private void checkResults (List<QueryResult> list) {
+		assertNotNull(list);
+		assertEquals(2, list.size());
+		QueryResult qr = list.get(0);
+		assertEquals(createFragment("trg").toText(), qr.target.toText());
+		assertEquals("</b>", qr.target.getCode(1).getData());
+		assertEquals(Code.codesToString(createFragment("src").getCodes()), Code.codesToString(qr.source.getCodes()));
+		assertEquals(95, qr.getFuzzyScore());
+		assertEquals(90, qr.getCombinedScore());
+		assertEquals(MatchType.FUZZY, qr.matchType);
+		assertEquals("origin", qr.origin);
+		assertEquals(2, qr.weight);
+		assertNull(qr.entryId);
+		qr = list.get(1);
+		assertEquals("trg2", qr.target.toText());
+		assertEquals(80, qr.getCombinedScore());
+	}
+
+}
@@ -20,8 +20,16 @@
 
 package net.sf.okapi.lib.translation;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.annotation.AltTranslationsAnnotation;
 import net.sf.okapi.common.query.IQuery;
+import net.sf.okapi.common.query.QueryResult;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextUnit;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -56,4 +64,165 @@ public class QueryManagerTest {
 		assertNotNull(q);
 	}
 
+	@Test
+	public void testConcurrentQuery () {
+		qm.addResource(new FixedConnector("res80", 80, 0), "res80");
+		qm.addResource(new FixedConnector("res95", 95, 0), "res95");
+		qm.addResource(new FixedConnector("slow", 99, 2000), "slow");
+		qm.setLanguages(locSrc, locTrg);
+		qm.setConcurrentQueries(true);
+		qm.setResourceTimeout(300);
+		assertTrue(qm.getConcurrentQueries());
+		assertEquals(300, qm.getResourceTimeout());
+		
+		// The slow resource is ignored, the others are sorted by score
+		assertEquals(2, qm.query(new TextFragment("text")));
+		assertEquals("res95", qm.next().target.toText());
+		assertEquals("res80", qm.next().target.toText());
+		qm.close();
+	}
+
+	@Test
+	public void testConcurrentBatchLeverage () {
+		qm.addResource(new FixedConnector("res80", 80, 0), "res80");
+		qm.addResource(new FixedConnector("res95", 95, 0), "res95");
+		qm.setLanguages(locSrc, locTrg);
+		qm.setConcurrentQueries(true);
+		List<ITextUnit> list = new ArrayList<ITextUnit>();
+		list.add(new TextUnit("1", "text 1"));
+		list.add(new TextUnit("2", "text 2"));
+		qm.leverage(list);
+		for ( ITextUnit tu : list ) {
+			AltTranslationsAnnotation ann = tu.getTarget(locTrg).getAnnotation(AltTranslationsAnnotation.class);
+			assertEquals(2, ann.size());
+			assertEquals(95, ann.getFirst().getCombinedScore());
+		}
+		assertEquals(2, qm.getTotalSegments());
+		qm.close();
+	}
+
+	@Test
+	public void testConcurrentLeverageUsesConnectorAndThreshold () {
+		final int[] calls = new int[1];
+		qm.addResource(new FixedConnector("res80", 80, 0), "res80");
+		qm.addResource(new FixedConnector("res95", 95, 0) {
+			@Override
+			public void leverage (ITextUnit tu) {
+				calls[0]++;
+				super.leverage(tu);
+			}
+		}, "res95");
+		qm.setLanguages(locSrc, locTrg);
+		qm.setThreshold(90);
+		qm.setConcurrentQueries(true);
+		ITextUnit tu = new TextUnit("1", "text 1");
+		qm.leverage(tu);
+		// The leverage method of the connector is used
+		assertEquals(1, calls[0]);
+		// The candidate below the threshold is not added
+		AltTranslationsAnnotation ann = tu.getTarget(locTrg).getAnnotation(AltTranslationsAnnotation.class);
+		assertEquals(1, ann.size());
+		assertEquals("res95", ann.getFirst().getTarget().toString());
+		qm.close();
+	}
+
+	@Test
+	public void testCachedLeverage () {
+		FixedConnector conn = new FixedConnector("res90", 90, 0);
+		int resId = qm.addResource(conn, "res90");
+		qm.setLanguages(locSrc, locTrg);
+		LeverageCache cache = new LeverageCache(100, 0);
+		qm.setCache(cache);
+		assertSame(cache, qm.getCache());
+		
+		List<ITextUnit> list = new ArrayList<ITextUnit>();
+		list.add(new TextUnit("1", "text 1"));
+		list.add(new TextUnit("2", "text 2"));
+		qm.leverage(list);
+		assertEquals(2, conn.count);
+		
+		// Same texts again: the connector is not called
+		list.clear();
+		list.add(new TextUnit("3", "text 1"));
+		list.add(new TextUnit("4", "text 2"));
+		qm.leverage(list);
+		assertEquals(2, conn.count);
+		assertEquals(2, cache.getHits());
+		for ( ITextUnit tu : list ) {
+			AltTranslationsAnnotation ann = tu.getTarget(locTrg).getAnnotation(AltTranslationsAnnotation.class);
+			assertEquals(1, ann.size());
+			assertEquals("res90", ann.getFirst().getTarget().toString());
+			assertEquals(90, ann.getFirst().getCombinedScore());
+		}
+		
+		// The query uses the same entries
+		assertEquals(1, qm.query(new TextFragment("text 1")));
+		assertEquals(2, conn.count);
+		assertEquals(resId, qm.next().connectorId);
+		
+		// After invalidation the connector is called again
+		qm.invalidateCache(resId);
+		assertEquals(0, cache.size());
+		assertEquals(1, qm.query(new TextFragment("text 1")));
+		assertEquals(3, conn.count);
+		qm.close();
+	}
+
+	@Test
+	public void testCacheDoesNotChangeLeverage () {
+		FixedConnector conn = new FixedConnector("res80", 80, 0);
+		qm.addResource(conn, "res80");
+		qm.setLanguages(locSrc, locTrg);
+		qm.setThreshold(90);
+		qm.setCache(new LeverageCache(100, 0));
+		
+		// The query is below the threshold of the manager
+		assertEquals(0, qm.query(new TextFragment("text 1")));
+		assertEquals(1, conn.count);
+		// The leverage of the connector gets the same candidate as without cache
+		ITextUnit tu = new TextUnit("1", "text 1");
+		qm.leverage(tu);
+		assertEquals(1, conn.count);
+		AltTranslationsAnnotation ann = tu.getTarget(locTrg).getAnnotation(AltTranslationsAnnotation.class);
+		assertEquals(1, ann.size());
+		assertEquals(80, ann.getFirst().getCombinedScore());
+		qm.close();
+	}
+
+	/**
+	 * Connector returning one fixed result after an optional delay.
+	 */
+	private static class FixedConnector extends DummyConnector {
+
+		private String target;
+		private int score;
+		private long delay;
+		int count;
+		
+		public FixedConnector (String target, int score, long delay) {
+			this.target = target;
+			this.score = score;
+			this.delay = delay;
+		}
+		
+		@Override
+		public int query (TextFragment text) {
+			count++;
+			if ( delay > 0 ) {
+				try {
+					Thread.sleep(delay);
+				}
+				catch ( InterruptedException e ) {
+					return 0;
+				}
+			}
+			result = new QueryResult();
+			result.source = text;
+			result.target = new TextFragment(target);
+			result.setFuzzyScore(score);
+			current = 0;
+			return 1;
+		}
+	}
+
 }
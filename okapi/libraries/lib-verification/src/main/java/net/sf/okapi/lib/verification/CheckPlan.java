@@ -0,0 +1,157 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.lib.verification;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.Util;
+import net.sf.okapi.lib.terminology.simpletb.SimpleTB;
+
+/**
+ * Compiled form of the options of a quality check run.
+ * <p>The plan holds everything that is costly to prepare: the regular expressions of the patterns,
+ * the target character set and the term base. It is created once when a run starts and is not modified
+ * afterward, so the {@link TextUnitChecker} objects of several threads can share it. The simple options
+ * (flags and lengths) are still read from the parameters when the text units are checked.
+ */
+final class CheckPlan {
+
+	// Characters that are part of a "word" (digits included)
+	static final Pattern WORDCHARS = Pattern.compile("[\\p{Ll}\\p{Lu}\\p{Lt}\\p{Lo}\\p{Nd}]");
+
+	// Expression for finding doubled words
+	// The expression: "\\b(\\w+)\\s+\\1\\b" does not work for extended chars (\w and \s are ASCII based)
+	// We have to use the Unicode equivalents
+	static final Pattern DOUBLEDWORDS = Pattern.compile(
+		"\\b([\\p{Ll}\\p{Lu}\\p{Lt}\\p{Lo}\\p{Nd}]+)[\\t\\n\\f\\r\\p{Z}]+\\1\\b",
+		Pattern.CASE_INSENSITIVE);
+
+	// Some of the most frequent patterns of corrupted characters
+	static final Pattern CORRUPTION = Pattern.compile("\\u00C3[\\u00A4-\\u00B6]"
+		+ "|\\u00C3\\u201E"
+		+ "|\\u00C3\\u2026"
+		+ "|\\u00C3\\u2013"
+	);
+
+	/**
+	 * Compiled form of an enabled {@link PatternItem}.
+	 */
+	static final class CompiledPattern {
+		final Pattern source; // Null for <same>
+		final Pattern target; // Null for <same>
+		final int severity;
+		final String description;
+
+		CompiledPattern (PatternItem item) {
+			source = (item.source.equals(PatternItem.SAME) ? null : Pattern.compile(item.source));
+			target = (item.target.equals(PatternItem.SAME) ? null : Pattern.compile(item.target));
+			severity = item.severity;
+			description = item.description;
+		}
+	}
+
+	final LocaleId srcLoc;
+	final LocaleId trgLoc;
+	final Parameters params;
+	
+	// Patterns searched in the source, then in the target
+	final CompiledPattern[] sourcePatterns;
+	final CompiledPattern[] targetPatterns;
+	// Patterns of the text expected to be the same in source and target (e.g. URLs)
+	final CompiledPattern[] samePatterns;
+
+	// List of doubled-words that are not errors, like this: ";word1;word2;word3;"
+	final String doubledWordExceptions;
+
+	// Characters check (both null if not checked)
+	final Charset charset;
+	final Pattern extraCharsAllowed;
+
+	// Terminology check (null if not checked)
+	final TermChecker termChecker;
+
+	CheckPlan (LocaleId srcLoc,
+		LocaleId trgLoc,
+		Parameters params)
+	{
+		this.srcLoc = srcLoc;
+		this.trgLoc = trgLoc;
+		this.params = params;
+
+		// Compile the patterns
+		List<CompiledPattern> srcList = new ArrayList<CompiledPattern>();
+		List<CompiledPattern> trgList = new ArrayList<CompiledPattern>();
+		List<CompiledPattern> sameList = new ArrayList<CompiledPattern>();
+		for ( PatternItem item : params.getPatterns() ) {
+			if ( !item.enabled ) continue;
+			CompiledPattern cp = new CompiledPattern(item);
+			if ( item.fromSource ) {
+				if ( cp.source != null ) srcList.add(cp);
+			}
+			else {
+				if ( cp.target != null ) trgList.add(cp);
+			}
+			if (( cp.target == null ) && ( cp.source != null )) {
+				sameList.add(cp);
+			}
+		}
+		sourcePatterns = srcList.toArray(new CompiledPattern[srcList.size()]);
+		targetPatterns = trgList.toArray(new CompiledPattern[trgList.size()]);
+		samePatterns = sameList.toArray(new CompiledPattern[sameList.size()]);
+
+		doubledWordExceptions = ";"+params.getDoubledWordExceptions().toLowerCase()+";";
+
+		// Characters check
+		Charset tmpCharset = null;
+		Pattern tmpExtra = null;
+		if ( params.getCheckCharacters() ) {
+			// Encoding
+			if ( !Util.isEmpty(params.charset) ) {
+				tmpCharset = Charset.forName(params.charset);
+			}
+			// Extra characters allowed
+			if ( !params.getExtraCharsAllowed().isEmpty() ) {
+				tmpExtra = Pattern.compile(params.getExtraCharsAllowed());
+			}
+		}
+		charset = tmpCharset;
+		extraCharsAllowed = tmpExtra;
+
+		// Terminology check
+		if ( params.getCheckTerms() ) {
+			// Direct use of SimpleTB for now
+			SimpleTB ta = new SimpleTB(srcLoc, trgLoc);
+			ta.guessAndImport(new File(params.getTermsPath()));
+			termChecker = new TermChecker();
+			termChecker.initialize(ta, srcLoc, trgLoc, params.getStringMode(), params.getBetweenCodes(),
+				params.getTermsIgnoreCase(), params.getTermsIgnoreDiacritics());
+		}
+		else {
+			termChecker = null;
+		}
+	}
+
+}
@@ -86,7 +86,10 @@ public class Parameters extends BaseParameters {
 	private static final String TERMSPATH = "termsPath";
 	private static final String STRINGMODE = "stringMode";
 	private static final String BETWEENCODES = "betweenCodes";
+	private static final String TERMSIGNORECASE = "termsIgnoreCase";
+	private static final String TERMSIGNOREDIACRITICS = "termsIgnoreDiacritics";
 	private static final String TYPESTOIGNORE = "typesToIgnore";
+	private static final String THREADCOUNT = "threadCount";
 
 	String outputPath;
 	int outputType;
@@ -134,6 +137,9 @@ public class Parameters extends BaseParameters {
 	String termsPath;
 	boolean stringMode;
 	boolean betweenCodes;
+	boolean termsIgnoreCase;
+	boolean termsIgnoreDiacritics;
+	int threadCount;
 
 	public Parameters () {
 		reset();
@@ -491,6 +497,33 @@ public class Parameters extends BaseParameters {
 		this.betweenCodes = betweenCodes;
 	}
 	
+	/**
+	 * Indicates if the strings of the glossary are matched regardless of their case.
+	 * This applies only to the verification using strings matching: the terms matching
+	 * always ignores the case.
+	 * @return true if the case is ignored.
+	 */
+	public boolean getTermsIgnoreCase () {
+		return termsIgnoreCase;
+	}
+
+	public void setTermsIgnoreCase (boolean termsIgnoreCase) {
+		this.termsIgnoreCase = termsIgnoreCase;
+	}
+	
+	/**
+	 * Indicates if the strings of the glossary are matched regardless of their diacritics.
+	 * This applies only to the verification using strings matching.
+	 * @return true if the diacritics are ignored.
+	 */
+	public boolean getTermsIgnoreDiacritics () {
+		return termsIgnoreDiacritics;
+	}
+
+	public void setTermsIgnoreDiacritics (boolean termsIgnoreDiacritics) {
+		this.termsIgnoreDiacritics = termsIgnoreDiacritics;
+	}
+	
 	@ReferenceParameter
 	public String getTermsPath () {
 		return termsPath;
@@ -500,6 +533,24 @@ public class Parameters extends BaseParameters {
 		this.termsPath = termsPath;
 	}
 	
+	/**
+	 * Gets the number of threads used to check the text units.
+	 * @return the number of threads (1 to check the text units as they come).
+	 */
+	public int getThreadCount () {
+		return threadCount;
+	}
+
+	/**
+	 * Sets the number of threads used to check the text units. With more than one
+	 * thread the text units are checked by batches. The LanguageTool check
+	 * always uses a single thread.
+	 * @param threadCount the number of threads (1 to check the text units as they come).
+	 */
+	public void setThreadCount (int threadCount) {
+		this.threadCount = threadCount;
+	}
+	
 	@Override
 	public void reset () {
 		outputPath = Util.ROOT_DIRECTORY_VAR+"/qa-report.html";
@@ -548,6 +599,10 @@ public class Parameters extends BaseParameters {
 		termsPath = "";
 		stringMode = false;
 		betweenCodes = false;
+		termsIgnoreCase = false;
+		termsIgnoreDiacritics = false;
+		
+		threadCount = 1;
 
 		patterns = new ArrayList<PatternItem>();
 		
@@ -622,6 +677,7 @@ public class Parameters extends BaseParameters {
 		doubledWordExceptions = buffer.getString(DOUBLEDWORDEXCEPTIONS, doubledWordExceptions);
 		corruptedCharacters = buffer.getBoolean(CORRUPTEDCHARACTERS, corruptedCharacters);
 		scope = buffer.getInteger(SCOPE, scope);
+		threadCount = buffer.getInteger(THREADCOUNT, threadCount);
 		// Length
 		checkMaxCharLength = buffer.getBoolean(CHECKMAXCHARLENGTH, checkMaxCharLength);
 		maxCharLengthBreak = buffer.getInteger(MAXCHARLENGTHBREAK, maxCharLengthBreak);
@@ -642,6 +698,8 @@ public class Parameters extends BaseParameters {
 		termsPath = buffer.getString(TERMSPATH, termsPath);
 		stringMode = buffer.getBoolean(STRINGMODE, stringMode);
 		betweenCodes = buffer.getBoolean(BETWEENCODES, betweenCodes);
+		termsIgnoreCase = buffer.getBoolean(TERMSIGNORECASE, termsIgnoreCase);
+		termsIgnoreDiacritics = buffer.getBoolean(TERMSIGNOREDIACRITICS, termsIgnoreDiacritics);
 		
 		// Patterns
 		checkPatterns = buffer.getBoolean(CHECKPATTERNS, checkPatterns);
@@ -700,6 +758,7 @@ public class Parameters extends BaseParameters {
 		buffer.setString(DOUBLEDWORDEXCEPTIONS, doubledWordExceptions);
 		buffer.setBoolean(CORRUPTEDCHARACTERS, corruptedCharacters);
 		buffer.setInteger(SCOPE, scope);
+		buffer.setInteger(THREADCOUNT, threadCount);
 		// Length
 		buffer.setBoolean(CHECKMAXCHARLENGTH, checkMaxCharLength);
 		buffer.setInteger(MAXCHARLENGTHBREAK, maxCharLengthBreak);
@@ -720,6 +779,8 @@ public class Parameters extends BaseParameters {
 		buffer.setString(TERMSPATH, termsPath);
 		buffer.setBoolean(STRINGMODE, stringMode);
 		buffer.setBoolean(BETWEENCODES, betweenCodes);
+		buffer.setBoolean(TERMSIGNORECASE, termsIgnoreCase);
+		buffer.setBoolean(TERMSIGNOREDIACRITICS, termsIgnoreDiacritics);
 		// Patterns
 		buffer.setBoolean(CHECKPATTERNS, checkPatterns);
 		buffer.setInteger(PATTERNCOUNT, patterns.size());
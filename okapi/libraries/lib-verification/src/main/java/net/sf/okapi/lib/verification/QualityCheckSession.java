@@ -77,7 +77,13 @@ public class QualityCheckSession {
 		this.modified = modified;
 	}
 
+	/**
+	 * Gets the issues of the session. When several threads are used, this waits until
+	 * all the text units passed so far are checked.
+	 * @return the list of the issues of the session.
+	 */
 	public List<Issue> getIssues () {
+		checker.completeProcess();
 		return issues;
 	}
 	
@@ -153,6 +159,7 @@ public class QualityCheckSession {
 		rawDocs = new HashMap<URI, RawDocument>();
 		issues = new ArrayList<Issue>();
 		params = new Parameters();
+		if ( checker != null ) checker.shutdown();
 		checker = new QualityChecker();
 	}
 	
@@ -215,6 +222,7 @@ public class QualityCheckSession {
 					break;
 				}
 			}
+			completeProcess();
 		}
 		finally {
 			if ( filter != null ) filter.close();
@@ -270,6 +278,7 @@ public class QualityCheckSession {
 	private void saveSessionToStream (OutputStream outputStream) {
 		DataOutputStream dos = null;
 		try {
+			checker.completeProcess();
 			dos = new DataOutputStream(outputStream);
 			
 			// Header
@@ -406,7 +415,34 @@ public class QualityCheckSession {
 		checker.processTextUnit(textUnit);
 	}
 
+	/**
+	 * Waits until all the text units passed so far are checked. This is needed only when
+	 * several threads are used.
+	 */
+	public void completeProcess () {
+		checker.completeProcess();
+	}
+	
+	/**
+	 * Stops the threads used to check the text units, if any. The text units not checked
+	 * yet are dropped: call {@link #completeProcess()} first to get their issues.
+	 * The next call to {@link #startProcess(LocaleId, LocaleId)} creates new threads if needed.
+	 */
+	public void shutdown () {
+		checker.shutdown();
+	}
+	
+	/**
+	 * Gets a report of the time spent in each check since the last call to
+	 * {@link #startProcess(LocaleId, LocaleId)}.
+	 * @return the report, one line per check.
+	 */
+	public String getTimingReport () {
+		return checker.getTimingReport();
+	}
+
 	public void generateReport (String rootDir) {
+		checker.completeProcess();
 		String finalPath = Util.fillRootDirectoryVariable(params.getOutputPath(), rootDir);
 		if ( params.getOutputType() == 1 ) {
 			generateTabDelimitedReport(finalPath);
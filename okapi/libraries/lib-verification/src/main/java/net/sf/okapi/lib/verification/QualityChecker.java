@@ -22,66 +22,79 @@ package net.sf.okapi.lib.verification;
 
 import java.io.File;
 import java.net.URI;
-import java.nio.charset.Charset;
-import java.nio.charset.CharsetEncoder;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import net.sf.okapi.common.LocaleId;
-import net.sf.okapi.common.Util;
 import net.sf.okapi.common.resource.Code;
-import net.sf.okapi.common.resource.ISegments;
-import net.sf.okapi.common.resource.Property;
-import net.sf.okapi.common.resource.Segment;
+import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.StartDocument;
-import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.common.resource.TextFragment;
-import net.sf.okapi.common.resource.ITextUnit;
-import net.sf.okapi.common.resource.TextUnitUtil;
-import net.sf.okapi.lib.terminology.simpletb.SimpleTB;
 
+/**
+ * Checks the text units of a quality check session.
+ * <p>The options are compiled into a {@link CheckPlan} when the process starts. With one thread the
+ * text units are checked as they are passed. With several threads they are checked by batches on a
+ * pool of threads, each with its own {@link TextUnitChecker}, while the next batch is collected. The
+ * issues are always added to the list of the session in the order of the text units:
+ * call {@link #completeProcess()} to get the issues of the text units still in progress.
+ */
 class QualityChecker {
 
-	private LocaleId srcLoc;
-	private LocaleId trgLoc;
-	private List<PatternItem> patterns;
-	private LanguageToolConnector ltConn;
-	private TermChecker termChecker;
-	private Parameters params;
+	// Number of text units per thread in a batch
+	private static final int BATCH_SIZE_PER_THREAD = 64;
+
+	private CheckPlan plan;
 	private List<Issue> issues;
 	private URI currentDocId;
 	private List<String> sigList;
-	private Pattern patDoubledWords;
-	private String doubledWordExceptions;
-	private CharsetEncoder encoder;
-	private Pattern extraCharsAllowed;
-	private Pattern corruption;
-	
-	private final static Pattern WORDCHARS = Pattern.compile("[\\p{Ll}\\p{Lu}\\p{Lt}\\p{Lo}\\p{Nd}]");
+	private TextUnitChecker[] checkers;
+	private ExecutorService executor;
+
+	// Batch being collected, and batch being checked
+	private List<Entry> pending;
+	private List<Entry> running;
+	private List<Future<Void>> runningTasks;
+
+	/**
+	 * Text unit waiting to be checked, with the context it was passed in.
+	 */
+	private static class Entry {
+		final ITextUnit tu;
+		final URI docId;
+		final List<String> sigList;
+		List<Issue> issues;
+
+		Entry (ITextUnit tu,
+			URI docId,
+			List<String> sigList)
+		{
+			this.tu = tu;
+			this.docId = docId;
+			this.sigList = sigList;
+		}
+	}
 
 	void startProcess (LocaleId sourceLocale,
 		LocaleId targetLocale,
 		Parameters params,
 		List<Issue> issues)
 	{
-		this.srcLoc = sourceLocale;
-		this.trgLoc = targetLocale;
-		this.params = params;
+		// Finish any previous process
+		completeProcess();
+		shutdown();
 		this.issues = issues;
 
-		// Compile the patterns
-		patterns = params.getPatterns();
-		for ( PatternItem item : patterns ) {
-			if ( item.enabled ) {
-				item.compile();
-			}
-		}
+		// Compile the options
+		plan = new CheckPlan(sourceLocale, targetLocale, params);
 
-		ltConn = null;
+		LanguageToolConnector ltConn = null;
 		if ( params.getCheckWithLT() ) {
 			ltConn = new LanguageToolConnector();
 			ltConn.initialize(targetLocale, params.getServerURL(), params.translateLTMsg,
@@ -89,52 +102,22 @@ class QualityChecker {
 				params.ltTranslationServiceKey);
 		}
 
-		// Expression for finding doubled words
-		// The expression: "\\b(\\w+)\\s+\\1\\b" does not work for extended chars (\w and \s are ASCII based)
-		// We have to use the Unicode equivalents
-		patDoubledWords = null;
-		if ( params.getDoubledWord() ) {
-			patDoubledWords = Pattern.compile("\\b([\\p{Ll}\\p{Lu}\\p{Lt}\\p{Lo}\\p{Nd}]+)[\\t\\n\\f\\r\\p{Z}]+\\1\\b",
-				Pattern.CASE_INSENSITIVE);
-			// Construct the string of doubled-words that are not errors
-			// The working patter is the list like this: ";word1;word2;word3;"
-			doubledWordExceptions = ";"+params.getDoubledWordExceptions().toLowerCase()+";";
+		// The LanguageTool connector cannot be shared: use a single thread with it
+		int threadCount = (( ltConn == null ) ? Math.max(1, params.getThreadCount()) : 1);
+		checkers = new TextUnitChecker[threadCount];
+		checkers[0] = new TextUnitChecker(plan, ltConn);
+		for ( int i=1; i<threadCount; i++ ) {
+			checkers[i] = new TextUnitChecker(plan, null);
 		}
-		
-		// Pattern for corrupted characters
-		corruption = null;
-		if ( params.getCorruptedCharacters() ) {
-			// Some of the most frequent patterns of corrupted characters
-			corruption = Pattern.compile("\\u00C3[\\u00A4-\\u00B6]"
-				+ "|\\u00C3\\u201E"
-				+ "|\\u00C3\\u2026"
-				+ "|\\u00C3\\u2013"
-			);
-		}
-		
-		// Characters check
-		encoder = null;
-		extraCharsAllowed = null;
-		if ( params.getCheckCharacters() ) {
-			// Encoding
-			String charsetName = params.charset;
-			if ( !Util.isEmpty(charsetName) ) {
-				encoder = Charset.forName(charsetName).newEncoder();
-			}
-			// Extra characters allowed
-			if ( !params.getExtraCharsAllowed().isEmpty() ) {
-				extraCharsAllowed = Pattern.compile(params.getExtraCharsAllowed());
-			}
-		}
-
-		// Terminology check
-		termChecker = null;
-		if ( params.getCheckTerms() ) {
-			// Direct use of SimpleTB for now
-			termChecker = new TermChecker();
-			SimpleTB ta = new SimpleTB(srcLoc, trgLoc);
-			ta.guessAndImport(new File(params.getTermsPath()));
-			termChecker.initialize(ta, srcLoc, trgLoc, params.getStringMode(), params.getBetweenCodes());
+		if ( threadCount > 1 ) {
+			executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+				public Thread newThread (Runnable runnable) {
+					Thread thread = new Thread(runnable, "QualityChecker");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			pending = new ArrayList<Entry>();
 		}
 	}
 
@@ -145,768 +128,137 @@ class QualityChecker {
 		this.sigList = sigList;
 	}
 	
-	private boolean hasMeaningfullText (TextFragment frag) {
-		// Do we have at least one character that is part of the character set for a "word"
-		// Note: digits are considered part of a "word"
-		return WORDCHARS.matcher(frag.getCodedText()).find();
-	}
-	
 	void processTextUnit (ITextUnit tu) {
-		// Skip non-translatable entries
-		if ( !tu.isTranslatable() ) return;
-		
-		// Get the containers
-		TextContainer srcCont = tu.getSource();
-		TextContainer trgCont = tu.getTarget(trgLoc);
-		
-		// Check if we have a target (even if option disabled)
-		if ( trgCont == null ) {
-			// No translation available
-			reportIssue(IssueType.MISSING_TARGETTU, tu, null,
-				"Missing translation.",
-				0, -1, 0, -1, Issue.SEVERITY_HIGH, srcCont.toString(), "", null);
+		if ( executor == null ) {
+			Entry entry = new Entry(tu, currentDocId, sigList);
+			entry.issues = new ArrayList<Issue>();
+			checkers[0].check(tu, currentDocId, entry.issues);
+			addIssues(entry);
 			return;
 		}
 		
-		// Skip non-approved entries if requested
-		if ( params.getScope() != Parameters.SCOPE_ALL ) {
-			Property prop = trgCont.getProperty(Property.APPROVED);
-			if (( prop != null ) && prop.getValue().equals("yes") ) { // Approved
-				if ( params.getScope() == Parameters.SCOPE_NOTAPPROVEDONLY ) return;
-			}
-			else { // Not approved
-				if ( params.getScope() == Parameters.SCOPE_APPROVEDONLY ) return;
-			}
-		}
-
-		ISegments srcSegs = srcCont.getSegments();
-		ISegments trgSegs = trgCont.getSegments();
-		
-		// Check hidden text (e.g. RTF)
-		Property prop = trgCont.getProperty("hashiddentext");
-		if ( prop != null ) {
-			// There is a hidden section
-			Scanner scan = new Scanner(prop.getValue()).useDelimiter(";");
-			TextFragment tf = trgCont.getUnSegmentedContentCopy();
-			int start = fromFragmentToString(tf, scan.nextInt());
-			int end = fromFragmentToString(tf, scan.nextInt());
-			reportIssue(IssueType.SUSPECT_PATTERN, tu, null,
-				"Target content has at least one hidden part.",
-				0, -1, start, end, Issue.SEVERITY_HIGH, srcCont.toString(), trgCont.toString(), null);
-		}
-		
-		for ( Segment srcSeg : srcSegs ) {
-			Segment trgSeg = trgSegs.get(srcSeg.getId());
-			if ( trgSeg == null ) {
-				reportIssue(IssueType.MISSING_TARGETSEG, tu, srcSeg.getId(),
-					"The source segment has no corresponding target segment.",
-					0, -1, 0, -1, Issue.SEVERITY_HIGH, srcSeg.toString(), "", null);
-				continue; // Cannot go further for that segment
-			}
-			
-			// Check for empty target, if requested
-			if ( params.getEmptyTarget() ) {
-				if ( trgSeg.text.isEmpty() && !srcSeg.text.isEmpty() ) {
-					reportIssue(IssueType.EMPTY_TARGETSEG, tu, srcSeg.getId(),
-						"The target segment is empty, but its source is not empty.",
-						0, -1, 0, -1, Issue.SEVERITY_HIGH, srcSeg.toString(), "", null);
-					continue; // No need to check more if it's empty
-				}
-			}
-			// Check for empty source when target is not empty, if requested
-			if ( params.getEmptySource() ) {
-				if ( srcSeg.text.isEmpty() && !trgSeg.text.isEmpty() ) {
-					reportIssue(IssueType.EMPTY_SOURCESEG, tu, srcSeg.getId(),
-						"The target segment is not empty, but its source is empty.",
-						0, -1, 0, -1, Issue.SEVERITY_HIGH, srcSeg.toString(), "", null);
-					continue; // No need to check more if the source is empty
-				}
-			}
-			
-			// Check code differences, if requested
-			if ( params.getCodeDifference() ) {
-				checkInlineCodes(srcSeg, trgSeg, tu);
-			}
-
-			// Check for target is the same as source, if requested
-			if ( params.getTargetSameAsSource() ) {
-				if ( hasMeaningfullText(srcSeg.text) ) {
-					if ( srcSeg.text.compareTo(trgSeg.text, params.getTargetSameAsSourceWithCodes()) == 0 ) {
-						// Is the string of the cases where target should be the same? (URL, etc.)
-						boolean warn = true;
-						if ( patterns != null ) {
-							for ( PatternItem item : patterns ) {
-								String ctext = srcSeg.text.getCodedText();
-								if ( item.enabled && item.target.equals(PatternItem.SAME) ) {
-									Matcher m = item.getSourcePattern().matcher(ctext);
-									if ( m.find() ) {
-										warn = !ctext.equals(m.group());
-										break;
-									}
-								}
-							}
-						}
-						if ( warn ) {
-							reportIssue(IssueType.TARGET_SAME_AS_SOURCE, tu, srcSeg.getId(),
-								"Translation is the same as the source.",
-								0, -1, 0, -1, Issue.SEVERITY_MEDIUM, srcSeg.toString(), trgSeg.toString(), null);
-						}
-					}
-				}
-			}
-			
-			// Check for patterns, if requested
-			if ( params.getCheckPatterns() ) {
-				checkPatterns(srcSeg, trgSeg, tu);
-			}
-			
-			if ( termChecker != null ) {
-				if ( termChecker.verify(currentDocId, tu, srcSeg, trgSeg) > 0 ) {
-					for ( Issue issue : termChecker.getIssues() ) {
-						reportIssue(issue.issueType, tu, issue.segId, issue.message, issue.srcStart, issue.srcEnd,
-							issue.trgStart, issue.trgEnd, issue.severity, srcSeg.toString(), trgSeg.toString(), null);
-					}
-				}
-			}
-			
-			// Check length
-			if ( params.getCheckMaxCharLength() || params.getCheckMinCharLength() || params.getCheckAbsoluteMaxCharLength() ) {
-				checkLengths(srcSeg, trgSeg, tu);
-			}
-			
-			// Check all suspect patterns
-			checkSuspectPatterns(srcSeg, trgSeg, tu);
-			
-			// Run a check with LanguageTool connector
-			if ( ltConn != null ) {
-				if ( ltConn.checkSegment(currentDocId, srcSeg, trgSeg, tu) > 0 ) {
-					for ( Issue issue : ltConn.getIssues() ) {
-						reportIssue(issue.issueType, tu, issue.segId, issue.message, issue.srcStart, issue.srcEnd,
-							issue.trgStart, issue.trgEnd, issue.severity, srcSeg.toString(), trgSeg.toString(), null);
-						if ( issue.srcEnd == -99 ) {
-							// Special marker indicating a server error
-							ltConn = null; // Do not check it again until next re-processing
-						}
-					}
-				}
-			}
-		
-		}
-
-		// Check for orphan target segments
-		for ( Segment trgSeg : trgSegs ) {
-			Segment srcSeg = srcSegs.get(trgSeg.getId());
-			if ( srcSeg == null ) {
-				reportIssue(IssueType.EXTRA_TARGETSEG, tu, trgSeg.getId(),
-					String.format("Extra target segment (id=%s).", trgSeg.getId()),
-					0, -1, 0, -1, Issue.SEVERITY_HIGH, "", trgSeg.toString(), null);
-				continue; // Cannot go further for that segment
-			}
-		}
-		
-		String srcOri = null;
-		if ( srcCont.contentIsOneSegment() ) {
-			srcOri = srcCont.toString();
-		}
-		else {
-			srcOri = srcCont.getUnSegmentedContentCopy().toText();
-		}
-		
-		String trgOri = null;
-		if ( trgCont.contentIsOneSegment() ) {
-			trgOri = trgCont.toString();
-		}
-		else {
-			trgOri = trgCont.getUnSegmentedContentCopy().toText();
-		}
-
-		if ( params.getCorruptedCharacters() ) {
-			checkCorruptedCharacters(srcOri, trgOri, tu);
-		}
-		
-		checkWhiteSpaces(srcOri, trgOri, tu);
-		
-		if ( params.getCheckCharacters() ) {
-			checkCharacters(srcOri, trgOri, tu);
+		// Use a copy: the text unit may be modified before it is checked
+		pending.add(new Entry(tu.clone(), currentDocId, sigList));
+		if ( pending.size() >= BATCH_SIZE_PER_THREAD*checkers.length ) {
+			// Wait for the previous batch, then start checking this one
+			waitForRunningBatch();
+			startBatch();
 		}
 	}
-	
-	private void checkCharacters (String srcOri,
-		String trgOri,
-		ITextUnit tu)
-	{
-		StringBuilder badChars = new StringBuilder();
-		int pos = -1;
-		int badChar = 0;
-		int count = 0;
-		
-		for ( int i=0; i<trgOri.length(); i++ ) {
-			char ch = trgOri.charAt(i);
-			
-			if ( encoder != null ) {
-				if ( encoder.canEncode(ch) ) {
-					continue; // Allowed, move to the next character
-				}
-				else { // Not included in the target charset
-					// Check if it is included in the extra characters list
-					if ( extraCharsAllowed != null ) {
-						Matcher m = extraCharsAllowed.matcher(trgOri.subSequence(i, i+1));
-						if ( m.find() ) {
-							// Part of the extra character list: it's OK
-							continue; // Move to the next character
-						}
-						// Else: not allowed: fall thru
-					}
-				}
-			}
-			else { // Not charset defined, try just the extra characters list
-				if ( extraCharsAllowed != null ) {
-					Matcher m = extraCharsAllowed.matcher(trgOri.subSequence(i, i+1));
-					if ( m.find() ) {
-						// Part of the extra character list: it's OK
-						continue; // Move to the next character
-					}
-					// Else: not allowed: fall thru
-				}
-				// Else: not in charset, nor in extra characters list: not allowed
-			}
-		
-			// The character is not allowed: add the error
-			if ( ++count > 1 ) {
-				if ( badChars.indexOf(String.valueOf(ch)) == -1 ) { 
-					badChars.append(ch);
-				}
-			}
-			else {
-				pos = i;
-				badChar = ch;
-			}
-		}
 
-		// Do we have one or more errors?
-		if ( pos > -1 ) {
-			if ( count > 1 ) {
-				reportIssue(IssueType.ALLOWED_CHARACTERS, tu, null,
-					String.format("The character '%c' (U+%04X) is not allowed in the target text."
-						+ " Other forbidden characters found: ", badChar, (int)badChar)+badChars.toString(),
-						0, -1, pos, pos+1, Issue.SEVERITY_MEDIUM, srcOri, trgOri, null);
-			}
-			else {
-				reportIssue(IssueType.ALLOWED_CHARACTERS, tu, null,
-					String.format("The character '%c' (U+%04X) is not allowed in the target text.", badChar, (int)badChar),
-					0, -1, pos, pos+1, Issue.SEVERITY_MEDIUM, srcOri, trgOri, null);
-			}
-		}
-		
-	}
-	
-	// Create a copy of the codes and strip out any that has empty data.
-	// They correspond to process-only codes like <df> in TTX or <mrk> in XLIFF
-	private ArrayList<Code> stripNoiseCodes (Segment seg) {
-		ArrayList<Code> list = new ArrayList<Code>(seg.text.getCodes());
-		Iterator<Code> iter = list.iterator();
-		while ( iter.hasNext() ) {
-			Code code = iter.next();
-			if ( params.getTypesToIgnore().indexOf(code.getType()+";") != -1 ) {
-				iter.remove();
-			}
-		}
-		return list;
-	}
-	
-	private String buildCodeList (List<Code> list) {
-		StringBuilder tmp = new StringBuilder();
-		for ( Code code : list ) {
-			if ( tmp.length() > 0 ) tmp.append(", ");
-			if ( code.getData().isEmpty() ) {
-				tmp.append(code.getOuterData().replaceAll("></x>", "/>"));
-			}
-			else { // Show the content
-				tmp.append("\""+code.getData()+"\"");
-			}
+	/**
+	 * Waits until all the text units passed so far are checked, and adds their issues
+	 * to the list of issues.
+	 */
+	void completeProcess () {
+		if ( executor == null ) return;
+		waitForRunningBatch();
+		if ( !pending.isEmpty() ) {
+			startBatch();
+			waitForRunningBatch();
 		}
-		return tmp.toString();
 	}
-	
-	private void checkInlineCodes (Segment srcSeg,
-		Segment trgSeg,
-		ITextUnit tu)
-	{
-		ArrayList<Code> srcList = stripNoiseCodes(srcSeg);
-		ArrayList<Code> trgList = stripNoiseCodes(trgSeg);
 
-		// If no codes: don't check
-		if (( srcList.size() == 0 ) && ( trgList.size() == 0 )) return;
-		
-		// Prepare the verification of the open-close sequence
-		String srcOC = buildOpenCloseSequence(srcList);
-		String trgOC = buildOpenCloseSequence(trgList);
-		boolean checkOC = true;
-
-		// Check codes missing in target
-		Iterator<Code> srcIter = srcList.iterator();
-		while ( srcIter.hasNext() ) {
-			Code srcCode = srcIter.next();
-			Iterator<Code> trgIter = trgList.iterator();
-			while ( trgIter.hasNext() ) {
-				Code trgCode = trgIter.next();
-				if ( trgCode.getData().isEmpty() && srcCode.getData().isEmpty() ) {
-					if (( trgCode.getId() == srcCode.getId() ) && trgCode.getType().equals(srcCode.getType()) ) {
-						// Found: remove them from lists
-						trgIter.remove();
-						srcIter.remove();
-						break;
-					}
-				}
-				else if ( trgCode.getData().equals(srcCode.getData()) ) {
-					// Found: remove them from lists
-					trgIter.remove();
-					srcIter.remove();
-					break;
-				}
-			}
-		}
-
-		//--- Missing codes
-		// Check if any of the missing code is one of the code allowed to be missing
-		if ( !srcList.isEmpty() ) {
-			Iterator<Code> iter = srcList.iterator();
-			while ( iter.hasNext() ) {
-				if ( params.missingCodesAllowed.contains(iter.next().getData()) ) {
-					iter.remove();
-				}
-			}
-		}
-		// What is left in the source list are the codes missing in the target
-		if ( !srcList.isEmpty() ) {
-			reportIssue(IssueType.MISSING_CODE, tu, srcSeg.getId(),
-				"Missing codes in the target: "+buildCodeList(srcList),
-				0, -1, 0, -1, Issue.SEVERITY_MEDIUM, srcSeg.toString(), trgSeg.toString(),
-				srcList);
-			checkOC = false;
-		}
-		
-		//--- Extra codes
-		// Check if any of the extra code is one of the code allowed to be extra
-		if ( !trgList.isEmpty() ) {
-			Iterator<Code> iter = trgList.iterator();
-			while ( iter.hasNext() ) {
-				if ( params.extraCodesAllowed.contains(iter.next().getData()) ) {
-					iter.remove();
-				}
-			}
-		}
-		// What is left in the target list are the extra codes in the target
-		if ( !trgList.isEmpty() ) {
-			reportIssue(IssueType.EXTRA_CODE, tu, srcSeg.getId(),
-				"Extra codes in the target: "+buildCodeList(trgList),
-				0, -1, 0, -1, Issue.SEVERITY_MEDIUM, srcSeg.toString(), trgSeg.toString(),
-				trgList);
-			checkOC = false;
-		}
-		
-		// Check sequence issue in open-close codes
-		// This is checked only if we did not found already an error
-		if ( checkOC ) {
-			int j = 0;
-			boolean done = false;
-			for ( int i=0; i<srcOC.length(); i++ ) {
-				if ( srcOC.charAt(i) == 'p' ) continue;
-				// Else it's 'o' or 'c'
-				while ( true ) {
-					if ( trgOC.length() <= j ) {
-						// No more code of this type
-						reportIssue(IssueType.SUSPECT_CODE, tu, srcSeg.getId(),
-							"Suspect sequence of opening and closing target codes.",
-							0, -1, 0, -1, Issue.SEVERITY_MEDIUM, srcSeg.toString(), trgSeg.toString(),
-							trgList);
-						done = true;
-						break;
-					}
-					// If it's a placeholder, move to the next code
-					if ( trgOC.charAt(j) == 'p' ) {
-						j++;
-						continue;
-					}
-					// Else: it's a 'o' or 'c'
-					if ( trgOC.charAt(j) != srcOC.charAt(i) ) {
-						// Error in sequence
-						reportIssue(IssueType.SUSPECT_CODE, tu, srcSeg.getId(),
-							String.format("Suspect sequence of opening and closing codes in the target (code %d).", i+1),
-							0, -1, 0, -1, Issue.SEVERITY_MEDIUM, srcSeg.toString(), trgSeg.toString(),
-							trgList);
-						done = true;
-						break;
-					}
-					j++;
-					break; // This code has been checekd
-				}
-				if ( done ) break;
-			}
-		}
-		
-	}
-	
-	private String buildOpenCloseSequence (ArrayList<Code> list) {
+	/**
+	 * Gets a report of the time spent in each check since the start of the process.
+	 * With several threads the times are the sum of the times spent in all threads.
+	 * @return the report, one line per check.
+	 */
+	String getTimingReport () {
+		if ( checkers == null ) return "";
+		completeProcess();
+		long[] totals = new long[TextUnitChecker.CHECKNAMES.length+1];
+		for ( TextUnitChecker checker : checkers ) {
+			checker.addTimes(totals);
+		}
+		long total = totals[TextUnitChecker.CHECKNAMES.length];
 		StringBuilder sb = new StringBuilder();
-		for ( Code code : list ) {
-			switch ( code.getTagType() ) {
-			case OPENING:
-				sb.append("o");
-				break;
-			case CLOSING:
-				sb.append("c");
-				break;
-			case PLACEHOLDER:
-				if ( true ) {
-					String tmp = code.getData();
-					char ch = 'p';
-					if ( !Util.isEmpty(tmp) && params.getGuessOpenClose() ) {
-						if ( tmp.startsWith("</") ) ch = 'c';
-						else if ( tmp.startsWith("<") ) ch = 'o';
-						// Make sure the open is not an empty
-						if ( tmp.endsWith("/>") ) ch = 'p';
-					}
-					// Now add only if it's an open or close
-					sb.append(ch);
-				}
-			}
+		for ( int i=0; i<TextUnitChecker.CHECKNAMES.length; i++ ) {
+			if ( totals[i] == 0 ) continue; // Check not done
+			sb.append(String.format("%s: %.1f ms (%.1f%%)\n", TextUnitChecker.CHECKNAMES[i],
+				totals[i]/1000000.0, (total==0 ? 0.0 : (totals[i]*100.0)/total)));
 		}
+		sb.append(String.format("Total: %.1f ms (%d thread(s))\n", total/1000000.0, checkers.length));
 		return sb.toString();
 	}
 	
-	private void checkCorruptedCharacters (String srcOri,
-		String trgOri,
-		ITextUnit tu)
-	{
-		Matcher m = corruption.matcher(trgOri);
-		if ( m.find() ) { // Getting one match is enough
-			reportIssue(IssueType.SUSPECT_PATTERN, tu, null,
-				String.format("Possible corrupted characters in the target (for example: \"%s\").", m.group()),
-				0, -1, m.start(), m.end(), Issue.SEVERITY_HIGH, srcOri, trgOri, null);
-		}
+	/**
+	 * Stops the threads used to check the text units, if any.
+	 */
+	void shutdown () {
+		if ( executor != null ) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		pending = null;
+		running = null;
+		runningTasks = null;
 	}
-	
-	private void checkWhiteSpaces (String srcOri,
-		String trgOri,
-		ITextUnit tu)
-	{
-		// Check for leading whitespaces
-		if ( params.getLeadingWS() ) {
-			
-			// Missing ones
-			for ( int i=0; i<srcOri.length(); i++ ) {
-				if ( Character.isWhitespace(srcOri.charAt(i)) ) {
-					if ( srcOri.length() > i ) {
-						if ( trgOri.charAt(i) != srcOri.charAt(i) ) {
-							reportIssue(IssueType.MISSINGORDIFF_LEADINGWS, tu, null,
-								String.format("Missing or different leading white space at position %d.", i),
-								i, i+1, 0, -1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
-							break;
-						}
-					}
-					else {
-						reportIssue(IssueType.MISSING_LEADINGWS, tu, null,
-							String.format("Missing leading white space at position %d.", i),
-							i, i+1, 0, -1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
-					}
-				}
-				else break;
-			}
 
-			// Extra ones
-			for ( int i=0; i<trgOri.length(); i++ ) {
-				if ( Character.isWhitespace(trgOri.charAt(i)) ) {
-					if ( srcOri.length() > i ) {
-						if ( srcOri.charAt(i) != trgOri.charAt(i) ) {
-							reportIssue(IssueType.EXTRAORDIFF_LEADINGWS, tu, null,
-								String.format("Extra or different leading white space at position %d.", i),
-								0, -1, i, i+1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
-							break;
-						}
-					}
-					else {
-						reportIssue(IssueType.EXTRA_LEADINGWS, tu, null,
-							String.format("Extra leading white space at position %d.", i),
-							0, -1, i, i+1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
+	private void startBatch () {
+		running = pending;
+		pending = new ArrayList<Entry>();
+		runningTasks = new ArrayList<Future<Void>>(checkers.length);
+		final List<Entry> batch = running;
+		for ( int i=0; i<checkers.length; i++ ) {
+			final int first = i;
+			final TextUnitChecker checker = checkers[i];
+			// Each thread takes every n-th text unit, so the slow ones are spread out
+			runningTasks.add(executor.submit(new Callable<Void>() {
+				public Void call () {
+					for ( int j=first; j<batch.size(); j+=checkers.length ) {
+						Entry entry = batch.get(j);
+						entry.issues = new ArrayList<Issue>();
+						checker.check(entry.tu, entry.docId, entry.issues);
 					}
+					return null;
 				}
-				else break;
-			}
+			}));
 		}
-		
-		// Check for trailing whitespaces
-		if ( params.getTrailingWS() ) {
-
-			// Missing ones
-			int j = trgOri.length()-1;
-			for ( int i=srcOri.length()-1; i>=0; i-- ) {
-				if ( Character.isWhitespace(srcOri.charAt(i)) ) {
-					if ( j >= 0 ) {
-						if ( trgOri.charAt(j) != srcOri.charAt(i) ) {
-							reportIssue(IssueType.MISSINGORDIFF_TRAILINGWS, tu, null,
-								String.format("Missing or different trailing white space at position %d", i),
-								i, i+1, 0, -1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
-							break;
-						}
-					}
-					else {
-						reportIssue(IssueType.MISSING_TRAILINGWS, tu, null,
-							String.format("Missing trailing white space at position %d.", i),
-							i, i+1, 0, -1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
-					}
-				}
-				else break;
-				j--;
-			}
-
-			// Extra ones
-			j = srcOri.length()-1;
-			for ( int i=trgOri.length()-1; i>=0; i-- ) {
-				if ( Character.isWhitespace(trgOri.charAt(i)) ) {
-					if ( j >= 0 ) {
-						if ( srcOri.charAt(j) != trgOri.charAt(i) ) {
-							reportIssue(IssueType.EXTRAORDIFF_TRAILINGWS, tu, null,
-								String.format("Extra or different trailing white space at position %d.", i),
-								0, -1, i, i+1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
-							break;
-						}
-					}
-					else {
-						reportIssue(IssueType.EXTRA_TRAILINGWS, tu, null,
-							String.format("Extra white trailing space at position %d.", i),
-							0, -1, i, i+1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
-					}
-				}
-				else break;
-				j--;
-			}
-		}
-
 	}
 
-	private void checkLengths (Segment srcSeg,
-		Segment trgSeg,
-		ITextUnit tu)
-	{
-		// Strip inline code markers to look at text only
-		int srcLen = TextUnitUtil.getText(srcSeg.text, null).length();
-		int trgLen = TextUnitUtil.getText(trgSeg.text, null).length();
-		int n;
-		
-		if ( params.getCheckAbsoluteMaxCharLength() ) {
-			if ( trgLen > params.getAbsoluteMaxCharLength() ) {
-				n = trgLen-params.getAbsoluteMaxCharLength();
-				reportIssue(IssueType.TARGET_LENGTH, tu, srcSeg.getId(),
-					String.format("The target is longer than %d (by %d).", params.getAbsoluteMaxCharLength(), n),
-					0, -1, params.getAbsoluteMaxCharLength(), trgLen, Issue.SEVERITY_HIGH, 
-					srcSeg.toString(), trgSeg.toString(), null);
+	private void waitForRunningBatch () {
+		if ( running == null ) return;
+		List<Entry> batch = running;
+		List<Future<Void>> tasks = runningTasks;
+		running = null;
+		runningTasks = null;
+		try {
+			for ( Future<Void> task : tasks ) {
+				task.get();
 			}
 		}
-		
-		if ( params.getCheckMaxCharLength() ) {
-			if ( srcLen <= params.getMaxCharLengthBreak() ) {
-				n = (srcLen==0 ? 0 : (int)((srcLen*params.getMaxCharLengthBelow())/100));
-			}
-			else {
-				n = (srcLen==0 ? 0 : (int)((srcLen*params.getMaxCharLengthAbove())/100));
-			}
-			if ( trgLen > n ) {
-				double d = (((float)trgLen)/(srcLen==0 ? 1.0 : ((float)srcLen)))*100.0;
-				reportIssue(IssueType.TARGET_LENGTH, tu, srcSeg.getId(),
-					String.format("The target is suspiciously longer than its source (%.2f%% of the source).", d),
-					0, -1, 0, -1, Issue.SEVERITY_LOW, 
-					srcSeg.toString(), trgSeg.toString(), null);
-			}
+		catch ( InterruptedException e ) {
+			cancel(tasks);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while checking text units.", e);
 		}
-
-		if ( params.getCheckMinCharLength() ) {
-			if ( srcLen <= params.getMinCharLengthBreak() ) {
-				n = (srcLen==0 ? 0 : (int)((srcLen*params.getMinCharLengthBelow())/100));
-			}
-			else {
-				n = (srcLen==0 ? 0 : (int)((srcLen*params.getMinCharLengthAbove())/100));
-			}
-			if ( trgSeg.text.getCodedText().length() < n ) {
-				double d = (((float)trgLen)/(srcLen==0 ? 1.0 : ((float)srcLen)))*100.0;
-				reportIssue(IssueType.TARGET_LENGTH, tu, srcSeg.getId(),
-					String.format("The target is suspiciously shorter than its source (%.2f%% of the source).", d),
-					0, -1, 0, -1, Issue.SEVERITY_LOW, 
-					srcSeg.toString(), trgSeg.toString(), null);
+		catch ( ExecutionException e ) {
+			cancel(tasks);
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException)e.getCause();
 			}
+			throw new RuntimeException("Error while checking text units.", e.getCause());
 		}
-	}
-	
-	private void checkSuspectPatterns (Segment srcSeg,
-		Segment trgSeg,
-		ITextUnit tu)
-	{
-		String trgCText = trgSeg.text.getCodedText();
-		
-		if ( params.getDoubledWord() ) {
-			Matcher m = patDoubledWords.matcher(trgCText);
-			while ( m.find() ) {
-				// Check against the exceptions
-				// Use the lowercase of the word enclosed in ';' to match against the list
-				if ( doubledWordExceptions.indexOf(";"+m.group(1).toLowerCase()+";") == -1 ) {
-					// Not in the list: Not an exception, so we report it
-					reportIssue(IssueType.SUSPECT_PATTERN, tu, srcSeg.getId(),
-						String.format("Double word: \"%s\" found in the target.", m.group()),
-						0, -1,
-						fromFragmentToString(trgSeg.text, m.start()),
-						fromFragmentToString(trgSeg.text, m.end()),
-						Issue.SEVERITY_HIGH, 
-						srcSeg.toString(), trgSeg.toString(), null);
-				}
-			}
+		// Merge the issues in the order of the text units
+		for ( Entry entry : batch ) {
+			addIssues(entry);
 		}
 	}
 
-	private void checkPatterns (Segment srcSeg,
-		Segment trgSeg,
-		ITextUnit tu)
-	{
-		//--- Source-based search
-		// Get the source text
-		String srcCText = srcSeg.text.getCodedText();
-		// Search for any enabled pattern in the source
-		for ( PatternItem item : patterns ) {
-			// Skip disabled items and items that use the target as the base
-			if ( !item.enabled || !item.fromSource ) continue;
-			
-			Matcher srcM = item.getSourcePattern().matcher(srcCText);
-			
-			// Use a copy for the target: it may get modified for the search
-			StringBuilder trgCTextCopy = new StringBuilder(trgSeg.text.getCodedText());
-
-			int from = 0;
-			while ( srcM.find(from) ) {
-				// Get the source text corresponding to the match
-				String srcPart = srcCText.substring(srcM.start(), srcM.end());
-				int start = 0;
-				int end = 0;
-				boolean found = false;
-				boolean expectSame = item.target.equals(PatternItem.SAME);
-				// Try to get the corresponding part in the target
-				if ( expectSame ) {
-					// If the target pattern is defined as being the same as the source
-					// Look for the same text in the source.
-					found = ((start = trgCTextCopy.indexOf(srcPart)) != -1);
-					end = start + srcPart.length();
-				}
-				else { // Target part has its own pattern
-					Matcher trgM = item.getTargetPattern().matcher(trgCTextCopy);
-					found = trgM.find();
-					if ( found ) {
-						start = trgM.start();
-						end = trgM.end();
-					}
-				}
-				// Process result
-				if ( found ) { // Remove that match in case source has several occurrences to match
-					trgCTextCopy.delete(start, end);
-				}
-				else { // Generate an issue
-					String msg;
-					if ( expectSame ) {
-						msg = String.format("The source part \"%s\" is not in the target", srcPart);
-					}
-					else {
-						msg = String.format("The source part \"%s\" has no correspondance in the target", srcPart);
-					}
-					// Add the description of the rule triggering the warning
-					if ( !Util.isEmpty(item.description) ) {
-						msg += " (from rule: "+item.description+").";
-					}
-					reportIssue(IssueType.UNEXPECTED_PATTERN, tu, srcSeg.getId(), msg,
-						fromFragmentToString(srcSeg.text, srcM.start()),
-						fromFragmentToString(srcSeg.text, srcM.end()),
-						0, -1, item.severity,
-						srcSeg.toString(), trgSeg.toString(), null);
-				}
-				
-				from = srcM.end();
-			}
+	private void cancel (List<Future<Void>> tasks) {
+		for ( Future<Void> task : tasks ) {
+			task.cancel(true);
 		}
+	}
 
-		//--- Target-based search
-		// Get the target text
-		String trgCText = trgSeg.text.getCodedText();
-		// Search for any enabled pattern in the source
-		for ( PatternItem item : patterns ) {
-			// Skip disabled items and items that use the source as the base
-			if ( !item.enabled || item.fromSource ) continue;
-			
-			Matcher trgM = item.getTargetPattern().matcher(trgCText);
-			
-			// Use a copy for the source: it may get modified for the search
-			StringBuilder srcCTextCopy = new StringBuilder(srcSeg.text.getCodedText());
-
-			while ( trgM.find() ) {
-				// Get the source text corresponding to the match
-				String trgPart = trgCText.substring(trgM.start(), trgM.end());
-				int start, end;
-				boolean found = false;
-				boolean expectSame = item.source.equals(PatternItem.SAME);
-				// Try to get the corresponding part in the source
-				if ( expectSame ) {
-					// If the source pattern is defined as being the same as the target
-					// Look for the same text in the source.
-					found = ((start = srcCTextCopy.indexOf(trgPart)) != -1);
-					end = start + trgPart.length();
-				}
-				else { // Source part has its own pattern
-					Matcher srcM = item.getSourcePattern().matcher(srcCTextCopy);
-					found = srcM.find();
-					start = srcM.start();
-					end = srcM.end();
-				}
-				// Process result
-				if ( found ) { // Remove that match in case target has several occurrences to match
-					srcCTextCopy.delete(start, end);
-				}
-				else { // Generate an issue
-					String msg;
-					if ( expectSame ) {
-						msg = String.format("The target part \"%s\" is not in the source.", trgPart);
-					}
-					else {
-						msg = String.format("The target part \"%s\" has no correspondance in the source.", trgPart);
-					}
-					reportIssue(IssueType.UNEXPECTED_PATTERN, tu, srcSeg.getId(), msg, 0, -1,
-						fromFragmentToString(trgSeg.text, trgM.start()),
-						fromFragmentToString(trgSeg.text, trgM.end()),
-						item.severity,
-						srcSeg.toString(), trgSeg.toString(), null);
-				}
+	private void addIssues (Entry entry) {
+		for ( Issue issue : entry.issues ) {
+			if ( entry.sigList != null ) {
+				// Disable any issue for which we have the signature in the list
+				issue.enabled = !entry.sigList.contains(issue.getSignature());
 			}
-		}
-	}
-	
-	private void reportIssue (IssueType issueType,
-		ITextUnit tu,
-		String segId,
-		String message,
-		int srcStart,
-		int srcEnd,
-		int trgStart,
-		int trgEnd,
-		int severity,
-		String srcOri,
-		String trgOri,
-		Object extra)
-	{
-		Issue issue = new Issue(currentDocId, issueType, tu.getId(), segId, message,
-			srcStart, srcEnd, trgStart, trgEnd, severity, tu.getName());
-		issue.extra = extra;
-		issues.add(issue);
-		issue.enabled = true;
-		issue.oriSource = srcOri;
-		issue.oriTarget = trgOri;
-		
-		if ( sigList != null ) {
-			// Disable any issue for which we have the signature in the list
-			issue.enabled = !sigList.contains(issue.getSignature());
+			issues.add(issue);
 		}
 	}
 
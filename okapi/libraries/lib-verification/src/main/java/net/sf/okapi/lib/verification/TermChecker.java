@@ -42,12 +42,35 @@ public class TermChecker {
 	private SimpleTB ta;
 	private boolean stringSearch;
 	private boolean betweenCodes;
+	private boolean folding;
 	
 	public void initialize (SimpleTB termAccess,
 		LocaleId srcLoc,
 		LocaleId trgLoc,
 		boolean stringSearch,
 		boolean betweenCodes)
+	{
+		initialize(termAccess, srcLoc, trgLoc, stringSearch, betweenCodes, false, false);
+	}
+	
+	/**
+	 * Initializes the checker and its term base.
+	 * @param termAccess the term base to use.
+	 * @param srcLoc the source locale.
+	 * @param trgLoc the target locale.
+	 * @param stringSearch true to verify using strings matching, false to use terms matching.
+	 * @param betweenCodes true if the strings must be between inline codes.
+	 * @param ignoreCase true to match the strings regardless of their case (strings matching only).
+	 * @param ignoreDiacritics true to match the strings regardless of their diacritics
+	 * (strings matching only).
+	 */
+	public void initialize (SimpleTB termAccess,
+		LocaleId srcLoc,
+		LocaleId trgLoc,
+		boolean stringSearch,
+		boolean betweenCodes,
+		boolean ignoreCase,
+		boolean ignoreDiacritics)
 	{
 		issues = new ArrayList<Issue>();
 		this.ta = termAccess;
@@ -55,7 +78,26 @@ public class TermChecker {
 		this.trgLoc = trgLoc;
 		this.stringSearch = stringSearch;
 		this.betweenCodes = betweenCodes;
-		ta.initialize(stringSearch, betweenCodes);
+		this.folding = ( ignoreCase || ignoreDiacritics );
+		ta.initialize(stringSearch, betweenCodes, ignoreCase, ignoreDiacritics);
+	}
+	
+	/**
+	 * Creates a new checker using the same term base and options as this one, without
+	 * initializing the term base again. Each checker has its own list of issues, so
+	 * several checkers created this way can verify segments at the same time.
+	 * @return a new initialized checker.
+	 */
+	public TermChecker createCopy () {
+		TermChecker copy = new TermChecker();
+		copy.issues = new ArrayList<Issue>();
+		copy.ta = ta;
+		copy.srcLoc = srcLoc;
+		copy.trgLoc = trgLoc;
+		copy.stringSearch = stringSearch;
+		copy.betweenCodes = betweenCodes;
+		copy.folding = folding;
+		return copy;
 	}
 	
 	public int verify (URI docId,
@@ -106,7 +148,14 @@ public class TermChecker {
 		List<TermHit> srcList = ta.getExistingStrings(srcSeg.text, srcLoc, trgLoc);
 		
 		// Get the list of the terms in the target text (based on the source list)
-		List<TermHit> trgList = getExistingTargetStrings(trgSeg.text, srcList, betweenCodes);
+		List<TermHit> trgList;
+		if ( folding ) {
+			// The target strings must be matched with the same folding as the source strings
+			trgList = ta.getExistingStrings(trgSeg.text, trgLoc, srcLoc);
+		}
+		else {
+			trgList = getExistingTargetStrings(trgSeg.text, srcList, betweenCodes);
+		}
 		
 		// Remove proper correspondences 
 		removeMatches(srcList, trgList);
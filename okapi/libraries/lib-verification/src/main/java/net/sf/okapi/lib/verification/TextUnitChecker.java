@@ -0,0 +1,934 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.lib.verification;
+
+import java.net.URI;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+
+import net.sf.okapi.common.Util;
+import net.sf.okapi.common.resource.Code;
+import net.sf.okapi.common.resource.ISegments;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.Property;
+import net.sf.okapi.common.resource.Segment;
+import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextUnitUtil;
+
+/**
+ * Runs the checks of a {@link CheckPlan} on text units.
+ * <p>A checker holds the objects that cannot be shared between threads (matchers, character
+ * encoder, term checker), so each thread must use its own checker. Several checkers can share
+ * the same plan. The checker also records the time spent in each check.
+ */
+class TextUnitChecker {
+
+	static final int CODES = 0;
+	static final int SAMEASSOURCE = 1;
+	static final int PATTERNS = 2;
+	static final int TERMS = 3;
+	static final int LENGTHS = 4;
+	static final int DOUBLEDWORDS = 5;
+	static final int LANGUAGETOOL = 6;
+	static final int CORRUPTION = 7;
+	static final int WHITESPACES = 8;
+	static final int CHARACTERS = 9;
+
+	static final String[] CHECKNAMES = {
+		"Inline codes",
+		"Target same as source",
+		"Patterns",
+		"Terminology",
+		"Lengths",
+		"Doubled words",
+		"LanguageTool",
+		"Corrupted characters",
+		"White spaces",
+		"Allowed characters"
+	};
+
+	private final CheckPlan plan;
+	private final Parameters params;
+	private final Matcher wordChars;
+	private final Matcher doubledWords;
+	private final Matcher corruption;
+	private final Matcher[] sameMatchers;
+	// For each pattern: the matcher of the searched side, and of the other side (null for <same>)
+	private final Matcher[][] sourceMatchers;
+	private final Matcher[][] targetMatchers;
+	private final CharsetEncoder encoder;
+	private final Matcher extraCharsAllowed;
+	private final TermChecker termChecker;
+	private LanguageToolConnector ltConn;
+	private final long[] times = new long[CHECKNAMES.length];
+	private long totalTime;
+
+	private URI docId;
+	private List<Issue> issues;
+
+	/**
+	 * Creates a new checker for a given plan.
+	 * @param plan the plan to use.
+	 * @param ltConn the LanguageTool connector to use, or null to not run that check.
+	 * The connector cannot be shared between checkers.
+	 */
+	TextUnitChecker (CheckPlan plan,
+		LanguageToolConnector ltConn)
+	{
+		this.plan = plan;
+		this.params = plan.params;
+		this.ltConn = ltConn;
+		wordChars = CheckPlan.WORDCHARS.matcher("");
+		doubledWords = CheckPlan.DOUBLEDWORDS.matcher("");
+		corruption = CheckPlan.CORRUPTION.matcher("");
+
+		sameMatchers = new Matcher[plan.samePatterns.length];
+		for ( int i=0; i<sameMatchers.length; i++ ) {
+			sameMatchers[i] = plan.samePatterns[i].source.matcher("");
+		}
+		sourceMatchers = new Matcher[plan.sourcePatterns.length][];
+		for ( int i=0; i<sourceMatchers.length; i++ ) {
+			CheckPlan.CompiledPattern cp = plan.sourcePatterns[i];
+			sourceMatchers[i] = new Matcher[] { cp.source.matcher(""),
+				(cp.target == null) ? null : cp.target.matcher("") };
+		}
+		targetMatchers = new Matcher[plan.targetPatterns.length][];
+		for ( int i=0; i<targetMatchers.length; i++ ) {
+			CheckPlan.CompiledPattern cp = plan.targetPatterns[i];
+			targetMatchers[i] = new Matcher[] { cp.target.matcher(""),
+				(cp.source == null) ? null : cp.source.matcher("") };
+		}
+
+		encoder = (plan.charset == null) ? null : plan.charset.newEncoder();
+		extraCharsAllowed = (plan.extraCharsAllowed == null) ? null : plan.extraCharsAllowed.matcher("");
+		termChecker = (plan.termChecker == null) ? null : plan.termChecker.createCopy();
+	}
+
+	/**
+	 * Adds the time spent in each check by this checker to given totals.
+	 * @param totals the totals in nanoseconds, one per check, plus the total time for all checks.
+	 */
+	void addTimes (long[] totals) {
+		for ( int i=0; i<times.length; i++ ) {
+			totals[i] += times[i];
+		}
+		totals[times.length] += totalTime;
+	}
+
+	private boolean hasMeaningfullText (TextFragment frag) {
+		// Do we have at least one character that is part of the character set for a "word"
+		// Note: digits are considered part of a "word"
+		return wordChars.reset(frag.getCodedText()).find();
+	}
+	
+	/**
+	 * Checks a text unit.
+	 * @param tu the text unit to check.
+	 * @param docId the URI of the document of the text unit.
+	 * @param issues the list where to add the issues found.
+	 */
+	void check (ITextUnit tu,
+		URI docId,
+		List<Issue> issues)
+	{
+		long start = System.nanoTime();
+		this.docId = docId;
+		this.issues = issues;
+		try {
+			checkTextUnit(tu);
+		}
+		finally {
+			this.issues = null;
+			totalTime += (System.nanoTime()-start);
+		}
+	}
+	
+	private void checkTextUnit (ITextUnit tu) {
+		// Skip non-translatable entries
+		if ( !tu.isTranslatable() ) return;
+		
+		// Get the containers
+		TextContainer srcCont = tu.getSource();
+		TextContainer trgCont = tu.getTarget(plan.trgLoc);
+		
+		// Check if we have a target (even if option disabled)
+		if ( trgCont == null ) {
+			// No translation available
+			reportIssue(IssueType.MISSING_TARGETTU, tu, null,
+				"Missing translation.",
+				0, -1, 0, -1, Issue.SEVERITY_HIGH, srcCont.toString(), "", null);
+			return;
+		}
+		
+		// Skip non-approved entries if requested
+		if ( params.getScope() != Parameters.SCOPE_ALL ) {
+			Property prop = trgCont.getProperty(Property.APPROVED);
+			if (( prop != null ) && prop.getValue().equals("yes") ) { // Approved
+				if ( params.getScope() == Parameters.SCOPE_NOTAPPROVEDONLY ) return;
+			}
+			else { // Not approved
+				if ( params.getScope() == Parameters.SCOPE_APPROVEDONLY ) return;
+			}
+		}
+
+		ISegments srcSegs = srcCont.getSegments();
+		ISegments trgSegs = trgCont.getSegments();
+		
+		// Check hidden text (e.g. RTF)
+		Property prop = trgCont.getProperty("hashiddentext");
+		if ( prop != null ) {
+			// There is a hidden section
+			Scanner scan = new Scanner(prop.getValue()).useDelimiter(";");
+			TextFragment tf = trgCont.getUnSegmentedContentCopy();
+			int start = QualityChecker.fromFragmentToString(tf, scan.nextInt());
+			int end = QualityChecker.fromFragmentToString(tf, scan.nextInt());
+			reportIssue(IssueType.SUSPECT_PATTERN, tu, null,
+				"Target content has at least one hidden part.",
+				0, -1, start, end, Issue.SEVERITY_HIGH, srcCont.toString(), trgCont.toString(), null);
+		}
+		
+		for ( Segment srcSeg : srcSegs ) {
+			Segment trgSeg = trgSegs.get(srcSeg.getId());
+			if ( trgSeg == null ) {
+				reportIssue(IssueType.MISSING_TARGETSEG, tu, srcSeg.getId(),
+					"The source segment has no corresponding target segment.",
+					0, -1, 0, -1, Issue.SEVERITY_HIGH, srcSeg.toString(), "", null);
+				continue; // Cannot go further for that segment
+			}
+			
+			// Check for empty target, if requested
+			if ( params.getEmptyTarget() ) {
+				if ( trgSeg.text.isEmpty() && !srcSeg.text.isEmpty() ) {
+					reportIssue(IssueType.EMPTY_TARGETSEG, tu, srcSeg.getId(),
+						"The target segment is empty, but its source is not empty.",
+						0, -1, 0, -1, Issue.SEVERITY_HIGH, srcSeg.toString(), "", null);
+					continue; // No need to check more if it's empty
+				}
+			}
+			// Check for empty source when target is not empty, if requested
+			if ( params.getEmptySource() ) {
+				if ( srcSeg.text.isEmpty() && !trgSeg.text.isEmpty() ) {
+					reportIssue(IssueType.EMPTY_SOURCESEG, tu, srcSeg.getId(),
+						"The target segment is not empty, but its source is empty.",
+						0, -1, 0, -1, Issue.SEVERITY_HIGH, srcSeg.toString(), "", null);
+					continue; // No need to check more if the source is empty
+				}
+			}
+			
+			// Check code differences, if requested
+			if ( params.getCodeDifference() ) {
+				long start = System.nanoTime();
+				checkInlineCodes(srcSeg, trgSeg, tu);
+				times[CODES] += (System.nanoTime()-start);
+			}
+
+			// Check for target is the same as source, if requested
+			if ( params.getTargetSameAsSource() ) {
+				long start = System.nanoTime();
+				if ( hasMeaningfullText(srcSeg.text) ) {
+					if ( srcSeg.text.compareTo(trgSeg.text, params.getTargetSameAsSourceWithCodes()) == 0 ) {
+						// Is the string of the cases where target should be the same? (URL, etc.)
+						boolean warn = true;
+						String ctext = srcSeg.text.getCodedText();
+						for ( Matcher m : sameMatchers ) {
+							m.reset(ctext);
+							if ( m.find() ) {
+								warn = !ctext.equals(m.group());
+								break;
+							}
+						}
+						if ( warn ) {
+							reportIssue(IssueType.TARGET_SAME_AS_SOURCE, tu, srcSeg.getId(),
+								"Translation is the same as the source.",
+								0, -1, 0, -1, Issue.SEVERITY_MEDIUM, srcSeg.toString(), trgSeg.toString(), null);
+						}
+					}
+				}
+				times[SAMEASSOURCE] += (System.nanoTime()-start);
+			}
+			
+			// Check for patterns, if requested
+			if ( params.getCheckPatterns() ) {
+				long start = System.nanoTime();
+				checkPatterns(srcSeg, trgSeg, tu);
+				times[PATTERNS] += (System.nanoTime()-start);
+			}
+			
+			if ( termChecker != null ) {
+				long start = System.nanoTime();
+				if ( termChecker.verify(docId, tu, srcSeg, trgSeg) > 0 ) {
+					for ( Issue issue : termChecker.getIssues() ) {
+						reportIssue(issue.issueType, tu, issue.segId, issue.message, issue.srcStart, issue.srcEnd,
+							issue.trgStart, issue.trgEnd, issue.severity, srcSeg.toString(), trgSeg.toString(), null);
+					}
+				}
+				times[TERMS] += (System.nanoTime()-start);
+			}
+			
+			// Check length
+			if ( params.getCheckMaxCharLength() || params.getCheckMinCharLength() || params.getCheckAbsoluteMaxCharLength() ) {
+				long start = System.nanoTime();
+				checkLengths(srcSeg, trgSeg, tu);
+				times[LENGTHS] += (System.nanoTime()-start);
+			}
+			
+			// Check all suspect patterns
+			if ( params.getDoubledWord() ) {
+				long start = System.nanoTime();
+				checkSuspectPatterns(srcSeg, trgSeg, tu);
+				times[DOUBLEDWORDS] += (System.nanoTime()-start);
+			}
+			
+			// Run a check with LanguageTool connector
+			if ( ltConn != null ) {
+				long start = System.nanoTime();
+				if ( ltConn.checkSegment(docId, srcSeg, trgSeg, tu) > 0 ) {
+					for ( Issue issue : ltConn.getIssues() ) {
+						reportIssue(issue.issueType, tu, issue.segId, issue.message, issue.srcStart, issue.srcEnd,
+							issue.trgStart, issue.trgEnd, issue.severity, srcSeg.toString(), trgSeg.toString(), null);
+						if ( issue.srcEnd == -99 ) {
+							// Special marker indicating a server error
+							ltConn = null; // Do not check it again until next re-processing
+						}
+					}
+				}
+				times[LANGUAGETOOL] += (System.nanoTime()-start);
+			}
+		
+		}
+
+		// Check for orphan target segments
+		for ( Segment trgSeg : trgSegs ) {
+			Segment srcSeg = srcSegs.get(trgSeg.getId());
+			if ( srcSeg == null ) {
+				reportIssue(IssueType.EXTRA_TARGETSEG, tu, trgSeg.getId(),
+					String.format("Extra target segment (id=%s).", trgSeg.getId()),
+					0, -1, 0, -1, Issue.SEVERITY_HIGH, "", trgSeg.toString(), null);
+				continue; // Cannot go further for that segment
+			}
+		}
+		
+		String srcOri = null;
+		if ( srcCont.contentIsOneSegment() ) {
+			srcOri = srcCont.toString();
+		}
+		else {
+			srcOri = srcCont.getUnSegmentedContentCopy().toText();
+		}
+		
+		String trgOri = null;
+		if ( trgCont.contentIsOneSegment() ) {
+			trgOri = trgCont.toString();
+		}
+		else {
+			trgOri = trgCont.getUnSegmentedContentCopy().toText();
+		}
+
+		if ( params.getCorruptedCharacters() ) {
+			long start = System.nanoTime();
+			checkCorruptedCharacters(srcOri, trgOri, tu);
+			times[CORRUPTION] += (System.nanoTime()-start);
+		}
+		
+		long start = System.nanoTime();
+		checkWhiteSpaces(srcOri, trgOri, tu);
+		times[WHITESPACES] += (System.nanoTime()-start);
+		
+		if ( params.getCheckCharacters() ) {
+			start = System.nanoTime();
+			checkCharacters(srcOri, trgOri, tu);
+			times[CHARACTERS] += (System.nanoTime()-start);
+		}
+	}
+	
+	private void checkCharacters (String srcOri,
+		String trgOri,
+		ITextUnit tu)
+	{
+		StringBuilder badChars = new StringBuilder();
+		int pos = -1;
+		int badChar = 0;
+		int count = 0;
+		
+		for ( int i=0; i<trgOri.length(); i++ ) {
+			char ch = trgOri.charAt(i);
+			
+			if ( encoder != null ) {
+				if ( encoder.canEncode(ch) ) {
+					continue; // Allowed, move to the next character
+				}
+				else { // Not included in the target charset
+					// Check if it is included in the extra characters list
+					if ( extraCharsAllowed != null ) {
+						if ( extraCharsAllowed.reset(trgOri.subSequence(i, i+1)).find() ) {
+							// Part of the extra character list: it's OK
+							continue; // Move to the next character
+						}
+						// Else: not allowed: fall thru
+					}
+				}
+			}
+			else { // Not charset defined, try just the extra characters list
+				if ( extraCharsAllowed != null ) {
+					if ( extraCharsAllowed.reset(trgOri.subSequence(i, i+1)).find() ) {
+						// Part of the extra character list: it's OK
+						continue; // Move to the next character
+					}
+					// Else: not allowed: fall thru
+				}
+				// Else: not in charset, nor in extra characters list: not allowed
+			}
+		
+			// The character is not allowed: add the error
+			if ( ++count > 1 ) {
+				if ( badChars.indexOf(String.valueOf(ch)) == -1 ) { 
+					badChars.append(ch);
+				}
+			}
+			else {
+				pos = i;
+				badChar = ch;
+			}
+		}
+
+		// Do we have one or more errors?
+		if ( pos > -1 ) {
+			if ( count > 1 ) {
+				reportIssue(IssueType.ALLOWED_CHARACTERS, tu, null,
+					String.format("The character '%c' (U+%04X) is not allowed in the target text."
+						+ " Other forbidden characters found: ", badChar, (int)badChar)+badChars.toString(),
+						0, -1, pos, pos+1, Issue.SEVERITY_MEDIUM, srcOri, trgOri, null);
+			}
+			else {
+				reportIssue(IssueType.ALLOWED_CHARACTERS, tu, null,
+					String.format("The character '%c' (U+%04X) is not allowed in the target text.", badChar, (int)badChar),
+					0, -1, pos, pos+1, Issue.SEVERITY_MEDIUM, srcOri, trgOri, null);
+			}
+		}
+		
+	}
+	
+	// Create a copy of the codes and strip out any that has empty data.
+	// They correspond to process-only codes like <df> in TTX or <mrk> in XLIFF
+	private ArrayList<Code> stripNoiseCodes (Segment seg) {
+		ArrayList<Code> list = new ArrayList<Code>(seg.text.getCodes());
+		Iterator<Code> iter = list.iterator();
+		while ( iter.hasNext() ) {
+			Code code = iter.next();
+			if ( params.getTypesToIgnore().indexOf(code.getType()+";") != -1 ) {
+				iter.remove();
+			}
+		}
+		return list;
+	}
+	
+	private String buildCodeList (List<Code> list) {
+		StringBuilder tmp = new StringBuilder();
+		for ( Code code : list ) {
+			if ( tmp.length() > 0 ) tmp.append(", ");
+			if ( code.getData().isEmpty() ) {
+				tmp.append(code.getOuterData().replaceAll("></x>", "/>"));
+			}
+			else { // Show the content
+				tmp.append("\""+code.getData()+"\"");
+			}
+		}
+		return tmp.toString();
+	}
+	
+	private void checkInlineCodes (Segment srcSeg,
+		Segment trgSeg,
+		ITextUnit tu)
+	{
+		ArrayList<Code> srcList = stripNoiseCodes(srcSeg);
+		ArrayList<Code> trgList = stripNoiseCodes(trgSeg);
+
+		// If no codes: don't check
+		if (( srcList.size() == 0 ) && ( trgList.size() == 0 )) return;
+		
+		// Prepare the verification of the open-close sequence
+		String srcOC = buildOpenCloseSequence(srcList);
+		String trgOC = buildOpenCloseSequence(trgList);
+		boolean checkOC = true;
+
+		// Check codes missing in target
+		Iterator<Code> srcIter = srcList.iterator();
+		while ( srcIter.hasNext() ) {
+			Code srcCode = srcIter.next();
+			Iterator<Code> trgIter = trgList.iterator();
+			while ( trgIter.hasNext() ) {
+				Code trgCode = trgIter.next();
+				if ( trgCode.getData().isEmpty() && srcCode.getData().isEmpty() ) {
+					if (( trgCode.getId() == srcCode.getId() ) && trgCode.getType().equals(srcCode.getType()) ) {
+						// Found: remove them from lists
+						trgIter.remove();
+						srcIter.remove();
+						break;
+					}
+				}
+				else if ( trgCode.getData().equals(srcCode.getData()) ) {
+					// Found: remove them from lists
+					trgIter.remove();
+					srcIter.remove();
+					break;
+				}
+			}
+		}
+
+		//--- Missing codes
+		// Check if any of the missing code is one of the code allowed to be missing
+		if ( !srcList.isEmpty() ) {
+			Iterator<Code> iter = srcList.iterator();
+			while ( iter.hasNext() ) {
+				if ( params.missingCodesAllowed.contains(iter.next().getData()) ) {
+					iter.remove();
+				}
+			}
+		}
+		// What is left in the source list are the codes missing in the target
+		if ( !srcList.isEmpty() ) {
+			reportIssue(IssueType.MISSING_CODE, tu, srcSeg.getId(),
+				"Missing codes in the target: "+buildCodeList(srcList),
+				0, -1, 0, -1, Issue.SEVERITY_MEDIUM, srcSeg.toString(), trgSeg.toString(),
+				srcList);
+			checkOC = false;
+		}
+		
+		//--- Extra codes
+		// Check if any of the extra code is one of the code allowed to be extra
+		if ( !trgList.isEmpty() ) {
+			Iterator<Code> iter = trgList.iterator();
+			while ( iter.hasNext() ) {
+				if ( params.extraCodesAllowed.contains(iter.next().getData()) ) {
+					iter.remove();
+				}
+			}
+		}
+		// What is left in the target list are the extra codes in the target
+		if ( !trgList.isEmpty() ) {
+			reportIssue(IssueType.EXTRA_CODE, tu, srcSeg.getId(),
+				"Extra codes in the target: "+buildCodeList(trgList),
+				0, -1, 0, -1, Issue.SEVERITY_MEDIUM, srcSeg.toString(), trgSeg.toString(),
+				trgList);
+			checkOC = false;
+		}
+		
+		// Check sequence issue in open-close codes
+		// This is checked only if we did not found already an error
+		if ( checkOC ) {
+			int j = 0;
+			boolean done = false;
+			for ( int i=0; i<srcOC.length(); i++ ) {
+				if ( srcOC.charAt(i) == 'p' ) continue;
+				// Else it's 'o' or 'c'
+				while ( true ) {
+					if ( trgOC.length() <= j ) {
+						// No more code of this type
+						reportIssue(IssueType.SUSPECT_CODE, tu, srcSeg.getId(),
+							"Suspect sequence of opening and closing target codes.",
+							0, -1, 0, -1, Issue.SEVERITY_MEDIUM, srcSeg.toString(), trgSeg.toString(),
+							trgList);
+						done = true;
+						break;
+					}
+					// If it's a placeholder, move to the next code
+					if ( trgOC.charAt(j) == 'p' ) {
+						j++;
+						continue;
+					}
+					// Else: it's a 'o' or 'c'
+					if ( trgOC.charAt(j) != srcOC.charAt(i) ) {
+						// Error in sequence
+						reportIssue(IssueType.SUSPECT_CODE, tu, srcSeg.getId(),
+							String.format("Suspect sequence of opening and closing codes in the target (code %d).", i+1),
+							0, -1, 0, -1, Issue.SEVERITY_MEDIUM, srcSeg.toString(), trgSeg.toString(),
+							trgList);
+						done = true;
+						break;
+					}
+					j++;
+					break; // This code has been checekd
+				}
+				if ( done ) break;
+			}
+		}
+		
+	}
+	
+	private String buildOpenCloseSequence (ArrayList<Code> list) {
+		StringBuilder sb = new StringBuilder();
+		for ( Code code : list ) {
+			switch ( code.getTagType() ) {
+			case OPENING:
+				sb.append("o");
+				break;
+			case CLOSING:
+				sb.append("c");
+				break;
+			case PLACEHOLDER:
+				if ( true ) {
+					String tmp = code.getData();
+					char ch = 'p';
+					if ( !Util.isEmpty(tmp) && params.getGuessOpenClose() ) {
+						if ( tmp.startsWith("</") ) ch = 'c';
+						else if ( tmp.startsWith("<") ) ch = 'o';
+						// Make sure the open is not an empty
+						if ( tmp.endsWith("/>") ) ch = 'p';
+					}
+					// Now add only if it's an open or close
+					sb.append(ch);
+				}
+			}
+		}
+		return sb.toString();
+	}
+	
+	private void checkCorruptedCharacters (String srcOri,
+		String trgOri,
+		ITextUnit tu)
+	{
+		Matcher m = corruption.reset(trgOri);
+		if ( m.find() ) { // Getting one match is enough
+			reportIssue(IssueType.SUSPECT_PATTERN, tu, null,
+				String.format("Possible corrupted characters in the target (for example: \"%s\").", m.group()),
+				0, -1, m.start(), m.end(), Issue.SEVERITY_HIGH, srcOri, trgOri, null);
+		}
+	}
+	
+	private void checkWhiteSpaces (String srcOri,
+		String trgOri,
+		ITextUnit tu)
+	{
+		// Check for leading whitespaces
+		if ( params.getLeadingWS() ) {
+			
+			// Missing ones
+			for ( int i=0; i<srcOri.length(); i++ ) {
+				if ( Character.isWhitespace(srcOri.charAt(i)) ) {
+					if ( srcOri.length() > i ) {
+						if ( trgOri.charAt(i) != srcOri.charAt(i) ) {
+							reportIssue(IssueType.MISSINGORDIFF_LEADINGWS, tu, null,
+								String.format("Missing or different leading white space at position %d.", i),
+								i, i+1, 0, -1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
+							break;
+						}
+					}
+					else {
+						reportIssue(IssueType.MISSING_LEADINGWS, tu, null,
+							String.format("Missing leading white space at position %d.", i),
+							i, i+1, 0, -1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
+					}
+				}
+				else break;
+			}
+
+			// Extra ones
+			for ( int i=0; i<trgOri.length(); i++ ) {
+				if ( Character.isWhitespace(trgOri.charAt(i)) ) {
+					if ( srcOri.length() > i ) {
+						if ( srcOri.charAt(i) != trgOri.charAt(i) ) {
+							reportIssue(IssueType.EXTRAORDIFF_LEADINGWS, tu, null,
+								String.format("Extra or different leading white space at position %d.", i),
+								0, -1, i, i+1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
+							break;
+						}
+					}
+					else {
+						reportIssue(IssueType.EXTRA_LEADINGWS, tu, null,
+							String.format("Extra leading white space at position %d.", i),
+							0, -1, i, i+1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
+					}
+				}
+				else break;
+			}
+		}
+		
+		// Check for trailing whitespaces
+		if ( params.getTrailingWS() ) {
+
+			// Missing ones
+			int j = trgOri.length()-1;
+			for ( int i=srcOri.length()-1; i>=0; i-- ) {
+				if ( Character.isWhitespace(srcOri.charAt(i)) ) {
+					if ( j >= 0 ) {
+						if ( trgOri.charAt(j) != srcOri.charAt(i) ) {
+							reportIssue(IssueType.MISSINGORDIFF_TRAILINGWS, tu, null,
+								String.format("Missing or different trailing white space at position %d", i),
+								i, i+1, 0, -1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
+							break;
+						}
+					}
+					else {
+						reportIssue(IssueType.MISSING_TRAILINGWS, tu, null,
+							String.format("Missing trailing white space at position %d.", i),
+							i, i+1, 0, -1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
+					}
+				}
+				else break;
+				j--;
+			}
+
+			// Extra ones
+			j = srcOri.length()-1;
+			for ( int i=trgOri.length()-1; i>=0; i-- ) {
+				if ( Character.isWhitespace(trgOri.charAt(i)) ) {
+					if ( j >= 0 ) {
+						if ( srcOri.charAt(j) != trgOri.charAt(i) ) {
+							reportIssue(IssueType.EXTRAORDIFF_TRAILINGWS, tu, null,
+								String.format("Extra or different trailing white space at position %d.", i),
+								0, -1, i, i+1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
+							break;
+						}
+					}
+					else {
+						reportIssue(IssueType.EXTRA_TRAILINGWS, tu, null,
+							String.format("Extra white trailing space at position %d.", i),
+							0, -1, i, i+1, Issue.SEVERITY_LOW, srcOri, trgOri, null);
+					}
+				}
+				else break;
+				j--;
+			}
+		}
+
+	}
+
+	private void checkLengths (Segment srcSeg,
+		Segment trgSeg,
+		ITextUnit tu)
+	{
+		// Strip inline code markers to look at text only
+		int srcLen = TextUnitUtil.getText(srcSeg.text, null).length();
+		int trgLen = TextUnitUtil.getText(trgSeg.text, null).length();
+		int n;
+		
+		if ( params.getCheckAbsoluteMaxCharLength() ) {
+			if ( trgLen > params.getAbsoluteMaxCharLength() ) {
+				n = trgLen-params.getAbsoluteMaxCharLength();
+				reportIssue(IssueType.TARGET_LENGTH, tu, srcSeg.getId(),
+					String.format("The target is longer than %d (by %d).", params.getAbsoluteMaxCharLength(), n),
+					0, -1, params.getAbsoluteMaxCharLength(), trgLen, Issue.SEVERITY_HIGH, 
+					srcSeg.toString(), trgSeg.toString(), null);
+			}
+		}
+		
+		if ( params.getCheckMaxCharLength() ) {
+			if ( srcLen <= params.getMaxCharLengthBreak() ) {
+				n = (srcLen==0 ? 0 : (int)((srcLen*params.getMaxCharLengthBelow())/100));
+			}
+			else {
+				n = (srcLen==0 ? 0 : (int)((srcLen*params.getMaxCharLengthAbove())/100));
+			}
+			if ( trgLen > n ) {
+				double d = (((float)trgLen)/(srcLen==0 ? 1.0 : ((float)srcLen)))*100.0;
+				reportIssue(IssueType.TARGET_LENGTH, tu, srcSeg.getId(),
+					String.format("The target is suspiciously longer than its source (%.2f%% of the source).", d),
+					0, -1, 0, -1, Issue.SEVERITY_LOW, 
+					srcSeg.toString(), trgSeg.toString(), null);
+			}
+		}
+
+		if ( params.getCheckMinCharLength() ) {
+			if ( srcLen <= params.getMinCharLengthBreak() ) {
+				n = (srcLen==0 ? 0 : (int)((srcLen*params.getMinCharLengthBelow())/100));
+			}
+			else {
+				n = (srcLen==0 ? 0 : (int)((srcLen*params.getMinCharLengthAbove())/100));
+			}
+			if ( trgSeg.text.getCodedText().length() < n ) {
+				double d = (((float)trgLen)/(srcLen==0 ? 1.0 : ((float)srcLen)))*100.0;
+				reportIssue(IssueType.TARGET_LENGTH, tu, srcSeg.getId(),
+					String.format("The target is suspiciously shorter than its source (%.2f%% of the source).", d),
+					0, -1, 0, -1, Issue.SEVERITY_LOW, 
+					srcSeg.toString(), trgSeg.toString(), null);
+			}
+		}
+	}
+	
+	private void checkSuspectPatterns (Segment srcSeg,
+		Segment trgSeg,
+		ITextUnit tu)
+	{
+		String trgCText = trgSeg.text.getCodedText();
+		
+		if ( params.getDoubledWord() ) {
+			Matcher m = doubledWords.reset(trgCText);
+			while ( m.find() ) {
+				// Check against the exceptions
+				// Use the lowercase of the word enclosed in ';' to match against the list
+				if ( plan.doubledWordExceptions.indexOf(";"+m.group(1).toLowerCase()+";") == -1 ) {
+					// Not in the list: Not an exception, so we report it
+					reportIssue(IssueType.SUSPECT_PATTERN, tu, srcSeg.getId(),
+						String.format("Double word: \"%s\" found in the target.", m.group()),
+						0, -1,
+						QualityChecker.fromFragmentToString(trgSeg.text, m.start()),
+						QualityChecker.fromFragmentToString(trgSeg.text, m.end()),
+						Issue.SEVERITY_HIGH, 
+						srcSeg.toString(), trgSeg.toString(), null);
+				}
+			}
+		}
+	}
+
+	private void checkPatterns (Segment srcSeg,
+		Segment trgSeg,
+		ITextUnit tu)
+	{
+		//--- Source-based search
+		// Get the source text
+		String srcCText = srcSeg.text.getCodedText();
+		// Search for any enabled pattern in the source
+		for ( int p=0; p<plan.sourcePatterns.length; p++ ) {
+			CheckPlan.CompiledPattern item = plan.sourcePatterns[p];
+			Matcher srcM = sourceMatchers[p][0].reset(srcCText);
+			
+			// Use a copy for the target: it may get modified for the search
+			StringBuilder trgCTextCopy = new StringBuilder(trgSeg.text.getCodedText());
+
+			int from = 0;
+			while ( srcM.find(from) ) {
+				// Get the source text corresponding to the match
+				String srcPart = srcCText.substring(srcM.start(), srcM.end());
+				int start = 0;
+				int end = 0;
+				boolean found = false;
+				boolean expectSame = ( item.target == null );
+				// Try to get the corresponding part in the target
+				if ( expectSame ) {
+					// If the target pattern is defined as being the same as the source
+					// Look for the same text in the source.
+					found = ((start = trgCTextCopy.indexOf(srcPart)) != -1);
+					end = start + srcPart.length();
+				}
+				else { // Target part has its own pattern
+					Matcher trgM = sourceMatchers[p][1].reset(trgCTextCopy);
+					found = trgM.find();
+					if ( found ) {
+						start = trgM.start();
+						end = trgM.end();
+					}
+				}
+				// Process result
+				if ( found ) { // Remove that match in case source has several occurrences to match
+					trgCTextCopy.delete(start, end);
+				}
+				else { // Generate an issue
+					String msg;
+					if ( expectSame ) {
+						msg = String.format("The source part \"%s\" is not in the target", srcPart);
+					}
+					else {
+						msg = String.format("The source part \"%s\" has no correspondance in the target", srcPart);
+					}
+					// Add the description of the rule triggering the warning
+					if ( !Util.isEmpty(item.description) ) {
+						msg += " (from rule: "+item.description+").";
+					}
+					reportIssue(IssueType.UNEXPECTED_PATTERN, tu, srcSeg.getId(), msg,
+						QualityChecker.fromFragmentToString(srcSeg.text, srcM.start()),
+						QualityChecker.fromFragmentToString(srcSeg.text, srcM.end()),
+						0, -1, item.severity,
+						srcSeg.toString(), trgSeg.toString(), null);
+				}
+				
+				from = srcM.end();
+			}
+		}
+
+		//--- Target-based search
+		// Get the target text
+		String trgCText = trgSeg.text.getCodedText();
+		// Search for any enabled pattern in the source
+		for ( int p=0; p<plan.targetPatterns.length; p++ ) {
+			CheckPlan.CompiledPattern item = plan.targetPatterns[p];
+			Matcher trgM = targetMatchers[p][0].reset(trgCText);
+			
+			// Use a copy for the source: it may get modified for the search
+			StringBuilder srcCTextCopy = new StringBuilder(srcSeg.text.getCodedText());
+
+			while ( trgM.find() ) {
+				// Get the source text corresponding to the match
+				String trgPart = trgCText.substring(trgM.start(), trgM.end());
+				int start, end;
+				boolean found = false;
+				boolean expectSame = ( item.source == null );
+				// Try to get the corresponding part in the source
+				if ( expectSame ) {
+					// If the source pattern is defined as being the same as the target
+					// Look for the same text in the source.
+					found = ((start = srcCTextCopy.indexOf(trgPart)) != -1);
+					end = start + trgPart.length();
+				}
+				else { // Source part has its own pattern
+					Matcher srcM = targetMatchers[p][1].reset(srcCTextCopy);
+					found = srcM.find();
+					start = srcM.start();
+					end = srcM.end();
+				}
+				// Process result
+				if ( found ) { // Remove that match in case target has several occurrences to match
+					srcCTextCopy.delete(start, end);
+				}
+				else { // Generate an issue
+					String msg;
+					if ( expectSame ) {
+						msg = String.format("The target part \"%s\" is not in the source.", trgPart);
+					}
+					else {
+						msg = String.format("The target part \"%s\" has no correspondance in the source.", trgPart);
+					}
+					reportIssue(IssueType.UNEXPECTED_PATTERN, tu, srcSeg.getId(), msg, 0, -1,
+						QualityChecker.fromFragmentToString(trgSeg.text, trgM.start()),
+						QualityChecker.fromFragmentToString(trgSeg.text, trgM.end()),
+						item.severity,
+						srcSeg.toString(), trgSeg.toString(), null);
+				}
+			}
+		}
+	}
+	
+	private void reportIssue (IssueType issueType,
+		ITextUnit tu,
+		String segId,
+		String message,
+		int srcStart,
+		int srcEnd,
+		int trgStart,
+		int trgEnd,
+		int severity,
+		String srcOri,
+		String trgOri,
+		Object extra)
+	{
+		Issue issue = new Issue(docId, issueType, tu.getId(), segId, message,
+			srcStart, srcEnd, trgStart, trgEnd, severity, tu.getName());
+		issue.extra = extra;
+		issues.add(issue);
+		issue.enabled = true;
+		issue.oriSource = srcOri;
+		issue.oriTarget = trgOri;
+	}
+}
@@ -471,4 +471,99 @@ public class QualityCheckerTest {
 		assertEquals(IssueType.TERMINOLOGY, issues.get(0).issueType);
 	}
 
+	@Test
+	public void testTERMINOLOGY_StringsFolding () {
+		ITextUnit tu = new TextUnit("id", "Summer and WINTER");
+		tu.setTarget(locFR, new TextContainer("ETE et Hiver"));
+		
+		session.getParameters().setCheckTerms(true);
+		session.getParameters().setTermsPath(root+"test01.tsv");
+		session.getParameters().setStringMode(true);
+		
+		// Case-sensitive: no source string is found
+		session.startProcess(locEN, locFR);
+		session.processTextUnit(tu);
+		assertEquals(0, session.getIssues().size());
+		
+		// Case ignored: "ETE" still differs from the glossary by its diacritics
+		session.getParameters().setTermsIgnoreCase(true);
+		session.startProcess(locEN, locFR);
+		session.getIssues().clear();
+		session.processTextUnit(tu);
+		List<Issue> issues = session.getIssues();
+		assertEquals(1, issues.size());
+		assertEquals(IssueType.TERMINOLOGY, issues.get(0).issueType);
+		assertEquals(0, issues.get(0).srcStart);
+		assertEquals(6, issues.get(0).srcEnd);
+		
+		// Case and diacritics ignored: both strings are translated as expected
+		session.getParameters().setTermsIgnoreDiacritics(true);
+		session.startProcess(locEN, locFR);
+		session.getIssues().clear();
+		session.processTextUnit(tu);
+		assertEquals(0, session.getIssues().size());
+	}
+
+	@Test
+	public void testSeveralThreads () {
+		String[][] texts = {
+			{ "src text !? %s", "trg text" },
+			{ "  Text {with} (123). ", "  Texte {avec} (123). " },
+			{ "summer and WINTER", "\u00e9T\u00e9 et printemps" },
+			{ "src text", "src text" },
+			{ "test: http://thisisatest.com.", "test: http://thisBADtest.com" },
+			{ " text", "text " },
+			{ "abcdefghij", "the the text" },
+			{ "text", "" },
+		};
+		session.getParameters().setCheckTerms(true);
+		session.getParameters().setTermsPath(root+"test01.tsv");
+
+		// Check the same text units with one thread, then with several threads
+		List<String> expected = null;
+		for ( int threadCount : new int[] { 1, 3 } ) {
+			session.getIssues().clear();
+			session.getParameters().setThreadCount(threadCount);
+			session.startProcess(locEN, locFR);
+			for ( int i=0; i<500; i++ ) {
+				String[] pair = texts[i % texts.length];
+				ITextUnit tu = new TextUnit(String.valueOf(i), pair[0]);
+				tu.setTarget(locFR, new TextContainer(pair[1]));
+				session.processTextUnit(tu);
+			}
+			List<String> results = new ArrayList<String>();
+			for ( Issue issue : session.getIssues() ) {
+				results.add(issue.tuId+" "+issue.issueType+" "+issue.srcStart+" "+issue.trgStart+" "+issue.message);
+			}
+			if ( expected == null ) expected = results;
+			else assertEquals(expected, results);
+		}
+		assertTrue(expected.size() > texts.length);
+		assertTrue(session.getTimingReport().contains("Patterns"));
+		
+		// The threads are stopped, the session can still check text units
+		session.shutdown();
+		session.getIssues().clear();
+		ITextUnit tu = new TextUnit("1", texts[0][0]);
+		tu.setTarget(locFR, new TextContainer(texts[0][1]));
+		session.processTextUnit(tu);
+		assertFalse(session.getIssues().isEmpty());
+		for ( int i=0; i<50 && hasCheckerThread(); i++ ) {
+			try {
+				Thread.sleep(100);
+			}
+			catch ( InterruptedException e ) {
+				break;
+			}
+		}
+		assertFalse(hasCheckerThread());
+	}
+
+	private boolean hasCheckerThread () {
+		for ( Thread thread : Thread.getAllStackTraces().keySet() ) {
+			if ( thread.isAlive() && thread.getName().equals("QualityChecker") ) return true;
+		}
+		return false;
+	}
+
 }
@@ -32,7 +32,7 @@ import net.sf.okapi.common.LocaleId;
  * @param <T>
  */
 
-public class AlignmentFunction<T> implements DpFunction<T> {
+public class AlignmentFunction<T> implements BandedDpFunction<T> {
 	private LocaleId m_sourceLocale;
 	private LocaleId m_targetLocale;
 	private List<AlignmentScorer<T>> m_scorerList;
@@ -96,130 +96,173 @@ public class AlignmentFunction<T> implements DpFunction<T> {
 		return cell;
 	}
 
+	public int getMoveScore(int p_move, int p_xPos, int p_yPos, DpMatrix<T> p_matrix) {
+		switch (p_move) {
+		case DELETION:
+			return getDeletionCost(p_xPos, p_matrix);
+		case INSERTION:
+			return getInsertionCost(p_yPos, p_matrix);
+		case SUBSTITUTION:
+			return getSubstitutionCost(p_xPos, p_yPos, p_matrix);
+		case CONTRACTION:
+			return getContractionCost(p_xPos, p_yPos, p_matrix);
+		case EXPANSION:
+			return getExpansionCost(p_xPos, p_yPos, p_matrix);
+		case MELDING:
+			return getMeldingCost(p_xPos, p_yPos, p_matrix);
+		default:
+			throw new IllegalArgumentException("Unknown move: " + p_move);
+		}
+	}
+
 	private int getDeletionScore(DpMatrixCell p_deletionCell, int p_xPos, DpMatrix<T> p_matrix) {
 		int score = Integer.MAX_VALUE;
 
 		if (p_deletionCell != null) {
-			score = 0;
-			T seg = p_matrix.getAlignmentElementX(p_xPos);
-
-			Iterator<AlignmentScorer<T>> it = m_scorerList.iterator();
-			while (it.hasNext()) {
-				AlignmentScorer<T> scorer = it.next();
-				score += scorer.deletionScore(seg);
-			}
-			score += p_deletionCell.getScore() + penalties.penalty0_1;
+			score = getDeletionCost(p_xPos, p_matrix) + p_deletionCell.getScore();
 		}
 
 		return score;
 	}
 
+	private int getDeletionCost(int p_xPos, DpMatrix<T> p_matrix) {
+		int score = 0;
+		T seg = p_matrix.getAlignmentElementX(p_xPos);
+
+		Iterator<AlignmentScorer<T>> it = m_scorerList.iterator();
+		while (it.hasNext()) {
+			AlignmentScorer<T> scorer = it.next();
+			score += scorer.deletionScore(seg);
+		}
+		return score + penalties.penalty0_1;
+	}
+
 	private int getInsertionScore(DpMatrixCell p_insertionCell, int p_yPos, DpMatrix<T> p_matrix) {
 		int score = Integer.MAX_VALUE;
 
 		if (p_insertionCell != null) {
-			score = 0;
-			T seg = p_matrix.getAlignmentElementY(p_yPos);
-
-			Iterator<AlignmentScorer<T>> it = m_scorerList.iterator();
-			while (it.hasNext()) {
-				AlignmentScorer<T> scorer = it.next();
-				score += scorer.insertionScore(seg);
-			}
-			score += p_insertionCell.getScore() + penalties.penalty0_1;
+			score = getInsertionCost(p_yPos, p_matrix) + p_insertionCell.getScore();
 		}
 
 		return score;
 	}
 
+	private int getInsertionCost(int p_yPos, DpMatrix<T> p_matrix) {
+		int score = 0;
+		T seg = p_matrix.getAlignmentElementY(p_yPos);
+
+		Iterator<AlignmentScorer<T>> it = m_scorerList.iterator();
+		while (it.hasNext()) {
+			AlignmentScorer<T> scorer = it.next();
+			score += scorer.insertionScore(seg);
+		}
+		return score + penalties.penalty0_1;
+	}
+
 	private int getSubstitutionScore(DpMatrixCell p_substitutionCell, int p_xPos, int p_yPos,
 			DpMatrix<T> p_matrix) {
 		int score = Integer.MAX_VALUE;
 
 		if (p_substitutionCell != null) {
-			score = 0;
-			T sourceSeg = p_matrix.getAlignmentElementX(p_xPos);
-			T targetSeg = p_matrix.getAlignmentElementY(p_yPos);
-
-			Iterator<AlignmentScorer<T>> it = m_scorerList.iterator();
-			while (it.hasNext()) {
-				AlignmentScorer<T> scorer = it.next();
-				score += scorer.substitutionScore(sourceSeg, targetSeg);
-			}
-			score += p_substitutionCell.getScore();
+			score = getSubstitutionCost(p_xPos, p_yPos, p_matrix) + p_substitutionCell.getScore();
 		}
 
 		return score;
 	}
 
+	private int getSubstitutionCost(int p_xPos, int p_yPos, DpMatrix<T> p_matrix) {
+		int score = 0;
+		T sourceSeg = p_matrix.getAlignmentElementX(p_xPos);
+		T targetSeg = p_matrix.getAlignmentElementY(p_yPos);
+
+		Iterator<AlignmentScorer<T>> it = m_scorerList.iterator();
+		while (it.hasNext()) {
+			AlignmentScorer<T> scorer = it.next();
+			score += scorer.substitutionScore(sourceSeg, targetSeg);
+		}
+		return score;
+	}
+
 	private int getContractionScore(DpMatrixCell p_contractionCell, int p_xPos, int p_yPos,
 			DpMatrix<T> p_matrix) {
 		int score = Integer.MAX_VALUE;
 
 		if (p_contractionCell != null) {
-			score = 0;
-
-			T currentSourceSeg = p_matrix.getAlignmentElementX(p_xPos);
-			T prevSourceSeg = p_matrix.getAlignmentElementX(p_xPos - 1);
-			T targetSeg = p_matrix.getAlignmentElementY(p_yPos);
-
-			Iterator<AlignmentScorer<T>> it = m_scorerList.iterator();
-			while (it.hasNext()) {
-				AlignmentScorer<T> scorer = it.next();
-				score += scorer.contractionScore(currentSourceSeg, prevSourceSeg, targetSeg);
-			}
-			score += p_contractionCell.getScore() + penalties.penalty2_1;
+			score = getContractionCost(p_xPos, p_yPos, p_matrix) + p_contractionCell.getScore();
 		}
 
 		return score;
 	}
 
+	private int getContractionCost(int p_xPos, int p_yPos, DpMatrix<T> p_matrix) {
+		int score = 0;
+
+		T currentSourceSeg = p_matrix.getAlignmentElementX(p_xPos);
+		T prevSourceSeg = p_matrix.getAlignmentElementX(p_xPos - 1);
+		T targetSeg = p_matrix.getAlignmentElementY(p_yPos);
+
+		Iterator<AlignmentScorer<T>> it = m_scorerList.iterator();
+		while (it.hasNext()) {
+			AlignmentScorer<T> scorer = it.next();
+			score += scorer.contractionScore(currentSourceSeg, prevSourceSeg, targetSeg);
+		}
+		return score + penalties.penalty2_1;
+	}
+
 	private int getExpansionScore(DpMatrixCell p_expansionCell, int p_xPos, int p_yPos,
 			DpMatrix<T> p_matrix) {
 		int score = Integer.MAX_VALUE;
 
 		if (p_expansionCell != null) {
-			score = 0;
-
-			T srcSeg = p_matrix.getAlignmentElementX(p_xPos);
-			T currentTargetSeg = p_matrix.getAlignmentElementY(p_yPos);
-			T prevTargetSeg = p_matrix.getAlignmentElementY(p_yPos - 1);
-
-			Iterator<AlignmentScorer<T>> it = m_scorerList.iterator();
-			while (it.hasNext()) {
-				AlignmentScorer<T> scorer = it.next();
-				score += scorer.expansionScore(srcSeg, currentTargetSeg, prevTargetSeg);
-			}
-			score += p_expansionCell.getScore() + penalties.penalty2_1;
+			score = getExpansionCost(p_xPos, p_yPos, p_matrix) + p_expansionCell.getScore();
 		}
 
 		return score;
 	}
 
+	private int getExpansionCost(int p_xPos, int p_yPos, DpMatrix<T> p_matrix) {
+		int score = 0;
+
+		T srcSeg = p_matrix.getAlignmentElementX(p_xPos);
+		T currentTargetSeg = p_matrix.getAlignmentElementY(p_yPos);
+		T prevTargetSeg = p_matrix.getAlignmentElementY(p_yPos - 1);
+
+		Iterator<AlignmentScorer<T>> it = m_scorerList.iterator();
+		while (it.hasNext()) {
+			AlignmentScorer<T> scorer = it.next();
+			score += scorer.expansionScore(srcSeg, currentTargetSeg, prevTargetSeg);
+		}
+		return score + penalties.penalty2_1;
+	}
+
 	private int getMeldingScore(DpMatrixCell p_meldingCell, int p_xPos, int p_yPos,
 			DpMatrix<T> p_matrix) {
 		int score = Integer.MAX_VALUE;
 
 		if (p_meldingCell != null) {
-			score = 0;
-
-			T currentSourceSeg = p_matrix.getAlignmentElementX(p_xPos);
-			// Segment prevSourceTuv = p_matrix.getAlignmentElementX(p_xPos - 1);
-			T currentTargetSeg = p_matrix.getAlignmentElementY(p_yPos);
-			T prevTargetSeg = p_matrix.getAlignmentElementY(p_yPos - 1);
-
-			Iterator<AlignmentScorer<T>> it = m_scorerList.iterator();
-			while (it.hasNext()) {
-				AlignmentScorer<T> scorer = it.next();
-				score += scorer.meldingScore(currentSourceSeg, prevTargetSeg, currentTargetSeg,
-						prevTargetSeg);
-			}
-			score += p_meldingCell.getScore() + penalties.penalty2_2;
+			score = getMeldingCost(p_xPos, p_yPos, p_matrix) + p_meldingCell.getScore();
 		}
 
 		return score;
 	}
 
+	private int getMeldingCost(int p_xPos, int p_yPos, DpMatrix<T> p_matrix) {
+		int score = 0;
+
+		T currentSourceSeg = p_matrix.getAlignmentElementX(p_xPos);
+		// Segment prevSourceTuv = p_matrix.getAlignmentElementX(p_xPos - 1);
+		T currentTargetSeg = p_matrix.getAlignmentElementY(p_yPos);
+		T prevTargetSeg = p_matrix.getAlignmentElementY(p_yPos - 1);
+
+		Iterator<AlignmentScorer<T>> it = m_scorerList.iterator();
+		while (it.hasNext()) {
+			AlignmentScorer<T> scorer = it.next();
+			score += scorer.meldingScore(currentSourceSeg, prevTargetSeg, currentTargetSeg,
+					prevTargetSeg);
+		}
+		return score + penalties.penalty2_2;
+	}
+
 	private void setScoreAndLink(DpMatrixCell p_currentCell, DpMatrixCell p_deletionCell,
 			DpMatrixCell p_insertionCell, DpMatrixCell p_substitutionCell,
 			DpMatrixCell p_contractionCell, DpMatrixCell p_expansionCell,
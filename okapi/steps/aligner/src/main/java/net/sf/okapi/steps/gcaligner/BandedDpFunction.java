@@ -0,0 +1,59 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.steps.gcaligner;
+
+/**
+ * DpFunction that can give the score of each move separately. This allows {@link DpMatrix} to
+ * compute the alignment on a band around the diagonal, with primitive arrays instead of a matrix
+ * of {@link DpMatrixCell}.
+ */
+public interface BandedDpFunction<T> extends DpFunction<T> {
+
+	/** One element of X is deleted: from (x-1, y). */
+	int DELETION = 0;
+	/** One element of Y is inserted: from (x, y-1). */
+	int INSERTION = 1;
+	/** One element of X matches one element of Y: from (x-1, y-1). */
+	int SUBSTITUTION = 2;
+	/** Two elements of X match one element of Y: from (x-2, y-1). */
+	int CONTRACTION = 3;
+	/** One element of X matches two elements of Y: from (x-1, y-2). */
+	int EXPANSION = 4;
+	/** Two elements of X match two elements of Y: from (x-2, y-2). */
+	int MELDING = 5;
+
+	/**
+	 * Gets the score of a move ending at a given cell, without the score of the cell the move starts from.
+	 * This is called only for moves starting inside the matrix.
+	 * 
+	 * @param move
+	 *            the move, one of {@link #DELETION}, {@link #INSERTION}, {@link #SUBSTITUTION},
+	 *            {@link #CONTRACTION}, {@link #EXPANSION} or {@link #MELDING}.
+	 * @param xPos
+	 *            X index of the cell where the move ends.
+	 * @param yPos
+	 *            Y index of the cell where the move ends.
+	 * @param matrix
+	 *            matrix
+	 * @return the score of the move (lower is better).
+	 */
+	int getMoveScore(int move, int xPos, int yPos, DpMatrix<T> matrix);
+}
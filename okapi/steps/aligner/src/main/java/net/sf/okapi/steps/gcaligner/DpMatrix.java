@@ -30,9 +30,28 @@ import java.util.ArrayList;
  * List of Object. Each cell (DpMatrixCell) of the matrix records the alignment score of the two elements. The score is
  * calculated by DpFunction class that is passed to the constructor. The alignment result is returned as a List of
  * DpMatrixCell.
+ * <p>
+ * When the DpFunction is a {@link BandedDpFunction} the matrix is never allocated: only the cells in a band around the
+ * diagonal are computed, with the scores kept in three rolling rows and one byte of backpointer per band cell. The band
+ * starts {@link #MIN_BAND_WIDTH} cells wide on each side of the diagonal and is doubled as long as the best path touches
+ * one of its edges. This is a heuristic: the result is the best path inside the final band, which is usually, but not
+ * always, the best path of the full matrix. Only the cells of the best path are returned as DpMatrixCell objects.
  */
 
 public class DpMatrix<T> {
+	/**
+	 * Initial number of cells on each side of the diagonal computed by the banded alignment.
+	 */
+	public static final int MIN_BAND_WIDTH = 50;
+
+	// distance to the band edge under which the path is considered to touch it (a move can skip one cell)
+	private static final int EDGE_MARGIN = 2;
+
+	// backpointer values of the banded alignment
+	private static final byte NO_MOVE = -1;
+	private static final int[] MOVE_DX = { 1, 0, 1, 2, 1, 2 };
+	private static final int[] MOVE_DY = { 0, 1, 1, 1, 2, 2 };
+
 	// matrix
 	private DpMatrixCell[][] m_matrix;
 
@@ -48,8 +67,6 @@ public class DpMatrix<T> {
 		this.sequenceX = sequenceX;
 		this.sequenceY = sequenceY;
 		m_dpFunction = p_dpFunction;
-		m_matrix = new DpMatrixCell[sequenceX.size() + 1][sequenceY.size() + 1];
-		initMatrix();
 	}
 
 	/**
@@ -60,6 +77,12 @@ public class DpMatrix<T> {
 	 * @return List of DpMatrixCell
 	 */
 	public List<DpMatrixCell> align() {
+		if (m_dpFunction instanceof BandedDpFunction) {
+			return bandedAlign((BandedDpFunction<T>) m_dpFunction);
+		}
+
+		m_matrix = new DpMatrixCell[sequenceX.size() + 1][sequenceY.size() + 1];
+		initMatrix();
 		fillMatrix();
 		return alignedResult();
 	}
@@ -121,7 +144,8 @@ public class DpMatrix<T> {
 	}
 
 	/**
-	 * Return a cell of the matrix.
+	 * Return a cell of the matrix. The matrix exists only when the DpFunction is not a {@link BandedDpFunction}, and
+	 * only once {@link #align()} has been called.
 	 * 
 	 * @param p_xIdx
 	 *            Index of X axis. The index starts with 0.
@@ -181,8 +205,151 @@ public class DpMatrix<T> {
 		return result;
 	}
 
+	// Align the sequences on a band around the diagonal, widening the band until the best path no longer touches
+	// its edges, or until it covers the whole matrix.
+	private List<DpMatrixCell> bandedAlign(BandedDpFunction<T> p_dpFunction) {
+		int n = sequenceX.size();
+		int m = sequenceY.size();
+		int width = MIN_BAND_WIDTH;
+
+		while (true) {
+			int[] lo = new int[n + 1];
+			int[] hi = new int[n + 1];
+			for (int x = 0; x <= n; x++) {
+				int center = (n == 0) ? 0 : (int) (((long) x * m + n / 2) / n);
+				hi[x] = Math.min(m, center + width);
+				lo[x] = Math.max(0, Math.min(center - width, (x == 0) ? 0 : hi[x - 1]));
+			}
+			// the path must end at (n, m): when n == 0 the centre is 0 and the only row must go up to m
+			hi[n] = m;
+
+			byte[][] moves = fillBand(p_dpFunction, lo, hi);
+			int[] path = tracePath(moves, lo);
+
+			boolean full = (width >= m);
+			if (full || !touchesEdge(path, lo, hi)) {
+				return buildResult(p_dpFunction, path);
+			}
+			width *= 2;
+		}
+	}
+
+	// Compute the scores of the band and return the best move ending at each band cell. Row x of the returned array
+	// holds the cells (x, lo[x]) to (x, hi[x]).
+	private byte[][] fillBand(BandedDpFunction<T> p_dpFunction, int[] lo, int[] hi) {
+		int n = sequenceX.size();
+		int m = sequenceY.size();
+		byte[][] moves = new byte[n + 1][];
+		// scores of the rows x, x-1 and x-2, indexed by y
+		int[][] rows = new int[3][m + 1];
+
+		for (int x = 0; x <= n; x++) {
+			int[] row = rows[x % 3];
+			byte[] rowMoves = new byte[hi[x] - lo[x] + 1];
+			moves[x] = rowMoves;
+
+			for (int y = lo[x]; y <= hi[x]; y++) {
+				if (x == 0 && y == 0) {
+					row[0] = 0;
+					rowMoves[0] = NO_MOVE;
+					continue;
+				}
+
+				int minScore = Integer.MAX_VALUE;
+				byte bestMove = NO_MOVE;
+				for (int move = 0; move < MOVE_DX.length; move++) {
+					int px = x - MOVE_DX[move];
+					int py = y - MOVE_DY[move];
+					if (px < 0 || py < 0 || py < lo[px] || py > hi[px]) {
+						continue;
+					}
+					if (moves[px][py - lo[px]] == NO_MOVE && (px != 0 || py != 0)) {
+						continue;
+					}
+					int score = rows[px % 3][py] + p_dpFunction.getMoveScore(move, x, y, this);
+					if (minScore > score) {
+						minScore = score;
+						bestMove = (byte) move;
+					}
+				}
+
+				row[y] = minScore;
+				rowMoves[y - lo[x]] = bestMove;
+			}
+		}
+
+		return moves;
+	}
+
+	// Follow the moves back from (n, m). Return the cells of the path, from (0, 0) to (n, m), as pairs of x and y.
+	private int[] tracePath(byte[][] moves, int[] lo) {
+		int x = sequenceX.size();
+		int y = sequenceY.size();
+		int[] path = new int[2 * (x + y + 1)];
+		int length = 0;
+
+		while (true) {
+			path[length++] = x;
+			path[length++] = y;
+			byte move = moves[x][y - lo[x]];
+			if (move == NO_MOVE) {
+				break;
+			}
+			x -= MOVE_DX[move];
+			y -= MOVE_DY[move];
+		}
+
+		// reverse the pairs
+		int[] result = new int[length];
+		for (int i = 0; i < length; i += 2) {
+			result[i] = path[length - i - 2];
+			result[i + 1] = path[length - i - 1];
+		}
+		return result;
+	}
+
+	// Check if the path comes close to an edge of the band that is not an edge of the matrix.
+	private boolean touchesEdge(int[] path, int[] lo, int[] hi) {
+		int m = sequenceY.size();
+		for (int i = 0; i < path.length; i += 2) {
+			int x = path[i];
+			int y = path[i + 1];
+			if ((lo[x] > 0 && y - lo[x] < EDGE_MARGIN) || (hi[x] < m && hi[x] - y < EDGE_MARGIN)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Create the DpMatrixCell objects of the path, recomputing the scores along the way.
+	private List<DpMatrixCell> buildResult(BandedDpFunction<T> p_dpFunction, int[] path) {
+		LinkedList<DpMatrixCell> result = new LinkedList<DpMatrixCell>();
+		DpMatrixCell prev = new DpMatrixCell(path[0], path[1]);
+
+		for (int i = 2; i < path.length; i += 2) {
+			int x = path[i];
+			int y = path[i + 1];
+			int dx = x - prev.getXindex();
+			int dy = y - prev.getYindex();
+			int move = 0;
+			while (MOVE_DX[move] != dx || MOVE_DY[move] != dy) {
+				move++;
+			}
+
+			DpMatrixCell cell = new DpMatrixCell(x, y);
+			cell.setScoreAndLink(prev.getScore() + p_dpFunction.getMoveScore(move, x, y, this), prev);
+			result.add(cell);
+			prev = cell;
+		}
+
+		return result;
+	}
+
 	public String toString() {
 		StringBuffer sb = new StringBuffer();
+		if (m_matrix == null) {
+			return sb.toString();
+		}
 
 		for (int y = 0; y < m_matrix[0].length; y++) {
 			for (int x = 0; x < m_matrix.length; x++) {
@@ -40,7 +40,6 @@ import net.sf.okapi.steps.gcaligner.Penalties;
 public class ParagraphAligner {
 	private static final Logger LOGGER = Logger.getLogger(ParagraphAligner.class.getName());
 	
-	private static final long MAX_CELL_SIZE = 80000L;
 	private List<AlignmentScorer<ITextUnit>> scorerList;
 	
 	public ParagraphAligner(List<AlignmentScorer<ITextUnit>> scorerList) {
@@ -63,15 +62,6 @@ public class ParagraphAligner {
 	private List<ITextUnit> alignSegments(List<ITextUnit> sourceParagraphs, List<ITextUnit> targetParagraphs,
 			LocaleId srcLocale, LocaleId trgLocale, AlignmentFunction<ITextUnit> alignmentFunction, boolean outputOneTOneMatchesOnly) {
 
-		// To prevent OutOfMemory exception, simply don't perform the
-		// alignment for a block with a lot of segments. TEMPORARY FIX
-		if (sourceParagraphs.size()
-				* targetParagraphs.size() > MAX_CELL_SIZE) {
-			throw new IllegalArgumentException("Too many segments. Can only align "
-					+ Long.toString(MAX_CELL_SIZE)
-					+ ". Where the number equals the source segments times the target segments.");
-		}
-
 		DpMatrix<ITextUnit> matrix = new DpMatrix<ITextUnit>(sourceParagraphs, targetParagraphs, alignmentFunction);
 
 		List<DpMatrixCell> result = matrix.align();
@@ -43,7 +43,6 @@ import net.sf.okapi.steps.gcaligner.Penalties;
 public class SentenceAligner {
 	private static final Logger LOGGER = Logger.getLogger(SentenceAligner.class.getName());
 	
-	private static final long MAX_CELL_SIZE = 80000L;
 	private List<AlignmentScorer<Segment>> scorerList;
 	
 	public SentenceAligner(List<AlignmentScorer<Segment>> scorerList) {
@@ -82,15 +81,6 @@ public class SentenceAligner {
 	private ITextUnit alignSegments(ITextUnit sourceParagraph, ITextUnit targetParagraph,
 			LocaleId srcLocale, LocaleId trgLocale, AlignmentFunction<Segment> alignmentFunction, boolean outputOneTOneMatchesOnly) {
 
-		// To prevent OutOfMemory exception, simply don't perform the
-		// alignment for a block with a lot of segments. TEMPORARY FIX
-		if (sourceParagraph.getSource().getSegments().count()
-				* targetParagraph.getSource().getSegments().count() > MAX_CELL_SIZE) {
-			throw new IllegalArgumentException("Too many segments. Can only align "
-					+ Long.toString(MAX_CELL_SIZE)
-					+ ". Where the number equals the source segments times the target segments.");
-		}
-
 		DpMatrix<Segment> matrix = new DpMatrix<Segment>(sourceParagraph.getSource().getSegments().asList(),
 				targetParagraph.getSource().getSegments().asList(), alignmentFunction);
 
@@ -152,15 +142,6 @@ public class SentenceAligner {
 	private ITextUnit alignSegments(ITextUnit bilingualParagraph, LocaleId srcLocale,
 			LocaleId trgLocale, AlignmentFunction<Segment> alignmentFunction, boolean outputOneTOneMatchesOnly) {
 
-		// To prevent OutOfMemory exception, simply don't perform the
-		// alignment for a block with a lot of segments. TEMPORARY FIX
-		if (bilingualParagraph.getSource().getSegments().count()
-				* bilingualParagraph.getTarget(trgLocale).getSegments().count() > MAX_CELL_SIZE) {
-			throw new IllegalArgumentException("Too many segments. Can only align "
-					+ Long.toString(MAX_CELL_SIZE)
-					+ ". Where the number equals the source segments times the target segments.");
-		}
-
 		DpMatrix<Segment> matrix = new DpMatrix<Segment>(bilingualParagraph.getSource().getSegments().asList(),
 				bilingualParagraph.getTarget(trgLocale).getSegments().asList(), alignmentFunction);
 
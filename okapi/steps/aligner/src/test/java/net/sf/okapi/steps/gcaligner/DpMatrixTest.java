@@ -0,0 +1,163 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.steps.gcaligner;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.resource.Segment;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.steps.sentencealigner.SimpleGaleAndChurch;
+
+import org.junit.Test;
+
+public class DpMatrixTest {
+	private LocaleId sourceLocale = new LocaleId("en-us");
+	private LocaleId targetLocale = new LocaleId("fr-fr");
+
+	@Test
+	public void bandedSameAsFullMatrix() {
+		Random random = new Random(42);
+		List<Segment> source = new ArrayList<Segment>();
+		List<Segment> target = new ArrayList<Segment>();
+		// Target with merged, split, dropped and added sentences
+		for (int i = 0; i < 400; i++) {
+			int length = 10 + random.nextInt(200);
+			source.add(createSegment(length));
+			switch (random.nextInt(10)) {
+			case 0:
+				target.add(createSegment(length / 2));
+				target.add(createSegment(length / 2));
+				break;
+			case 1:
+				if (i > 0) {
+					target.set(target.size() - 1,
+							createSegment(target.get(target.size() - 1).text.length() + length));
+				}
+				break;
+			case 2:
+				break;
+			case 3:
+				target.add(createSegment(length));
+				target.add(createSegment(10 + random.nextInt(100)));
+				break;
+			default:
+				target.add(createSegment(length + random.nextInt(20)));
+			}
+		}
+
+		AlignmentFunction<Segment> function = createFunction();
+		List<DpMatrixCell> banded = new DpMatrix<Segment>(source, target, function).align();
+		List<DpMatrixCell> full = new DpMatrix<Segment>(source, target, new FullDpFunction(function)).align();
+
+		assertEquals(toString(full), toString(banded));
+	}
+
+	@Test
+	public void bandedUnevenSequences() {
+		List<Segment> source = new ArrayList<Segment>();
+		List<Segment> target = new ArrayList<Segment>();
+		for (int i = 0; i < 300; i++) {
+			source.add(createSegment(50));
+		}
+		for (int i = 0; i < 20; i++) {
+			target.add(createSegment(50));
+		}
+
+		AlignmentFunction<Segment> function = createFunction();
+		assertEquals(toString(new DpMatrix<Segment>(source, target, new FullDpFunction(function)).align()),
+				toString(new DpMatrix<Segment>(source, target, function).align()));
+		assertEquals(toString(new DpMatrix<Segment>(target, source, new FullDpFunction(function)).align()),
+				toString(new DpMatrix<Segment>(target, source, function).align()));
+	}
+
+	@Test
+	public void bandedEmptySequences() {
+		List<Segment> source = new ArrayList<Segment>();
+		source.add(createSegment(20));
+		List<Segment> empty = Collections.emptyList();
+
+		AlignmentFunction<Segment> function = createFunction();
+		assertEquals(0, new DpMatrix<Segment>(empty, empty, function).align().size());
+		List<DpMatrixCell> result = new DpMatrix<Segment>(source, empty, function).align();
+		assertEquals(1, result.size());
+		assertEquals(DpMatrixCell.DELETED, result.get(0).getState());
+	}
+
+	@Test
+	public void bandedEmptySourceLongerThanBand() {
+		List<Segment> target = new ArrayList<Segment>();
+		for (int i = 0; i < DpMatrix.MIN_BAND_WIDTH + 10; i++) {
+			target.add(createSegment(20));
+		}
+		List<Segment> empty = Collections.emptyList();
+
+		AlignmentFunction<Segment> function = createFunction();
+		List<DpMatrixCell> result = new DpMatrix<Segment>(empty, target, function).align();
+		assertEquals(target.size(), result.size());
+		for (DpMatrixCell cell : result) {
+			assertEquals(DpMatrixCell.INSERTED, cell.getState());
+		}
+		assertEquals(toString(new DpMatrix<Segment>(empty, target, new FullDpFunction(function)).align()),
+				toString(result));
+	}
+
+	private AlignmentFunction<Segment> createFunction() {
+		List<AlignmentScorer<Segment>> scorers = new ArrayList<AlignmentScorer<Segment>>();
+		scorers.add(new SimpleGaleAndChurch());
+		return new AlignmentFunction<Segment>(sourceLocale, targetLocale, scorers, new Penalties());
+	}
+
+	private Segment createSegment(int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			sb.append((i % 6 == 5) ? ' ' : 'a');
+		}
+		return new Segment(null, new TextFragment(sb.toString()));
+	}
+
+	private String toString(List<DpMatrixCell> cells) {
+		StringBuilder sb = new StringBuilder();
+		for (DpMatrixCell cell : cells) {
+			sb.append(cell.getXindex()).append(',').append(cell.getYindex()).append(',')
+					.append(cell.getState()).append(',').append(cell.getScore()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	// Hides the banded interface so that DpMatrix uses the full matrix
+	private static class FullDpFunction implements DpFunction<Segment> {
+		private DpFunction<Segment> function;
+
+		public FullDpFunction(DpFunction<Segment> function) {
+			this.function = function;
+		}
+
+		public void setCellScore(int xPos, int yPos, DpMatrix<Segment> matrix) {
+			function.setCellScore(xPos, yPos, matrix);
+		}
+	}
+}
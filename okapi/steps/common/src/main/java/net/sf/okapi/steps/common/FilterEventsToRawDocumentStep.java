@@ -31,6 +31,8 @@ import net.sf.okapi.common.exceptions.OkapiIOException;
 import net.sf.okapi.common.filterwriter.IFilterWriter;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.pipeline.BasePipelineStep;
+import net.sf.okapi.common.pipeline.IMergeableStep;
+import net.sf.okapi.common.pipeline.IPipelineStep;
 import net.sf.okapi.common.pipeline.annotations.StepParameterMapping;
 import net.sf.okapi.common.pipeline.annotations.StepParameterType;
 import net.sf.okapi.common.resource.RawDocument;
@@ -47,7 +49,7 @@ import net.sf.okapi.common.resource.StartDocument;
  * @see FilterEventsWriterStep
  */
 @UsingParameters() // No parameters
-public class FilterEventsToRawDocumentStep extends BasePipelineStep {
+public class FilterEventsToRawDocumentStep extends BasePipelineStep implements IMergeableStep {
 
 	private IFilterWriter filterWriter;
 	private File outputFile;
@@ -156,4 +158,18 @@ public class FilterEventsToRawDocumentStep extends BasePipelineStep {
 		filterWriter.handleEvent(event);
 		return event;
 	}
+
+	/**
+	 * This step has no batch-level data: there is nothing to merge.
+	 */
+	@Override
+	public void mergeBatchData (IPipelineStep copy) {
+		// Nothing to merge
+	}
+
+	@Override
+	public boolean isMergeable () {
+		return true;
+	}
+
 }
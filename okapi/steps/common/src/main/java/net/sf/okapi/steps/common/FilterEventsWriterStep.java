@@ -32,6 +32,8 @@ import net.sf.okapi.common.filters.IFilterConfigurationMapper;
 import net.sf.okapi.common.filterwriter.IFilterWriter;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.pipeline.BasePipelineStep;
+import net.sf.okapi.common.pipeline.IMergeableStep;
+import net.sf.okapi.common.pipeline.IPipelineStep;
 import net.sf.okapi.common.pipeline.annotations.StepParameterMapping;
 import net.sf.okapi.common.pipeline.annotations.StepParameterType;
 import net.sf.okapi.common.resource.INameable;
@@ -46,7 +48,7 @@ import net.sf.okapi.common.resource.INameable;
  * @see FilterEventsToRawDocumentStep 
  */
 @UsingParameters() // No parameters
-public class FilterEventsWriterStep extends BasePipelineStep {
+public class FilterEventsWriterStep extends BasePipelineStep implements IMergeableStep {
 
 	private IFilterWriter filterWriter;
 	private IFilterWriter customFilterWriter;
@@ -188,6 +190,23 @@ public class FilterEventsWriterStep extends BasePipelineStep {
 		}
 	}
 
+	/**
+	 * This step has no batch-level data: there is nothing to merge.
+	 */
+	@Override
+	public void mergeBatchData (IPipelineStep copy) {
+		// Nothing to merge
+	}
+
+	/**
+	 * A copy of this step gets its writer from the filter of each document, so it
+	 * cannot be copied when a custom writer or a documents root was set by the caller.
+	 */
+	@Override
+	public boolean isMergeable () {
+		return (( customFilterWriter == null ) && ( documentsRoot == null ));
+	}
+
 	private void normalizeResourceName (Event event) {
 		if ( documentsRoot == null ) return; // Nothing to do
 		INameable res = (INameable)event.getResource();
@@ -28,6 +28,8 @@ import net.sf.okapi.common.exceptions.OkapiIOException;
 import net.sf.okapi.common.filters.IFilter;
 import net.sf.okapi.common.filters.IFilterConfigurationMapper;
 import net.sf.okapi.common.pipeline.BasePipelineStep;
+import net.sf.okapi.common.pipeline.IMergeableStep;
+import net.sf.okapi.common.pipeline.IPipelineStep;
 import net.sf.okapi.common.pipeline.annotations.StepParameterMapping;
 import net.sf.okapi.common.pipeline.annotations.StepParameterType;
 import net.sf.okapi.common.resource.RawDocument;
@@ -43,7 +45,7 @@ import net.sf.okapi.common.resource.RawDocument;
  * @see FilterEventsWriterStep
  */
 @UsingParameters() // No parameters
-public class RawDocumentToFilterEventsStep extends BasePipelineStep {
+public class RawDocumentToFilterEventsStep extends BasePipelineStep implements IMergeableStep {
 
 	private IFilter filter;
 	private boolean filterfromSetFilter;
@@ -181,7 +183,26 @@ public class RawDocumentToFilterEventsStep extends BasePipelineStep {
 	}
 
 	public void destroy () {
-		filter.close();
+		if ( filter != null ) {
+			filter.close();
+		}
+	}
+
+	/**
+	 * This step has no batch-level data: there is nothing to merge.
+	 */
+	@Override
+	public void mergeBatchData (IPipelineStep copy) {
+		// Nothing to merge
+	}
+
+	/**
+	 * A copy of this step gets its filter from the filter configuration mapper,
+	 * so it cannot be copied when the filter was set with {@link #setFilter(IFilter)}.
+	 */
+	@Override
+	public boolean isMergeable () {
+		return !filterfromSetFilter;
 	}
 
 	public void cancel () {
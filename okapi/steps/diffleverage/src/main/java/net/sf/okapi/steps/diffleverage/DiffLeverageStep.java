@@ -21,13 +21,15 @@
 package net.sf.okapi.steps.diffleverage;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventStore;
 import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.IEventStore;
 import net.sf.okapi.common.IParameters;
 import net.sf.okapi.common.IResource;
 import net.sf.okapi.common.LocaleId;
@@ -42,11 +44,14 @@ import net.sf.okapi.common.pipeline.BasePipelineStep;
 import net.sf.okapi.common.pipeline.annotations.StepParameterMapping;
 import net.sf.okapi.common.pipeline.annotations.StepParameterType;
 import net.sf.okapi.common.query.MatchType;
+import net.sf.okapi.common.resource.BinaryEventCodec;
+import net.sf.okapi.common.resource.Code;
 import net.sf.okapi.common.resource.MultiEvent;
 import net.sf.okapi.common.resource.RawDocument;
 import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.TextUnit;
 import net.sf.okapi.common.resource.TextUnitUtil;
 import net.sf.okapi.lib.extra.diff.incava.DiffLists;
 import net.sf.okapi.lib.search.lucene.analysis.AlphabeticNgramTokenizer;
@@ -62,12 +67,25 @@ import net.sf.okapi.lib.search.lucene.scorer.Util;
  * <li> {@link AltTranslationsAnnotation} on the target container.
  * <li> {@link DiffMatchAnnotation} on the target container (only applied if diffOnly is true)</br>
  * 
+ * </br>The TextUnits are first matched with a diff on a hash of their source. When the threshold is below 100,
+ * the TextUnits left are then matched with a {@link FuzzyTextUnitMatcher}.
+ * 
+ * </br>The events of the new document are buffered in an {@link EventStore}: past a given estimated size
+ * (a tenth of the maximum heap by default) they are written to disk, and only the source content of the
+ * TextUnits is kept in memory for the diff.
+ * The matched TextUnits are leveraged when the buffered events are sent down the pipeline.
+ * 
  * @author HARGRAVEJE
  * 
  */
 @UsingParameters(Parameters.class)
 public class DiffLeverageStep extends BasePipelineStep {
 	private static final int NGRAM_SIZE = 3;
+	/**
+	 * Default estimated size of the events of the new document kept in memory before the next ones are written
+	 * to disk: a tenth of the maximum heap, as the old document and the diff also need memory.
+	 */
+	private static final long MAX_EVENTS_MEMORY = Runtime.getRuntime().maxMemory() / 10;
 
 	private Parameters params;	
 	private IFilterConfigurationMapper fcMapper;
@@ -75,11 +93,12 @@ public class DiffLeverageStep extends BasePipelineStep {
 	private RawDocument oldTarget;
 	private List<ITextUnit> newTextUnits;
 	private List<ITextUnit> oldTextUnits;
-	private List<Event> newDocumentEvents;
+	private IEventStore newDocumentEvents;
 	private LocaleId sourceLocale;
 	private LocaleId targetLocale;
 	private boolean done = true;
-	private Comparator<ITextUnit> sourceComparator;
+	private long maxEventsMemory = MAX_EVENTS_MEMORY;
+	private FuzzyTextUnitMatcher fuzzyMatcher;
 	private AlphabeticNgramTokenizer tokenizer;
 
 	public DiffLeverageStep() {
@@ -158,14 +177,12 @@ public class DiffLeverageStep extends BasePipelineStep {
 	@Override
 	protected Event handleStartBatch(final Event event) {
 		done = true;
-		if (params.getFuzzyThreshold() >= 100) {
-			// exact match
-			sourceComparator = new TextUnitComparator(params.isCodesensitive());
-		} else {
-			// fuzzy match
+		fuzzyMatcher = null;
+		if (params.getFuzzyThreshold() < 100) {
+			// fuzzy match after the exact diff
 			tokenizer = Util.createNgramTokenizer(NGRAM_SIZE, sourceLocale);
-			sourceComparator = new FuzzyTextUnitComparator(params.isCodesensitive(), params
-					.getFuzzyThreshold(), sourceLocale);
+			fuzzyMatcher = new FuzzyTextUnitMatcher(params.getFuzzyThreshold(), params.getMaxCandidates(),
+					params.getThreadCount(), sourceLocale);
 		}
 		return event;
 	}
@@ -189,7 +206,9 @@ public class DiffLeverageStep extends BasePipelineStep {
 			// intialize buffers for a new document
 			newTextUnits = new ArrayList<ITextUnit>();
 			oldTextUnits = new ArrayList<ITextUnit>();
-			newDocumentEvents = new LinkedList<Event>();
+			// the events of the previous document have been sent by now
+			closeEventStore();
+			newDocumentEvents = new EventStore(maxEventsMemory, new BinaryEventCodec());
 
 			// open of the secondary input file (this is our old document)
 			getOldDocumentTextUnits();
@@ -201,21 +220,22 @@ public class DiffLeverageStep extends BasePipelineStep {
 	protected Event handleEndDocument(final Event event) {
 		done = true;
 		if (oldSource != null) {
-			// diff and leverage (copy target segments) the old and new lists of TextUnits
-			diffLeverage();
+			// diff the old and new lists of TextUnits
+			Map<Integer, ITextUnit> matches = diff();
 
-			// the diff leverage is over now send the cached events down the
-			// pipeline as a MULTI_EVENT
+			// the diff is over now send the cached events down the
+			// pipeline as a MULTI_EVENT, the matched TextUnits are leveraged
+			// (old target segments copied) as they are sent 
 			// add the end document event so its not eaten
 			newDocumentEvents.add(event);
 
 			// create a multi event and pass it on to the other steps
-			Event multi_event = new Event(EventType.MULTI_EVENT, new MultiEvent(newDocumentEvents));
+			Event multi_event = new Event(EventType.MULTI_EVENT,
+					new MultiEvent(new LeveragingEventStore(newDocumentEvents, matches)));
 
 			// help java gc
 			newTextUnits = null;
 			oldTextUnits = null;
-			newDocumentEvents = null;
 			return multi_event;
 		} else {
 			return event;
@@ -269,7 +289,8 @@ public class DiffLeverageStep extends BasePipelineStep {
 		}
 		
 		if (oldSource != null) {
-			newTextUnits.add(event.getTextUnit());
+			// only the source is needed for the diff, the event itself may be written to disk
+			newTextUnits.add(createDiffCopy(event.getTextUnit(), false));
 			newDocumentEvents.add(event);
 			return Event.NOOP_EVENT;
 		} else {
@@ -292,6 +313,41 @@ public class DiffLeverageStep extends BasePipelineStep {
 		return done;
 	}
 
+	/**
+	 * Sets the estimated size of the events of the new document kept in memory before the next ones are written
+	 * to disk.
+	 * @param value the new size in bytes.
+	 */
+	void setMaxEventsMemory(long value) {
+		maxEventsMemory = value;
+	}
+
+	@Override
+	public void destroy() {
+		closeEventStore();
+	}
+
+	private void closeEventStore() {
+		if (newDocumentEvents != null) {
+			newDocumentEvents.close();
+			newDocumentEvents = null;
+		}
+	}
+
+	/**
+	 * Creates a copy of a TextUnit with only what is needed for the diff and the leverage: 
+	 * its source and, optionally, its target. The containers are not cloned.
+	 */
+	private ITextUnit createDiffCopy(ITextUnit tu, boolean withTarget) {
+		ITextUnit copy = new TextUnit(tu.getId());
+		copy.setReferenceCount(tu.getReferenceCount());
+		copy.setSource(tu.getSource());
+		if (withTarget && tu.hasTarget(targetLocale)) {
+			copy.setTarget(targetLocale, tu.getTarget(targetLocale));
+		}
+		return copy;
+	}
+
 	private void getOldDocumentTextUnits() {
 		IFilter srcFilter = null;
 		IFilter trgFilter = null;
@@ -316,7 +372,7 @@ public class DiffLeverageStep extends BasePipelineStep {
 						Event e = synchronize(trgFilter, EventType.TEXT_UNIT);							
 						tu.setTarget(targetLocale, e.getTextUnit().getSource());
 					}
-					oldTextUnits.add(tu);
+					oldTextUnits.add(createDiffCopy(tu, true));
 				}
 			}
 		} finally {
@@ -349,68 +405,194 @@ public class DiffLeverageStep extends BasePipelineStep {
 		return event;
 	}
 
-	private void diffLeverage() {
-		DiffLists<ITextUnit> diffTextUnits;
-
-		diffTextUnits = new DiffLists<ITextUnit>(oldTextUnits, newTextUnits, sourceComparator);
-
-		// diff the two TextUnit lists based on the provided Comparator
-		diffTextUnits.diff();
+	/**
+	 * Diffs the old and new lists of TextUnits.
+	 * @return the old TextUnits matched, keyed by the index of their new TextUnit.
+	 */
+	private Map<Integer, ITextUnit> diff() {
+		// diff the two TextUnit lists on the hash of their source (same result as a TextUnitComparator)
+		List<DiffKey> oldKeys = new ArrayList<DiffKey>(oldTextUnits.size());
+		for (ITextUnit tu : oldTextUnits) {
+			oldKeys.add(new DiffKey(tu, params.isCodesensitive()));
+		}
+		List<DiffKey> newKeys = new ArrayList<DiffKey>(newTextUnits.size());
+		for (ITextUnit tu : newTextUnits) {
+			newKeys.add(new DiffKey(tu, params.isCodesensitive()));
+		}
+		Map<Integer, Integer> oldToNew = new DiffLists<DiffKey>(oldKeys, newKeys).getMatches();
 
-		// loop through the matches and copy over the old target to the new TextUnit
-		for (Map.Entry<Integer, Integer> m : diffTextUnits.getMatches().entrySet()) {
-			ITextUnit oldTu = oldTextUnits.get(m.getKey());
-			ITextUnit newTu = newTextUnits.get(m.getValue());
-			int score = 100;
+		// fuzzy match the TextUnits left
+		if (fuzzyMatcher != null) {
+			oldToNew = new HashMap<Integer, Integer>(oldToNew);
+			fuzzyMatcher.match(oldTextUnits, newTextUnits, oldToNew);
+		}
 
-			// copy the old translation to the new TextUnit
-			TextContainer otc = null;
-			if ((otc = oldTu.getTarget(targetLocale)) != null) {
-				// only copy the old target if diffOnly is false
-				if (!params.isDiffOnly()) {
-					if (params.getFuzzyThreshold() < 100) {
-						score = (int) Util.calculateNgramDiceCoefficient(
-								oldTu.getSource().getFirstContent().toString(), 
-								newTu.getSource().getFirstContent().toString(), tokenizer);
-					}
-					
-					// We force the source to be a paragraph!! We use getUnSegmentedContentCopy
-					// to make sure we get *all* TextParts (just in case segmentation has been applied
-					// or  somehow extra TextParts were added in an external process)
-					
-					// align codes and copy source code data to target										
-					newTu.getSource().getFirstContent().alignCodeIds(otc.getFirstContent());					
-					TextFragment atf = TextUnitUtil.copySrcCodeDataToMatchingTrgCodes(						
-							newTu.getSource().getFirstContent(),
-							otc.getFirstContent(), 
-							true, false, null, newTu);
-					otc.setContent(atf);
-				
-					if (params.isCopyToTarget()) {
-						newTu.setTarget(targetLocale, otc);
-					}
+		Map<Integer, ITextUnit> matches = new HashMap<Integer, ITextUnit>();
+		for (Map.Entry<Integer, Integer> m : oldToNew.entrySet()) {
+			matches.put(m.getValue(), oldTextUnits.get(m.getKey()));
+		}
+		return matches;
+	}
 
-					// make an AltTranslation and attach to the target container
-					AltTranslation alt = new AltTranslation(sourceLocale, targetLocale, 
-							newTu.getSource().getUnSegmentedContentCopy(), 
-							oldTu.getSource().getUnSegmentedContentCopy(), 
-							otc.getUnSegmentedContentCopy(), 
-							params.getFuzzyThreshold() >= 100 ? MatchType.EXACT_PREVIOUS_VERSION
-									: MatchType.FUZZY_PREVIOUS_VERSION, score, getName());
-									
-					// add the annotation to the target container since we are diffing paragraphs only
-					// we may need to create the target if it doesn't exist
-					TextContainer ntc = newTu.createTarget(targetLocale, false, IResource.COPY_PROPERTIES);
-					AltTranslationsAnnotation alta = TextUnitUtil.addAltTranslation(ntc, alt);
-					// resort AltTranslation in case we already had some in  the list
-					alta.sort();
+	/**
+	 * Copies the old target to a new TextUnit matched by the diff.
+	 */
+	private void leverage(ITextUnit oldTu, ITextUnit newTu) {
+		int score = 100;
+
+		// copy the old translation to the new TextUnit
+		TextContainer otc = null;
+		if ((otc = oldTu.getTarget(targetLocale)) != null) {
+			// only copy the old target if diffOnly is false
+			if (!params.isDiffOnly()) {
+				if (params.getFuzzyThreshold() < 100) {
+					score = (int) Util.calculateNgramDiceCoefficient(
+							oldTu.getSource().getFirstContent().toString(), 
+							newTu.getSource().getFirstContent().toString(), tokenizer);
 				}
 				
-				// set the DiffLeverageAnnotation
+				// We force the source to be a paragraph!! We use getUnSegmentedContentCopy
+				// to make sure we get *all* TextParts (just in case segmentation has been applied
+				// or  somehow extra TextParts were added in an external process)
+				
+				// align codes and copy source code data to target										
+				newTu.getSource().getFirstContent().alignCodeIds(otc.getFirstContent());					
+				TextFragment atf = TextUnitUtil.copySrcCodeDataToMatchingTrgCodes(						
+						newTu.getSource().getFirstContent(),
+						otc.getFirstContent(), 
+						true, false, null, newTu);
+				otc.setContent(atf);
+			
+				if (params.isCopyToTarget()) {
+					newTu.setTarget(targetLocale, otc);
+				}
+
+				// make an AltTranslation and attach to the target container
+				AltTranslation alt = new AltTranslation(sourceLocale, targetLocale, 
+						newTu.getSource().getUnSegmentedContentCopy(), 
+						oldTu.getSource().getUnSegmentedContentCopy(), 
+						otc.getUnSegmentedContentCopy(), 
+						params.getFuzzyThreshold() >= 100 ? MatchType.EXACT_PREVIOUS_VERSION
+								: MatchType.FUZZY_PREVIOUS_VERSION, score, getName());
+								
+				// add the annotation to the target container since we are diffing paragraphs only
 				// we may need to create the target if it doesn't exist
-				TextContainer tc = newTu.createTarget(targetLocale, false, IResource.COPY_PROPERTIES);
-				tc.setAnnotation(new DiffMatchAnnotation());
+				TextContainer ntc = newTu.createTarget(targetLocale, false, IResource.COPY_PROPERTIES);
+				AltTranslationsAnnotation alta = TextUnitUtil.addAltTranslation(ntc, alt);
+				// resort AltTranslation in case we already had some in  the list
+				alta.sort();
+			}
+			
+			// set the DiffLeverageAnnotation
+			// we may need to create the target if it doesn't exist
+			TextContainer tc = newTu.createTarget(targetLocale, false, IResource.COPY_PROPERTIES);
+			tc.setAnnotation(new DiffMatchAnnotation());
+		}
+	}
+
+	/**
+	 * Diff key of a TextUnit: two keys are equal when a {@link TextUnitComparator} finds their TextUnits equal.
+	 * The key is not Comparable, so {@link DiffLists} matches the keys with a hash map.
+	 */
+	private static final class DiffKey {
+		private final String text;
+		private final boolean referent;
+		private final int hash;
+
+		public DiffKey(ITextUnit tu, boolean codeSensitive) {
+			TextContainer tc = tu.getSource();
+			TextFragment tf = tc.contentIsOneSegment() ? tc.getFirstContent() : tc.getUnSegmentedContentCopy();
+			if (codeSensitive && tf.hasCode()) {
+				// same as TextFragment.compareTo(frag, true): the text and the data of the codes
+				StringBuilder tmp = new StringBuilder(tf.getText());
+				tmp.append('\uFFFF');
+				for (Code code : tf.getCodes()) {
+					tmp.append(code.toString()).append('\uFFFF');
+				}
+				text = tmp.toString();
+			} else {
+				text = tf.getText();
+			}
+			referent = tu.isReferent();
+			hash = text.hashCode() * 31 + (referent ? 1 : 0);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof DiffKey)) {
+				return false;
+			}
+			DiffKey other = (DiffKey) obj;
+			return hash == other.hash && referent == other.referent && text.equals(other.text);
+		}
+	}
+
+	/**
+	 * Event store that leverages the matched TextUnits of the new document as its events are replayed.
+	 * The events can be replayed only once.
+	 */
+	private class LeveragingEventStore implements IEventStore {
+		private final IEventStore events;
+		private final Map<Integer, ITextUnit> matches;
+		private boolean replayed = false;
+
+		public LeveragingEventStore(IEventStore events, Map<Integer, ITextUnit> matches) {
+			this.events = events;
+			this.matches = matches;
+		}
+
+		@Override
+		public void add(Event event) {
+			events.add(event);
+		}
+
+		@Override
+		public int size() {
+			return events.size();
+		}
+
+		@Override
+		public Iterator<Event> iterator() {
+			if (replayed) {
+				throw new IllegalStateException("The events of the new document can be replayed only once.");
 			}
+			replayed = true;
+			final Iterator<Event> iter = events.iterator();
+			return new Iterator<Event>() {
+				private int tuIndex = 0;
+
+				@Override
+				public boolean hasNext() {
+					return iter.hasNext();
+				}
+
+				@Override
+				public Event next() {
+					Event event = iter.next();
+					if (event.isTextUnit()) {
+						ITextUnit oldTu = matches.get(tuIndex++);
+						if (oldTu != null) {
+							leverage(oldTu, event.getTextUnit());
+						}
+					}
+					return event;
+				}
+
+				@Override
+				public void remove() {
+					iter.remove();
+				}
+			};
+		}
+
+		@Override
+		public void close() {
+			events.close();
 		}
 	}
 }
@@ -0,0 +1,353 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.steps.diffleverage;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.lib.search.lucene.analysis.AlphabeticNgramTokenizer;
+import net.sf.okapi.lib.search.lucene.scorer.Util;
+
+/**
+ * Fuzzily match the source of old and new {@link ITextUnit}s using an inverted index of the n-grams of the old
+ * TextUnits. The score is the same Dice coefficient as the one given by
+ * {@link Util#calculateNgramDiceCoefficient(String, String, AlphabeticNgramTokenizer)}, but it is computed from the
+ * number of n-grams each new TextUnit shares with the old ones, so the TextUnits are never compared pair by pair.
+ * Like for {@link FuzzyTextUnitComparator}, isReferent() must be the same in order to be a match.
+ * <p>
+ * All the old TextUnits sharing enough n-grams with a new TextUnit are scored, and the {@link #getMaxCandidates()}
+ * best ones are kept as its candidates. The scoring can be run in parallel.
+ * <p>
+ * A source shorter than the n-gram size gives a single shorter n-gram, so it can still be matched.
+ */
+public class FuzzyTextUnitMatcher {
+	private static final int NGRAM_SIZE = 3;
+	/**
+	 * Minimum number of new TextUnits per thread when the scoring is run in parallel.
+	 */
+	private static final int MIN_CHUNK_SIZE = 500;
+
+	private final int threshold;
+	private final int maxCandidates;
+	private final int threadCount;
+	private final AlphabeticNgramTokenizer tokenizer;
+
+	// index of the old TextUnits
+	private Map<String, Integer> ngramIds;
+	private int[][] postings;
+	private int[] oldSizes;
+	private boolean[] oldReferents;
+
+	/**
+	 * Creates a new FuzzyTextUnitMatcher.
+	 * @param threshold the minimum score (between 1 and 100) of a match.
+	 * @param maxCandidates the maximum number of old TextUnits kept as candidates for each new TextUnit.
+	 * @param threadCount the number of threads used to score the new TextUnits.
+	 * @param localeId the locale of the source of the TextUnits.
+	 */
+	public FuzzyTextUnitMatcher(final int threshold, final int maxCandidates, final int threadCount,
+			final LocaleId localeId) {
+		this.threshold = threshold;
+		this.maxCandidates = Math.max(1, maxCandidates);
+		this.threadCount = Math.max(1, threadCount);
+		tokenizer = Util.createNgramTokenizer(NGRAM_SIZE, localeId);
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	public int getMaxCandidates() {
+		return maxCandidates;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Matches the old and new TextUnits that are not matched yet. Each old TextUnit is matched to at most one new
+	 * TextUnit: the new TextUnits are processed in document order and take their best old TextUnit still available.
+	 * @param oldTextUnits the old TextUnits.
+	 * @param newTextUnits the new TextUnits.
+	 * @param matches the matches already found, as indexes of old TextUnits mapped to indexes of new TextUnits.
+	 * The new matches are added to this map.
+	 */
+	public void match(final List<ITextUnit> oldTextUnits, final List<ITextUnit> newTextUnits,
+			final Map<Integer, Integer> matches) {
+		boolean[] oldMatched = new boolean[oldTextUnits.size()];
+		boolean[] newMatched = new boolean[newTextUnits.size()];
+		for (Map.Entry<Integer, Integer> m : matches.entrySet()) {
+			oldMatched[m.getKey()] = true;
+			newMatched[m.getValue()] = true;
+		}
+
+		try {
+			buildIndex(oldTextUnits, oldMatched);
+
+			// tokenize the new TextUnits (the tokenizer cannot be shared between threads)
+			final int[][] newNgrams = new int[newTextUnits.size()][];
+			final int[] newSizes = new int[newTextUnits.size()];
+			final boolean[] newReferents = new boolean[newTextUnits.size()];
+			for (int i = 0; i < newTextUnits.size(); i++) {
+				if (newMatched[i]) {
+					continue;
+				}
+				ITextUnit tu = newTextUnits.get(i);
+				newReferents[i] = tu.isReferent();
+				List<String> ngrams = tokenize(tu);
+				newSizes[i] = ngrams.size();
+				newNgrams[i] = getIndexedNgrams(ngrams);
+			}
+
+			int[][] candidates = score(newNgrams, newSizes, newReferents);
+
+			// assign the best candidate still available to each new TextUnit
+			for (int i = 0; i < candidates.length; i++) {
+				if (candidates[i] == null) {
+					continue;
+				}
+				for (int oldIndex : candidates[i]) {
+					if (!oldMatched[oldIndex]) {
+						oldMatched[oldIndex] = true;
+						matches.put(oldIndex, i);
+						break;
+					}
+				}
+			}
+		} finally {
+			// help java gc
+			ngramIds = null;
+			postings = null;
+			oldSizes = null;
+			oldReferents = null;
+		}
+	}
+
+	private void buildIndex(final List<ITextUnit> oldTextUnits, final boolean[] oldMatched) {
+		ngramIds = new HashMap<String, Integer>();
+		oldSizes = new int[oldTextUnits.size()];
+		oldReferents = new boolean[oldTextUnits.size()];
+		List<int[]> lists = new ArrayList<int[]>();
+		List<Integer> listSizes = new ArrayList<Integer>();
+
+		for (int i = 0; i < oldTextUnits.size(); i++) {
+			if (oldMatched[i]) {
+				continue;
+			}
+			ITextUnit tu = oldTextUnits.get(i);
+			oldReferents[i] = tu.isReferent();
+			List<String> ngrams = tokenize(tu);
+			oldSizes[i] = ngrams.size();
+			for (String ngram : ngrams) {
+				Integer id = ngramIds.get(ngram);
+				if (id == null) {
+					id = lists.size();
+					ngramIds.put(ngram, id);
+					lists.add(new int[4]);
+					listSizes.add(0);
+				}
+				int[] list = lists.get(id);
+				int size = listSizes.get(id);
+				if (size == list.length) {
+					list = Arrays.copyOf(list, size * 2);
+					lists.set(id, list);
+				}
+				list[size] = i;
+				listSizes.set(id, size + 1);
+			}
+		}
+
+		postings = new int[lists.size()][];
+		for (int id = 0; id < postings.length; id++) {
+			postings[id] = Arrays.copyOf(lists.get(id), listSizes.get(id));
+		}
+	}
+
+	/**
+	 * Gets the distinct n-grams of the source of a TextUnit.
+	 */
+	private List<String> tokenize(final ITextUnit tu) {
+		List<String> ngrams = new ArrayList<String>();
+		Map<String, Boolean> seen = new HashMap<String, Boolean>();
+		try {
+			tokenizer.reset(new StringReader(tu.getSource().getUnSegmentedContentCopy().getText()));
+			while (tokenizer.incrementToken()) {
+				String ngram = tokenizer.getTermAttribute().toString();
+				if (seen.put(ngram, Boolean.TRUE) == null) {
+					ngrams.add(ngram);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Error tokenizing source TextUnits", e);
+		}
+		return ngrams;
+	}
+
+	/**
+	 * Gets the ids of the n-grams found in the index, sorted from the rarest to the most common.
+	 */
+	private int[] getIndexedNgrams(final List<String> ngrams) {
+		long[] keys = new long[ngrams.size()];
+		int count = 0;
+		for (String ngram : ngrams) {
+			Integer id = ngramIds.get(ngram);
+			if (id != null) {
+				keys[count++] = ((long) postings[id].length << 32) | id;
+			}
+		}
+		Arrays.sort(keys, 0, count);
+		int[] ids = new int[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = (int) keys[i];
+		}
+		return ids;
+	}
+
+	/**
+	 * Scores the new TextUnits, in parallel if needed.
+	 * @return for each new TextUnit, the indexes of the best old TextUnits at or above the threshold
+	 * (at most {@link #getMaxCandidates()}), from the best to the worst score, or null.
+	 */
+	private int[][] score(final int[][] newNgrams, final int[] newSizes, final boolean[] newReferents) {
+		final int[][] candidates = new int[newNgrams.length][];
+		int chunkCount = Math.min(threadCount, (newNgrams.length + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE);
+		if (chunkCount <= 1) {
+			new Scorer(newNgrams, newSizes, newReferents, candidates, 0, newNgrams.length).call();
+			return candidates;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(chunkCount);
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			int chunkSize = (newNgrams.length + chunkCount - 1) / chunkCount;
+			for (int start = 0; start < newNgrams.length; start += chunkSize) {
+				results.add(executor.submit(new Scorer(newNgrams, newSizes, newReferents, candidates,
+						start, Math.min(newNgrams.length, start + chunkSize))));
+			}
+			for (Future<Void> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while matching TextUnits", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error matching TextUnits", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return candidates;
+	}
+
+	/**
+	 * Scores a range of new TextUnits. Only reads the index, so several scorers can run at the same time.
+	 */
+	private class Scorer implements Callable<Void> {
+		private final int[][] newNgrams;
+		private final int[] newSizes;
+		private final boolean[] newReferents;
+		private final int[][] candidates;
+		private final int start;
+		private final int end;
+		// number of n-grams shared with each old TextUnit, reset after each new TextUnit
+		private final int[] counts;
+		private final int[] touched;
+
+		public Scorer(int[][] newNgrams, int[] newSizes, boolean[] newReferents, int[][] candidates,
+				int start, int end) {
+			this.newNgrams = newNgrams;
+			this.newSizes = newSizes;
+			this.newReferents = newReferents;
+			this.candidates = candidates;
+			this.start = start;
+			this.end = end;
+			counts = new int[oldSizes.length];
+			touched = new int[oldSizes.length];
+		}
+
+		@Override
+		public Void call() {
+			for (int i = start; i < end; i++) {
+				if (newNgrams[i] != null) {
+					candidates[i] = score(newNgrams[i], newSizes[i], newReferents[i]);
+				}
+			}
+			return null;
+		}
+
+		private int[] score(int[] ngrams, int size, boolean referent) {
+			int touchedCount = 0;
+			for (int id : ngrams) {
+				for (int oldIndex : postings[id]) {
+					if (counts[oldIndex] == 0) {
+						if (oldReferents[oldIndex] != referent || !canReachThreshold(size, oldSizes[oldIndex])) {
+							continue;
+						}
+						touched[touchedCount++] = oldIndex;
+					}
+					counts[oldIndex]++;
+				}
+			}
+
+			// keep the best candidates at or above the threshold, best score first
+			long[] keys = new long[touchedCount];
+			int count = 0;
+			for (int j = 0; j < touchedCount; j++) {
+				int oldIndex = touched[j];
+				float score = Util.calculateDiceCoefficient(counts[oldIndex], size, oldSizes[oldIndex]);
+				counts[oldIndex] = 0;
+				if (score >= threshold) {
+					// highest score first, then lowest index
+					keys[count++] = ((long) (Integer.MAX_VALUE - Float.floatToIntBits(score)) << 32) | oldIndex;
+				}
+			}
+			if (count == 0) {
+				return null;
+			}
+			Arrays.sort(keys, 0, count);
+			int[] result = new int[Math.min(count, maxCandidates)];
+			for (int j = 0; j < result.length; j++) {
+				result[j] = (int) keys[j];
+			}
+			return result;
+		}
+
+		/**
+		 * Indicates if two TextUnits with the given number of n-grams can have a score at or above the threshold.
+		 * The best possible score is when all the n-grams of the smallest one are shared.
+		 */
+		private boolean canReachThreshold(int size1, int size2) {
+			return Util.calculateDiceCoefficient(Math.min(size1, size2), size1, size2) >= threshold;
+		}
+	}
+}
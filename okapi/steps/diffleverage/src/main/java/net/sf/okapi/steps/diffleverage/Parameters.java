@@ -34,6 +34,8 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 	private boolean codesensitive;
 	private boolean diffOnly;
 	private boolean copyToTarget;
+	private int maxCandidates;
+	private int threadCount;
 	//private boolean diffOnSentences;
 	
 	public Parameters() {
@@ -47,6 +49,8 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 		codesensitive = true;
 		diffOnly = false;
 		copyToTarget = false;
+		maxCandidates = 100;
+		threadCount = 1;
 		//diffOnSentences = false;
 	}
 
@@ -58,6 +62,8 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 		codesensitive = buffer.getBoolean("codesensitive", codesensitive);
 		diffOnly = buffer.getBoolean("diffOnly", diffOnly);
 		copyToTarget = buffer.getBoolean("copyToTarget", copyToTarget);
+		maxCandidates = buffer.getInteger("maxCandidates", maxCandidates);
+		threadCount = buffer.getInteger("threadCount", threadCount);
 		//diffOnSentences = buffer.getBoolean("diffOnSentences", diffOnSentences);
 	}
 	
@@ -68,6 +74,8 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 		buffer.setParameter("codesensitive", codesensitive);
 		buffer.setParameter("diffOnly", diffOnly);
 		buffer.setParameter("copyToTarget", copyToTarget);
+		buffer.setParameter("maxCandidates", maxCandidates);
+		buffer.setParameter("threadCount", threadCount);
 		//buffer.setParameter("diffOnSentences", diffOnSentences);
 		return buffer.toString();
 	}
@@ -81,6 +89,10 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 		desc.add("copyToTarget", 
 				"Copy to/over the target? (WARNING: Copied target will not be segmented!)", "Copy to/over the target (a leverage annotation " +
 				"will still be created). WARNING: Copied target will not be segmented and any exisiting target will be lost.");
+		desc.add("maxCandidates", "Maximum number of best old paragraphs kept for each fuzzy match",
+				"Maximum number of best scored old paragraphs kept for each new paragraph when the threshold is below 100");
+		desc.add("threadCount", "Number of threads used for the fuzzy matching",
+				"Number of threads used to score the new paragraphs when the threshold is below 100");
 		//desc.add("diffOnSentences", "Diff on sentences or paragraphs (if sentences then source and target must be aligned)?", "Diff On Sentences?");
 		return desc;
 	}
@@ -92,6 +104,12 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 		sip.setRange(1, 100);
 		sip.setVertical(false);
 		desc.addCheckboxPart(paramsDesc.get("codesensitive"));
+		sip = desc.addSpinInputPart(paramsDesc.get("maxCandidates"));
+		sip.setRange(1, 10000);
+		sip.setVertical(false);
+		sip = desc.addSpinInputPart(paramsDesc.get("threadCount"));
+		sip.setRange(1, 64);
+		sip.setVertical(false);
 		desc.addSeparatorPart();
 		desc.addCheckboxPart(paramsDesc.get("diffOnly"));
 		desc.addCheckboxPart(paramsDesc.get("copyToTarget"));
@@ -131,6 +149,22 @@ public class Parameters extends BaseParameters implements IEditorDescriptionProv
 		return copyToTarget;
 	}
 
+	public int getMaxCandidates() {
+		return maxCandidates;
+	}
+
+	public void setMaxCandidates(int maxCandidates) {
+		this.maxCandidates = maxCandidates;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
 //	public boolean isDiffOnSentences() {
 //		return diffOnSentences;
 //	}
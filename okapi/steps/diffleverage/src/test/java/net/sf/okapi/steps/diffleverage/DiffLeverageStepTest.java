@@ -113,6 +113,54 @@ public class DiffLeverageStepTest {
 		assertEquals(EventType.END_BATCH, el.remove(0).getEventType());
 	}
 
+	@Test
+	public void diffLeverageSimplePOFilesOnDisk() throws URISyntaxException {
+		initializePipeline(new POFilter());
+		// write all the events of the new document to disk
+		diffLeverage.setMaxEventsMemory(0);
+		
+		URL url = DiffLeverageStepTest.class.getResource("/Test_en_fr_old.po");
+		RawDocument t = new RawDocument(url.toURI(), "UTF-8", LocaleId.ENGLISH, LocaleId.FRENCH);
+		t.setFilterConfigId("okf_po");
+		diffLeverage.setSecondInput(t);
+		diffLeverage.setTargetLocale(LocaleId.FRENCH);
+
+		pipeline.startBatch();
+
+		pipeline.process(new RawDocument(this.getClass().getResourceAsStream("/Test_en_fr_new.po"),
+				"UTF-8", LocaleId.ENGLISH, LocaleId.FRENCH));
+
+		pipeline.endBatch();
+
+		List<Event> el = eventObserver.getResult();
+		assertEquals(EventType.START_BATCH, el.remove(0).getEventType());
+		assertEquals(EventType.START_BATCH_ITEM, el.remove(0).getEventType());
+		assertEquals(EventType.START_DOCUMENT, el.remove(0).getEventType());
+		assertEquals(EventType.DOCUMENT_PART, el.remove(0).getEventType());
+
+		Event tue1 = el.remove(0);
+		assertEquals(EventType.TEXT_UNIT, tue1.getEventType());
+		Assert.assertNotNull(tue1.getTextUnit().getTarget(LocaleId.FRENCH).getAnnotation(DiffMatchAnnotation.class));
+		Assert.assertEquals("Message pour l'identificateur name100 (old)", tue1.getTextUnit()
+				.getTarget(LocaleId.FRENCH).toString());
+
+		Event tue2 = el.remove(0);
+		assertEquals(EventType.TEXT_UNIT, tue2.getEventType());
+		Assert.assertNull(tue2.getTextUnit().getTarget(LocaleId.FRENCH).getAnnotation(DiffMatchAnnotation.class));
+		Assert.assertEquals("Message pour l'identificateur name200", tue2.getTextUnit().getTarget(
+				LocaleId.FRENCH).toString());
+
+		Event tue3 = el.remove(0);
+		assertEquals(EventType.TEXT_UNIT, tue3.getEventType());
+		Assert.assertNotNull(tue3.getTextUnit().getTarget(LocaleId.FRENCH).getAnnotation(DiffMatchAnnotation.class));
+		Assert.assertEquals("Message pour l'identificateur name300 (old)", tue3.getTextUnit()
+				.getTarget(LocaleId.FRENCH).toString());
+
+		assertEquals(EventType.END_DOCUMENT, el.remove(0).getEventType());
+		assertEquals(EventType.END_BATCH_ITEM, el.remove(0).getEventType());
+		assertEquals(EventType.END_BATCH, el.remove(0).getEventType());
+	}
+
 	@Test
 	public void diffLeverageThreeWayHtml() throws URISyntaxException {
 		initializePipeline(new HtmlFilter());
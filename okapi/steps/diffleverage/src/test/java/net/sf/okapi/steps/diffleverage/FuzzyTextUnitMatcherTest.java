@@ -0,0 +1,99 @@
+package net.sf.okapi.steps.diffleverage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.TextUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FuzzyTextUnitMatcherTest {
+
+	@Test
+	public void matchSimpleTextUnits() {
+		List<ITextUnit> oldTus = createTextUnits("The quick brown fox jumps over the dog",
+				"Hello world, this is a test", "Already matched");
+		List<ITextUnit> newTus = createTextUnits("Already matched", "Hello world, this is the test",
+				"The quick brown fox jumped over the dog", "Something completely different");
+		Map<Integer, Integer> matches = new HashMap<Integer, Integer>();
+		matches.put(2, 0);
+
+		FuzzyTextUnitMatcher matcher = new FuzzyTextUnitMatcher(70, 100, 1, LocaleId.ENGLISH);
+		matcher.match(oldTus, newTus, matches);
+		Assert.assertEquals(3, matches.size());
+		Assert.assertEquals(Integer.valueOf(0), matches.get(2));
+		Assert.assertEquals(Integer.valueOf(1), matches.get(1));
+		Assert.assertEquals(Integer.valueOf(2), matches.get(0));
+	}
+
+	@Test
+	public void matchOldTextUnitOnlyOnce() {
+		List<ITextUnit> oldTus = createTextUnits("Hello world, this is a test");
+		List<ITextUnit> newTus = createTextUnits("Hello world, this is the test", "Hello world, this is a test!");
+		Map<Integer, Integer> matches = new HashMap<Integer, Integer>();
+
+		new FuzzyTextUnitMatcher(70, 100, 1, LocaleId.ENGLISH).match(oldTus, newTus, matches);
+		Assert.assertEquals(1, matches.size());
+		Assert.assertEquals(Integer.valueOf(0), matches.get(0));
+	}
+
+	@Test
+	public void keepBestCandidatesWhenCapped() {
+		// every n-gram the best old TextUnit shares with the new one is found first in weaker old TextUnits
+		List<ITextUnit> oldTus = createTextUnits("alpha beta qwxzvkjq", "alpha beta ykufnpwr",
+				"beta gamma qwxzvkjq", "beta gamma ykufnpwr", "gamma delta qwxzvkjq", "gamma delta ykufnpwr",
+				"alpha beta gamma delta");
+		List<ITextUnit> newTus = createTextUnits("alpha beta gamma deltas");
+		Map<Integer, Integer> matches = new HashMap<Integer, Integer>();
+
+		new FuzzyTextUnitMatcher(70, 2, 1, LocaleId.ENGLISH).match(oldTus, newTus, matches);
+		Assert.assertEquals(1, matches.size());
+		Assert.assertEquals(Integer.valueOf(0), matches.get(6));
+	}
+
+	@Test
+	public void matchTextUnitsShorterThanNgrams() {
+		List<ITextUnit> oldTus = createTextUnits("No", "OK", "Hello world, this is a test");
+		List<ITextUnit> newTus = createTextUnits("OK", "Go", "Hello world, this is the test");
+		Map<Integer, Integer> matches = new HashMap<Integer, Integer>();
+
+		new FuzzyTextUnitMatcher(70, 100, 1, LocaleId.ENGLISH).match(oldTus, newTus, matches);
+		Assert.assertEquals(2, matches.size());
+		Assert.assertEquals(Integer.valueOf(0), matches.get(1));
+		Assert.assertEquals(Integer.valueOf(2), matches.get(2));
+	}
+
+	@Test
+	public void matchInParallel() {
+		List<ITextUnit> oldTus = new ArrayList<ITextUnit>();
+		List<ITextUnit> newTus = new ArrayList<ITextUnit>();
+		for (int i = 0; i < 2000; i++) {
+			oldTus.add(createTextUnit("Message for the identifier name" + i + " (old version)"));
+			newTus.add(createTextUnit("Message for the identifier name" + i + " (new version)"));
+		}
+
+		Map<Integer, Integer> matches1 = new HashMap<Integer, Integer>();
+		new FuzzyTextUnitMatcher(70, 100, 1, LocaleId.ENGLISH).match(oldTus, newTus, matches1);
+		Map<Integer, Integer> matches4 = new HashMap<Integer, Integer>();
+		new FuzzyTextUnitMatcher(70, 100, 4, LocaleId.ENGLISH).match(oldTus, newTus, matches4);
+		Assert.assertEquals(2000, matches1.size());
+		Assert.assertEquals(matches1, matches4);
+	}
+
+	private List<ITextUnit> createTextUnits(String... texts) {
+		List<ITextUnit> tus = new ArrayList<ITextUnit>();
+		for (String text : texts) {
+			tus.add(createTextUnit(text));
+		}
+		return tus;
+	}
+
+	private ITextUnit createTextUnit(String text) {
+		return new TextUnit(null, text);
+	}
+}
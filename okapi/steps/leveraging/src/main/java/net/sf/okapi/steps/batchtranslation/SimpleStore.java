@@ -82,7 +82,7 @@ class SimpleStore {
 	public void write (TextFragment tf) {
 		try {
 			dos.writeUTF(tf.getCodedText());
-			dos.writeUTF(Code.codesToString(tf.getCodes()));
+			Code.writeCodes(dos, tf.getCodes(), false);
 		}
 		catch ( IOException e ) {
 			throw new RuntimeException("Error while writing.", e);
@@ -96,8 +96,7 @@ class SimpleStore {
 	public TextFragment readNext () {
 		try {
 			String codedText = dis.readUTF();
-			String tmp = dis.readUTF();
-			TextFragment tf = new TextFragment(codedText, Code.stringToCodes(tmp));
+			TextFragment tf = new TextFragment(codedText, Code.readCodes(dis));
 			return tf;
 		}
 		catch ( EOFException e ) { // Normal end
@@ -20,8 +20,16 @@
 
 package net.sf.okapi.steps.leveraging;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.EventType;
@@ -40,21 +48,37 @@ import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.lib.translation.ITMQuery;
 import net.sf.okapi.steps.diffleverage.DiffMatchAnnotation;
 
+/**
+ * Leverages the text units by batches, using the {@link ITMQuery#batchLeverage(List)} method of the connector.
+ * <p>The size of the batches starts at {@link Parameters#getBatchSize()}. If a target batch time is set, the size
+ * is adjusted after each batch from its measured round-trip time, between 1 and {@link Parameters#getMaxBatchSize()}.
+ * A batch is also sent when its first event is older than the flush interval (if one is set). The interval is
+ * checked only when a text unit arrives, as a step can send events only from {@link #handleEvent(Event)}: if
+ * no text unit follows, a pending batch waits for the next full batch or the end of the document.
+ * Several batches can be in flight at the same time, each with its own instance of the connector: the events are
+ * always sent to the next step in the order they were received.
+ */
 public class BatchTmLeveragingStep extends BasePipelineStep {
-	private static final int BATCH_LEVERAGE_MAX = 30;
 
 	private List<Event> batchedEvents;
 	private int tuEventCount;
+	private long batchStart;
+	private volatile int batchSize;
+	private LinkedList<Future<List<Event>>> pending;
+	private LinkedBlockingQueue<ITMQuery> freeConnectors;
+	private List<ITMQuery> connectors;
+	private ExecutorService executor;
 	private LocaleId sourceLocale;
 	private LocaleId targetLocale;
 	private Parameters params;
-	private ITMQuery connector;
 
 	private String rootDir;
 
 	public BatchTmLeveragingStep() {
 		params = new Parameters();
-		batchedEvents = new LinkedList<Event>();
+		batchedEvents = new ArrayList<Event>();
+		pending = new LinkedList<Future<List<Event>>>();
+		connectors = new ArrayList<ITMQuery>();
 	}
 
 	@StepParameterMapping(parameterType = StepParameterType.SOURCE_LOCALE)
@@ -92,19 +116,26 @@ public class BatchTmLeveragingStep extends BasePipelineStep {
 		this.params = (Parameters) params;
 	}
 
+	/**
+	 * Gets the current size of the batches.
+	 * @return the number of text units to leverage in the next batch.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
 	@Override
 	public Event handleEvent(Event event) {
 		switch (event.getEventType()) {
 		case TEXT_UNIT:
 			ITextUnit tu = event.getTextUnit();
-			batchedEvents.add(event);
+			addToBatch(event);
 
 			if (!canLeverageTu(tu)) {
-				return Event.NOOP_EVENT;
+				return getFinishedBatches();
 			}
 
-			handleTextUnit(event);
-			break;
+			return handleTextUnit(event);
 		case START_BATCH_ITEM:
 			event = handleStartBatchItem(event);
 			return event;
@@ -124,34 +155,77 @@ public class BatchTmLeveragingStep extends BasePipelineStep {
 			event = handleEndDocument(event);
 			return event;
 		default:
-			batchedEvents.add(event);
+			addToBatch(event);
 			break;
 		}
-		return Event.NOOP_EVENT;
+		return getFinishedBatches();
 	}
 
 	@Override
 	protected Event handleTextUnit(Event event) {
 		// if we get here then it really is a TU we care to leverage
 		tuEventCount++;
-		if (tuEventCount >= BATCH_LEVERAGE_MAX) {
-			tuEventCount = 0;
-			batchLeverage();
-			MultiEvent me = new MultiEvent();
-			for (Event e : batchedEvents) {
-				me.addEvent(e);
-			}
-			batchedEvents.clear();
-			return new Event(EventType.MULTI_EVENT, me);
+		if ((tuEventCount >= batchSize) || isFlushDue()) {
+			sendBatch();
 		}
-
-		return Event.NOOP_EVENT;
+		return getFinishedBatches();
 	}
 
 	@Override
 	protected Event handleStartBatch(Event event) {
 		tuEventCount = 0;
+		batchSize = Math.max(1, params.getBatchSize());
+
+		// One connector per batch that can be in flight
+		closeConnectors();
+		int count = Math.max(1, params.getBatchesInFlight());
+		freeConnectors = new LinkedBlockingQueue<ITMQuery>();
+		for (int i = 0; i < count; i++) {
+			ITMQuery connector = createConnector();
+			connectors.add(connector);
+			freeConnectors.add(connector);
+		}
+		if (count > 1) {
+			executor = Executors.newFixedThreadPool(count);
+		}
+
+		return event;
+	}
+
+	@Override
+	protected Event handleEndBatch(Event event) {
+		closeConnectors();
+		return event;
+	}
+
+	@Override
+	public void destroy() {
+		closeConnectors();
+	}
+
+	@Override
+	protected Event handleEndDocument(Event event) {
+		tuEventCount = 0;
+
+		// leverage any remaining batched TextUnits for this document
+		if (!batchedEvents.isEmpty()) {
+			sendBatch();
+		}
+		MultiEvent me = new MultiEvent();
+		while (!pending.isEmpty()) {
+			addEvents(me, pending.removeFirst());
+		}
+		if (me.size() == 0) {
+			return event;
+		}
 
+		// add END DOCUMENT event
+		me.addEvent(event);
+		return new Event(EventType.MULTI_EVENT, me);
+	}
+
+	private ITMQuery createConnector() {
+		ITMQuery connector;
 		try {
 			connector = (ITMQuery) Class.forName(params.getResourceClassName()).newInstance();
 		} catch (InstantiationException e) {
@@ -176,29 +250,121 @@ public class BatchTmLeveragingStep extends BasePipelineStep {
 
 		connector.setThreshold(params.getThreshold());
 		connector.setMaximumHits(5);
+		return connector;
+	}
 
-		return event;
+	private void closeConnectors() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		pending.clear();
+		batchedEvents.clear();
+		for (ITMQuery connector : connectors) {
+			connector.close();
+		}
+		connectors.clear();
 	}
 
-	@Override
-	protected Event handleEndDocument(Event event) {
-		tuEventCount = 0;
+	private void addToBatch(Event event) {
+		if (batchedEvents.isEmpty()) {
+			batchStart = System.currentTimeMillis();
+		}
+		batchedEvents.add(event);
+	}
 
-		// leverage any remaining batched TextUnits for this document
-		if (!batchedEvents.isEmpty()) {
-			batchLeverage();
-			MultiEvent me = new MultiEvent();
-			for (Event e : batchedEvents) {
-				me.addEvent(e);
+	// Checked only when a text unit arrives: there is no timer sending the batch on its own
+	private boolean isFlushDue() {
+		return (params.getBatchFlushInterval() > 0)
+			&& (System.currentTimeMillis()-batchStart >= params.getBatchFlushInterval());
+	}
+
+	/**
+	 * Sends the current batch to a connector. The batch is leveraged in the calling thread
+	 * if only one batch can be in flight at a time.
+	 */
+	private void sendBatch() {
+		tuEventCount = 0;
+		final List<Event> events = batchedEvents;
+		batchedEvents = new ArrayList<Event>();
+		Callable<List<Event>> task = new Callable<List<Event>>() {
+			public List<Event> call() throws InterruptedException {
+				ITMQuery connector = freeConnectors.take();
+				try {
+					long start = System.currentTimeMillis();
+					int count = batchLeverage(events, connector);
+					adaptBatchSize(count, System.currentTimeMillis()-start);
+				} finally {
+					freeConnectors.add(connector);
+				}
+				return events;
+			}
+		};
+		if (executor == null) {
+			FutureTask<List<Event>> future = new FutureTask<List<Event>>(task);
+			future.run();
+			pending.add(future);
+		} else {
+			// Wait for the oldest batch if too many are in flight
+			// (its events are sent with the next finished batches)
+			if (pending.size() >= connectors.size()) {
+				waitFor(pending.getFirst());
 			}
-			batchedEvents.clear();
+			pending.add(executor.submit(task));
+		}
+	}
 
-			// add END DOCUMENT event
-			me.addEvent(event);
-			return new Event(EventType.MULTI_EVENT, me);
+	/**
+	 * Adjusts the size of the next batches from the round-trip time of the last one.
+	 * @param count the number of text units in the last batch.
+	 * @param time the time taken by the last batch (in milliseconds).
+	 */
+	private synchronized void adaptBatchSize(int count, long time) {
+		int target = params.getTargetBatchTime();
+		if (target <= 0) {
+			return;
+		}
+		if (time > target) {
+			batchSize = Math.max(1, batchSize/2);
+		} else if ((time < target/2) && (count >= batchSize)) {
+			batchSize = Math.min(Math.max(1, params.getMaxBatchSize()), batchSize*2);
 		}
+	}
 
-		return event;
+	/**
+	 * Gets the events of the oldest batches that are done, in order.
+	 * @return a multi-event with the events of the finished batches, or a no-operation event
+	 * if the oldest batch is not finished yet.
+	 */
+	private Event getFinishedBatches() {
+		MultiEvent me = new MultiEvent();
+		while (!pending.isEmpty() && pending.getFirst().isDone()) {
+			addEvents(me, pending.removeFirst());
+		}
+		if (me.size() == 0) {
+			return Event.NOOP_EVENT;
+		}
+		return new Event(EventType.MULTI_EVENT, me);
+	}
+
+	private void addEvents(MultiEvent me, Future<List<Event>> future) {
+		for (Event e : waitFor(future)) {
+			me.addEvent(e);
+		}
+	}
+
+	private List<Event> waitFor(Future<List<Event>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while leveraging a batch.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException("Error while leveraging a batch.", e.getCause());
+		}
 	}
 
 	private boolean canLeverageTu(ITextUnit tu) {
@@ -227,9 +393,15 @@ public class BatchTmLeveragingStep extends BasePipelineStep {
 		return true;
 	}
 
-	private void batchLeverage() {
+	/**
+	 * Leverages the text units of a batch of events.
+	 * @param events the batched events.
+	 * @param connector the connector to use.
+	 * @return the number of text units leveraged.
+	 */
+	private int batchLeverage(List<Event> events, ITMQuery connector) {
 		List<ITextUnit> tus = new LinkedList<ITextUnit>();
-		for (Event e : batchedEvents) {
+		for (Event e : events) {
 			if (e.getEventType() == EventType.TEXT_UNIT) {
 				ITextUnit tu = e.getTextUnit();
 				if (canLeverageTu(tu)) {
@@ -239,7 +411,7 @@ public class BatchTmLeveragingStep extends BasePipelineStep {
 		}
 		
 		if (tus.isEmpty()) {
-			return;
+			return 0;
 		}
 		
 		connector.batchLeverage(tus);
@@ -283,6 +455,7 @@ public class BatchTmLeveragingStep extends BasePipelineStep {
 				}
 			}
 		}
+		return tus.size();
 	}
 
 	private boolean wasDiffLeveraged(ITextUnit tu) {
@@ -39,6 +39,11 @@ public class Parameters extends BaseParameters {
 	private static final String TARGETPREFIX = "targetPrefix";
 	private static final String TARGETPREFIXTHRESHOLD = "targetPrefixThreshold";
 	private static final String COPYSOURCEONNOTEXT = "copySourceOnNoText";
+	private static final String BATCHSIZE = "batchSize";
+	private static final String MAXBATCHSIZE = "maxBatchSize";
+	private static final String TARGETBATCHTIME = "targetBatchTime";
+	private static final String BATCHFLUSHINTERVAL = "batchFlushInterval";
+	private static final String BATCHESINFLIGHT = "batchesInFlight";
 	
 	private String resourceClassName;
 	private String resourceParameters;
@@ -57,6 +62,11 @@ public class Parameters extends BaseParameters {
 	private String targetPrefix;
 	private int targetPrefixThreshold;
 	private boolean copySourceOnNoText;
+	private int batchSize;
+	private int maxBatchSize;
+	private int targetBatchTime;
+	private int batchFlushInterval;
+	private int batchesInFlight;
 
 	public Parameters () {
 		reset();
@@ -198,6 +208,51 @@ public class Parameters extends BaseParameters {
 		this.targetPrefixThreshold = targetPrefixThreshold;
 	}
 
+	public int getBatchSize () {
+		return batchSize;
+	}
+
+	public void setBatchSize (int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public int getMaxBatchSize () {
+		return maxBatchSize;
+	}
+
+	public void setMaxBatchSize (int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	public int getTargetBatchTime () {
+		return targetBatchTime;
+	}
+
+	public void setTargetBatchTime (int targetBatchTime) {
+		this.targetBatchTime = targetBatchTime;
+	}
+
+	public int getBatchFlushInterval () {
+		return batchFlushInterval;
+	}
+
+	/**
+	 * Sets the maximum age of a pending batch, in milliseconds. The age is checked only when
+	 * a text unit arrives, so an idle pipeline does not flush the pending batch.
+	 * @param batchFlushInterval the maximum age of a batch, or 0 to not send batches by age.
+	 */
+	public void setBatchFlushInterval (int batchFlushInterval) {
+		this.batchFlushInterval = batchFlushInterval;
+	}
+
+	public int getBatchesInFlight () {
+		return batchesInFlight;
+	}
+
+	public void setBatchesInFlight (int batchesInFlight) {
+		this.batchesInFlight = batchesInFlight;
+	}
+
 	@Override
 	public void reset() {
 		leverage = true;
@@ -217,6 +272,12 @@ public class Parameters extends BaseParameters {
 		targetPrefix = "FUZZY__";
 		targetPrefixThreshold = 99;
 		copySourceOnNoText = false;
+		// Batch leveraging
+		batchSize = 30;
+		maxBatchSize = 1000;
+		targetBatchTime = 0; // No adaptation
+		batchFlushInterval = 0; // No time-based flush
+		batchesInFlight = 1;
 	}
 
 	@Override
@@ -240,6 +301,11 @@ public class Parameters extends BaseParameters {
 		targetPrefix = buffer.getString(TARGETPREFIX, targetPrefix);
 		targetPrefixThreshold = buffer.getInteger(TARGETPREFIXTHRESHOLD, targetPrefixThreshold);
 		copySourceOnNoText = buffer.getBoolean(COPYSOURCEONNOTEXT, copySourceOnNoText);
+		batchSize = buffer.getInteger(BATCHSIZE, batchSize);
+		maxBatchSize = buffer.getInteger(MAXBATCHSIZE, maxBatchSize);
+		targetBatchTime = buffer.getInteger(TARGETBATCHTIME, targetBatchTime);
+		batchFlushInterval = buffer.getInteger(BATCHFLUSHINTERVAL, batchFlushInterval);
+		batchesInFlight = buffer.getInteger(BATCHESINFLIGHT, batchesInFlight);
 	}
 
 	@Override
@@ -262,6 +328,11 @@ public class Parameters extends BaseParameters {
 		buffer.setString(TARGETPREFIX, targetPrefix);
 		buffer.setInteger(TARGETPREFIXTHRESHOLD, targetPrefixThreshold);
 		buffer.setBoolean(COPYSOURCEONNOTEXT, copySourceOnNoText);
+		buffer.setInteger(BATCHSIZE, batchSize);
+		buffer.setInteger(MAXBATCHSIZE, maxBatchSize);
+		buffer.setInteger(TARGETBATCHTIME, targetBatchTime);
+		buffer.setInteger(BATCHFLUSHINTERVAL, batchFlushInterval);
+		buffer.setInteger(BATCHESINFLIGHT, batchesInFlight);
 		return buffer.toString();
 	}
 
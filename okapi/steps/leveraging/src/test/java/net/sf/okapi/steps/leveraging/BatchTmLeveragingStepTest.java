@@ -5,7 +5,9 @@ import static org.junit.Assert.*;
 import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
 
+import net.sf.okapi.common.Event;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.TestUtil;
 import net.sf.okapi.common.Util;
@@ -44,17 +46,41 @@ public class BatchTmLeveragingStepTest {
 	public void testSimpleStep ()
 		throws URISyntaxException
 	{
-		// Ensure output is deleted
-		File outFile = new File(root+"test01batch.out.html");
 		createTM();
+		BatchTmLeveragingStep levStep = createStep();
+		List<Event> events = process(levStep, "test01batch.out.html");
+		checkResults(events);
+	}
+	
+	@Test
+	public void testOverlappingAdaptiveBatches ()
+		throws URISyntaxException
+	{
+		createTM();
+		List<Event> expected = process(createStep(), "test01batch.out.html");
 		
-		IPipelineDriver pdriver = new PipelineDriver();
-		FilterConfigurationMapper fcMapper = new FilterConfigurationMapper();
-		fcMapper.addConfigurations(HtmlFilter.class.getName());
-		pdriver.setFilterConfigurationMapper(fcMapper);
-		pdriver.setRootDirectories(Util.deleteLastChar(root), Util.deleteLastChar(root)); // Don't include final separator
-		pdriver.addStep(new RawDocumentToFilterEventsStep());
+		BatchTmLeveragingStep levStep = createStep();
+		Parameters params = (Parameters)levStep.getParameters();
+		params.setBatchSize(2);
+		params.setMaxBatchSize(8);
+		params.setTargetBatchTime(60000);
+		params.setBatchesInFlight(3);
+		List<Event> events = process(levStep, "test01batch2.out.html");
+		checkResults(events);
 		
+		// Same events in the same order
+		assertEquals(expected.size(), events.size());
+		for ( int i=0; i<expected.size(); i++ ) {
+			assertEquals(expected.get(i).getEventType(), events.get(i).getEventType());
+			if ( expected.get(i).isTextUnit() ) {
+				assertEquals(expected.get(i).getTextUnit().getId(), events.get(i).getTextUnit().getId());
+			}
+		}
+		// Fast batches that are full make the batch size grow
+		assertTrue(levStep.getBatchSize() > 2);
+	}
+	
+	private BatchTmLeveragingStep createStep () {
 		BatchTmLeveragingStep levStep = new BatchTmLeveragingStep();
 		Parameters params = (Parameters)levStep.getParameters();
 		// Set connector to use
@@ -66,7 +92,20 @@ public class BatchTmLeveragingStepTest {
 		params.setThreshold(80);
 		// Set threshold for filling the target
 		params.setFillTargetThreshold(80);
+		return levStep;
+	}
+	
+	private List<Event> process (BatchTmLeveragingStep levStep,
+		String outName)
+	{
+		File outFile = new File(root+outName);
 		
+		IPipelineDriver pdriver = new PipelineDriver();
+		FilterConfigurationMapper fcMapper = new FilterConfigurationMapper();
+		fcMapper.addConfigurations(HtmlFilter.class.getName());
+		pdriver.setFilterConfigurationMapper(fcMapper);
+		pdriver.setRootDirectories(Util.deleteLastChar(root), Util.deleteLastChar(root)); // Don't include final separator
+		pdriver.addStep(new RawDocumentToFilterEventsStep());
 		pdriver.addStep(levStep);
 		
 		String inputPath = root+"/test01.html";
@@ -79,9 +118,12 @@ public class BatchTmLeveragingStepTest {
 		p.addObserver(o);
 		
 		pdriver.processBatch();
-		
+		return o.getResult();
+	}
+	
+	private void checkResults (List<Event> events) {
 		// Check exact
-		ITextUnit tu = o.getResult().get(8).getTextUnit();
+		ITextUnit tu = events.get(8).getTextUnit();
 		assertNotNull(tu);
 		AltTranslationsAnnotation a = tu.getTarget(locFR).getAnnotation(AltTranslationsAnnotation.class);
 		Assert.assertNotNull(a);				
@@ -89,7 +131,7 @@ public class BatchTmLeveragingStepTest {
 		
 		
 		// Check fuzzy
-		tu = o.getResult().get(11).getTextUnit();
+		tu = events.get(11).getTextUnit();
 		assertNotNull(tu);
 		a = tu.getTarget(locFR).getAnnotation(AltTranslationsAnnotation.class);
 		Assert.assertNotNull(a);				
@@ -113,5 +155,6 @@ public class BatchTmLeveragingStepTest {
 		tu = new TranslationUnit(source, target);
 		tmWriter.indexTranslationUnit(tu);
 		tmWriter.commit();
+		tmWriter.close();
 	}
 }
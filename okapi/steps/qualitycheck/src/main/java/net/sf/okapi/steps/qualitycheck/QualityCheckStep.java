@@ -188,13 +188,21 @@ public class QualityCheckStep extends BasePipelineStep {
 			else {
 				LOGGER.warning(String.format("Number of issues found = %d", count));
 			}
+			LOGGER.info("Time spent per check:\n" + session.getTimingReport());
 			
 			// Open the report if requested
 			if ( session.getParameters().getAutoOpen() ) {
 				Util.openURL((new File(finalPath)).getAbsolutePath());
 			}
 		}
+		// The worker threads are not needed until the next batch
+		session.shutdown();
 		return event;
 	}
 
+	@Override
+	public void destroy () {
+		session.shutdown();
+	}
+
 }
@@ -20,14 +20,13 @@
 
 package net.sf.okapi.steps.repetitionanalysis;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.IParameters;
 import net.sf.okapi.common.LocaleId;
-import net.sf.okapi.common.Util;
 import net.sf.okapi.common.annotation.AltTranslation;
 import net.sf.okapi.common.annotation.AltTranslationsAnnotation;
 import net.sf.okapi.common.pipeline.BasePipelineStep;
@@ -38,16 +37,8 @@ import net.sf.okapi.common.resource.ISegments;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.Segment;
 import net.sf.okapi.common.resource.TextFragment;
-import net.sf.okapi.tm.pensieve.common.MetadataType;
-import net.sf.okapi.tm.pensieve.common.TmHit;
-import net.sf.okapi.tm.pensieve.common.TranslationUnit;
-import net.sf.okapi.tm.pensieve.common.TranslationUnitVariant;
-import net.sf.okapi.tm.pensieve.seeker.ITmSeeker;
-import net.sf.okapi.tm.pensieve.seeker.PensieveSeeker;
-import net.sf.okapi.tm.pensieve.seeker.TmSeekerFactory;
-import net.sf.okapi.tm.pensieve.writer.ITmWriter;
-import net.sf.okapi.tm.pensieve.writer.PensieveWriter;
-import net.sf.okapi.tm.pensieve.writer.TmWriterFactory;
+import net.sf.okapi.common.resource.TextUnitUtil;
+import net.sf.okapi.steps.repetitionanalysis.RepetitionIndex.Repetition;
 
 /**
  * The step analyzes repetitions in input documents. Either exact or configurable fuzzy search is performed.
@@ -57,28 +48,21 @@ import net.sf.okapi.tm.pensieve.writer.TmWriterFactory;
  * AltTranslationsAnnotation's are attached to target segments, corresponding to repetitive source segments.
  * AltTranslationsAnnotation is not attached for the first repetitive segment not to be counted by counting steps
  * twice as repetitive with itself.
+ * <p>
+ * The segments of the current document are kept in an in-memory {@link RepetitionIndex}.
  */
 public class RepetitionAnalysisStep extends BasePipelineStep {
 
 	private Parameters params;
-	private boolean searchExact;	
 	private long tuCounter;	
 	private long groupCounter;	
-	private String tmDir;
-	private PensieveWriter tmWriter;
-	private ITmSeeker currentTm;
+	private RepetitionIndex index;
 	private LocaleId sourceLocale;
 	private LocaleId targetLocale;
 
 	public RepetitionAnalysisStep() {
 		super();
 		params = new Parameters();
-		//tmDir = Util.ensureSeparator(Util.getTempDirectory(), true) + "tm/";
-		
-		// For concurrent pipelines 
-		tmDir = String.format("%s~okapi-step-repetitionanalysis-%s/", 
-				Util.ensureSeparator(Util.getTempDirectory(), true), 
-				UUID.randomUUID().toString());		
 	}
 	
 	@Override
@@ -119,28 +103,17 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 	}
 	
 	private void close() {
-		if (tmWriter != null) {
-			tmWriter.close();
-			tmWriter = null;
-		}
-		if (currentTm != null) {
-			currentTm.close();
-			currentTm = null;
-		}
-		Util.deleteDirectory(tmDir, false);
+		index = null;
 	}
 	
 	@Override
 	protected Event handleStartDocument(Event event) {
 		close();
-		Util.createDirectories(tmDir);
-		searchExact = params.getFuzzyThreshold() >= 100;
 		
 		tuCounter = 0;
 		groupCounter = 1;
 		
-		tmWriter = (PensieveWriter) TmWriterFactory.createFileBasedTmWriter(tmDir, true);
-		currentTm = new PensieveSeeker(tmWriter.getIndexWriter());
+		index = new RepetitionIndex(params.getFuzzyThreshold(), params.getMaxHits());
 		
 		return super.handleStartDocument(event);
 	}
@@ -188,6 +161,9 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 				if (content.isEmpty()) continue;
 				
 				TextFragment tf = new TextFragment(content.getText());
+				// Repetitions are found on the normalized text, so line breaks and Unicode
+				// normalization forms don't hide them
+				String key = TextUnitUtil.getNormalizedCodedText(tf);
 				
 				String tuid = Long.toString(tuCounter);
 				String groupId = Long.toString(groupCounter);
@@ -195,28 +171,25 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 				
 				SegmentInfo info = new SegmentInfo(tuid, groupId, segId); 
 				
-				List<TmHit> hits = new ArrayList<TmHit>();
-				hits.addAll(currentTm.searchExact(tf, null));
-				if (!searchExact) {
-					hits.addAll(currentTm.searchFuzzy(tf, params.getFuzzyThreshold(), params.getMaxHits(), null));
-				}
+				List<Repetition> hits = index.search(key);
 								
 				if (hits.size() > 0) {
+					Map<SegmentInfo, Float> map = new HashMap<SegmentInfo, Float>();
+					for (Repetition hit : hits) {
+						map.put(hit.getInfo(), hit.getScore());
+					}
 					RepetitiveSegmentAnnotation ann =
-							new RepetitiveSegmentAnnotation(info, hits);
+							new RepetitiveSegmentAnnotation(info, map);
 					seg.setAnnotation(ann);
 					//System.out.println("= " + tf);
 					
-					for (TmHit hit : hits) {
-						TranslationUnit hitTu = hit.getTu();
-						
+					for (Repetition hit : hits) {
 						if (tsegments != null) {
 							//Segment tseg = tsegments.get(seg.getId()); // Always exists, created empty in case of no target							
-//							TextFragment stf = hitTu.getSource().getContent();
-//							TextFragment ttf = hitTu.getTarget().getContent();
 							TextFragment otf = new TextFragment(tf.getText());
-							TextFragment stf = new TextFragment(hitTu.getSource().getContent().getText());
-							TextFragment ttf = new TextFragment(hitTu.getTarget().getContent().getText());
+							TextFragment stf = new TextFragment(hit.getText());
+							// The tuid of the repeated segment, to have a unique target
+							TextFragment ttf = new TextFragment(hit.getInfo().getTuid());
 							
 							// For word counts
 							AltTranslationsAnnotation ata = tseg.getAnnotation(AltTranslationsAnnotation.class);
@@ -233,29 +206,16 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 					}					
 				}
 				
-				TranslationUnit ntu = new TranslationUnit(
-						new TranslationUnitVariant(sourceLocale, tf),
-						new TranslationUnitVariant(targetLocale == null ? sourceLocale : targetLocale, 
-								new TextFragment(tuid))); // To have a unique target
-				ntu.setMetadataValue(MetadataType.ID, tuid);
-				
-				// TODO create real MetadataTypes for these
-				ntu.setMetadataValue(MetadataType.GROUP_NAME, groupId);
-				ntu.setMetadataValue(MetadataType.FILE_NAME, segId);
-				
 				// The segment can be referenced from the maps in RSA of other segments, so we create a RSA for it
 				if (seg.getAnnotation(RepetitiveSegmentAnnotation.class) == null) {
 					RepetitiveSegmentAnnotation ann = 
-							new RepetitiveSegmentAnnotation(info, (List<TmHit>) null);
+							new RepetitiveSegmentAnnotation(info, new HashMap<SegmentInfo, Float>());
 					seg.setAnnotation(ann);
 				}
 				
-				tmWriter.indexTranslationUnit(ntu);
+				// Added right away for the situations of repetitive segments within a tu
+				index.add(key, tf.getText(), info);
 				//System.out.println("+ " + tf);
-				
-				// Should be called here after every segment addition to the TM for the situations 
-				// of repetitive segments within a tu
-				tmWriter.commit();
 			}
 			if (hasTranslationUnits) groupCounter++;
 		}
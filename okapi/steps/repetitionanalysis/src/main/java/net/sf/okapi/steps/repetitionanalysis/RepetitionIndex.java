@@ -0,0 +1,373 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.steps.repetitionanalysis;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import net.sf.okapi.common.exceptions.OkapiIOException;
+import net.sf.okapi.lib.search.lucene.analysis.NgramAnalyzer;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+/**
+ * In-memory index of the segments seen so far by the {@link RepetitionAnalysisStep}.
+ * <p>
+ * Exact repetitions are looked up in a hash table keyed by a 64-bit hash of the segment text.
+ * Fuzzy repetitions are looked up with a MinHash sketch of the 4-grams of the text, split into bands
+ * (locality-sensitive hashing): only the segments sharing at least one band with the searched text
+ * are scored, so a fuzzy repetition close to the threshold can be missed with a small probability.
+ * The 4-grams and the fuzzy score are the same as in a Pensieve TM. A text without any 4-gram
+ * (empty, or only stop n-grams) cannot have fuzzy repetitions: it is only looked up by its exact key.
+ * <p>
+ * Each search and addition takes a time proportional to the length of the text and to the number 
+ * of candidates, not to the number of indexed segments.
+ */
+public class RepetitionIndex {
+
+	private static final int NGRAM_LENGTH = 4;
+	private static final float ROUGH_CUTOFF = 0.5f;
+	private static final float WHITESPACE_OR_CASE_PENALTY = 2.0f;
+	private static final int NUM_HASHES = 64;
+	private static final int MAX_ROWS = 8;
+	private static final int[] SEEDS;
+	
+	static {
+		Random random = new Random(0x5EED);
+		SEEDS = new int[NUM_HASHES];
+		for (int i = 0; i < NUM_HASHES; i++) {
+			SEEDS[i] = random.nextInt();
+		}
+	}
+	
+	private final int fuzzyThreshold;
+	private final int maxHits;
+	private final NgramAnalyzer analyzer;
+	private final int rows;
+	private final int bands;
+	private final List<Entry> entries;
+	private final TLongIntHashMap exactIndex; // Key hash -> last entry with that hash
+	private final TLongObjectHashMap<TIntArrayList> bandIndex; // Band hash -> entries
+	
+	private static class Entry {
+		final String key;
+		final String text;
+		final SegmentInfo info;
+		final int previous; // Previous entry with the same key hash, or -1
+		int[] ngrams; // Sorted hashes of the unique n-grams, only for fuzzy search
+		
+		Entry(String key, String text, SegmentInfo info, int previous) {
+			this.key = key;
+			this.text = text;
+			this.info = info;
+			this.previous = previous;
+		}
+	}
+	
+	/**
+	 * A repetition found in the index.
+	 */
+	public static class Repetition {
+		private final SegmentInfo info;
+		private final String text;
+		private final float score;
+		
+		Repetition(SegmentInfo info, String text, float score) {
+			this.info = info;
+			this.text = text;
+			this.score = score;
+		}
+
+		/**
+		 * Gets the information of the repeated segment.
+		 * @return the information given when the segment was added.
+		 */
+		public SegmentInfo getInfo() {
+			return info;
+		}
+
+		/**
+		 * Gets the text of the repeated segment.
+		 * @return the text of the repeated segment.
+		 */
+		public String getText() {
+			return text;
+		}
+
+		/**
+		 * Gets the score of the repetition.
+		 * @return 100 for an exact repetition, the fuzzy score otherwise.
+		 */
+		public float getScore() {
+			return score;
+		}
+	}
+	
+	/**
+	 * Creates a new index.
+	 * @param fuzzyThreshold the minimal score of the fuzzy repetitions (1-100). Use 100 to
+	 * search only exact repetitions.
+	 * @param maxHits the maximum number of exact and of fuzzy repetitions to return for a search.
+	 */
+	public RepetitionIndex(int fuzzyThreshold, int maxHits) {
+		this.fuzzyThreshold = fuzzyThreshold;
+		this.maxHits = maxHits;
+		entries = new ArrayList<Entry>();
+		exactIndex = new TLongIntHashMap(1024, 0.5f, 0, -1);
+		
+		if (fuzzyThreshold < 100) {
+			// Use the largest number of rows per band for which the band threshold stays 
+			// below the Jaccard similarity matching the Dice threshold, with some margin
+			double jaccard = fuzzyThreshold / (200.0 - fuzzyThreshold);
+			int r = 1;
+			for (int i = MAX_ROWS; i > 1; i--) {
+				if (Math.pow(1.0 / (NUM_HASHES / i), 1.0 / i) <= jaccard * 0.7) {
+					r = i;
+					break;
+				}
+			}
+			rows = r;
+			bands = NUM_HASHES / rows;
+			bandIndex = new TLongObjectHashMap<TIntArrayList>();
+			analyzer = new NgramAnalyzer(Locale.ENGLISH, NGRAM_LENGTH); // Same as PensieveWriter
+		}
+		else {
+			rows = 0;
+			bands = 0;
+			bandIndex = null;
+			analyzer = null;
+		}
+	}
+	
+	/**
+	 * Searches the repetitions of a given text among the segments added so far.
+	 * @param key the key of the text to search for, as given to {@link #add(String, String, SegmentInfo)}.
+	 * @return the list of the exact repetitions, followed by the list of the fuzzy repetitions
+	 * (by decreasing score), each limited to the maximum number of hits. The list can be empty.
+	 */
+	public List<Repetition> search(String key) {
+		List<Repetition> hits = new ArrayList<Repetition>();
+		
+		// Exact repetitions, most recent first
+		int index = exactIndex.get(hash(key));
+		while (index != -1 && hits.size() < maxHits) {
+			Entry entry = entries.get(index);
+			if (entry.key.equals(key)) {
+				hits.add(new Repetition(entry.info, entry.text, 100f));
+			}
+			index = entry.previous;
+		}
+		if (bandIndex == null) return hits;
+		
+		// Fuzzy repetitions
+		int[] ngrams = ngrams(key);
+		if (ngrams.length == 0) return hits;
+		long[] keys = bandKeys(minHash(ngrams));
+		TIntHashSet candidates = new TIntHashSet();
+		for (long bandKey : keys) {
+			TIntArrayList list = bandIndex.get(bandKey);
+			if (list != null) candidates.addAll(list);
+		}
+		List<Repetition> fuzzyHits = new ArrayList<Repetition>();
+		for (int candidate : candidates.toArray()) {
+			Entry entry = entries.get(candidate);
+			if (entry.key.equals(key)) continue; // Already an exact repetition
+			float score = score(ngrams, entry.ngrams);
+			if (score >= 100f) {
+				// Must be a whitespace or case difference
+				score -= WHITESPACE_OR_CASE_PENALTY;
+			}
+			if (score >= fuzzyThreshold) {
+				fuzzyHits.add(new Repetition(entry.info, entry.text, score));
+			}
+		}
+		Collections.sort(fuzzyHits, new Comparator<Repetition>() {
+			@Override
+			public int compare(Repetition r1, Repetition r2) {
+				return Float.compare(r2.score, r1.score);
+			}
+		});
+		if (fuzzyHits.size() > maxHits) {
+			fuzzyHits = fuzzyHits.subList(0, maxHits);
+		}
+		hits.addAll(fuzzyHits);
+		return hits;
+	}
+	
+	/**
+	 * Adds a segment to this index, using its text as the key.
+	 * @param text the text of the segment.
+	 * @param info the information to return for the repetitions of this segment. 
+	 */
+	public void add(String text, SegmentInfo info) {
+		add(text, text, info);
+	}
+	
+	/**
+	 * Adds a segment to this index.
+	 * @param key the key of the segment: segments with the same key are exact repetitions,
+	 * and the fuzzy repetitions are scored on the keys.
+	 * @param text the text of the segment, returned with its repetitions.
+	 * @param info the information to return for the repetitions of this segment. 
+	 */
+	public void add(String key, String text, SegmentInfo info) {
+		long hash = hash(key);
+		int index = entries.size();
+		Entry entry = new Entry(key, text, info, exactIndex.get(hash));
+		entries.add(entry);
+		exactIndex.put(hash, index);
+		if (bandIndex == null) return;
+		
+		entry.ngrams = ngrams(key);
+		// All the texts without n-grams would have the same signature and share all the bands
+		if (entry.ngrams.length == 0) return;
+		for (long bandKey : bandKeys(minHash(entry.ngrams))) {
+			TIntArrayList list = bandIndex.get(bandKey);
+			if (list == null) {
+				list = new TIntArrayList(2);
+				bandIndex.put(bandKey, list);
+			}
+			list.add(index);
+		}
+	}
+	
+	/**
+	 * Gets the number of segments in this index.
+	 * @return the number of segments added since the creation or the last {@link #clear()}.
+	 */
+	public int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Gets the number of entries in the bands of the fuzzy index.
+	 * @return the total size of the bands, 0 if there is no fuzzy search.
+	 */
+	int getBandEntryCount() {
+		if (bandIndex == null) return 0;
+		int count = 0;
+		for (TIntArrayList list : bandIndex.valueCollection()) {
+			count += list.size();
+		}
+		return count;
+	}
+	
+	/**
+	 * Removes all the segments of this index.
+	 */
+	public void clear() {
+		entries.clear();
+		exactIndex.clear();
+		if (bandIndex != null) bandIndex.clear();
+	}
+	
+	// 64-bit FNV-1a hash of the key
+	private static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+	
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+	
+	private int[] ngrams(String text) {
+		TIntHashSet set = new TIntHashSet();
+		TokenStream stream = analyzer.tokenStream(null, new StringReader(text));
+		CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+		try {
+			while (stream.incrementToken()) {
+				set.add(term.toString().hashCode());
+			}
+			stream.close();
+		}
+		catch (IOException e) {
+			throw new OkapiIOException(e.getMessage(), e);
+		}
+		int[] res = set.toArray();
+		Arrays.sort(res);
+		return res;
+	}
+	
+	private static int[] minHash(int[] ngrams) {
+		int[] sig = new int[NUM_HASHES];
+		Arrays.fill(sig, Integer.MAX_VALUE);
+		for (int i = 0; i < ngrams.length; i++) {
+			for (int k = 0; k < NUM_HASHES; k++) {
+				int h = mix(ngrams[i] ^ SEEDS[k]);
+				if (h < sig[k]) sig[k] = h;
+			}
+		}
+		return sig;
+	}
+	
+	private long[] bandKeys(int[] sig) {
+		long[] keys = new long[bands];
+		for (int b = 0; b < bands; b++) {
+			long key = b;
+			for (int r = 0; r < rows; r++) {
+				key = key * 0x9E3779B97F4A7C15L + sig[b * rows + r];
+			}
+			keys[b] = key;
+		}
+		return keys;
+	}
+	
+	// Dice coefficient of the unique n-grams of the searched text and of an indexed text, as a percentage.
+	// Like in Pensieve, the texts must have more than half of the n-grams of the searched text in common.
+	private static float score(int[] ngrams1, int[] ngrams2) {
+		int common = 0;
+		int i = 0, j = 0;
+		while (i < ngrams1.length && j < ngrams2.length) {
+			if (ngrams1[i] == ngrams2[j]) {
+				common++;
+				i++;
+				j++;
+			}
+			else if (ngrams1[i] < ngrams2[j]) i++;
+			else j++;
+		}
+		if (common <= (int) (ngrams1.length * ROUGH_CUTOFF)) return 0f;
+		return (200f * common) / (ngrams1.length + ngrams2.length);
+	}
+}
@@ -20,12 +20,20 @@
 
 package net.sf.okapi.steps.repetitionanalysis;
 
+import static org.junit.Assert.assertEquals;
+
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Map;
 
 import net.sf.okapi.common.ClassUtil;
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.Util;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.StartDocument;
+import net.sf.okapi.common.resource.TextUnit;
 import net.sf.okapi.filters.plaintext.PlainTextFilter;
 import net.sf.okapi.lib.extra.pipelinebuilder.XBatch;
 import net.sf.okapi.lib.extra.pipelinebuilder.XBatchItem;
@@ -105,4 +113,35 @@ public class TestRepetitionAnalysisStep {
 		}
 	}
 
+	@Test
+	public void testNormalizedRepetitions() {
+		RepetitionAnalysisStep step = new RepetitionAnalysisStep();
+		step.setSourceLocale(LocaleId.ENGLISH);
+		step.setTargetLocale(LocaleId.GERMAN);
+		step.handleEvent(new Event(EventType.START_DOCUMENT, new StartDocument("sd1")));
+		
+		step.handleEvent(new Event(EventType.TEXT_UNIT, new TextUnit("tu1", "First line\r\nsecond line")));
+		step.handleEvent(new Event(EventType.TEXT_UNIT, new TextUnit("tu2", "Caf\u00e9 au lait")));
+		ITextUnit tu3 = new TextUnit("tu3", "First line\nsecond line");
+		step.handleEvent(new Event(EventType.TEXT_UNIT, tu3));
+		ITextUnit tu4 = new TextUnit("tu4", "Cafe\u0301 au lait");
+		step.handleEvent(new Event(EventType.TEXT_UNIT, tu4));
+		
+		// Same text once the line breaks are normalized
+		Map<SegmentInfo, Float> map = tu3.getSource().getFirstSegment()
+				.getAnnotation(RepetitiveSegmentAnnotation.class).getMap();
+		assertEquals(1, map.size());
+		SegmentInfo info = map.keySet().iterator().next();
+		assertEquals("1", info.getTuid());
+		assertEquals(100f, map.get(info), 0f);
+		
+		// Same text once composed to NFC
+		map = tu4.getSource().getFirstSegment()
+				.getAnnotation(RepetitiveSegmentAnnotation.class).getMap();
+		assertEquals(1, map.size());
+		info = map.keySet().iterator().next();
+		assertEquals("2", info.getTuid());
+		assertEquals(100f, map.get(info), 0f);
+	}
+
 }
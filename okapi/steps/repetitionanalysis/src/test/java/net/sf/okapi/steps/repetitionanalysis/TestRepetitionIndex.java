@@ -0,0 +1,112 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.steps.repetitionanalysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import net.sf.okapi.steps.repetitionanalysis.RepetitionIndex.Repetition;
+
+import org.junit.Test;
+
+public class TestRepetitionIndex {
+
+	@Test
+	public void testExactRepetitions() {
+		RepetitionIndex index = new RepetitionIndex(100, 2);
+		SegmentInfo info1 = new SegmentInfo("1", "1", "1");
+		SegmentInfo info2 = new SegmentInfo("2", "1", "2");
+		SegmentInfo info3 = new SegmentInfo("3", "2", "1");
+		
+		assertEquals(0, index.search("This is a sentence.").size());
+		index.add("This is a sentence.", info1);
+		index.add("Another sentence.", info2);
+		index.add("This is a sentence.", info3);
+		assertEquals(3, index.size());
+		
+		List<Repetition> hits = index.search("This is a sentence.");
+		assertEquals(2, hits.size());
+		// Most recent first
+		assertSame(info3, hits.get(0).getInfo());
+		assertSame(info1, hits.get(1).getInfo());
+		assertEquals(100f, hits.get(0).getScore(), 0f);
+		
+		// No fuzzy search
+		assertEquals(0, index.search("This is a sentence!").size());
+		
+		index.clear();
+		assertEquals(0, index.size());
+		assertEquals(0, index.search("This is a sentence.").size());
+	}
+	
+	@Test
+	public void testFuzzyRepetitions() {
+		RepetitionIndex index = new RepetitionIndex(70, 10);
+		SegmentInfo info1 = new SegmentInfo("1", "1", "1");
+		SegmentInfo info2 = new SegmentInfo("2", "2", "1");
+		index.add("The quick brown fox jumps over the lazy dog.", info1);
+		index.add("Something completely different here.", info2);
+		for (int i = 0; i < 1000; i++) {
+			index.add("Filler segment number " + i, new SegmentInfo(Integer.toString(i + 3), "3", "1"));
+		}
+		
+		List<Repetition> hits = index.search("The quick brown fox jumps over the lazy cat.");
+		assertEquals(1, hits.size());
+		assertSame(info1, hits.get(0).getInfo());
+		assertEquals("The quick brown fox jumps over the lazy dog.", hits.get(0).getText());
+		assertTrue(hits.get(0).getScore() >= 70f && hits.get(0).getScore() < 100f);
+		
+		// Exact repetitions come first and are not repeated as fuzzy ones
+		hits = index.search("The quick brown fox jumps over the lazy dog.");
+		assertEquals(1, hits.size());
+		assertEquals(100f, hits.get(0).getScore(), 0f);
+	}
+	
+	@Test
+	public void testTextsWithoutNgrams() {
+		RepetitionIndex index = new RepetitionIndex(70, 5);
+		SegmentInfo info1 = new SegmentInfo("1", "1", "1");
+		index.add("The quick brown fox jumps over the lazy dog.", info1);
+		int bandEntries = index.getBandEntryCount();
+		assertTrue(bandEntries > 0);
+		
+		// The texts without n-grams are not put in the bands
+		for (int i = 0; i < 1000; i++) {
+			index.add("", new SegmentInfo(Integer.toString(i + 2), "2", "1"));
+		}
+		assertEquals(bandEntries, index.getBandEntryCount());
+		
+		// They are still found as exact repetitions
+		List<Repetition> hits = index.search("");
+		assertEquals(5, hits.size());
+		for (Repetition hit : hits) {
+			assertEquals("", hit.getText());
+			assertEquals(100f, hit.getScore(), 0f);
+		}
+		hits = index.search("The quick brown fox jumps over the lazy cat.");
+		assertEquals(1, hits.size());
+		assertSame(info1, hits.get(0).getInfo());
+	}
+
+}
@@ -553,6 +553,18 @@ public class ScopingReportStep extends CompoundStep {
 		return super.handleTextUnit(event);
 	}
 	
+	/**
+	 * Merges the counts and the item rows of a copy of this step.
+	 */
+	@Override
+	public void mergeBatchData(IPipelineStep copy) {
+		super.mergeBatchData(copy); // Counts of the internal steps
+		ReportGenerator otherGen = ((ScopingReportStep) copy).getReportGenerator();
+		if (otherGen != null) {
+			gen.appendMultiFields(otherGen);
+		}
+	}
+	
 	public ReportGenerator getReportGenerator () {
 		return gen;
 	}
@@ -36,6 +36,9 @@ import net.sf.okapi.common.EventType;
 import net.sf.okapi.common.FileCompare;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.Util;
+import net.sf.okapi.common.filters.FilterConfigurationMapper;
+import net.sf.okapi.common.filters.IFilterConfigurationMapper;
+import net.sf.okapi.common.pipelinedriver.PipelineDriver;
 import net.sf.okapi.common.resource.Ending;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.StartDocument;
@@ -111,6 +114,45 @@ public class TestScopingReport {
 		assertEquals("", params.getCustomTemplateURI());
 	}
 	
+	@Test
+	public void testParallelBatchGivesSameTotals () throws URISyntaxException {
+		String pathBase = Util.getDirectoryName(this.getClass().getResource("aa324.html").toURI().getPath()) + "/";
+		long serialCount = runReport(pathBase, 1, pathBase + "out/test_serial_report.txt");
+		long parallelCount = runReport(pathBase, 3, pathBase + "out/test_parallel_report.txt");
+		assertTrue(serialCount > 0);
+		assertEquals(serialCount, parallelCount);
+		FileCompare fc = new FileCompare();
+		assertTrue(fc.filesExactlyTheSame(pathBase + "out/test_parallel_report.txt",
+			pathBase + "out/test_serial_report.txt"));
+	}
+	
+	private long runReport (String pathBase,
+		int threadCount,
+		String outputPath) throws URISyntaxException
+	{
+		IFilterConfigurationMapper fcMapper = new FilterConfigurationMapper();
+		fcMapper.addConfigurations(HtmlFilter.class.getName());
+		PipelineDriver driver = new PipelineDriver();
+		driver.setFilterConfigurationMapper(fcMapper);
+		driver.setThreadCount(threadCount);
+		
+		driver.addStep(new RawDocumentToFilterEventsStep());
+		WordCountStep wcs = new WordCountStep();
+		driver.addStep(wcs);
+		ScopingReportStep srs = new ScopingReportStep();
+		Parameters params = (Parameters) srs.getParameters();
+		params.setOutputPath(outputPath);
+		params.setCustomTemplateURI(this.getClass().getResource("golden_file_template.txt").toURI().getPath());
+		driver.addStep(srs);
+		
+		for ( int i=0; i<6; i++ ) {
+			String name = (( i % 2 == 0 ) ? "aa324.html" : "form.html");
+			driver.addBatchItem(new File(pathBase + name).toURI(), "UTF-8", "okf_html", EN, ES);
+		}
+		driver.processBatch();
+		return wcs.getBatchCount();
+	}
+	
 	@Test
 	public void testDefaultTemplateSWCS() throws MalformedURLException, URISyntaxException {
 		ScopingReportStep srs = new ScopingReportStep();
@@ -30,18 +30,22 @@ import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.UsingParameters;
 import net.sf.okapi.common.Util;
 import net.sf.okapi.common.pipeline.BasePipelineStep;
+import net.sf.okapi.common.pipeline.IMergeableStep;
+import net.sf.okapi.common.pipeline.IPipelineStep;
 import net.sf.okapi.common.pipeline.annotations.StepParameterMapping;
 import net.sf.okapi.common.pipeline.annotations.StepParameterType;
+import net.sf.okapi.common.pipeline.threaded.IParallelStep;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.Segment;
 import net.sf.okapi.common.resource.ISegments;
 import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.common.resource.TextPart;
+import net.sf.okapi.lib.segmentation.ConcurrentSRXSegmenter;
 import net.sf.okapi.lib.segmentation.SRXDocument;
 import net.sf.okapi.steps.segmentation.Parameters.SegmStrategy;
 
 @UsingParameters(Parameters.class)
-public class SegmentationStep extends BasePipelineStep {
+public class SegmentationStep extends BasePipelineStep implements IParallelStep, IMergeableStep {
 
 	private final Logger logger = Logger.getLogger(getClass().getName());
 
@@ -123,8 +127,8 @@ public class SegmentationStep extends BasePipelineStep {
 			if ( params.trimSrcTrailingWS != Parameters.TRIM_DEFAULT ) {
 				srxDoc.setTrimTrailingWhitespaces(params.trimSrcTrailingWS==Parameters.TRIM_YES);
 			}
-			// Instantiate the segmenter
-			srcSeg = srxDoc.compileLanguageRules(sourceLocale, null);
+			// Instantiate the segmenter (the compiled rules are shared)
+			srcSeg = new ConcurrentSRXSegmenter(srxDoc.compileRuleSet(sourceLocale));
 		}
 		if ( params.segmentTarget ) {
 			String trg = Util.fillRootDirectoryVariable(params.getTargetSrxPath(), rootDir);
@@ -144,8 +148,8 @@ public class SegmentationStep extends BasePipelineStep {
 			if ( params.trimTrgTrailingWS != Parameters.TRIM_DEFAULT ) {
 				srxDoc.setTrimTrailingWhitespaces(params.trimTrgTrailingWS==Parameters.TRIM_YES);
 			}
-			// Instantiate the segmenter
-			trgSeg = srxDoc.compileLanguageRules(targetLocale, null);
+			// Instantiate the segmenter (the compiled rules are shared)
+			trgSeg = new ConcurrentSRXSegmenter(srxDoc.compileRuleSet(targetLocale));
 		}		
 		
 		return event;
@@ -269,4 +273,17 @@ public class SegmentationStep extends BasePipelineStep {
 		oldPartContainer.remove(index+newPartsContainer.count());
 	}
 
+	/**
+	 * This step has no batch-level data: there is nothing to merge.
+	 */
+	@Override
+	public void mergeBatchData (IPipelineStep copy) {
+		// Nothing to merge
+	}
+
+	@Override
+	public boolean isMergeable () {
+		return true;
+	}
+
 }
@@ -59,33 +59,36 @@ public class Tokenizer {
 		
 		if (ts == null)	return res;
 		
-		Parameters params = (Parameters) ts.getParameters();		
-		params.reset();
+		// The step is shared by all callers
+		synchronized (ts) {
+			Parameters params = (Parameters) ts.getParameters();		
+			params.reset();
 		
-		params.tokenizeSource = true;
-		params.tokenizeTargets = false;
+			params.tokenizeSource = true;
+			params.tokenizeTargets = false;
 		
-		params.setLocaleFilter(LocaleFilter.anyOf(language));		
-		params.setTokenNames(tokenNames);
+			params.setLocaleFilter(LocaleFilter.anyOf(language));		
+			params.setTokenNames(tokenNames);
 					
-		ts.handleEvent(new Event(EventType.START_BATCH)); // Calls component_init();
+			ts.handleEvent(new Event(EventType.START_BATCH)); // Calls component_init();
 		
-		StartDocument startDoc = new StartDocument("tokenization");
-		startDoc.setLocale(language);
-		startDoc.setMultilingual(false);		
-		Event event = new Event(EventType.START_DOCUMENT, startDoc);		
-		ts.handleEvent(event);
+			StartDocument startDoc = new StartDocument("tokenization");
+			startDoc.setLocale(language);
+			startDoc.setMultilingual(false);		
+			Event event = new Event(EventType.START_DOCUMENT, startDoc);		
+			ts.handleEvent(event);
 				
-		ITextUnit tu = TextUnitUtil.buildTU(text);
-		event = new Event(EventType.TEXT_UNIT, tu);		
-		ts.handleEvent(event);
+			ITextUnit tu = TextUnitUtil.buildTU(text);
+			event = new Event(EventType.TEXT_UNIT, tu);		
+			ts.handleEvent(event);
 		
-		// Move tokens from the event's annotation to result
-		TokensAnnotation ta = TextUnitUtil.getSourceAnnotation(tu, TokensAnnotation.class);
-		if (ta != null)
-			res.addAll(ta.getTokens());
+			// Move tokens from the event's annotation to result
+			TokensAnnotation ta = TextUnitUtil.getSourceAnnotation(tu, TokensAnnotation.class);
+			if (ta != null)
+				res.addAll(ta.getTokens());
 		
-		ts.handleEvent(new Event(EventType.END_BATCH)); // Calls component_done();
+			ts.handleEvent(new Event(EventType.END_BATCH)); // Calls component_done();
+		}
 		
 		return res;
 	}
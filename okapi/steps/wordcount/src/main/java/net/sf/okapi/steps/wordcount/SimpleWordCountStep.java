@@ -20,14 +20,9 @@
 
 package net.sf.okapi.steps.wordcount;
 
-import com.ibm.icu.text.BreakIterator;
-import com.ibm.icu.text.RuleBasedBreakIterator;
-import com.ibm.icu.util.ULocale;
-
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.IParameters;
 import net.sf.okapi.common.LocaleId;
-import net.sf.okapi.common.Util;
 import net.sf.okapi.common.pipeline.BasePipelineStep;
 import net.sf.okapi.common.pipeline.annotations.StepParameterMapping;
 import net.sf.okapi.common.pipeline.annotations.StepParameterType;
@@ -38,8 +33,7 @@ import net.sf.okapi.steps.wordcount.common.Metrics;
 import net.sf.okapi.steps.wordcount.common.MetricsAnnotation;
 
 public class SimpleWordCountStep extends BasePipelineStep {
-	private RuleBasedBreakIterator srcWordIterator = null;
-	private RuleBasedBreakIterator trgWordIterator = null;
+	private SimpleWordCounter srcWordCounter = null;
 	private LocaleId srcLoc;
 	private LocaleId trgLoc;
 	private long srcBatchItemWordCount;
@@ -53,19 +47,12 @@ public class SimpleWordCountStep extends BasePipelineStep {
 	@StepParameterMapping(parameterType = StepParameterType.SOURCE_LOCALE)
 	public void setSourceLocale(LocaleId sourceLocale) {
 		this.srcLoc = sourceLocale;
-		srcWordIterator = (RuleBasedBreakIterator) BreakIterator.getWordInstance(ULocale
-				.createCanonical(srcLoc.toString()));
-		RuleBasedBreakIterator.registerInstance(srcWordIterator, srcLoc.toJavaLocale(),
-				BreakIterator.KIND_WORD);
+		srcWordCounter = SimpleWordCounter.getInstance(srcLoc);
 	}
 
 	@StepParameterMapping(parameterType = StepParameterType.TARGET_LOCALE)
 	public void setTargetLocale(LocaleId targetLocale) {
 		this.trgLoc = targetLocale;
-		trgWordIterator = (RuleBasedBreakIterator) BreakIterator.getWordInstance(ULocale
-				.createCanonical(trgLoc.toString()));
-		RuleBasedBreakIterator.registerInstance(trgWordIterator, trgLoc.toJavaLocale(),
-				BreakIterator.KIND_WORD);
 	}
 	
 	@Override
@@ -129,7 +116,7 @@ public class SimpleWordCountStep extends BasePipelineStep {
 		}
 
 		if (!tu.getSource().isEmpty()) {
-			long srcWordCount = countWords(tu.getSource().getUnSegmentedContentCopy().getText(), true);
+			long srcWordCount = srcWordCounter.countWords(tu.getSource());
 			srcBatchItemWordCount += srcWordCount;
 		}
 		return event;
@@ -155,35 +142,4 @@ public class SimpleWordCountStep extends BasePipelineStep {
 	public void setParameters(IParameters params) {	
 		this.params = (ParametersSimpleWordCountStep)params;
 	}
-
-	private long countWords(String text, boolean source) {
-		long totalWordCount = 0;
-		int current = 0;
-		RuleBasedBreakIterator wordIterator;
-
-		if (Util.isEmpty(text)) {
-			return totalWordCount;
-		}
-
-		if (source) {
-			wordIterator = srcWordIterator;
-		} else {
-			wordIterator = trgWordIterator;
-		}
-		wordIterator.setText(text);
-
-		while (true) {
-			if (current == BreakIterator.DONE) {
-				break;
-			}
-
-			current = wordIterator.next();
-			// don't count various space and punctuation
-			if (wordIterator.getRuleStatus() != RuleBasedBreakIterator.WORD_NONE) {
-				totalWordCount++;
-			}
-		}
-
-		return totalWordCount;
-	}
 }
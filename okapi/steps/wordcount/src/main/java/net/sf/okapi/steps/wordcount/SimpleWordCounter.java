@@ -0,0 +1,311 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.steps.wordcount;
+
+import java.text.CharacterIterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.Util;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.Segment;
+import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.common.resource.TextFragment;
+
+import com.ibm.icu.text.BreakIterator;
+import com.ibm.icu.text.RuleBasedBreakIterator;
+import com.ibm.icu.util.ULocale;
+
+/**
+ * Word and character counter running the ICU word break iterator of a locale directly
+ * over the coded text of the fragments. The inline code markers are skipped and no
+ * string, event or token is created for the count.
+ * <p>Unlike {@link WordCounter}, this counter does not use the tokenization step: a word
+ * is any segment of the text the break iterator reports as a number, a letter sequence,
+ * kana or ideographs. Abbreviations, dates, etc. are not recognized specially.
+ * <p>Instances are shared per locale (see {@link #getInstance(LocaleId)}) and are thread-safe:
+ * each thread uses its own copy of the break iterator and of the work buffer.
+ */
+public class SimpleWordCounter {
+
+	private static final ConcurrentHashMap<LocaleId, SimpleWordCounter> counters =
+		new ConcurrentHashMap<LocaleId, SimpleWordCounter>();
+	
+	private final RuleBasedBreakIterator prototype;
+	private final ThreadLocal<Context> contexts = new ThreadLocal<Context>() {
+		@Override
+		protected Context initialValue () {
+			return new Context((RuleBasedBreakIterator)prototype.clone());
+		}
+	};
+	
+	/**
+	 * Per-thread state: the break iterator and the buffer holding the text without markers.
+	 */
+	private static class Context implements CharacterIterator {
+		
+		final RuleBasedBreakIterator iterator;
+		char[] buffer = new char[256];
+		int length;
+		int index;
+
+		Context (RuleBasedBreakIterator iterator) {
+			this.iterator = iterator;
+		}
+
+		void reset (int length) {
+			this.length = length;
+			index = 0;
+		}
+		
+		@Override
+		public char first () {
+			index = 0;
+			return current();
+		}
+
+		@Override
+		public char last () {
+			index = (length > 0) ? length-1 : 0;
+			return current();
+		}
+
+		@Override
+		public char current () {
+			return (index < length) ? buffer[index] : DONE;
+		}
+
+		@Override
+		public char next () {
+			if ( index < length ) index++;
+			return current();
+		}
+
+		@Override
+		public char previous () {
+			if ( index == 0 ) return DONE;
+			index--;
+			return current();
+		}
+
+		@Override
+		public char setIndex (int position) {
+			if (( position < 0 ) || ( position > length )) {
+				throw new IllegalArgumentException("Invalid index: " + position);
+			}
+			index = position;
+			return current();
+		}
+
+		@Override
+		public int getBeginIndex () {
+			return 0;
+		}
+
+		@Override
+		public int getEndIndex () {
+			return length;
+		}
+
+		@Override
+		public int getIndex () {
+			return index;
+		}
+
+		@Override
+		public Object clone () {
+			try {
+				Context copy = (Context)super.clone();
+				copy.buffer = buffer.clone();
+				return copy;
+			}
+			catch ( CloneNotSupportedException e ) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Gets the counter for a given locale. The counters are created once per locale
+	 * and can be used from any thread.
+	 * @param locale the locale of the text to count.
+	 * @return the counter for the given locale.
+	 */
+	public static SimpleWordCounter getInstance (LocaleId locale) {
+		SimpleWordCounter counter = counters.get(locale);
+		if ( counter == null ) {
+			counter = new SimpleWordCounter(locale);
+			SimpleWordCounter previous = counters.putIfAbsent(locale, counter);
+			if ( previous != null ) counter = previous;
+		}
+		return counter;
+	}
+	
+	private SimpleWordCounter (LocaleId locale) {
+		prototype = (RuleBasedBreakIterator)BreakIterator.getWordInstance(
+			ULocale.createCanonical(locale.toString()));
+	}
+	
+	/**
+	 * Counts the words in the source of a text unit (segment by segment).
+	 * @param tu the text unit.
+	 * @return the number of words.
+	 */
+	public long countWords (ITextUnit tu) {
+		return countWords(tu.getSource());
+	}
+	
+	/**
+	 * Counts the words in the segments of a text container.
+	 * @param tc the text container.
+	 * @return the number of words.
+	 */
+	public long countWords (TextContainer tc) {
+		long count = 0;
+		for ( Segment seg : tc.getSegments() ) {
+			count += countWords(seg.getContent());
+		}
+		return count;
+	}
+	
+	/**
+	 * Counts the words in a text fragment. The inline codes are not counted.
+	 * @param tf the text fragment.
+	 * @return the number of words.
+	 */
+	public long countWords (TextFragment tf) {
+		Context ctx = contexts.get();
+		if ( load(ctx, tf) == 0 ) return 0;
+		return countWords(ctx);
+	}
+	
+	/**
+	 * Counts the words in a plain text string.
+	 * @param text the text.
+	 * @return the number of words.
+	 */
+	public long countWords (String text) {
+		if ( Util.isEmpty(text) ) return 0;
+		Context ctx = contexts.get();
+		ensureCapacity(ctx, text.length());
+		text.getChars(0, text.length(), ctx.buffer, 0);
+		ctx.reset(text.length());
+		return countWords(ctx);
+	}
+	
+	/**
+	 * Counts the characters in the segments of a text container, excluding
+	 * whitespace, punctuation and inline codes.
+	 * @param tc the text container.
+	 * @return the number of characters.
+	 */
+	public long countCharacters (TextContainer tc) {
+		long count = 0;
+		for ( Segment seg : tc.getSegments() ) {
+			count += countCharacters(seg.getContent());
+		}
+		return count;
+	}
+	
+	/**
+	 * Counts the characters in a text fragment, excluding whitespace, punctuation
+	 * and inline codes. Supplementary characters count as one.
+	 * This does not use the break iterator and does not depend on the locale.
+	 * @param tf the text fragment.
+	 * @return the number of characters.
+	 */
+	public long countCharacters (TextFragment tf) {
+		long count = 0;
+		int length = tf.length();
+		for ( int i=0; i<length; i++ ) {
+			char ch = tf.charAt(i);
+			if ( TextFragment.isMarker(ch) ) {
+				i++; // Skip the index
+				continue;
+			}
+			if ( Character.isLowSurrogate(ch) && ( i > 0 ) && Character.isHighSurrogate(tf.charAt(i-1)) ) {
+				continue; // Already counted
+			}
+			if ( Character.isWhitespace(ch) || Character.isSpaceChar(ch) || isPunctuation(ch) ) {
+				continue;
+			}
+			count++;
+		}
+		return count;
+	}
+	
+	private static boolean isPunctuation (char ch) {
+		switch ( Character.getType(ch) ) {
+		case Character.CONNECTOR_PUNCTUATION:
+		case Character.DASH_PUNCTUATION:
+		case Character.START_PUNCTUATION:
+		case Character.END_PUNCTUATION:
+		case Character.INITIAL_QUOTE_PUNCTUATION:
+		case Character.FINAL_QUOTE_PUNCTUATION:
+		case Character.OTHER_PUNCTUATION:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Copies the coded text of a fragment without its markers into the buffer of the context.
+	 * @return the number of characters copied.
+	 */
+	private int load (Context ctx, TextFragment tf) {
+		int length = tf.length();
+		ensureCapacity(ctx, length);
+		char[] buffer = ctx.buffer;
+		int n = 0;
+		for ( int i=0; i<length; i++ ) {
+			char ch = tf.charAt(i);
+			if ( TextFragment.isMarker(ch) ) {
+				i++; // Skip the index
+				continue;
+			}
+			buffer[n++] = ch;
+		}
+		ctx.reset(n);
+		return n;
+	}
+	
+	private void ensureCapacity (Context ctx, int length) {
+		if ( ctx.buffer.length < length ) {
+			ctx.buffer = new char[Math.max(length, ctx.buffer.length*2)];
+		}
+	}
+	
+	private long countWords (Context ctx) {
+		RuleBasedBreakIterator iterator = ctx.iterator;
+		iterator.setText(ctx);
+		long count = 0;
+		iterator.first();
+		while ( iterator.next() != BreakIterator.DONE ) {
+			// Spaces and punctuation have no status
+			if ( iterator.getRuleStatus() != RuleBasedBreakIterator.WORD_NONE ) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
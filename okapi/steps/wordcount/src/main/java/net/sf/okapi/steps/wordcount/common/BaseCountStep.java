@@ -24,6 +24,8 @@ import net.sf.okapi.common.Event;
 import net.sf.okapi.common.IResource;
 import net.sf.okapi.common.IdGenerator;
 import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.pipeline.IMergeableStep;
+import net.sf.okapi.common.pipeline.IPipelineStep;
 import net.sf.okapi.common.resource.Ending;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.Segment;
@@ -37,7 +39,7 @@ import net.sf.okapi.lib.extra.steps.AbstractPipelineStep;
  * @version 0.1 08.07.2009
  */
 
-public abstract class BaseCountStep extends AbstractPipelineStep {
+public abstract class BaseCountStep extends AbstractPipelineStep implements IMergeableStep {
 
 //	protected enum CountContext {
 //		CC_SOURCE,
@@ -250,6 +252,21 @@ public abstract class BaseCountStep extends AbstractPipelineStep {
 		return event;
 	}
 
+	/**
+	 * Adds the batch count of a copy of this step to the batch count of this step.
+	 */
+	@Override
+	public void mergeBatchData(IPipelineStep copy) {
+		BaseCountStep other = (BaseCountStep) copy;
+		other.flushBuffer();
+		batchCount += other.batchCount;
+	}
+
+	@Override
+	public boolean isMergeable() {
+		return true;
+	}
+
 	//-------------------------	
 	@Override
 	protected Event handleStartBatchItem(Event event) {
@@ -0,0 +1,95 @@
+package net.sf.okapi.steps.wordcount;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextFragment.TagType;
+
+import org.junit.Test;
+
+public class TestSimpleWordCounter {
+
+	private SimpleWordCounter counterEN = SimpleWordCounter.getInstance(LocaleId.ENGLISH);
+	
+	@Test
+	public void testInstances () {
+		assertSame(counterEN, SimpleWordCounter.getInstance(LocaleId.ENGLISH));
+	}
+	
+	@Test
+	public void testCountWords () {
+		assertEquals(5, counterEN.countWords("Test word count is correct."));
+		assertEquals(9, counterEN.countWords("This sentence has a word count of 9 words."));
+		assertEquals(3, counterEN.countWords("123 123.4 123,5"));
+		assertEquals(0, counterEN.countWords("( ) \" \' { } [ ] / % $ @ # ? ! * _ -"));
+		assertEquals(0, counterEN.countWords(""));
+		assertEquals(0, counterEN.countWords(" \t\n\f\r "));
+	}
+	
+	@Test
+	public void testCountFragments () {
+		TextFragment tf = new TextFragment("abc");
+		tf.append(TagType.PLACEHOLDER, "b", "[b]");
+		tf.append("def");
+		assertEquals(1, counterEN.countWords(tf));
+		assertEquals(6, counterEN.countCharacters(tf));
+
+		tf = new TextFragment("Some ");
+		tf.append(TagType.OPENING, "b", "<b>");
+		tf.append("bold");
+		tf.append(TagType.CLOSING, "b", "</b>");
+		tf.append(" text, here.");
+		assertEquals(4, counterEN.countWords(tf));
+		assertEquals(16, counterEN.countCharacters(tf));
+
+		tf = new TextFragment();
+		tf.append(TagType.PLACEHOLDER, "b", "[b]");
+		assertEquals(0, counterEN.countWords(tf));
+		assertEquals(0, counterEN.countCharacters(tf));
+	}
+	
+	@Test
+	public void testCountContainer () {
+		TextContainer tc = new TextContainer("The number of words in this segment is 9.");
+		tc.getSegments().append(new TextFragment("The number of words in this second segment is 10."));
+		assertEquals(19, counterEN.countWords(tc));
+	}
+	
+	@Test
+	public void testConcurrentCounts () throws Exception {
+		final String text = "The quick brown fox jumps over the lazy dog, again and again.";
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Long>> results = new ArrayList<Future<Long>>();
+			for ( int i=0; i<8; i++ ) {
+				results.add(executor.submit(new Callable<Long>() {
+					@Override
+					public Long call () {
+						long total = 0;
+						for ( int j=0; j<500; j++ ) {
+							total += counterEN.countWords(new TextFragment(text));
+						}
+						return total;
+					}
+				}));
+			}
+			for ( Future<Long> result : results ) {
+				assertEquals(12*500L, (long)result.get());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+}
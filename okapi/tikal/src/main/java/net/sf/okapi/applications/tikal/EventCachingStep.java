@@ -0,0 +1,109 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.applications.tikal;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.filters.FilterEventCache;
+import net.sf.okapi.common.pipeline.BasePipelineStep;
+import net.sf.okapi.common.pipeline.annotations.StepParameterMapping;
+import net.sf.okapi.common.pipeline.annotations.StepParameterType;
+import net.sf.okapi.common.resource.RawDocument;
+
+/**
+ * Records the filter events of the input document into a {@link FilterEventCache},
+ * so {@link XLIFFMergingStep} can replay them instead of parsing the document again.
+ * This step must be placed right after the step creating the filter events, before
+ * any step modifying them.
+ */
+public class EventCachingStep extends BasePipelineStep {
+
+	private final FilterEventCache cache;
+	private RawDocument input;
+	private FilterEventCache.Recorder recorder;
+
+	public EventCachingStep (FilterEventCache cache) {
+		this.cache = cache;
+	}
+	
+	@StepParameterMapping(parameterType = StepParameterType.INPUT_RAWDOC)
+	public void setInput (RawDocument input) {
+		// Keep the original settings: some filters change the encoding when they open the document
+		if ( input.getInputURI() == null ) {
+			this.input = null;
+		}
+		else {
+			this.input = new RawDocument(input.getInputURI(), input.getEncoding(),
+				input.getSourceLocale(), input.getTargetLocale(), input.getFilterConfigId());
+		}
+	}
+	
+	public String getName () {
+		return "Event Caching";
+	}
+
+	public String getDescription () {
+		return "Stores the filter events of the input document to re-use them when merging.";
+	}
+
+	@Override
+	public Event handleEvent (Event event) {
+		switch ( event.getEventType() ) {
+		case START_DOCUMENT:
+			stopRecording();
+			if ( input == null ) break;
+			String key = FilterEventCache.getKey(input, event.getStartDocument().getFilterParameters());
+			// Same content and configuration: the events are the same
+			if (( key != null ) && !cache.contains(key) ) {
+				recorder = cache.createRecorder(key);
+			}
+			break;
+		case START_BATCH:
+		case END_BATCH:
+		case START_BATCH_ITEM:
+		case END_BATCH_ITEM:
+		case RAW_DOCUMENT:
+		case PIPELINE_PARAMETERS:
+			return event;
+		}
+		if ( recorder != null ) {
+			recorder.add(event);
+			if ( event.getEventType() == EventType.END_DOCUMENT ) {
+				recorder.close();
+				recorder = null;
+			}
+		}
+		return event;
+	}
+	
+	@Override
+	public void destroy () {
+		stopRecording();
+	}
+
+	private void stopRecording () {
+		if ( recorder != null ) {
+			recorder.cancel();
+			recorder = null;
+		}
+	}
+
+}
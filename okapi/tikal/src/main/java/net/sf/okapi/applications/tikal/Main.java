@@ -48,6 +48,7 @@ import net.sf.okapi.common.exceptions.OkapiIOException;
 import net.sf.okapi.common.filters.DefaultFilters;
 import net.sf.okapi.common.filters.FilterConfiguration;
 import net.sf.okapi.common.filters.FilterConfigurationMapper;
+import net.sf.okapi.common.filters.FilterEventCache;
 import net.sf.okapi.common.filters.IFilterConfigurationEditor;
 import net.sf.okapi.common.filters.IFilterConfigurationListEditor;
 import net.sf.okapi.common.filterwriter.XLIFFWriter;
@@ -104,7 +105,7 @@ public class Main {
 	private static final String DEFAULT_SEGRULES = "-";
 	private static final String MSG_ONLYWITHUICOMP = "UI-based commands are available only in the distributions with UI components.";
 
-	private static PrintStream ps;
+	private static PrintStream ps = System.out;
 	
 	protected ArrayList<String> inputs;
 	protected String skeleton;
@@ -146,6 +147,7 @@ public class Main {
 	protected boolean convSkipEntriesWithoutText = true;
 	protected boolean convOverwrite = false;
 	protected String segRules;
+	protected int threadCount = 1;
 	protected boolean showTraceHint = true;
 	protected String tmOptions;
 	protected boolean levOptFillTarget = true;
@@ -160,6 +162,7 @@ public class Main {
 	protected String mosesToPath;
 	protected String skeletonDir;
 	protected String outputDir;
+	protected String eventCacheDir;
 	
 	private FilterConfigurationMapper fcMapper;
 	private Hashtable<String, String> extensionsMap;
@@ -253,6 +256,9 @@ public class Main {
 				else if ( arg.equals("-sd") ) {
 					prog.skeletonDir = prog.getArgument(args, ++i);
 				}
+				else if ( arg.equals("-cache") ) {
+					prog.eventCacheDir = prog.getArgument(args, ++i);
+				}
 				else if ( arg.equals("-x") ) {
 					prog.command = CMD_EXTRACT;
 				}
@@ -472,6 +478,10 @@ public class Main {
 						}
 					}
 				}
+				else if ( arg.equals("-threads") ) {
+					prog.threadCount = Integer.parseInt(prog.getArgument(args, ++i));
+					if ( prog.threadCount < 1 ) prog.threadCount = 1;
+				}
 				else if ( arg.equals("-trace") ) {
 					// Trace aAlready set. this is just to avoid
 					// seeing -trace as invalid parameter
@@ -531,11 +541,17 @@ public class Main {
 			}
 			
 			// Process all input files
-			for ( int i=0; i<prog.inputs.size(); i++ ) {
-				if ( i > 0 ) {
-					ps.println("------------------------------------------------------------"); //$NON-NLS-1$
+			if (( prog.command == CMD_SEGMENTATION ) && ( prog.threadCount > 1 )) {
+				// All inputs in one batch, so they can be processed in parallel
+				prog.segmentFiles(prog.inputs);
+			}
+			else {
+				for ( int i=0; i<prog.inputs.size(); i++ ) {
+					if ( i > 0 ) {
+						ps.println("------------------------------------------------------------"); //$NON-NLS-1$
+					}
+					prog.process(prog.inputs.get(i));
 				}
-				prog.process(prog.inputs.get(i));
 			}
 		}
 		catch ( Throwable e ) {
@@ -976,6 +992,9 @@ public class Main {
 			stepMrg.setXliffPath(input);
 			stepMrg.setOutputPath(output);
 			stepMrg.setOutputEncoding(outputEncoding);
+			if ( eventCacheDir != null ) {
+				stepMrg.setEventCache(new FilterEventCache(eventCacheDir));
+			}
 			ps.println("Source language: "+srcLoc);
 			ps.println("Target language: "+trgLoc);
 			ps.println("Default input encoding: "+inputEncoding);
@@ -1103,10 +1122,10 @@ public class Main {
 		ps.println("      |-pen tmDirectory|-gs configFile|-apertium [configFile]");
 		ps.println("      |-ms configFile|-tda configFile|-gg configFile]");
 		ps.println("      [-maketmx [tmxFile]] [-opt threshold]");
-		ps.println("      [-od outputDirectory] [-nocopy] [-noalttrans]");
+		ps.println("      [-od outputDirectory] [-nocopy] [-noalttrans] [-cache cacheDirectory]");
 		ps.println("Merges an XLIFF document back to its original format:");
 		ps.println("   -m xliffFile [xliffFile2...] [-fc configId] [-ie encoding] [-oe encoding]");
-		ps.println("      [-sd sourceDirectory] [-od outputDirectory]");
+		ps.println("      [-sd sourceDirectory] [-od outputDirectory] [-cache cacheDirectory]");
 		ps.println("      [-sl srcLang] [-tl trgLang]");
 		ps.println("Translates a file:");
 		ps.println("   -t inputFile [inputFile2...] [-fc configId] [-ie encoding] [-oe encoding]");
@@ -1122,8 +1141,8 @@ public class Main {
 		ps.println("      [-tl trgLang] [-seg [srxFile]] [-totrg|-overtrg] [-bpt]");
 		ps.println("      [-from mosesFile] [-to outputFile]");
 		ps.println("Segments a file:");
-		ps.println("   -s inputFile [-fc configId] [-ie encoding]");
-		ps.println("      [-sl srcLang] [-tl trgLang] [-seg [srxFile]]");
+		ps.println("   -s inputFile [inputFile2...] [-fc configId] [-ie encoding]");
+		ps.println("      [-sl srcLang] [-tl trgLang] [-seg [srxFile]] [-threads count]");
 		ps.println("Queries translation resources:");
 		ps.println("   -q \"source text\" [-sl srcLang] [-tl trgLang] [-opentran]");
 		ps.println("      [-tt [hostname[:port]]] [-mm [key]] [-pen tmDirectory] [-gs configFile]");
@@ -1480,6 +1499,11 @@ public class Main {
 		RawDocumentToFilterEventsStep rd2feStep = new RawDocumentToFilterEventsStep();
 		driver.addStep(rd2feStep);
 		
+		// Cache the events for the merge if requested (before any modification)
+		if ( eventCacheDir != null ) {
+			driver.addStep(new EventCachingStep(new FilterEventCache(eventCacheDir)));
+		}
+		
 		// Add segmentation step if requested
 		if ( segRules != null ) {
 			driver.addStep(addSegmentationStep());
@@ -1522,11 +1546,39 @@ public class Main {
 	}
 
 	private void segmentFile (RawDocument rd) throws URISyntaxException {
+		PipelineDriver driver = createSegmentationDriver(Util.getDirectoryName(rd.getInputURI().getPath()));
+		addSegmentationItem(driver, rd);
+		// Process
+		driver.processBatch();
+	}
+
+	/**
+	 * Segments several input documents in a single batch, using {@link #threadCount}
+	 * threads to process the documents.
+	 * @param inputs the paths of the input documents.
+	 */
+	protected void segmentFiles (List<String> inputs) throws URISyntaxException {
+		initialize();
+		ps.println("Segmentation");
+		PipelineDriver driver = createSegmentationDriver(Util.getDirectoryName(inputs.get(0)));
+		driver.setThreadCount(threadCount);
+		for ( String input : inputs ) {
+			guessMissingParameters(input);
+			if ( !prepareFilter(configId) ) continue; // Next input
+			guessMissingLocales(input);
+			RawDocument rd = new RawDocument(new File(input).toURI(), inputEncoding, srcLoc, trgLoc);
+			rd.setFilterConfigId(configId);
+			addSegmentationItem(driver, rd);
+		}
+		// Process
+		driver.processBatch();
+	}
+
+	private PipelineDriver createSegmentationDriver (String inputRootDir) {
 		// Create the driver
 		PipelineDriver driver = new PipelineDriver();
 		driver.setFilterConfigurationMapper(fcMapper);
-		driver.setRootDirectories(System.getProperty("user.dir"),
-			Util.getDirectoryName(rd.getInputURI().getPath()));
+		driver.setRootDirectories(System.getProperty("user.dir"), inputRootDir);
 
 		// Raw document to filter events step 
 		RawDocumentToFilterEventsStep rd2feStep = new RawDocumentToFilterEventsStep();
@@ -1537,7 +1589,12 @@ public class Main {
 		// Filter events to raw document final step
 		FilterEventsToRawDocumentStep ferdStep = new FilterEventsToRawDocumentStep();
 		driver.addStep(ferdStep);
+		return driver;
+	}
 
+	private void addSegmentationItem (PipelineDriver driver,
+		RawDocument rd)
+	{
 		// Create the raw document and set the output
 		String tmp = rd.getInputURI().getPath();
 
@@ -1551,9 +1608,6 @@ public class Main {
 		ps.println("Output: "+output);
 		
 		driver.addBatchItem(rd, new File(output).toURI(), outputEncoding);
-
-		// Process
-		driver.processBatch();
 	}
 
 	private void leverageFileWithMoses (RawDocument rd) {
@@ -32,6 +32,7 @@ import net.sf.okapi.common.IResource;
 import net.sf.okapi.common.MimeTypeMapper;
 import net.sf.okapi.common.Range;
 import net.sf.okapi.common.exceptions.OkapiFilterCreationException;
+import net.sf.okapi.common.filters.FilterEventCache;
 import net.sf.okapi.common.filters.IFilter;
 import net.sf.okapi.common.filters.IFilterConfigurationMapper;
 import net.sf.okapi.common.filterwriter.IFilterWriter;
@@ -55,6 +56,7 @@ public class XLIFFMergingStep {
 	private String outputPath;
 	private String outputEncoding;
 	private LocaleId trgLoc;
+	private FilterEventCache eventCache;
 	
 	public XLIFFMergingStep (IFilterConfigurationMapper fcMapper) {
 		this.fcMapper = fcMapper;
@@ -84,10 +86,23 @@ public class XLIFFMergingStep {
 		this.outputEncoding = outputEncoding;
 	}
 
+	public FilterEventCache getEventCache () {
+		return eventCache;
+	}
+
+	/**
+	 * Sets the cache where to look for the events of the original documents.
+	 * @param eventCache the cache to use, or null to always parse the original documents.
+	 */
+	public void setEventCache (FilterEventCache eventCache) {
+		this.eventCache = eventCache;
+	}
+
 	/*
 	 * For now, take all the info from argument rather than directly the XLIFF file.
 	 */
 	public void handleRawDocument (RawDocument skelRawDoc) {
+		FilterEventCache.Player cachedEvents = null;
 		try {
 			trgLoc = skelRawDoc.getTargetLocale();
 			xlfReader = new XLIFFFilter();
@@ -101,15 +116,24 @@ public class XLIFFMergingStep {
 				throw new OkapiFilterCreationException(String.format("Cannot create the filter or load the configuration for '%s'",
 					skelRawDoc.getFilterConfigId()));
 			}
-			filter.open(skelRawDoc);
+			// Replay the events of the original if they were cached at extraction time
+			if ( eventCache != null ) {
+				cachedEvents = eventCache.open(FilterEventCache.getKey(skelRawDoc, filter.getParameters()), filter);
+			}
+			if ( cachedEvents == null ) {
+				filter.open(skelRawDoc);
+			}
+			else {
+				logger.info("Using the cached events of the original document.");
+			}
 
 			writer = filter.createFilterWriter();
 			writer.setOptions(trgLoc, outputEncoding);
 			writer.setOutput(outputPath);
 			
 			Event event;
-			while ( filter.hasNext() ) {
-				event = filter.next();
+			while (( cachedEvents == null ) ? filter.hasNext() : cachedEvents.hasNext() ) {
+				event = (( cachedEvents == null ) ? filter.next() : cachedEvents.next());
 				switch ( event.getEventType() ) {
 				case TEXT_UNIT:
 					processTextUnit(event.getTextUnit());
@@ -118,6 +142,7 @@ public class XLIFFMergingStep {
 			}
 		}
 		finally {
+			if ( cachedEvents != null ) cachedEvents.close();
 			if ( xlfReader != null ) xlfReader.close();
 			if ( filter != null ) filter.close();
 			if ( writer != null ) writer.close();
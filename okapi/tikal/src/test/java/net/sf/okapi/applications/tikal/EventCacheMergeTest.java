@@ -0,0 +1,195 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.applications.tikal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.StreamUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Extracts a document with the -cache option and checks that merging it with the cached
+ * events gives the same output as merging it by parsing the original document.
+ */
+public class EventCacheMergeTest {
+
+	private File dir;
+	private File cacheDir;
+	private Logger mergingLogger;
+	private CacheUseHandler cacheUse;
+
+	@Before
+	public void setUp () {
+		dir = new File(System.getProperty("java.io.tmpdir"), "okapiTikalEventCacheTest");
+		deleteDirectory(dir);
+		dir.mkdirs();
+		cacheDir = new File(dir, "cache");
+		cacheUse = new CacheUseHandler();
+		// Keep a reference so the logger and its handler are not garbage collected
+		mergingLogger = Logger.getLogger(XLIFFMergingStep.class.getName());
+		mergingLogger.addHandler(cacheUse);
+	}
+
+	@After
+	public void tearDown () {
+		mergingLogger.removeHandler(cacheUse);
+		deleteDirectory(dir);
+	}
+
+	@Test
+	public void testHtmlMerge () throws Exception {
+		String merged = extractAndMerge("test.html",
+			"<html><head><title>Title text</title></head>\n"
+			+ "<body><p>First <b>bold</b> paragraph.</p>\n"
+			+ "<p title=\"Attribute text\">Second paragraph<br/>with a break.</p>\n"
+			+ "<!-- comment --><p>Third paragraph.</p></body></html>\n");
+		assertTrue(merged.contains("[FR]First <b>bold</b> paragraph."));
+		assertTrue(merged.contains("[FR]Attribute text"));
+	}
+
+	@Test
+	public void testPropertiesMerge () throws Exception {
+		String merged = extractAndMerge("test.properties",
+			"# Comment\n"
+			+ "key1 = First value\n"
+			+ "key2=Second value \\\n"
+			+ "  on two lines\n"
+			+ "\n"
+			+ "key3: Third value\n");
+		assertTrue(merged.contains("key1 = [FR]First value"));
+		assertTrue(merged.contains("key3: [FR]Third value"));
+	}
+
+	private String extractAndMerge (String name,
+		String content) throws Exception
+	{
+		File input = new File(dir, name);
+		writeFile(input, content);
+
+		// Extract and record the events
+		run(Main.CMD_EXTRACT, input.getPath(), cacheDir.getPath());
+		File xliff = new File(input.getPath() + ".xlf");
+		assertTrue(xliff.exists());
+		String[] entries = cacheDir.list();
+		assertEquals(1, entries.length);
+
+		// Translate the targets
+		String xliffText = readFile(xliff);
+		xliffText = xliffText.replace("<target xml:lang=\"fr\">", "<target xml:lang=\"fr\">[FR]");
+		writeFile(xliff, xliffText);
+
+		// Merge by parsing the original document
+		File output = new File(dir, name.replace(".", ".out."));
+		run(Main.CMD_MERGE, xliff.getPath(), null);
+		assertFalse(cacheUse.used);
+		String expected = readFile(output);
+		assertTrue(output.delete());
+
+		// Merge by replaying the cached events
+		run(Main.CMD_MERGE, xliff.getPath(), cacheDir.getPath());
+		assertTrue(cacheUse.used);
+		assertEquals(expected, readFile(output));
+		return expected;
+	}
+
+	private void run (int command,
+		String input,
+		String eventCacheDir) throws Exception
+	{
+		// Same as: tikal -x|-m input -sl en -tl fr -ie UTF-8 [-cache eventCacheDir]
+		Main prog = new Main();
+		prog.command = command;
+		prog.srcLoc = LocaleId.ENGLISH;
+		prog.trgLoc = LocaleId.FRENCH;
+		prog.inputEncoding = "UTF-8";
+		prog.eventCacheDir = eventCacheDir;
+		prog.process(input);
+	}
+
+	private void writeFile (File file,
+		String content) throws IOException
+	{
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(content);
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	private String readFile (File file) throws IOException {
+		FileInputStream input = new FileInputStream(file);
+		try {
+			return StreamUtil.streamAsString(input, "UTF-8");
+		}
+		finally {
+			input.close();
+		}
+	}
+
+	private void deleteDirectory (File dir) {
+		File[] files = dir.listFiles();
+		if ( files != null ) {
+			for ( File file : files ) {
+				if ( file.isDirectory() ) deleteDirectory(file);
+				else file.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	private static class CacheUseHandler extends Handler {
+		boolean used;
+
+		@Override
+		public void publish (LogRecord record) {
+			if ( record.getMessage().startsWith("Using the cached events") ) {
+				used = true;
+			}
+		}
+
+		@Override
+		public void flush () {
+		}
+
+		@Override
+		public void close () {
+		}
+	}
+
+}
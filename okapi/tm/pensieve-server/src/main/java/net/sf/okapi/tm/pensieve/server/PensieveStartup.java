@@ -23,7 +23,10 @@ package net.sf.okapi.tm.pensieve.server;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Produces;
 import javax.inject.Inject;
@@ -47,6 +50,7 @@ public class PensieveStartup {
 	
 	private PensieveWriter writer;
 	private PensieveSeeker seeker;
+	private ExecutorService searchExecutor;
 	
 	protected PensieveStartup() {}
 	
@@ -76,6 +80,26 @@ public class PensieveStartup {
 		return seeker;
 	}
 	
+	/**
+	 * Pool of threads used to run the queries of the bulk searches. All threads share
+	 * the same seeker (and its index searcher).
+	 */
+	@Produces @SearchExecutor ExecutorService getSearchExecutor() {
+		if( searchExecutor == null ) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			log.debug("creating search executor with {} threads", threads);
+			searchExecutor = Executors.newFixedThreadPool(threads);
+		}
+		return searchExecutor;
+	}
+	
+	@PreDestroy
+	void shutdown() {
+		if( searchExecutor != null ) {
+			searchExecutor.shutdownNow();
+		}
+	}
+	
 	private void importTestData() throws IOException {
 		OkapiTmxImporter importer = new OkapiTmxImporter(new LocaleId("EN-US"), new TmxFilter());
 		try{
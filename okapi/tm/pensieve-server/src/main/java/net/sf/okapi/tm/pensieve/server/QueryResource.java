@@ -20,61 +20,344 @@
 
 package net.sf.okapi.tm.pensieve.server;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.inject.Inject;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.Util;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.tm.pensieve.common.Metadata;
+import net.sf.okapi.tm.pensieve.common.MetadataType;
 import net.sf.okapi.tm.pensieve.common.TmHit;
 import net.sf.okapi.tm.pensieve.seeker.PensieveSeeker;
+import net.sf.okapi.tm.pensieve.server.model.BulkQueryResult;
 import net.sf.okapi.tm.pensieve.server.model.QueryResult;
 
+import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
 
 @Path("/")
 public class QueryResource {
 
+	/**
+	 * Media type of the bulk search results: one JSON object per line.
+	 */
+	public static final String NDJSON = "application/x-ndjson";
+	
+	/**
+	 * Name of the header giving the time spent on a query, in milliseconds.
+	 */
+	public static final String QUERY_TIME_HEADER = "X-Query-Time";
+
+	// Maximum number of bulk queries submitted ahead of the one being written
+	private static final int BULK_WINDOW = 256;
+	
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	
+	private enum SearchType {
+		FUZZY, EXACT, CONCORDANCE
+	}
+	
 	@Inject Logger log;
 	
 	@Inject PensieveSeeker seeker;
 	
+	@Inject @SearchExecutor ExecutorService executor;
+	
 	@Path("/search/{srcLang}/{trgLang}")
 	@GET
 	@Produces("application/json")
 	public Response search(
 			@PathParam("srcLang") LocaleId srcLang,
-			@PathParam("srcLang") LocaleId trgLang,
+			@PathParam("trgLang") LocaleId trgLang,
 			@QueryParam("q") @DefaultValue("") String query,
 			@QueryParam("threshold") @DefaultValue("85") int threshold,
-			@QueryParam("maxhits") @DefaultValue("25") int maxhits) {
+			@QueryParam("maxhits") @DefaultValue("25") int maxhits,
+			@QueryParam("meta") List<String> meta) {
 
-		TextFragment tf = new TextFragment(query);
-		List<TmHit> hits = seeker.searchFuzzy(tf, threshold, maxhits, new Metadata());
-		
-		log.debug("found {} hits", hits.size());
+		return searchSingle(SearchType.FUZZY, srcLang, trgLang, query, threshold, maxhits, meta);
+	}
+	
+	@Path("/exact/{srcLang}/{trgLang}")
+	@GET
+	@Produces("application/json")
+	public Response searchExact(
+			@PathParam("srcLang") LocaleId srcLang,
+			@PathParam("trgLang") LocaleId trgLang,
+			@QueryParam("q") @DefaultValue("") String query,
+			@QueryParam("meta") List<String> meta) {
+
+		return searchSingle(SearchType.EXACT, srcLang, trgLang, query, 100, 0, meta);
+	}
+	
+	@Path("/concordance/{srcLang}/{trgLang}")
+	@GET
+	@Produces("application/json")
+	public Response searchConcordance(
+			@PathParam("srcLang") LocaleId srcLang,
+			@PathParam("trgLang") LocaleId trgLang,
+			@QueryParam("q") @DefaultValue("") String query,
+			@QueryParam("threshold") @DefaultValue("85") int threshold,
+			@QueryParam("maxhits") @DefaultValue("25") int maxhits,
+			@QueryParam("meta") List<String> meta) {
+
+		return searchSingle(SearchType.CONCORDANCE, srcLang, trgLang, query, threshold, maxhits, meta);
+	}
+	
+	/**
+	 * Searches many segments in one request. The body is a plain text list of segments,
+	 * one per line. The queries are run in parallel on the shared seeker, and the results
+	 * are streamed back in the order of the segments, one JSON object per line.
+	 */
+	@Path("/bulk/{srcLang}/{trgLang}")
+	@POST
+	@Consumes("text/plain")
+	@Produces(NDJSON)
+	public Response bulkSearch(
+			@PathParam("srcLang") LocaleId srcLang,
+			@PathParam("trgLang") LocaleId trgLang,
+			@QueryParam("type") @DefaultValue("fuzzy") String type,
+			@QueryParam("threshold") @DefaultValue("85") int threshold,
+			@QueryParam("maxhits") @DefaultValue("25") int maxhits,
+			@QueryParam("meta") List<String> meta,
+			String segments) {
+
+		List<String> queries = new ArrayList<String>();
+		for( String segment : segments.split("\r?\n") ) {
+			if( segment.length() > 0 ) {
+				queries.add(segment);
+			}
+		}
+		return searchBulk(getSearchType(type), srcLang, trgLang, queries, threshold, maxhits, meta);
+	}
+	
+	/**
+	 * Same as {@link #bulkSearch(LocaleId, LocaleId, String, int, int, List, String)}, but the
+	 * segments are sent as a JSON array of strings.
+	 */
+	@Path("/bulk/{srcLang}/{trgLang}")
+	@POST
+	@Consumes("application/json")
+	@Produces(NDJSON)
+	public Response bulkSearchJson(
+			@PathParam("srcLang") LocaleId srcLang,
+			@PathParam("trgLang") LocaleId trgLang,
+			@QueryParam("type") @DefaultValue("fuzzy") String type,
+			@QueryParam("threshold") @DefaultValue("85") int threshold,
+			@QueryParam("maxhits") @DefaultValue("25") int maxhits,
+			@QueryParam("meta") List<String> meta,
+			List<String> segments) {
 
-		List<QueryResult> results = new ArrayList<QueryResult>();
+		return searchBulk(getSearchType(type), srcLang, trgLang, segments, threshold, maxhits, meta);
+	}
+	
+	private Response searchSingle(SearchType type, LocaleId srcLang, LocaleId trgLang,
+			String query, int threshold, int maxhits, List<String> meta) {
+		
+		long start = System.currentTimeMillis();
+		List<QueryResult> results = toResults(runSearch(type, query, threshold, maxhits,
+				getMetadata(meta)), srcLang, trgLang);
+		long time = System.currentTimeMillis() - start;
+		
+		log.debug("found {} hits in {} ms", results.size(), time);
+		
+		return Response.ok().entity(results).header(QUERY_TIME_HEADER, time).build();
+	}
+	
+	private Response searchBulk(final SearchType type, final LocaleId srcLang,
+			final LocaleId trgLang, final List<String> queries, final int threshold,
+			final int maxhits, List<String> meta) {
+		
+		final Metadata metadata = getMetadata(meta);
+		
+		StreamingOutput output = new StreamingOutput() {
+			public void write(OutputStream os) throws IOException {
+				long start = System.currentTimeMillis();
+				Writer writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
+				LinkedList<Future<BulkQueryResult>> pending = new LinkedList<Future<BulkQueryResult>>();
+				int next = 0;
+				try {
+					while( next < queries.size() || !pending.isEmpty() ) {
+						// Keep a bounded number of queries running ahead of the output
+						while( next < queries.size() && pending.size() < BULK_WINDOW ) {
+							pending.add(executor.submit(new BulkQuery(next, queries.get(next),
+									type, srcLang, trgLang, threshold, maxhits, metadata)));
+							next++;
+						}
+						writer.write(MAPPER.writeValueAsString(pending.removeFirst().get()));
+						writer.write('\n');
+						if( pending.isEmpty() ) {
+							writer.flush();
+						}
+					}
+				}
+				catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					throw new WebApplicationException(e);
+				}
+				catch ( ExecutionException e ) {
+					throw new WebApplicationException(e.getCause());
+				}
+				finally {
+					// Stop the remaining queries if the client went away
+					for( Future<BulkQueryResult> future : pending ) {
+						future.cancel(true);
+					}
+				}
+				writer.flush();
+				log.debug("bulk search of {} segments done in {} ms", queries.size(),
+						System.currentTimeMillis() - start);
+			}
+		};
+		
+		return Response.ok(output).build();
+	}
+	
+	private List<TmHit> runSearch(SearchType type, String query, int threshold,
+			int maxhits, Metadata metadata) {
+		switch( type ) {
+		case EXACT:
+			return seeker.searchExact(new TextFragment(query), metadata);
+		case CONCORDANCE:
+			return seeker.searchSimpleConcordance(query, threshold, maxhits, metadata);
+		default:
+			return seeker.searchFuzzy(new TextFragment(query), threshold, maxhits, metadata);
+		}
+	}
+	
+	/**
+	 * Converts the hits into results, keeping only the hits of the requested languages.
+	 * The filter is applied after the search, so fewer than maxhits results can be returned
+	 * when the index holds several language pairs.
+	 */
+	private List<QueryResult> toResults(List<TmHit> hits, LocaleId srcLang, LocaleId trgLang) {
+		List<QueryResult> results = new ArrayList<QueryResult>(hits.size());
 		
 		for(TmHit hit : hits) {
+			if( !matchesLocale(srcLang, hit.getTu().getSource().getLanguage())
+					|| !matchesLocale(trgLang, hit.getTu().getTarget().getLanguage()) ) {
+				continue;
+			}
 			QueryResult result = new QueryResult();
 			result.setScore(hit.getScore());
 			result.setSource(hit.getTu().getSource().getContent().getCodedText());
 			result.setTarget(hit.getTu().getTarget().getContent().getCodedText());
+			if( hit.getMatchType() != null ) {
+				result.setMatchType(hit.getMatchType().name());
+			}
 			results.add(result);
 		}
 		
-		return Response.ok().entity(results).build();
+		return results;
+	}
+	
+	/**
+	 * Tells if a unit language matches a requested language. A request without region
+	 * (for example "fr") matches all the regions of that language.
+	 */
+	private boolean matchesLocale(LocaleId requested, LocaleId actual) {
+		if( requested == null ) {
+			return true;
+		}
+		if( requested.equals(actual) ) {
+			return true;
+		}
+		return Util.isEmpty(requested.getRegion()) && requested.sameLanguageAs(actual);
+	}
+	
+	private SearchType getSearchType(String type) {
+		try {
+			return SearchType.valueOf(type.toUpperCase());
+		}
+		catch ( IllegalArgumentException e ) {
+			throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+					.entity("Unknown search type: " + type).build());
+		}
+	}
+	
+	/**
+	 * Builds the metadata filter from the "meta" query parameters. Each parameter has the
+	 * form <code>field=value</code>, for example <code>meta=Txt::FileName=file.html</code>.
+	 */
+	private Metadata getMetadata(List<String> meta) {
+		Metadata metadata = new Metadata();
+		if( meta == null ) {
+			return metadata;
+		}
+		for( String item : meta ) {
+			int n = item.indexOf('=');
+			MetadataType mtype = (n > 0) ? MetadataType.findMetadataType(item.substring(0, n)) : null;
+			if( mtype == null ) {
+				throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+						.entity("Invalid metadata filter: " + item).build());
+			}
+			metadata.put(mtype, item.substring(n+1));
+		}
+		return metadata;
+	}
+	
+	private class BulkQuery implements Callable<BulkQueryResult> {
 		
+		private final int index;
+		private final String query;
+		private final SearchType type;
+		private final LocaleId srcLang;
+		private final LocaleId trgLang;
+		private final int threshold;
+		private final int maxhits;
+		private final Metadata metadata;
+		
+		BulkQuery(int index, String query, SearchType type, LocaleId srcLang,
+				LocaleId trgLang, int threshold, int maxhits, Metadata metadata) {
+			this.index = index;
+			this.query = query;
+			this.type = type;
+			this.srcLang = srcLang;
+			this.trgLang = trgLang;
+			this.threshold = threshold;
+			this.maxhits = maxhits;
+			this.metadata = metadata;
+		}
+		
+		public BulkQueryResult call() {
+			BulkQueryResult result = new BulkQueryResult();
+			result.setIndex(index);
+			result.setQuery(query);
+			long start = System.currentTimeMillis();
+			try {
+				result.setHits(toResults(runSearch(type, query, threshold, maxhits, metadata),
+						srcLang, trgLang));
+			}
+			catch ( RuntimeException e ) {
+				// Report the error for this segment and carry on with the others
+				result.setError(e.getMessage());
+			}
+			result.setTime(System.currentTimeMillis() - start);
+			return result;
+		}
 	}
 	
 }
@@ -0,0 +1,58 @@
+package net.sf.okapi.tm.pensieve.server.model;
+
+import java.util.List;
+
+public class BulkQueryResult {
+	
+	private int index;
+	private String query;
+	private long time;
+	private List<QueryResult> hits;
+	private String error;
+	
+	public BulkQueryResult() {
+	}
+	
+	public int getIndex() {
+		return index;
+	}
+	
+	public void setIndex(int index) {
+		this.index = index;
+	}
+	
+	public String getQuery() {
+		return query;
+	}
+	
+	public void setQuery(String query) {
+		this.query = query;
+	}
+	
+	/**
+	 * Gets the time spent on this query, in milliseconds.
+	 */
+	public long getTime() {
+		return time;
+	}
+	
+	public void setTime(long time) {
+		this.time = time;
+	}
+	
+	public List<QueryResult> getHits() {
+		return hits;
+	}
+	
+	public void setHits(List<QueryResult> hits) {
+		this.hits = hits;
+	}
+	
+	public String getError() {
+		return error;
+	}
+	
+	public void setError(String error) {
+		this.error = error;
+	}
+}
@@ -5,6 +5,7 @@ public class QueryResult {
 	private float score;
 	private String source;
 	private String target;
+	private String matchType;
 	
 	public QueryResult() {
 	}
@@ -32,4 +33,12 @@ public class QueryResult {
 	public void setTarget(String target) {
 		this.target = target;
 	}
+	
+	public String getMatchType() {
+		return matchType;
+	}
+	
+	public void setMatchType(String matchType) {
+		this.matchType = matchType;
+	}
 }
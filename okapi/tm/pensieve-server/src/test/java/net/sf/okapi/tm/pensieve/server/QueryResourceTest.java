@@ -0,0 +1,223 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+
+package net.sf.okapi.tm.pensieve.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.tm.pensieve.common.TranslationUnit;
+import net.sf.okapi.tm.pensieve.common.TranslationUnitVariant;
+import net.sf.okapi.tm.pensieve.seeker.PensieveSeeker;
+import net.sf.okapi.tm.pensieve.server.model.BulkQueryResult;
+import net.sf.okapi.tm.pensieve.server.model.QueryResult;
+import net.sf.okapi.tm.pensieve.writer.PensieveWriter;
+
+import org.apache.lucene.store.RAMDirectory;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+public class QueryResourceTest {
+
+	private static final LocaleId EN_US = LocaleId.fromString("en-us");
+	private static final LocaleId FR_FR = LocaleId.fromString("fr-fr");
+	private static final LocaleId DE_DE = LocaleId.fromString("de-de");
+	
+	private QueryResource resource;
+	
+	@Before
+	public void setUp() throws Exception {
+		RAMDirectory dir = new RAMDirectory();
+		PensieveWriter writer = new PensieveWriter(dir, true);
+		addUnit(writer, FR_FR, "The quick brown fox jumps over the lazy dog.", "fr1");
+		addUnit(writer, FR_FR, "The quick brown fox jumps over the lazy cat.", "fr2");
+		addUnit(writer, FR_FR, "Press the red button to stop the machine.", "fr3");
+		addUnit(writer, DE_DE, "The quick brown fox jumps over the lazy dog.", "de1");
+		writer.close();
+		
+		resource = new QueryResource();
+		resource.log = LoggerFactory.getLogger(QueryResource.class);
+		resource.seeker = new PensieveSeeker(dir);
+		resource.executor = Executors.newFixedThreadPool(2);
+	}
+	
+	@After
+	public void tearDown() {
+		resource.executor.shutdownNow();
+		resource.seeker.close();
+	}
+	
+	@Test
+	public void searchExact() {
+		Response response = resource.searchExact(EN_US, FR_FR,
+				"The quick brown fox jumps over the lazy dog.", null);
+		assertEquals(200, response.getStatus());
+		assertNotNull(response.getMetadata().getFirst(QueryResource.QUERY_TIME_HEADER));
+		List<QueryResult> results = getResults(response);
+		assertEquals(1, results.size());
+		assertEquals("fr1", results.get(0).getTarget());
+		assertEquals("EXACT", results.get(0).getMatchType());
+		assertEquals(100f, results.get(0).getScore(), 0.01f);
+		
+		response = resource.searchExact(EN_US, FR_FR, "Not in the memory.", null);
+		assertEquals(0, getResults(response).size());
+	}
+	
+	@Test
+	public void searchExactOtherTarget() {
+		List<QueryResult> results = getResults(resource.searchExact(EN_US, DE_DE,
+				"The quick brown fox jumps over the lazy dog.", null));
+		assertEquals(1, results.size());
+		assertEquals("de1", results.get(0).getTarget());
+	}
+	
+	@Test
+	public void searchLanguageWithoutRegion() {
+		List<QueryResult> results = getResults(resource.searchExact(EN_US,
+				LocaleId.fromString("fr"), "The quick brown fox jumps over the lazy dog.", null));
+		assertEquals(1, results.size());
+		assertEquals("fr1", results.get(0).getTarget());
+		
+		// A different region is not the requested language
+		results = getResults(resource.searchExact(EN_US, LocaleId.fromString("fr-ca"),
+				"The quick brown fox jumps over the lazy dog.", null));
+		assertEquals(0, results.size());
+		
+		results = getResults(resource.searchExact(LocaleId.fromString("es"), FR_FR,
+				"The quick brown fox jumps over the lazy dog.", null));
+		assertEquals(0, results.size());
+	}
+	
+	@Test
+	public void searchFuzzy() {
+		List<QueryResult> results = getResults(resource.search(EN_US, FR_FR,
+				"The quick brown fox jumps over the lazy dog.", 70, 10, null));
+		assertEquals(2, results.size());
+		assertEquals("fr1", results.get(0).getTarget());
+		assertEquals("fr2", results.get(1).getTarget());
+	}
+	
+	@Test
+	public void searchConcordance() {
+		Response response = resource.searchConcordance(EN_US, FR_FR, "red button", 50, 10, null);
+		assertEquals(200, response.getStatus());
+		assertNotNull(response.getMetadata().getFirst(QueryResource.QUERY_TIME_HEADER));
+		List<QueryResult> results = getResults(response);
+		assertEquals(1, results.size());
+		assertEquals("fr3", results.get(0).getTarget());
+	}
+	
+	@Test
+	public void bulkSearchText() throws Exception {
+		Response response = resource.bulkSearch(EN_US, FR_FR, "exact", 85, 25, null,
+				"The quick brown fox jumps over the lazy cat.\r\n\nNot in the memory.\n"
+				+ "Press the red button to stop the machine.\n");
+		List<BulkQueryResult> results = getBulkResults(response);
+		assertEquals(3, results.size());
+		for( int i = 0; i < results.size(); i++ ) {
+			assertEquals(i, results.get(i).getIndex());
+			assertNull(results.get(i).getError());
+		}
+		assertEquals("The quick brown fox jumps over the lazy cat.", results.get(0).getQuery());
+		assertEquals("fr2", results.get(0).getHits().get(0).getTarget());
+		assertEquals(0, results.get(1).getHits().size());
+		assertEquals("fr3", results.get(2).getHits().get(0).getTarget());
+	}
+	
+	@Test
+	public void bulkSearchJson() throws Exception {
+		List<String> segments = new ArrayList<String>();
+		for( int i = 0; i < 50; i++ ) {
+			segments.add((i % 2 == 0) ? "The quick brown fox jumps over the lazy dog."
+					: "Press the red button to stop the machine.");
+		}
+		Response response = resource.bulkSearchJson(EN_US, DE_DE, "fuzzy", 70, 10, null,
+				segments);
+		List<BulkQueryResult> results = getBulkResults(response);
+		assertEquals(segments.size(), results.size());
+		for( int i = 0; i < results.size(); i++ ) {
+			BulkQueryResult result = results.get(i);
+			assertEquals(i, result.getIndex());
+			assertEquals(segments.get(i), result.getQuery());
+			if( i % 2 == 0 ) {
+				// Only the German unit is returned
+				assertEquals(1, result.getHits().size());
+				assertEquals("de1", result.getHits().get(0).getTarget());
+			}
+			else {
+				assertEquals(0, result.getHits().size());
+			}
+		}
+	}
+	
+	@Test
+	public void bulkSearchUnknownType() {
+		try {
+			resource.bulkSearchJson(EN_US, FR_FR, "phonetic", 85, 25, null,
+					Arrays.asList("The quick brown fox."));
+			fail("Expected a bad request");
+		}
+		catch ( WebApplicationException e ) {
+			assertEquals(400, e.getResponse().getStatus());
+		}
+	}
+	
+	private void addUnit(PensieveWriter writer, LocaleId trgLang, String source, String target) {
+		writer.indexTranslationUnit(new TranslationUnit(
+				new TranslationUnitVariant(EN_US, new TextFragment(source)),
+				new TranslationUnitVariant(trgLang, new TextFragment(target))));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<QueryResult> getResults(Response response) {
+		return (List<QueryResult>)response.getEntity();
+	}
+	
+	private List<BulkQueryResult> getBulkResults(Response response) throws Exception {
+		assertEquals(200, response.getStatus());
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		((StreamingOutput)response.getEntity()).write(os);
+		ObjectMapper mapper = new ObjectMapper();
+		List<BulkQueryResult> results = new ArrayList<BulkQueryResult>();
+		for( String line : os.toString("UTF-8").split("\n") ) {
+			results.add(mapper.readValue(line, BulkQueryResult.class));
+		}
+		return results;
+	}
+	
+}
@@ -20,6 +20,7 @@
 
 package net.sf.okapi.tm.pensieve.seeker;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
@@ -82,13 +83,13 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 	private static float SINGLE_CODE_DIFF_PENALTY = 0.5f;
 	private static float WHITESPACE_OR_CASE_PENALTY = 2.0f;
 
-	// maxTopDocuments = indexReader.maxDoc * MAX_HITS_CONSTANT
-	private int maxTopDocuments;
 	private Directory indexDir;
 	private IndexReader indexReader;
 	private IndexWriter indexWriter;
 	private IndexSearcher indexSearcher;
 	private boolean nrtMode;
+	private long reopenInterval;
+	private long lastReopenCheck;
 
 	/**
 	 * Creates an instance of TMSeeker
@@ -124,7 +125,10 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 	}
 
 	/**
-	 * gets an iterator to traverse all translation units in the indexdir
+	 * gets an iterator to traverse all translation units in the indexdir.
+	 * <p>The iterator holds a reference on the index reader until {@link Iterator#hasNext()}
+	 * returns false. The returned iterator implements {@link Closeable}: callers that stop
+	 * before the end must call {@link Closeable#close()} to release the reader.
 	 * 
 	 * @return the iterator for translation units
 	 */
@@ -142,6 +146,30 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 		return indexDir;
 	}
 
+	/**
+	 * Sets the minimal interval between two checks for changes of the index, in near-real-time
+	 * (NRT) mode. The searcher is re-created only when the index has changed since it was
+	 * created. By default the index is checked before each search.
+	 * 
+	 * @param reopenInterval
+	 *            the minimal number of milliseconds between two checks, or 0 to check
+	 *            before each search.
+	 */
+	public void setReopenInterval(long reopenInterval) {
+		this.reopenInterval = reopenInterval;
+	}
+
+	/**
+	 * Gets the minimal interval between two checks for changes of the index, in near-real-time
+	 * (NRT) mode.
+	 * 
+	 * @return the minimal number of milliseconds between two checks, or 0 if the index is
+	 *         checked before each search.
+	 */
+	public long getReopenInterval() {
+		return reopenInterval;
+	}
+
 	private BooleanQuery createQuery(Metadata metadata) {
 		return createQuery(metadata, null);
 	}
@@ -235,33 +263,113 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 		return new IndexSearcher(openIndexReader());
 	}
 
-	protected IndexSearcher getIndexSearcher() throws CorruptIndexException, IOException {
-		if (indexSearcher != null && !nrtMode) {
-			return indexSearcher;
+	// Synchronized so the same seeker can be shared by concurrent queries
+	protected synchronized IndexSearcher getIndexSearcher() throws CorruptIndexException, IOException {
+		if (indexSearcher == null) {
+			indexSearcher = createIndexSearcher();
+		}
+		else if (nrtMode && refreshIndexReader()) {
+			// NRT: the index has changed, the searcher must see the changes.
+			// The searcher does not own its reader, so closing it leaves the reader open
+			// for the queries still using it.
+			indexSearcher.close();
+			indexSearcher = new IndexSearcher(indexReader);
 		}
-		// NRT should create a new index searcher at every search fuzzy call 
-		indexSearcher = createIndexSearcher();
 		return indexSearcher;
 	}
 
-	protected IndexReader openIndexReader() throws CorruptIndexException, IOException {
+	/**
+	 * Gets the current searcher and holds a reference on its reader, so the reader is not
+	 * closed if another thread re-opens the index while the searcher is in use. Each call
+	 * must be matched by a call to {@link #releaseIndexSearcher(IndexSearcher)}.
+	 * 
+	 * @return the current searcher.
+	 */
+	protected synchronized IndexSearcher acquireIndexSearcher() throws CorruptIndexException,
+			IOException {
+		IndexSearcher is = getIndexSearcher();
+		is.getIndexReader().incRef();
+		return is;
+	}
+
+	/**
+	 * Releases a searcher obtained with {@link #acquireIndexSearcher()}. Its reader is
+	 * closed if it has been replaced since and this was its last user.
+	 * 
+	 * @param is
+	 *            the searcher to release.
+	 */
+	protected void releaseIndexSearcher(IndexSearcher is) throws IOException {
+		is.getIndexReader().decRef();
+	}
+
+	protected synchronized IndexReader openIndexReader() throws CorruptIndexException, IOException {
 		if (indexReader == null) {			
 			indexReader = nrtMode ?
 					IndexReader.open(indexWriter, true) : 
 					IndexReader.open(indexDir, true);
-			maxTopDocuments = (int) ((float) indexReader.maxDoc() * MAX_HITS_RATIO);
-			if (maxTopDocuments < MIN_MAX_HITS) {
-				maxTopDocuments = MIN_MAX_HITS;
-			}
+			lastReopenCheck = System.currentTimeMillis();
 		}
 		else if (nrtMode) {
-			indexReader = indexReader.reopen();
+			refreshIndexReader();
 		}
 		return indexReader;
 	}
 
+	/**
+	 * Gets the current reader and holds a reference on it. The reference must be released
+	 * with {@link IndexReader#decRef()}.
+	 * 
+	 * @return the current reader.
+	 */
+	private synchronized IndexReader acquireIndexReader() throws CorruptIndexException,
+			IOException {
+		IndexReader ir = openIndexReader();
+		ir.incRef();
+		return ir;
+	}
+
+	/**
+	 * Re-opens the index reader if the index has changed since it was opened, and if the
+	 * re-open interval has elapsed. The seeker's reference on the previous reader is
+	 * released: the reader is closed once the searches and iterators using it are done.
+	 * 
+	 * @return true if a new reader has been opened, false if the current one is still used.
+	 */
+	private boolean refreshIndexReader() throws CorruptIndexException, IOException {
+		long now = System.currentTimeMillis();
+		if (now - lastReopenCheck < reopenInterval) {
+			return false;
+		}
+		lastReopenCheck = now;
+		if (indexReader.isCurrent()) {
+			return false;
+		}
+		IndexReader newReader = indexReader.reopen();
+		if (newReader == indexReader) {
+			return false;
+		}
+		indexReader.decRef();
+		indexReader = newReader;
+		return true;
+	}
+
 	private List<TmHit> getTopHits(Query query, Metadata metadata) throws IOException {
-		IndexSearcher is = getIndexSearcher();
+		IndexSearcher is = acquireIndexSearcher();
+		try {
+			return getTopHits(is, query, metadata);
+		} finally {
+			releaseIndexSearcher(is);
+		}
+	}
+
+	private List<TmHit> getTopHits(IndexSearcher is, Query query, Metadata metadata)
+			throws IOException {
+		// maxTopDocuments = indexReader.maxDoc * MAX_HITS_RATIO
+		int maxTopDocuments = (int) ((float) is.maxDoc() * MAX_HITS_RATIO);
+		if (maxTopDocuments < MIN_MAX_HITS) {
+			maxTopDocuments = MIN_MAX_HITS;
+		}
 		QueryWrapperFilter filter = null;
 		int maxHits = 0;
 		List<TmHit> tmHitCandidates = new ArrayList<TmHit>(maxTopDocuments);
@@ -287,13 +395,13 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 			tmHit.setDocId(scoreDoc.doc);
 			tmHit.setScore(scoreDoc.score);
 
-			List<Code> tmCodes = Code.stringToCodes(getFieldValue(getIndexSearcher().doc(
-					tmHit.getDocId()), TranslationUnitField.SOURCE_CODES));
-			String tmCodedText = getFieldValue(getIndexSearcher().doc(tmHit.getDocId()),
-					TranslationUnitField.SOURCE_EXACT);
+			// Fetch the stored document only once per hit
+			Document doc = is.doc(scoreDoc.doc);
+			List<Code> tmCodes = Code.stringToCodes(getFieldValue(doc,
+					TranslationUnitField.SOURCE_CODES));
+			String tmCodedText = getFieldValue(doc, TranslationUnitField.SOURCE_EXACT);
 
-			tmHit.setTu(createTranslationUnit(getIndexSearcher().doc(tmHit.getDocId()),
-					tmCodedText, tmCodes));
+			tmHit.setTu(createTranslationUnit(doc, tmCodedText, tmCodes));
 			tmHitCandidates.add(tmHit);
 		}
 
@@ -437,10 +545,10 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 		try {
 			tmHitCandidates = getTopHits(query, metadata);
 			for (TmHit tmHit : tmHitCandidates) {
-				List<Code> tmCodes = Code.stringToCodes(getFieldValue(getIndexSearcher().doc(
-						tmHit.getDocId()), TranslationUnitField.SOURCE_CODES));
-				String tmCodedText = getFieldValue(getIndexSearcher().doc(tmHit.getDocId()),
-						TranslationUnitField.SOURCE_EXACT);
+				// The source of the hit was created from the stored document
+				TextFragment tmSource = tmHit.getTu().getSource().getContent();
+				List<Code> tmCodes = tmSource.getCodes();
+				String tmCodedText = tmSource.getCodedText();
 
 				// remove codes so we can compare text only
 				String sourceTextOnly = TextFragment.getText(tmCodedText);
@@ -600,7 +708,7 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 		return tu;
 	}
 
-	private class TranslationUnitIterator implements Iterator<TranslationUnit> {
+	private class TranslationUnitIterator implements Iterator<TranslationUnit>, Closeable {
 
 		private int currentIndex;
 		private int maxIndex;
@@ -608,7 +716,8 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 
 		TranslationUnitIterator() {
 			try {
-				ir = openIndexReader();
+				// Keep the reader open while iterating, even if the seeker re-opens the index
+				ir = acquireIndexReader();
 			} catch (CorruptIndexException cie) {
 				throw new OkapiIOException(cie.getMessage(), cie);
 			} catch (IOException ioe) {
@@ -619,7 +728,31 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 		}
 
 		public boolean hasNext() {
-			return currentIndex < maxIndex;
+			if (currentIndex < maxIndex) {
+				return true;
+			}
+			release();
+			return false;
+		}
+
+		/**
+		 * Releases the index reader. Once closed, the iterator has no more elements.
+		 */
+		public void close() {
+			release();
+			currentIndex = maxIndex;
+		}
+
+		private void release() {
+			if (ir == null) {
+				return;
+			}
+			try {
+				ir.decRef();
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Exception releasing Pensieve index reader.", e); //$NON-NLS-1$
+			}
+			ir = null;
 		}
 
 		public TranslationUnit next() {
@@ -645,7 +778,7 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 		}
 	}
 
-	public void close() {
+	public synchronized void close() {
 		try {
 			if (indexSearcher != null) {
 				indexSearcher.close();
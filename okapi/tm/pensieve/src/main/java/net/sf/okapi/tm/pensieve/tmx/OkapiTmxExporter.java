@@ -26,6 +26,7 @@ import net.sf.okapi.tm.pensieve.common.PensieveUtil;
 import net.sf.okapi.tm.pensieve.common.TranslationUnit;
 import net.sf.okapi.tm.pensieve.seeker.ITmSeeker;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Iterator;
 import net.sf.okapi.tm.pensieve.seeker.PensieveSeeker;
@@ -58,10 +59,11 @@ public class OkapiTmxExporter implements ITmxExporter {
     	TMXWriter tmxWriter)
     throws IOException {
         checkExportTmxParams(sourceLang, tmSeeker, tmxWriter);
+        Iterator<TranslationUnit> iterator = null;
         try {
             tmxWriter.writeStartDocument(sourceLang, targetLang, "pensieve", "0.0.1", "sentence", "pensieve", "unknown");
             //TODO might eat up too much memory for large TMs
-            Iterator<TranslationUnit> iterator = ((PensieveSeeker) tmSeeker).iterator();
+            iterator = ((PensieveSeeker) tmSeeker).iterator();
             while (iterator.hasNext()) {
                 TranslationUnit tu = iterator.next();
                 if (isWriteTextUnit(sourceLang, targetLang, tu)) {
@@ -70,6 +72,10 @@ public class OkapiTmxExporter implements ITmxExporter {
             }
             tmxWriter.writeEndDocument();
         } finally {
+            // Release the index reader if the export stopped before the end
+            if (iterator instanceof Closeable) {
+                ((Closeable) iterator).close();
+            }
             tmxWriter.close();
         }
     }
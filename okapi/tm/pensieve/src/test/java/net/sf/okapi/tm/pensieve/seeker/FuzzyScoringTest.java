@@ -0,0 +1,199 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.tm.pensieve.seeker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.lib.search.lucene.analysis.NgramAnalyzer;
+import net.sf.okapi.lib.search.lucene.query.TmFuzzyQuery;
+import net.sf.okapi.tm.pensieve.common.TranslationUnit;
+import net.sf.okapi.tm.pensieve.common.TranslationUnitField;
+import net.sf.okapi.tm.pensieve.common.TranslationUnitVariant;
+import net.sf.okapi.tm.pensieve.writer.PensieveWriter;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.TermAttribute;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermFreqVector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that the fuzzy scorer, which prunes the documents that cannot reach the threshold,
+ * finds the same hits with the same scores as scoring every document of a Pensieve index.
+ */
+public class FuzzyScoringTest {
+
+    private static final String[] WORDS = {"the", "file", "cannot", "be", "opened", "because",
+        "it", "is", "used", "by", "another", "process", "click", "save", "to", "keep", "your",
+        "changes", "before", "closing", "window", "select", "an", "item", "from", "list",
+        "printer", "settings", "were", "updated"};
+    private static final String SRC = TranslationUnitField.SOURCE.name();
+
+    private static Directory dir;
+    private static IndexReader reader;
+    private static IndexSearcher searcher;
+    private static List<String> sources = new ArrayList<String>();
+
+    @BeforeClass
+    public static void setUp () throws Exception {
+        dir = new RAMDirectory();
+        Random random = new Random(42);
+        // Two sessions to get more than one index segment
+        for (int session = 0; session < 2; session++) {
+            PensieveWriter writer = new PensieveWriter(dir, session == 0);
+            for (int i = 0; i < 300; i++) {
+                String text = createSentence(random);
+                sources.add(text);
+                writer.indexTranslationUnit(new TranslationUnit(
+                    new TranslationUnitVariant(LocaleId.ENGLISH, new TextFragment(text)),
+                    new TranslationUnitVariant(LocaleId.FRENCH, new TextFragment("trg" + i))));
+            }
+            writer.close();
+        }
+        reader = IndexReader.open(dir, true);
+        searcher = new IndexSearcher(reader);
+    }
+
+    @AfterClass
+    public static void tearDown () throws Exception {
+        searcher.close();
+        reader.close();
+        dir.close();
+    }
+
+    @Test
+    public void sameHitsAsFullScoring () throws Exception {
+        Random random = new Random(7);
+        int[] thresholds = {0, 50, 60, 75, 85, 95, 100};
+        int hits = 0;
+        for (int i = 0; i < 40; i++) {
+            String query = sources.get(random.nextInt(sources.size()));
+            if ( i % 2 == 1 ) {
+                // Change a word so the query is not always an exact match
+                query = query.replaceFirst("^\\S+", WORDS[random.nextInt(WORDS.length)]);
+            }
+            for (int threshold : thresholds) {
+                hits += checkQuery(createTerms(query, null), threshold);
+            }
+        }
+        assertTrue("some fuzzy hits", hits > 0);
+    }
+
+    @Test
+    public void sameHitsWithTermOfOtherField () throws Exception {
+        // A query term outside the term count field disables the pruning on the overlap
+        String query = sources.get(10);
+        Term other = new Term(TranslationUnitField.TARGET.name(), "trg1");
+        for (int threshold : new int[] {0, 60, 90, 100}) {
+            checkQuery(createTerms(query, other), threshold);
+        }
+    }
+
+    private static String createSentence (Random random) {
+        StringBuilder tmp = new StringBuilder();
+        int count = 3 + random.nextInt(8);
+        for (int i = 0; i < count; i++) {
+            if ( i > 0 ) tmp.append(' ');
+            tmp.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return tmp.toString();
+    }
+
+    private List<Term> createTerms (String text, Term extraTerm) throws IOException {
+        List<Term> terms = new ArrayList<Term>();
+        TokenStream stream = new NgramAnalyzer(Locale.ENGLISH, 4).tokenStream(SRC, new StringReader(text));
+        TermAttribute termAtt = (TermAttribute) stream.addAttribute(TermAttribute.class);
+        stream.reset();
+        while (stream.incrementToken()) {
+            terms.add(new Term(SRC, termAtt.term()));
+        }
+        stream.end();
+        stream.close();
+        if ( extraTerm != null ) {
+            terms.add(extraTerm);
+        }
+        return terms;
+    }
+
+    private int checkQuery (List<Term> terms, float threshold) throws IOException {
+        TmFuzzyQuery query = new TmFuzzyQuery(threshold, SRC);
+        for (Term term : terms) {
+            query.add(term);
+        }
+        TreeMap<Integer, Float> expected = scoreAllDocuments(terms, threshold);
+        TreeMap<Integer, Float> actual = new TreeMap<Integer, Float>();
+        TopDocs topDocs = searcher.search(query, reader.maxDoc());
+        for (ScoreDoc sd : topDocs.scoreDocs) {
+            actual.put(sd.doc, sd.score);
+        }
+        assertEquals(terms.toString() + " at " + threshold, expected, actual);
+        return actual.size();
+    }
+
+    /**
+     * Scores every document of the index with the rough cutoff only, without any pruning.
+     */
+    private TreeMap<Integer, Float> scoreAllDocuments (List<Term> terms, float threshold) throws IOException {
+        Set<Term> unique = new LinkedHashSet<Term>(terms);
+        int[] freqs = new int[reader.maxDoc()];
+        for (Term term : unique) {
+            TermDocs td = reader.termDocs(term);
+            while (td.next()) {
+                freqs[td.doc()]++;
+            }
+            td.close();
+        }
+        int q = unique.size();
+        int rough = (int) (q * 0.50f);
+        TreeMap<Integer, Float> scores = new TreeMap<Integer, Float>();
+        for (int doc = 0; doc < freqs.length; doc++) {
+            if ( freqs[doc] <= rough ) continue;
+            TermFreqVector tfv = reader.getTermFreqVector(doc, SRC);
+            float score = (float) ((2.0f * (float) freqs[doc]) / (float) (tfv.size() + q)) * 100.0f;
+            if ( score >= threshold ) {
+                scores.put(doc, score);
+            }
+        }
+        return scores;
+    }
+}
@@ -39,9 +39,11 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.mockito.Mockito.*;
 
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -129,6 +131,25 @@ public class PensieveSeekerTest {
         assertEquals("second document", "patents are evil1", tus.get(1).getSource().getContent().toText());
     }
 
+    @Test
+    public void translationUnitIteratorCloseReleasesReader() throws Exception {
+        PensieveWriter writer = getWriter();
+        populateIndex(writer, 12, "patents are evil", "unittest");
+        writer.close();
+
+        IndexReader reader = seeker.openIndexReader();
+        int refCount = reader.getRefCount();
+        Iterator<TranslationUnit> tuIterator = seeker.iterator();
+        tuIterator.next();
+        assertEquals("reference held by the iterator", refCount + 1, reader.getRefCount());
+
+        ((Closeable) tuIterator).close();
+        assertEquals("reference released on close", refCount, reader.getRefCount());
+        assertFalse(tuIterator.hasNext());
+        ((Closeable) tuIterator).close();
+        assertEquals("close can be called twice", refCount, reader.getRefCount());
+    }
+
     @Test
     public void translationUnitIteratorNextCallOnEmpty() throws Exception {
         PensieveWriter writer = getWriter();
@@ -649,6 +670,75 @@ public class PensieveSeekerTest {
         assertEquals("type field", type, tu.getMetadata().get(MetadataType.TYPE));
     }
 
+    @Test
+    public void nrtSearcherSeesChangesAndHonorsReopenInterval() throws Exception {
+        PensieveWriter writer = getWriter();
+        PensieveSeeker nrtSeeker = new PensieveSeeker(writer.getIndexWriter());
+        try {
+            populateIndex(writer, 1, "patents are evil", "unittest");
+            assertEquals("number of docs found", 1,
+                    nrtSeeker.searchExact(new TextFragment("patents are evil0"), null).size());
+
+            // New entries are seen by the next search
+            writer.indexTranslationUnit(new TranslationUnit(new TranslationUnitVariant(LocaleId.fromString("EN"),
+                    new TextFragment("patents are good")), TARGET));
+            assertEquals("number of docs found", 1,
+                    nrtSeeker.searchExact(new TextFragment("patents are good"), null).size());
+
+            // Not seen before the re-open interval has elapsed
+            nrtSeeker.setReopenInterval(60000);
+            assertEquals(60000, nrtSeeker.getReopenInterval());
+            writer.indexTranslationUnit(new TranslationUnit(new TranslationUnitVariant(LocaleId.fromString("EN"),
+                    new TextFragment("patents are bad")), TARGET));
+            assertEquals("number of docs found", 0,
+                    nrtSeeker.searchExact(new TextFragment("patents are bad"), null).size());
+            nrtSeeker.setReopenInterval(0);
+            assertEquals("number of docs found", 1,
+                    nrtSeeker.searchExact(new TextFragment("patents are bad"), null).size());
+        } finally {
+            nrtSeeker.close();
+            writer.close();
+        }
+    }
+
+    @Test
+    public void nrtSearchesWhileTheIndexChanges() throws Exception {
+        final PensieveWriter writer = getWriter();
+        final PensieveSeeker nrtSeeker = new PensieveSeeker(writer.getIndexWriter());
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        try {
+            populateIndex(writer, 1, "patents are evil", "unittest");
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int j = 0; j < 100; j++) {
+                                // The reader used by a search must not be closed by the re-open of another one
+                                assertEquals(1, nrtSeeker.searchExact(new TextFragment("patents are evil0"), null).size());
+                            }
+                        } catch (Throwable e) {
+                            errors.add(e);
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for (int j = 0; j < 100; j++) {
+                writer.indexTranslationUnit(new TranslationUnit(new TranslationUnitVariant(LocaleId.fromString("EN"),
+                        new TextFragment("patents are good" + j)), TARGET));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue("errors: " + errors, errors.isEmpty());
+        } finally {
+            nrtSeeker.close();
+            writer.close();
+        }
+    }
+
     PensieveWriter getWriter() throws Exception {
         return new PensieveWriter(DIR, true);
     }
@@ -42,16 +42,29 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 /**
  * Simple database to store align source and target with some context info.
  * This is for simple exact match retrieval for now.
+ * <p>The entries are added by batches: they are written to the database when a batch is full,
+ * and before any query, count, export or when the database is closed.
+ * <p>A database can also be opened in memory (see {@link #open(String, boolean)}): all its entries
+ * are then loaded once in a hash table and the queries do not access the database anymore.
+ * This is meant for read-only use.
+ * <p>The exact lookups use an index on the source text. Databases created by older versions
+ * have no such index: it is added when they are opened.
  */
 public class Database {
 
+	private static final Logger LOGGER = Logger.getLogger(Database.class.getName());
+
 	public static final String TBLNAME      = "Source";
 
 	public static final int  KEY          = 0;
@@ -74,6 +87,16 @@ public class Database {
 	public static final String NFILENAME  = "FileName";
 	
 	public static final String DATAFILE_EXT = ".h2.db"; //".data.db";
+	
+	private static final String SRCTEXT_INDEX = "SrcTextIdx";
+	/**
+	 * Number of entries added before they are written to the database.
+	 */
+	private static final int BATCH_SIZE = 500;
+	/**
+	 * Names of the columns that can be used as attributes for the queries in memory.
+	 */
+	private static final String[] ATTRIBUTE_NAMES = {NNAME, NTYPE, NGRPNAME, NFILENAME};
 
 	private Connection  conn = null;
 	private PreparedStatement qstm = null;
@@ -83,6 +106,32 @@ public class Database {
 	private MatchType exactMatchType;
 	private MatchType fuzzyMatchType;
 	private String origin;
+	private PreparedStatement pstmAddSeg = null;
+	private PreparedStatement pstmAddTu = null;
+	private int pendingEntries = 0;
+	private boolean needIndex = false;
+	private Map<String, List<MemEntry>> memEntries = null;
+
+	/**
+	 * Entry of a database loaded in memory.
+	 */
+	private static class MemEntry {
+		final String srcCodes;
+		final String trgText;
+		final String trgCodes;
+		final String[] attributes; // Same order as ATTRIBUTE_NAMES
+
+		MemEntry (String srcCodes,
+			String trgText,
+			String trgCodes,
+			String[] attributes)
+		{
+			this.srcCodes = srcCodes;
+			this.trgText = trgText;
+			this.trgCodes = trgCodes;
+			this.attributes = attributes;
+		}
+	}
 
 	public Database () {
 		try {
@@ -100,7 +149,21 @@ public class Database {
 				qstm.close();
 				qstm = null;
 			}
+			memEntries = null;
 			if ( conn != null ) {
+				flushEntries();
+				if ( pstmAddSeg != null ) {
+					pstmAddSeg.close();
+					pstmAddSeg = null;
+				}
+				if ( pstmAddTu != null ) {
+					pstmAddTu.close();
+					pstmAddTu = null;
+				}
+				// Index the entries once they are all added
+				if ( needIndex ) {
+					createIndex();
+				}
 				conn.close();
 				conn = null;
 			}
@@ -151,6 +214,8 @@ public class Database {
 			
 			// Open the connection, this creates the DB if none exists
 			conn = DriverManager.getConnection("jdbc:h2:"+pathNoExt, "sa", "");
+			// The entries are committed by batches
+			conn.setAutoCommit(false);
 			origin = Util.getFilename(path, true);
 	
 			// Create the source table
@@ -166,6 +231,9 @@ public class Database {
 				+ NGRPNAME + " VARCHAR,"
 				+ NFILENAME + " VARCHAR,"
 				+ ")");
+			conn.commit();
+			// The index on the source text is created when the database is closed
+			needIndex = true;
 			trgLoc = targetLocale;
 		}
 		catch ( SQLException e ) {
@@ -185,6 +253,18 @@ public class Database {
 	}
 	
 	public void open (String path) {
+		open(path, false);
+	}
+	
+	/**
+	 * Opens an existing database.
+	 * @param path the path of the database.
+	 * @param inMemory true to load all the entries of the database in memory,
+	 * for read-only use. The queries are then done without accessing the database.
+	 */
+	public void open (String path,
+		boolean inMemory)
+	{
 		try {
 			close();
 			String pathNoExt = path;
@@ -193,16 +273,118 @@ public class Database {
 			}
 			if ( !(new File(pathNoExt+DATAFILE_EXT)).exists() ) return;
 			conn = DriverManager.getConnection("jdbc:h2:"+pathNoExt, "sa", "");
+			conn.setAutoCommit(false);
 			origin = Util.getFilename(path, true);
+			if ( inMemory ) {
+				loadEntries();
+			}
+			else if ( !hasIndex() ) {
+				// Databases created by older versions have no index
+				try {
+					createIndex();
+				}
+				catch ( SQLException e ) {
+					// For example if the database is read-only
+					LOGGER.log(Level.WARNING, String.format("Cannot create the index of '%s'. "
+						+ "Each query will scan the whole database.", path), e);
+				}
+			}
 		}
 		catch ( SQLException e ) {
 			throw new RuntimeException(e);
 		}
 	}
 	
+	private boolean hasIndex ()
+		throws SQLException
+	{
+		Statement stm = null;
+		try {
+			stm = conn.createStatement();
+			// H2 stores the unquoted names in upper case
+			ResultSet result = stm.executeQuery(String.format(
+				"SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME='%s'",
+				SRCTEXT_INDEX.toUpperCase()));
+			return ( result.next() && ( result.getInt(1) > 0 ));
+		}
+		finally {
+			if ( stm != null ) {
+				stm.close();
+			}
+		}
+	}
+	
+	private void createIndex ()
+		throws SQLException
+	{
+		Statement stm = null;
+		try {
+			stm = conn.createStatement();
+			stm.execute(String.format("CREATE INDEX IF NOT EXISTS %s ON %s (%s)",
+				SRCTEXT_INDEX, TBLNAME, NSRCTEXT));
+			conn.commit();
+			needIndex = false;
+		}
+		finally {
+			if ( stm != null ) {
+				stm.close();
+			}
+		}
+	}
+	
+	private void loadEntries ()
+		throws SQLException
+	{
+		Statement stm = null;
+		try {
+			memEntries = new HashMap<String, List<MemEntry>>();
+			stm = conn.createStatement();
+			ResultSet result = stm.executeQuery(String.format(
+				"SELECT %s,%s,%s,%s,%s,%s,%s,%s FROM %s ORDER BY %s",
+				NSRCTEXT, NSRCCODES, NTRGTEXT, NTRGCODES, NNAME, NTYPE, NGRPNAME, NFILENAME, TBLNAME, NKEY));
+			while ( result.next() ) {
+				String srcText = result.getString(1);
+				List<MemEntry> list = memEntries.get(srcText);
+				if ( list == null ) {
+					list = new ArrayList<MemEntry>(1);
+					memEntries.put(srcText, list);
+				}
+				list.add(new MemEntry(result.getString(2), result.getString(3), result.getString(4),
+					new String[] {result.getString(5), result.getString(6), result.getString(7), result.getString(8)}));
+			}
+		}
+		finally {
+			if ( stm != null ) {
+				stm.close();
+			}
+		}
+	}
+	
+	/**
+	 * Writes the pending entries to the database.
+	 */
+	private void flushEntries ()
+		throws SQLException
+	{
+		if ( pendingEntries == 0 ) return;
+		if ( pstmAddSeg != null ) pstmAddSeg.executeBatch();
+		if ( pstmAddTu != null ) pstmAddTu.executeBatch();
+		conn.commit();
+		pendingEntries = 0;
+	}
+	
+	private void entryAdded ()
+		throws SQLException
+	{
+		if ( ++pendingEntries >= BATCH_SIZE ) {
+			flushEntries();
+		}
+	}
+	
 	public int getEntryCount () {
 		Statement stm = null;
 		try {
+			flushEntries();
 			stm = conn.createStatement();
 			ResultSet result = stm.executeQuery("SELECT COUNT(" + NKEY + ") FROM " + TBLNAME);
 			if ( !result.first() ) return 0;
@@ -228,7 +410,7 @@ public class Database {
 		String fileName)
 	{
 		int count = 0;
-		PreparedStatement pstm = null;
+		PreparedStatement pstm;
 		try {
 			if ( !tu.hasTarget(trgLoc) ) return 0;
 
@@ -238,8 +420,11 @@ public class Database {
 			
 			// Store the segments if possible
 			if ( srcCont.hasBeenSegmented() && trgCont.hasBeenSegmented() ) {
-				pstm = conn.prepareStatement(String.format("INSERT INTO %s (%s,%s,%s,%s,%s,%s,%s) VALUES(?,?,?,?,?,?,?);",
-					TBLNAME, NTYPE, NSRCTEXT, NSRCCODES, NTRGTEXT, NTRGCODES, NGRPNAME, NFILENAME));
+				if ( pstmAddSeg == null ) {
+					pstmAddSeg = conn.prepareStatement(String.format("INSERT INTO %s (%s,%s,%s,%s,%s,%s,%s) VALUES(?,?,?,?,?,?,?);",
+						TBLNAME, NTYPE, NSRCTEXT, NSRCCODES, NTRGTEXT, NTRGCODES, NGRPNAME, NFILENAME));
+				}
+				pstm = pstmAddSeg;
 				pstm.setString(1, tu.getType());
 				pstm.setString(6, grpName);
 				pstm.setString(7, fileName);
@@ -252,14 +437,18 @@ public class Database {
 					if ( trgSeg != null ) { // Skip source without target
 						pstm.setString(4, trgSeg.text.getCodedText());
 						pstm.setString(5, Code.codesToString(trgSeg.text.getCodes(), true));
-						pstm.execute();
+						pstm.addBatch();
+						entryAdded();
 						count++;
 					}
 				}
 			}
 			else { // Save the whole TU
-				pstm = conn.prepareStatement(String.format("INSERT INTO %s (%s,%s,%s,%s,%s,%s,%s,%s) VALUES(?,?,?,?,?,?,?,?);",
-					TBLNAME, NNAME, NTYPE, NSRCTEXT, NSRCCODES, NTRGTEXT, NTRGCODES, NGRPNAME, NFILENAME));
+				if ( pstmAddTu == null ) {
+					pstmAddTu = conn.prepareStatement(String.format("INSERT INTO %s (%s,%s,%s,%s,%s,%s,%s,%s) VALUES(?,?,?,?,?,?,?,?);",
+						TBLNAME, NNAME, NTYPE, NSRCTEXT, NSRCCODES, NTRGTEXT, NTRGCODES, NGRPNAME, NFILENAME));
+				}
+				pstm = pstmAddTu;
 				pstm.setString(1, tu.getName());
 				pstm.setString(2, tu.getType());
 				pstm.setString(3, srcCont.getCodedText());
@@ -269,7 +458,8 @@ public class Database {
 				pstm.setString(6, Code.codesToString(trgCont.getFirstContent().getCodes(), true));
 				pstm.setString(7, grpName);
 				pstm.setString(8, fileName);
-				pstm.execute();
+				pstm.addBatch();
+				entryAdded();
 				count++;
 			}
 			return count;
@@ -277,17 +467,6 @@ public class Database {
 		catch ( SQLException e ) {
 			throw new RuntimeException(e);
 		}
-		finally {
-			try {
-				if ( pstm != null ) {
-					pstm.close();
-					pstm = null;
-				}
-			}
-			catch ( SQLException e ) {
-				throw new RuntimeException(e);
-			}
-		}
 	}
 	
 	public void clearAttributes () {
@@ -299,6 +478,16 @@ public class Database {
 			// Default match types
 			exactMatchType = MatchType.EXACT;
 			fuzzyMatchType = MatchType.FUZZY;
+			if (( attributes != null ) && attributes.containsKey(NGRPNAME) ) {
+				exactMatchType = MatchType.EXACT_UNIQUE_ID;
+				fuzzyMatchType = MatchType.FUZZY_UNIQUE_ID;
+			}
+			if ( qstm != null ) {
+				qstm.close();
+				qstm = null;
+			}
+			// No statement needed when the entries are in memory
+			if ( memEntries != null ) return;
 			// prepare the query with or without context condition
 			if ( attributes == null ) {
 				qstm = conn.prepareStatement(String.format("SELECT %s,%s,%s,%s FROM %s WHERE %s=?",
@@ -310,10 +499,6 @@ public class Database {
 					NSRCTEXT, NSRCCODES, NTRGTEXT, NTRGCODES, TBLNAME, NSRCTEXT));
 				for ( String name : attributes.keySet() ) {
 					tmp.append(" AND ").append(name).append("=?");
-					if ( name.equals(NGRPNAME) ) {
-						exactMatchType = MatchType.EXACT_UNIQUE_ID;
-						fuzzyMatchType = MatchType.FUZZY_UNIQUE_ID;
-					}
 				}
 				qstm = conn.prepareStatement(tmp.toString());
 			}
@@ -329,6 +514,14 @@ public class Database {
 		int threshold)
 	{
 		try {
+			if ( memEntries != null ) {
+				if ( exactMatchType == null ) {
+					createStatement(attributes);
+				}
+				return queryInMemory(query, attributes, maxCount, threshold);
+			}
+			// Make sure all entries are in the database
+			flushEntries();
 			// prepare the query with or without context condition
 			if ( qstm == null ) {
 				// Create the statement if needed
@@ -348,32 +541,8 @@ public class Database {
 			ArrayList<QueryResult> list = new ArrayList<QueryResult>();
 			String queryCodes = query.getCodes().toString();
 			do {
-				QueryResult qr = new QueryResult();
-				qr.origin = origin;
-				qr.source = new TextFragment();
-				qr.source.setCodedText(result.getString(1),
-					Code.stringToCodes(result.getString(2)), false);
-				qr.target = new TextFragment();
-				qr.target.setCodedText(result.getString(3),
-					Code.stringToCodes(result.getString(4)), false);
-				// Non-code text is exactly the same
-				qr.setFuzzyScore(100);
-				qr.matchType = exactMatchType;
-				// Check the codes between query source and found source, if requested
-				if ( penalizeSourceWithDifferentCodes ) {
-					if ( !queryCodes.equals(qr.source.getCodes().toString()) ) {
-						qr.setFuzzyScore(qr.getFuzzyScore()-1); // 99 if there are code difference between codes in query and codes in source
-						qr.matchType = fuzzyMatchType;
-					}
-				}
-				// Check the codes between query source and found target, if requested
-				if ( penalizeTargetWithDifferentCodes ) {
-					if ( !queryCodes.equals(qr.target.getCodes().toString()) ) {
-						qr.setFuzzyScore(qr.getFuzzyScore()-1);
-						qr.matchType = fuzzyMatchType;
-					}
-				}
-				
+				QueryResult qr = createResult(queryCodes, result.getString(1), result.getString(2),
+					result.getString(3), result.getString(4));
 				if ( qr.getFuzzyScore() >= threshold ) {
 					list.add(qr);
 				}
@@ -385,6 +554,84 @@ public class Database {
 		}
 	}
 
+	private List<QueryResult> queryInMemory (TextFragment query,
+		LinkedHashMap<String, String> attributes,
+		int maxCount,
+		int threshold)
+	{
+		String srcText = query.getCodedText();
+		List<MemEntry> entries = memEntries.get(srcText);
+		if ( entries == null ) return null;
+		ArrayList<QueryResult> list = new ArrayList<QueryResult>();
+		String queryCodes = query.getCodes().toString();
+		boolean found = false;
+		for ( MemEntry entry : entries ) {
+			if (( attributes != null ) && !matchAttributes(entry, attributes) ) continue;
+			found = true;
+			QueryResult qr = createResult(queryCodes, srcText, entry.srcCodes,
+				entry.trgText, entry.trgCodes);
+			if ( qr.getFuzzyScore() >= threshold ) {
+				list.add(qr);
+				if ( list.size() >= maxCount ) break;
+			}
+		}
+		// Same as the database query: null when no entry matches
+		return (found ? list : null);
+	}
+
+	private boolean matchAttributes (MemEntry entry,
+		LinkedHashMap<String, String> attributes)
+	{
+		for ( String name : attributes.keySet() ) {
+			int n = -1;
+			for ( int i=0; i<ATTRIBUTE_NAMES.length; i++ ) {
+				if ( ATTRIBUTE_NAMES[i].equalsIgnoreCase(name) ) {
+					n = i;
+					break;
+				}
+			}
+			if ( n == -1 ) {
+				throw new RuntimeException(String.format("The attribute '%s' is not a column of the database.", name));
+			}
+			// Like in SQL, a null value matches nothing
+			String value = attributes.get(name);
+			if (( value == null ) || !value.equals(entry.attributes[n]) ) return false;
+		}
+		return true;
+	}
+
+	private QueryResult createResult (String queryCodes,
+		String srcText,
+		String srcCodes,
+		String trgText,
+		String trgCodes)
+	{
+		QueryResult qr = new QueryResult();
+		qr.origin = origin;
+		qr.source = new TextFragment();
+		qr.source.setCodedText(srcText, Code.stringToCodes(srcCodes), false);
+		qr.target = new TextFragment();
+		qr.target.setCodedText(trgText, Code.stringToCodes(trgCodes), false);
+		// Non-code text is exactly the same
+		qr.setFuzzyScore(100);
+		qr.matchType = exactMatchType;
+		// Check the codes between query source and found source, if requested
+		if ( penalizeSourceWithDifferentCodes ) {
+			if ( !queryCodes.equals(qr.source.getCodes().toString()) ) {
+				qr.setFuzzyScore(qr.getFuzzyScore()-1); // 99 if there are code difference between codes in query and codes in source
+				qr.matchType = fuzzyMatchType;
+			}
+		}
+		// Check the codes between query source and found target, if requested
+		if ( penalizeTargetWithDifferentCodes ) {
+			if ( !queryCodes.equals(qr.target.getCodes().toString()) ) {
+				qr.setFuzzyScore(qr.getFuzzyScore()-1);
+				qr.matchType = fuzzyMatchType;
+			}
+		}
+		return qr;
+	}
+
 	public void exportToTMX (String outputPath,
 		LocaleId sourceLocale,
 		LocaleId targetLocale)
@@ -395,6 +642,7 @@ public class Database {
 			writer = new TMXWriter(outputPath);
 			writer.writeStartDocument(sourceLocale, targetLocale,
 				null, null, "sentence", "simpleTM", null);
+			flushEntries();
 			stm = conn.createStatement();
 			ResultSet result = stm.executeQuery(String.format(
 				"SELECT %s,%s,%s,%s,%s,%s,%s FROM " + TBLNAME,
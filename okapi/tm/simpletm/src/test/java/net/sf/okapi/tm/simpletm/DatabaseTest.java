@@ -0,0 +1,209 @@
+/*===========================================================================
+  Copyright (C) 2012 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  This library is free software; you can redistribute it and/or modify it 
+  under the terms of the GNU Lesser General Public License as published by 
+  the Free Software Foundation; either version 2.1 of the License, or (at 
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but 
+  WITHOUT ANY WARRANTY; without even the implied warranty of 
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser 
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License 
+  along with this library; if not, write to the Free Software Foundation, 
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+  See also the full LGPL text here: http://www.gnu.org/copyleft/lesser.html
+===========================================================================*/
+
+package net.sf.okapi.tm.simpletm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.query.MatchType;
+import net.sf.okapi.common.query.QueryResult;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextUnit;
+import net.sf.okapi.common.resource.TextFragment.TagType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DatabaseTest {
+
+	private static final LocaleId locFR = LocaleId.FRENCH;
+	
+	private String path;
+	private Database db;
+
+	@Before
+	public void setUp () {
+		path = System.getProperty("java.io.tmpdir")+File.separator
+			+"okapi-simpletm-test"+File.separator+"test";
+		db = new Database();
+	}
+	
+	@After
+	public void tearDown () {
+		db.close();
+	}
+	
+	@Test
+	public void testBatchInsert ()
+		throws SQLException
+	{
+		db.create(path, true, locFR);
+		// Several batches, with a partial one at the end
+		int count = 1234;
+		for ( int i=0; i<count; i++ ) {
+			assertEquals(1, db.addEntry(createTextUnit(i, null), "grp"+(i%2), "file"));
+		}
+		// Pending entries are written before counting and querying
+		assertEquals(count, db.getEntryCount());
+		List<QueryResult> list = db.query(new TextFragment("Source 1233"), null, 10, 0);
+		assertEquals(1, list.size());
+		assertEquals("Target 1233", list.get(0).target.toText());
+		db.close();
+		// The index is created when the new database is closed
+		assertTrue(hasIndex());
+
+		db.open(path);
+		assertEquals(count, db.getEntryCount());
+	}
+	
+	@Test
+	public void testInMemory () {
+		db.create(path, true, locFR);
+		for ( int i=0; i<10; i++ ) {
+			db.addEntry(createTextUnit(i, null), "grp"+(i%2), "file");
+		}
+		db.addEntry(createTextUnit(3, "grp1"), "grp1", "file");
+		db.close();
+		
+		// Same results from the database and from memory
+		db.open(path, false);
+		List<QueryResult> fromDb = db.query(new TextFragment("Source 3"), null, 10, 0);
+		db.open(path, true);
+		List<QueryResult> fromMem = db.query(new TextFragment("Source 3"), null, 10, 0);
+		assertEquals(2, fromDb.size());
+		assertEquals(fromDb.size(), fromMem.size());
+		for ( int i=0; i<fromDb.size(); i++ ) {
+			assertEquals(fromDb.get(i).target.toText(), fromMem.get(i).target.toText());
+			assertEquals(fromDb.get(i).getFuzzyScore(), fromMem.get(i).getFuzzyScore());
+			assertEquals(fromDb.get(i).matchType, fromMem.get(i).matchType);
+		}
+		// Target codes different from the query are penalized
+		assertEquals(100, fromMem.get(0).getFuzzyScore());
+		assertEquals(99, fromMem.get(1).getFuzzyScore());
+		assertEquals(MatchType.FUZZY, fromMem.get(1).matchType);
+		
+		// Attributes
+		LinkedHashMap<String, String> attributes = new LinkedHashMap<String, String>();
+		attributes.put(Database.NGRPNAME, "grp0");
+		db.createStatement(attributes);
+		assertNull(db.query(new TextFragment("Source 3"), attributes, 10, 0));
+		attributes.put(Database.NGRPNAME, "grp1");
+		db.createStatement(attributes);
+		List<QueryResult> list = db.query(new TextFragment("Source 3"), attributes, 10, 0);
+		assertEquals(2, list.size());
+		assertEquals(MatchType.EXACT_UNIQUE_ID, list.get(0).matchType);
+		
+		db.clearAttributes();
+		assertNull(db.query(new TextFragment("Source 99"), null, 10, 0));
+	}
+	
+	@Test
+	public void testNullAttribute () {
+		db.create(path, true, locFR);
+		db.addEntry(createTextUnit(1, null), null, "file");
+		db.close();
+		LinkedHashMap<String, String> attributes = new LinkedHashMap<String, String>();
+		attributes.put(Database.NGRPNAME, null);
+		
+		// A null value matches no entry, in the database as in memory
+		db.open(path, false);
+		db.createStatement(attributes);
+		assertNull(db.query(new TextFragment("Source 1"), attributes, 10, 0));
+		db.open(path, true);
+		db.createStatement(attributes);
+		assertNull(db.query(new TextFragment("Source 1"), attributes, 10, 0));
+	}
+	
+	@Test
+	public void testIndexCreatedOnOpen ()
+		throws SQLException
+	{
+		db.create(path, true, locFR);
+		db.addEntry(createTextUnit(1, null), null, null);
+		db.close();
+		// Simulate a database created by an older version
+		dropIndex();
+		assertFalse(hasIndex());
+		
+		// Opening the database adds the missing index
+		db.open(path);
+		assertEquals(1, db.query(new TextFragment("Source 1"), null, 10, 0).size());
+		db.close();
+		assertTrue(hasIndex());
+	}
+	
+	private ITextUnit createTextUnit (int index,
+		String id)
+	{
+		ITextUnit tu = new TextUnit(id==null ? String.valueOf(index) : id, "Source "+index);
+		TextFragment tf = new TextFragment("Target "+index);
+		if ( id != null ) {
+			// Same source with a code in the target
+			tf.append(TagType.PLACEHOLDER, "br", "<br/>");
+		}
+		tu.setTarget(locFR, new TextContainer(tf));
+		return tu;
+	}
+	
+	private boolean hasIndex ()
+		throws SQLException
+	{
+		Connection conn = DriverManager.getConnection("jdbc:h2:"+path, "sa", "");
+		try {
+			Statement stm = conn.createStatement();
+			ResultSet result = stm.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES "
+				+ "WHERE INDEX_NAME='SRCTEXTIDX'");
+			result.next();
+			return (result.getInt(1) > 0);
+		}
+		finally {
+			conn.close();
+		}
+	}
+	
+	private void dropIndex ()
+		throws SQLException
+	{
+		Connection conn = DriverManager.getConnection("jdbc:h2:"+path, "sa", "");
+		try {
+			conn.createStatement().execute("DROP INDEX SrcTextIdx");
+		}
+		finally {
+			conn.close();
+		}
+	}
+
+}